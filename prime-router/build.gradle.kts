@@ -14,6 +14,7 @@ Properties that can be overriden using an environment variable only:
 Properties to control the execution and output using the Gradle -P arguments:
   forcetest - Force the running of the test regardless of changes
   showtests - Verbose output of the unit tests
+  jmhIncludes - Regular expression of the benchmarks to run with the jmh task (defaults to all of them)
   E.g. ./gradlew clean package -Ppg.user=myuser -Dpg.password=mypassword -Pforcetest
  */
 
@@ -47,6 +48,7 @@ plugins {
     id("org.jetbrains.kotlin.plugin.serialization") version "$kotlinVersion"
     id("com.nocwriter.runsql") version ("1.0.3")
     id("io.swagger.core.v3.swagger-gradle-plugin") version "2.2.30"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 // retrieve the current commit hash
@@ -323,6 +325,37 @@ tasks.register<Test>("testIntegration") {
     }
 }
 
+// Add the JMH benchmarks.  The benchmark settings are fixed so the results of different commits can be compared,
+// e.g. ./gradlew jmh -PjmhIncludes=HL7ReaderBenchmark
+jmh {
+    jmhVersion.set("1.37")
+    // The benchmarks use the unit test fixtures
+    includeTests.set(true)
+    if (project.hasProperty("jmhIncludes")) {
+        includes.set(listOf(project.property("jmhIncludes").toString()))
+    }
+    fork.set(1)
+    warmupIterations.set(3)
+    warmup.set("5s")
+    iterations.set(5)
+    timeOnIteration.set("5s")
+    benchmarkMode.set(listOf("avgt"))
+    timeUnit.set("us")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("reports/jmh/results.json"))
+    failOnError.set(true)
+    jvmArgsAppend.set(listOf("-Dbenchmarks.projectDir=$projectDir"))
+    duplicateClassesStrategy.set(DuplicatesStrategy.EXCLUDE)
+}
+
+val compileJmhKotlin: KotlinCompile by tasks
+compileJmhKotlin.compilerOptions.jvmTarget.set(appJvmTarget)
+
+tasks.named("jmh") {
+    group = rootProject.description ?: ""
+    description = "Run the JMH benchmarks"
+}
+
 val apiDocsBaseDir = File(project.projectDir, "/docs/api/")
 val apiDocsSpecDir = File(apiDocsBaseDir, "generated")
 val apiDocsSwaggerUIDir = File(apiDocsBaseDir, "swagger-ui")
@@ -360,6 +393,9 @@ tasks.register<Copy>("copyApiSwaggerUI") {
 
 tasks.withType<Test>().configureEach {
     maxParallelForks = (Runtime.getRuntime().availableProcessors() / 2).takeIf { it > 0 } ?: 1
+    // Tests rewrite schema files and settings, so always check cached schemas and settings for changes
+    environment["SCHEMA_CACHE_REVALIDATION_SECONDS"] = "0"
+    environment["SETTINGS_REFRESH_CHECK_SECONDS"] = "0"
     if ("AzureWebJobsStorage" !in System.getenv()) {
         environment["AzureWebJobsStorage"] = "test-AzureWebJobsStorage"
         println(
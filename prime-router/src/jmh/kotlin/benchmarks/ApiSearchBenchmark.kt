@@ -0,0 +1,83 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.azure.ApiSearchResult
+import gov.cdc.prime.router.azure.RawApiSearch
+import gov.cdc.prime.router.azure.RawApiSort
+import gov.cdc.prime.router.azure.RawPagination
+import gov.cdc.prime.router.azure.SortDirection
+import gov.cdc.prime.router.azure.db.Tables.ACTION
+import gov.cdc.prime.router.azure.db.Tables.REPORT_FILE
+import gov.cdc.prime.router.azure.db.tables.pojos.Action
+import gov.cdc.prime.router.azure.db.tables.pojos.ReportFile
+import gov.cdc.prime.router.db.ReportFileApiSearch
+import gov.cdc.prime.router.db.ReportFileDatabaseAccess
+import gov.cdc.prime.router.db.ReportStreamTestDatabaseContainer
+import org.jooq.impl.DSL
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.time.OffsetDateTime
+import java.util.UUID
+
+/**
+ * Benchmarks reading a page from the middle of the report_file search results by offset against reading the same
+ * page by cursor, over a Postgres test container seeded with [rowCount] reports.  Docker must be running.
+ */
+@State(Scope.Benchmark)
+open class ApiSearchBenchmark {
+    @Param("100000")
+    var rowCount = 0
+
+    private lateinit var reportFileDatabaseAccess: ReportFileDatabaseAccess
+    private var middlePage = 0
+    private var middleCursor: String? = null
+
+    @Setup
+    fun setup() {
+        ReportStreamTestDatabaseContainer.containerInstance.start()
+        ReportStreamTestDatabaseContainer.setup()
+        val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+        val start = OffsetDateTime.now()
+        db.transact { txn ->
+            val action = DSL.using(txn).newRecord(ACTION, Action())
+            action.store()
+            val actionId = action.actionId
+            (0 until rowCount).chunked(1000).forEach { chunk ->
+                DSL.using(txn).batchInsert(
+                    chunk.map { index ->
+                        val report = ReportFile().setSchemaTopic(Topic.FULL_ELR).setReportId(UUID.randomUUID())
+                            .setActionId(actionId).setSchemaName("schema").setBodyFormat("hl7").setItemCount(1)
+                            .setCreatedAt(start.minusSeconds(index.toLong()))
+                        DSL.using(txn).newRecord(REPORT_FILE, report)
+                    }
+                ).execute()
+            }
+        }
+        reportFileDatabaseAccess = ReportFileDatabaseAccess(db)
+
+        // Follow the cursors to the middle page, so both benchmarks read the same rows
+        middlePage = rowCount / pageSize / 2
+        var results = search(1, null)
+        repeat(middlePage - 2) { results = search(1, results.nextCursor) }
+        middleCursor = results.nextCursor
+    }
+
+    private fun search(page: Int, cursor: String?): ApiSearchResult<ReportFile> = reportFileDatabaseAccess.getReports(
+        ReportFileApiSearch.parseRawApiSearch(
+            RawApiSearch(RawApiSort(SortDirection.DESC, "created_at"), RawPagination(page, pageSize, cursor), listOf())
+        )
+    )
+
+    @Benchmark
+    fun pageByOffset(): ApiSearchResult<ReportFile> = search(middlePage, null)
+
+    @Benchmark
+    fun pageByCursor(): ApiSearchResult<ReportFile> = search(1, middleCursor)
+
+    companion object {
+        private const val pageSize = 100
+    }
+}
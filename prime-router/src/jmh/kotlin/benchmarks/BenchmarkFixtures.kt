@@ -0,0 +1,45 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.azure.BlobAccess
+import java.io.File
+
+/**
+ * The unit test fixtures and metadata used by the benchmarks.  Changing a fixture changes the results of the
+ * benchmarks that use it, so add a fixture instead to keep the results comparable across commits.
+ */
+object BenchmarkFixtures {
+    /**
+     * The prime-router directory, which the jmh task passes to the benchmarks since the working directory of the
+     * forked benchmark JVMs is not the project directory.
+     */
+    val projectDir = File(System.getProperty("benchmarks.projectDir") ?: ".")
+
+    /** An ORU_R01 message with several orders and observations */
+    const val hl7Message = "/fhirengine/smoketest/valid_hl7.hl7"
+
+    /** A full ELR bundle with a patient and facility in CA */
+    const val fhirBundle = "/fhirengine/engine/routing/valid.fhir"
+
+    /** The sender transform applied to bundles from the original pipeline */
+    const val senderTransform = "classpath:/metadata/fhir_transforms/senders/original-pipeline-transforms.yml"
+
+    /** The receiver transform all the ORU_R01 receiver transforms extend */
+    const val receiverTransform = "classpath:/metadata/hl7_mapping/ORU_R01/ORU_R01-base.yml"
+
+    /** The schemas are read from the classpath, so the blob store is never used */
+    val blobContainerMetadata = BlobAccess.BlobContainerMetadata("metadata", "")
+
+    /**
+     * Read the test fixture [resource] from the classpath.
+     * @return the content of the fixture
+     */
+    fun read(resource: String): String = BenchmarkFixtures::class.java.getResourceAsStream(resource)
+        ?.use { String(it.readBytes()) }
+        ?: error("Unable to find the fixture $resource")
+
+    /**
+     * A [path] relative to the prime-router directory, like metadata/tables/local/LIVD-SARS-CoV-2.csv.
+     * @return the path of the file
+     */
+    fun projectFile(path: String): String = File(projectDir, path).path
+}
@@ -0,0 +1,87 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.Metadata
+import gov.cdc.prime.router.azure.LookupTableConditionMapper
+import gov.cdc.prime.router.metadata.LookupTable
+import gov.cdc.prime.router.metadata.ObservationMappingConstants
+import org.hl7.fhir.r4.model.Coding
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks finding the conditions and member OIDs of the test codes of an observation in an observation mapping
+ * table the size of the production one, with the test code index of [LookupTableConditionMapper] against filtering
+ * the whole table like the condition mapper did before the index.
+ */
+@State(Scope.Benchmark)
+open class ConditionMapperBenchmark {
+    @Param("30000")
+    var rowCount = 0
+
+    private lateinit var table: LookupTable
+    private lateinit var mapper: LookupTableConditionMapper
+    private lateinit var codings: List<Coding>
+
+    @Setup
+    fun setup() {
+        // Each test code is mapped to two conditions, like the tests that detect more than one disease
+        val rows = (0 until rowCount).map { row ->
+            val condition = row % 500
+            listOf(testCode(row / 2), "condition-$condition", "SNOMEDCT", "Condition $condition", "oid-$condition")
+        }
+        table = LookupTable("observation-mapping", listOf(header) + rows)
+        mapper = LookupTableConditionMapper(Metadata(schema = null).loadLookupTable("observation-mapping", table))
+        // Codes from the middle of the table and one that is not mapped
+        val middle = rowCount / 4
+        codings = listOf(testCode(middle), testCode(middle + 1), "unmapped")
+            .map { Coding("http://loinc.org", it, null) }
+    }
+
+    /** A LOINC like code for the [index]th test */
+    private fun testCode(index: Int) = "${10000 + index}-${index % 10}"
+
+    @Benchmark
+    fun lookupConditionsWithIndex(): Map<Coding, List<Coding>> = mapper.lookupConditions(codings)
+
+    @Benchmark
+    fun lookupConditionsWithScan(): Map<Coding, List<Coding>> {
+        val codesToCodings = codings.associateBy { it.code }
+        return table.FilterBuilder().isIn(ObservationMappingConstants.TEST_CODE_KEY, codings.map { it.code })
+            .filter().caseSensitiveDataRowsMap.fold(mutableMapOf<Coding, List<Coding>>()) { acc, condition ->
+                val code = codesToCodings[condition[ObservationMappingConstants.TEST_CODE_KEY]]!!
+                acc[code] = acc[code].orEmpty() + Coding(
+                    condition[ObservationMappingConstants.CONDITION_CODE_SYSTEM_KEY],
+                    condition[ObservationMappingConstants.CONDITION_CODE_KEY],
+                    condition[ObservationMappingConstants.CONDITION_NAME_KEY]
+                )
+                acc
+            }
+    }
+
+    @Benchmark
+    fun lookupMemberOidWithIndex(): Map<String, String> = mapper.lookupMemberOid(codings)
+
+    @Benchmark
+    fun lookupMemberOidWithScan(): Map<String, String> =
+        table.FilterBuilder().isIn(ObservationMappingConstants.TEST_CODE_KEY, codings.mapNotNull { it.code })
+            .filter().caseSensitiveDataRowsMap
+            .mapNotNull { condition ->
+                val conditionCode = condition[ObservationMappingConstants.CONDITION_CODE_KEY]
+                val memberOid = condition[ObservationMappingConstants.TEST_OID_KEY]
+                if (!conditionCode.isNullOrEmpty() && !memberOid.isNullOrEmpty()) conditionCode to memberOid else null
+            }
+            .toMap()
+
+    companion object {
+        private val header = listOf(
+            ObservationMappingConstants.TEST_CODE_KEY,
+            ObservationMappingConstants.CONDITION_CODE_KEY,
+            ObservationMappingConstants.CONDITION_CODE_SYSTEM_KEY,
+            ObservationMappingConstants.CONDITION_NAME_KEY,
+            ObservationMappingConstants.TEST_OID_KEY
+        )
+    }
+}
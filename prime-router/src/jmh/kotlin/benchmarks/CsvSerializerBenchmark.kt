@@ -0,0 +1,55 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.Element
+import gov.cdc.prime.router.Metadata
+import gov.cdc.prime.router.Schema
+import gov.cdc.prime.router.TestSource
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.serializers.CsvSerializer
+import gov.cdc.prime.router.serializers.ReadResult
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks reading a CSV report, which normalizes and validates every value of every row with its schema element.
+ */
+@State(Scope.Benchmark)
+open class CsvSerializerBenchmark {
+    @Param("10000")
+    var rowCount = 0
+
+    private lateinit var serializer: CsvSerializer
+    private lateinit var csv: ByteArray
+
+    @Setup
+    fun setup() {
+        val schema = Schema(
+            name = schemaName,
+            topic = Topic.TEST,
+            elements = listOf(
+                Element("message_id", Element.Type.ID, csvFields = Element.csvFields("message_id")),
+                Element("patient_last_name", Element.Type.TEXT, csvFields = Element.csvFields("patient_last_name")),
+                Element("patient_phone", Element.Type.TELEPHONE, csvFields = Element.csvFields("patient_phone")),
+                Element("patient_zip", Element.Type.POSTAL_CODE, csvFields = Element.csvFields("patient_zip")),
+                Element("specimen_date", Element.Type.DATE, csvFields = Element.csvFields("specimen_date")),
+            )
+        )
+        serializer = CsvSerializer(Metadata(schema = schema))
+        val rows = (0 until rowCount).map { index ->
+            val day = (1 + index % 28).toString().padStart(2, '0')
+            "$index,Last$index,(303) 555-${1000 + index % 9000},${80000 + index % 1000},2022-01-$day"
+        }
+        csv = (listOf("message_id,patient_last_name,patient_phone,patient_zip,specimen_date") + rows)
+            .joinToString("\n").toByteArray()
+    }
+
+    @Benchmark
+    fun readExternal(): ReadResult = serializer.readExternal(schemaName, csv.inputStream(), TestSource)
+
+    companion object {
+        private const val schemaName = "benchmark"
+    }
+}
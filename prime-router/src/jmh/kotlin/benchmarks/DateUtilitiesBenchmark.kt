@@ -0,0 +1,29 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.common.DateUtilities
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.State
+import java.time.temporal.TemporalAccessor
+
+/**
+ * Benchmarks the parsing of dates in the formats senders use, which the CSV and HL7 serializers do for every date
+ * and date time value.
+ */
+@State(Scope.Benchmark)
+open class DateUtilitiesBenchmark {
+    @Benchmark
+    fun parseDate(): List<TemporalAccessor> = samples.map { DateUtilities.parseDate(it) }
+
+    companion object {
+        /** A mix of the date and date time formats received, including a date only valid as yyyy-dd-MM */
+        private val samples = listOf(
+            "2022-01-02T03:04:05-05:00",
+            "20220102030405-0500",
+            "20220102",
+            "1/2/2022 3:04",
+            "2022-04-05",
+            "2022-13-01",
+        )
+    }
+}
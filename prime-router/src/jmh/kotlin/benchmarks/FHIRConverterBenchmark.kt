@@ -0,0 +1,63 @@
+package gov.cdc.prime.router.benchmarks
+
+import ca.uhn.hl7v2.model.Message
+import fhirengine.engine.IProcessedItem
+import gov.cdc.prime.router.FileSettings
+import gov.cdc.prime.router.Metadata
+import gov.cdc.prime.router.azure.BlobAccess
+import gov.cdc.prime.router.azure.DatabaseAccess
+import gov.cdc.prime.router.azure.observability.event.AzureEventServiceImpl
+import gov.cdc.prime.router.azure.observability.event.ReportStreamEventService
+import gov.cdc.prime.router.fhirengine.engine.FHIRConverter
+import gov.cdc.prime.router.fhirengine.translation.HL7toFhirTranslator
+import gov.cdc.prime.router.history.db.ReportGraph
+import gov.cdc.prime.router.report.ReportService
+import gov.cdc.prime.router.validation.NoopItemValidator
+import org.jooq.SQLDialect
+import org.jooq.impl.DSL
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the convert step splitting an HL7 batch into messages, parsing them and translating them to FHIR,
+ * which it does in parallel for large batches.
+ */
+@State(Scope.Benchmark)
+open class FHIRConverterBenchmark {
+    @Param("5000")
+    var messageCount = 0
+
+    private lateinit var rawReport: String
+    private lateinit var converter: FHIRConverter
+    private lateinit var translator: HL7toFhirTranslator
+    private val validator = NoopItemValidator()
+
+    @Setup
+    fun setup() {
+        val message = BenchmarkFixtures.read(BenchmarkFixtures.hl7Message).trim()
+        rawReport = (0 until messageCount).joinToString("\n") { message }
+        translator = HL7toFhirTranslator.getHL7ToFhirTranslatorInstance(
+            BenchmarkFixtures.projectFile("metadata/HL7/catchall")
+        )
+        // Converting the messages never uses the database, blob store or events, so they are not connected
+        val db = DatabaseAccess(DSL.using(SQLDialect.POSTGRES))
+        val azureEventService = AzureEventServiceImpl()
+        val reportService = ReportService(ReportGraph(db), db)
+        converter = FHIRConverter(
+            Metadata(schema = null),
+            FileSettings(),
+            db,
+            BlobAccess(),
+            azureEventService,
+            reportService,
+            ReportStreamEventService(db, azureEventService, reportService)
+        )
+    }
+
+    @Benchmark
+    fun getBundlesFromRawHL7(): List<IProcessedItem<Message>> =
+        converter.getBundlesFromRawHL7(rawReport, validator, translator)
+}
@@ -0,0 +1,56 @@
+package gov.cdc.prime.router.benchmarks
+
+import ca.uhn.hl7v2.model.Message
+import fhirengine.engine.CustomFhirPathFunctions
+import fhirengine.engine.CustomTranslationFunctions
+import gov.cdc.prime.router.Hl7Configuration
+import gov.cdc.prime.router.fhirengine.config.HL7TranslationConfig
+import gov.cdc.prime.router.fhirengine.translation.hl7.FhirToHl7Context
+import gov.cdc.prime.router.fhirengine.translation.hl7.FhirToHl7Converter
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.HL7ConverterSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.helpers.SchemaReferenceResolverHelper
+import gov.cdc.prime.router.fhirengine.utils.FhirTranscoder
+import org.hl7.fhir.r4.model.Bundle
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the translation of a bundle to an HL7 message with a receiver transform, which the translate step
+ * does for every HL7 receiver of a bundle.
+ */
+@State(Scope.Benchmark)
+open class FhirToHl7ConverterBenchmark {
+    private lateinit var schema: HL7ConverterSchema
+    private lateinit var bundle: Bundle
+    private val hl7Configuration = Hl7Configuration(
+        receivingApplicationOID = null,
+        receivingFacilityOID = null,
+        messageProfileId = null,
+        receivingApplicationName = null,
+        receivingFacilityName = null,
+        receivingOrganization = null,
+    )
+
+    @Setup
+    fun setup() {
+        schema = SchemaReferenceResolverHelper.retrieveHl7SchemaReference(
+            BenchmarkFixtures.receiverTransform,
+            BenchmarkFixtures.blobContainerMetadata
+        )
+        bundle = FhirTranscoder.decode(BenchmarkFixtures.read(BenchmarkFixtures.fhirBundle))
+    }
+
+    @Benchmark
+    fun process(): Message = FhirToHl7Converter(
+        schema,
+        context = FhirToHl7Context(
+            CustomFhirPathFunctions(),
+            config = HL7TranslationConfig(hl7Configuration, null),
+            translationFunctions = CustomTranslationFunctions(),
+        ),
+        warnings = mutableListOf(),
+        errors = mutableListOf()
+    ).process(bundle)
+}
@@ -0,0 +1,29 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.fhirengine.utils.FhirTranscoder
+import org.hl7.fhir.r4.model.Bundle
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the decoding and encoding of a FHIR bundle, which every step of the pipeline does at least once.
+ */
+@State(Scope.Benchmark)
+open class FhirTranscoderBenchmark {
+    private lateinit var json: String
+    private lateinit var bundle: Bundle
+
+    @Setup
+    fun setup() {
+        json = BenchmarkFixtures.read(BenchmarkFixtures.fhirBundle)
+        bundle = FhirTranscoder.decode(json)
+    }
+
+    @Benchmark
+    fun decode(): Bundle = FhirTranscoder.decode(json)
+
+    @Benchmark
+    fun encode(): String = FhirTranscoder.encode(bundle)
+}
@@ -0,0 +1,40 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.fhirengine.translation.hl7.FhirTransformer
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.fhirTransform.FhirTransformSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.helpers.SchemaReferenceResolverHelper
+import gov.cdc.prime.router.fhirengine.utils.FhirTranscoder
+import org.hl7.fhir.r4.model.Bundle
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Level
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks a sender transform of a bundle.  The transform changes the bundle, so every invocation transforms a
+ * fresh copy of the bundle.
+ */
+@State(Scope.Benchmark)
+open class FhirTransformerBenchmark {
+    private lateinit var schema: FhirTransformSchema
+    private lateinit var original: Bundle
+    private lateinit var bundle: Bundle
+
+    @Setup
+    fun setup() {
+        schema = SchemaReferenceResolverHelper.retrieveFhirSchemaReference(
+            BenchmarkFixtures.senderTransform,
+            BenchmarkFixtures.blobContainerMetadata
+        )
+        original = FhirTranscoder.decode(BenchmarkFixtures.read(BenchmarkFixtures.fhirBundle))
+    }
+
+    @Setup(Level.Invocation)
+    fun copyBundle() {
+        bundle = original.copy()
+    }
+
+    @Benchmark
+    fun process(): Bundle = FhirTransformer(schema).process(bundle)
+}
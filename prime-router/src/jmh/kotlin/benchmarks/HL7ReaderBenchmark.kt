@@ -0,0 +1,36 @@
+package gov.cdc.prime.router.benchmarks
+
+import ca.uhn.hl7v2.model.Message
+import gov.cdc.prime.router.fhirengine.translation.HL7toFhirTranslator
+import gov.cdc.prime.router.fhirengine.utils.HL7Reader
+import org.hl7.fhir.r4.model.Bundle
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the parsing of an HL7 message and its translation to FHIR, which the convert step does for every
+ * HL7 message received.
+ */
+@State(Scope.Benchmark)
+open class HL7ReaderBenchmark {
+    private lateinit var rawMessage: String
+    private lateinit var message: Message
+    private lateinit var translator: HL7toFhirTranslator
+
+    @Setup
+    fun setup() {
+        rawMessage = BenchmarkFixtures.read(BenchmarkFixtures.hl7Message)
+        message = HL7Reader.parseHL7Message(rawMessage)
+        translator = HL7toFhirTranslator.getHL7ToFhirTranslatorInstance(
+            BenchmarkFixtures.projectFile("metadata/HL7/catchall")
+        )
+    }
+
+    @Benchmark
+    fun parseHL7Message(): Message = HL7Reader.parseHL7Message(rawMessage)
+
+    @Benchmark
+    fun translateToFhir(): Bundle = translator.translate(message)
+}
@@ -0,0 +1,52 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.metadata.LookupTable
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the LIVD table queries done to find the test performed for every observation, including a lookup by
+ * model with a [LookupTable.getIndex] index instead of a filter over the whole table.
+ */
+@State(Scope.Benchmark)
+open class LookupTableBenchmark {
+    private lateinit var table: LookupTable
+    private lateinit var model: String
+    private lateinit var testKitNameId: String
+
+    @Setup
+    fun setup() {
+        table = LookupTable.read(BenchmarkFixtures.projectFile("metadata/tables/local/LIVD-SARS-CoV-2.csv"))
+        // Values from the middle of the table, so the queries do not stop at the first rows
+        val models = table.FilterBuilder().findAllUnique(modelColumn)
+        model = models[models.size / 2]
+        val testKitNameIds = table.FilterBuilder().findAllUnique(testKitNameIdColumn).filter { it.isNotBlank() }
+        testKitNameId = testKitNameIds[testKitNameIds.size / 2]
+    }
+
+    @Benchmark
+    fun findByModel(): List<String> = table.FilterBuilder().isEqualTo(modelColumn, model)
+        .findAllUnique(testPerformedColumn)
+
+    @Benchmark
+    fun findByModelWithIndex(): List<String> = table.getIndex(modelIndexName) { data ->
+        val models = data.stringColumn(modelColumn)
+        val testsPerformed = data.stringColumn(testPerformedColumn)
+        (0 until data.rowCount()).groupBy({ models.get(it) }) { testsPerformed.get(it) }
+            .mapValues { (_, values) -> values.distinct() }
+    }[model].orEmpty()
+
+    @Benchmark
+    fun findByTestKitNameIdIgnoreCase(): String? = table.FilterBuilder()
+        .equalsIgnoreCase(testKitNameIdColumn, testKitNameId.lowercase())
+        .findSingleResult(testPerformedColumn)
+
+    companion object {
+        private const val modelColumn = "Model"
+        private const val testKitNameIdColumn = "Testkit Name ID"
+        private const val testPerformedColumn = "Test Performed LOINC Code"
+        private const val modelIndexName = "benchmark-tests-performed-by-model"
+    }
+}
@@ -0,0 +1,72 @@
+package gov.cdc.prime.router.benchmarks
+
+import fhirengine.engine.CustomFhirPathFunctions
+import gov.cdc.prime.router.CustomerStatus
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.fhirengine.engine.ReceiverJurisdictionIndex
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathUtils
+import gov.cdc.prime.router.fhirengine.utils.FhirTranscoder
+import org.hl7.fhir.r4.model.Bundle
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks finding the receivers of a bundle by their jurisdictional filters, with receivers for all the states
+ * like the production settings.  The bundle is for CA, so only a few receivers match it.
+ */
+@State(Scope.Benchmark)
+open class ReceiverFilterBenchmark {
+    @Param("10", "100")
+    var receiverCount = 0
+
+    private lateinit var bundle: Bundle
+    private lateinit var receivers: List<Receiver>
+    private lateinit var index: ReceiverJurisdictionIndex
+
+    @Setup
+    fun setup() {
+        bundle = FhirTranscoder.decode(BenchmarkFixtures.read(BenchmarkFixtures.fhirBundle))
+        receivers = (0 until receiverCount).map { index ->
+            val state = states[index % states.size]
+            Receiver(
+                "receiver$index",
+                "org$state",
+                Topic.FULL_ELR,
+                CustomerStatus.ACTIVE,
+                "one",
+                jurisdictionalFilter = listOf(stateFilter(state))
+            )
+        }
+        index = ReceiverJurisdictionIndex(receivers)
+    }
+
+    private fun filterContext() = CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions())
+
+    @Benchmark
+    fun evaluateAllFilters(): List<Receiver> {
+        val context = filterContext()
+        return receivers.filter { receiver ->
+            receiver.jurisdictionalFilter.all { FhirPathUtils.evaluateCondition(context, bundle, bundle, bundle, it) }
+        }
+    }
+
+    @Benchmark
+    fun findReceivers(): List<Receiver> = index.findReceivers(bundle, filterContext())
+
+    companion object {
+        private const val patientState = "Bundle.entry.resource.ofType(Patient).address.state"
+        private const val facilityState =
+            "Bundle.entry.resource.ofType(ServiceRequest)[0].requester.resolve().organization.resolve().address.state"
+
+        private val states = listOf("CA", "CO", "FL", "IL", "MN", "NY", "PA", "TX", "WA", "WI")
+
+        /** The jurisdictional filter of the state receivers in the production settings */
+        private fun stateFilter(state: String) = "($facilityState.exists() and $facilityState = '$state') or " +
+            "($patientState.exists() and $patientState = '$state')"
+    }
+}
@@ -0,0 +1,90 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.ActionLog
+import gov.cdc.prime.router.InvalidHL7Message
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.azure.ActionHistory
+import gov.cdc.prime.router.azure.db.Tables.ACTION
+import gov.cdc.prime.router.azure.db.enums.TaskAction
+import gov.cdc.prime.router.azure.db.tables.pojos.Action
+import gov.cdc.prime.router.azure.db.tables.pojos.ReportFile
+import gov.cdc.prime.router.azure.db.tables.pojos.ReportLineage
+import gov.cdc.prime.router.db.ReportStreamTestDatabaseContainer
+import org.jooq.Configuration
+import org.jooq.impl.DSL
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Param
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+import java.util.UUID
+
+/**
+ * Benchmarks saving the action history of a step that creates [recordCount] reports, each with a report lineage and
+ * an action log, with the batched inserts of saveActionHistoryToDb against storing each record on its own, over a
+ * Postgres test container.  Docker must be running.
+ */
+@State(Scope.Benchmark)
+open class SaveActionHistoryBenchmark {
+    @Param("10", "100", "1000")
+    var recordCount = 0
+
+    private val db by lazy { ReportStreamTestDatabaseContainer.testDatabaseAccess }
+    private lateinit var parentReportId: UUID
+
+    @Setup
+    fun setup() {
+        ReportStreamTestDatabaseContainer.containerInstance.start()
+        ReportStreamTestDatabaseContainer.setup()
+        parentReportId = UUID.randomUUID()
+        db.transact { txn ->
+            val action = insertAction(txn, TaskAction.receive)
+            db.insertReportFile(reportFile(parentReportId, action.actionId), txn, action)
+        }
+    }
+
+    private fun insertAction(txn: Configuration, actionName: TaskAction): Action {
+        val record = DSL.using(txn).newRecord(ACTION, Action().setActionName(actionName))
+        record.store()
+        return record.into(Action::class.java)
+    }
+
+    private fun reportFile(reportId: UUID, actionId: Long? = null) = ReportFile()
+        .setSchemaTopic(Topic.FULL_ELR)
+        .setReportId(reportId)
+        .setActionId(actionId)
+        .setSchemaName("")
+        .setBodyFormat("FHIR")
+        .setItemCount(1)
+        .setBodyUrl("url-$reportId")
+
+    @Benchmark
+    fun saveWithBatches() {
+        val actionHistory = ActionHistory(TaskAction.route)
+        actionHistory.trackExistingInputReport(parentReportId)
+        repeat(recordCount) { index ->
+            val childReportId = UUID.randomUUID()
+            actionHistory.reportsOut[childReportId] = reportFile(childReportId)
+            actionHistory.reportLineages.add(ReportLineage(null, null, parentReportId, childReportId, null))
+            actionHistory.trackLogs(ActionLog(InvalidHL7Message("Item $index"), reportId = childReportId))
+        }
+        db.transact { txn -> db.saveActionHistoryToDb(actionHistory, txn) }
+    }
+
+    @Benchmark
+    fun saveOneAtATime() {
+        db.transact { txn ->
+            val action = insertAction(txn, TaskAction.route)
+            repeat(recordCount) { index ->
+                val childReportId = UUID.randomUUID()
+                db.insertReportFile(reportFile(childReportId, action.actionId), txn, action)
+                db.insertReportLineage(
+                    ReportLineage(null, action.actionId, parentReportId, childReportId, null), txn
+                )
+                db.insertActionLog(
+                    ActionLog(InvalidHL7Message("Item $index"), reportId = childReportId, action = action), txn
+                )
+            }
+        }
+    }
+}
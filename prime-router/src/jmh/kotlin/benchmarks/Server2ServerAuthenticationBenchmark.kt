@@ -0,0 +1,46 @@
+package gov.cdc.prime.router.benchmarks
+
+import gov.cdc.prime.router.azure.WorkflowEngine
+import gov.cdc.prime.router.tokens.AuthenticatedClaims
+import gov.cdc.prime.router.tokens.CachedReportStreamSecretFinder
+import gov.cdc.prime.router.tokens.GetInMemorySecret
+import gov.cdc.prime.router.tokens.Server2ServerAuthentication
+import gov.cdc.prime.router.tokens.VerifiedAccessTokenCache
+import io.mockk.mockk
+import org.openjdk.jmh.annotations.Benchmark
+import org.openjdk.jmh.annotations.Scope
+import org.openjdk.jmh.annotations.Setup
+import org.openjdk.jmh.annotations.State
+
+/**
+ * Benchmarks the authentication overhead per request of checking a ReportStream access token, looking the secret
+ * up and checking the signature every time against using the cached secret and the cache of verified tokens.
+ */
+@State(Scope.Benchmark)
+open class Server2ServerAuthenticationBenchmark {
+    private lateinit var authentication: Server2ServerAuthentication
+    private lateinit var lookup: GetInMemorySecret
+    private lateinit var signingSecret: CachedReportStreamSecretFinder
+    private lateinit var verifiedTokens: VerifiedAccessTokenCache
+    private lateinit var accessToken: String
+
+    @Setup
+    fun setup() {
+        // Checking an access token never uses the settings, so the workflow engine is not needed
+        authentication = Server2ServerAuthentication(mockk<WorkflowEngine>())
+        lookup = GetInMemorySecret()
+        signingSecret = CachedReportStreamSecretFinder(lookup)
+        verifiedTokens = VerifiedAccessTokenCache()
+        accessToken = authentication.createAccessToken("simple_report.default.report", lookup).accessToken
+    }
+
+    @Benchmark
+    fun authenticate(): AuthenticatedClaims? = authentication.authenticate(accessToken, lookup)
+
+    @Benchmark
+    fun authenticateWithCachedSecret(): AuthenticatedClaims? = authentication.authenticate(accessToken, signingSecret)
+
+    @Benchmark
+    fun authenticateWithVerifiedTokens(): AuthenticatedClaims? =
+        authentication.authenticate(accessToken, signingSecret, verifiedTokens)
+}
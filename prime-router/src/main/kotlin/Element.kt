@@ -386,13 +386,13 @@ data class Element(
                 when (format) {
                     zipFiveToken -> {
                         // If this is US zip, return the first 5 digits
-                        val matchResult = Regex(usZipFormat).matchEntire(cleanedNormalizedValue)
+                        val matchResult = usZipRegex.matchEntire(cleanedNormalizedValue)
                         matchResult?.groupValues?.get(1)
                             ?: cleanedNormalizedValue.padStart(5, '0')
                     }
                     zipFivePlusFourToken -> {
                         // If this a US zip, either 5 or 9 digits depending on the value
-                        val matchResult = Regex(usZipFormat).matchEntire(cleanedNormalizedValue)
+                        val matchResult = usZipRegex.matchEntire(cleanedNormalizedValue)
                         if (matchResult != null && matchResult.groups[2] == null) {
                             matchResult.groups[1]?.value ?: ""
                         } else if (matchResult != null && matchResult.groups[2] != null) {
@@ -516,8 +516,7 @@ data class Element(
                 return checkPhoneNumber(cleanedValue, fieldMapping)
             }
             Type.POSTAL_CODE -> {
-                // Let in all formats defined by http://www.dhl.com.tw/content/dam/downloads/tw/express/forms/postcode_formats.pdf
-                return if (!Regex("^[A-Za-z\\d\\- ]{3,12}\$").matches(cleanedValue)) {
+                return if (!postalCodeRegex.matches(cleanedValue)) {
                     InvalidPostalMessage(cleanedValue, fieldMapping, format)
                 } else {
                     null
@@ -646,6 +645,10 @@ data class Element(
                 }
             }
             Type.TELEPHONE -> {
+                // most numbers are plain US numbers that do not need the phone number library
+                usNationalNumber(cleanedFormattedValue)?.let {
+                    return "$it$phoneDelimiter$usCountryCode$phoneDelimiter"
+                }
                 try {
                     val number = phoneNumberUtil.parse(cleanedFormattedValue, "US")
                     if (!number.hasNationalNumber() || number.nationalNumber > 999999999999L) {
@@ -668,8 +671,7 @@ data class Element(
                 }
             }
             Type.POSTAL_CODE -> {
-                // Let in all formats defined by http://www.dhl.com.tw/content/dam/downloads/tw/express/forms/postcode_formats.pdf
-                if (!Regex("^[A-Za-z\\d\\- ]{3,12}\$").matches(cleanedFormattedValue)) {
+                if (!postalCodeRegex.matches(cleanedFormattedValue)) {
                     throw ElementNormalizeException(
                         "Input Error: invalid postal code '$cleanedFormattedValue' for $fieldMapping",
                         fieldMapping,
@@ -1030,6 +1032,13 @@ data class Element(
         const val zipFiveToken = "\$zipFive"
         const val zipFivePlusFourToken = "\$zipFivePlusFour"
         const val usZipFormat = """^(\d{5})[- ]?(\d{4})?$"""
+        private val usZipRegex = Regex(usZipFormat)
+
+        // Let in all formats defined by http://www.dhl.com.tw/content/dam/downloads/tw/express/forms/postcode_formats.pdf
+        private val postalCodeRegex = Regex("^[A-Za-z\\d\\- ]{3,12}\$")
+
+        /** The country code of US phone numbers */
+        private const val usCountryCode = 1
         // A regex to check for the presence of only valid phone number characters. This will fail if
         // someone passes through character values, like a name, or some other text info. This checks for
         // proper format which is crucial when parsing data.
@@ -1169,10 +1178,12 @@ data class Element(
         fun checkPhoneNumber(cleanedValue: String, fieldMapping: String): InvalidPhoneMessage? {
             // use a quick regex to see if the normalized value contains something other than our
             // expected values, and also use the `isPossibleNumber` method our phone number util gives us
-            if (
-                maybeAPhoneNumber.matchEntire(cleanedValue) != null &&
-                phoneNumberUtil.isPossibleNumber(cleanedValue, "US")
-            ) {
+            if (maybeAPhoneNumber.matchEntire(cleanedValue) == null) {
+                return InvalidPhoneMessage(cleanedValue, fieldMapping)
+            }
+            // plain US numbers are always possible and parseable numbers
+            if (usNationalNumber(cleanedValue) != null) return null
+            if (phoneNumberUtil.isPossibleNumber(cleanedValue, "US")) {
                 // attempt to parse the number. if it is parseable then we can return null and move
                 // on with our work, otherwise, return an InvalidPhoneMessage
                 val phoneNumber = tryParsePhoneNumber(cleanedValue)
@@ -1184,6 +1195,25 @@ data class Element(
             return InvalidPhoneMessage(cleanedValue, fieldMapping)
         }
 
+        /**
+         * Get the national number of [value] if it is a plain US phone number: ten digits with an area code that
+         * does not start with 0 or 1, and only spaces, dashes and parentheses between them.  These are parsed the
+         * same by the phone number library, so they can skip the library's much more expensive parsing.
+         * @return the ten digits or null if the value is not a plain US phone number
+         */
+        internal fun usNationalNumber(value: String): String? {
+            if (value.length < 10 || value.length > 16) return null
+            val digits = StringBuilder(10)
+            for (c in value) {
+                when (c) {
+                    in '0'..'9' -> if (digits.length == 10) return null else digits.append(c)
+                    ' ', '-', '(', ')' -> continue
+                    else -> return null
+                }
+            }
+            return if (digits.length == 10 && digits[0] >= '2') digits.toString() else null
+        }
+
         /**
          * Given a nullable [cleanedValue] this method tries to parse a phone number in
          * a safe way according to our four most common phone regions as following:
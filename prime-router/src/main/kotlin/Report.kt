@@ -3,6 +3,7 @@ package gov.cdc.prime.router
 import gov.cdc.prime.reportstream.shared.StringUtilities.trimToNull
 import gov.cdc.prime.router.azure.ActionHistory
 import gov.cdc.prime.router.azure.BlobAccess
+import gov.cdc.prime.router.azure.BlockBlobWriter
 import gov.cdc.prime.router.azure.Event
 import gov.cdc.prime.router.azure.ProcessEvent
 import gov.cdc.prime.router.azure.ReportEvent
@@ -520,6 +521,16 @@ class Report : Logging {
         }
     }
 
+    /**
+     * Get the distinct values of the column [colName].
+     * @return the values or null if the report has no such column
+     */
+    fun getDistinctValues(colName: String): Set<String>? = if (table.columnNames().contains(colName)) {
+            table.stringColumn(colName).asSet()
+        } else {
+            null
+        }
+
     fun getStringByHl7Field(row: Int, hl7Field: String, maxLength: Int? = null): String? {
         val column = schema.elements.firstOrNull { it.hl7Field.equals(hl7Field, ignoreCase = true) } ?: return null
         val index = schema.findElementColumn(column.name) ?: return null
@@ -1614,6 +1625,58 @@ class Report : Logging {
             externalName: String? = null,
         ): Triple<Report, Event, BlobAccess.BlobInfo> {
             check(messageBody.isNotEmpty())
+            return generateReport(
+                nextAction, sourceReportIds, receiver, metadata, actionHistory, topic, format, externalName
+            ) { reportFormat, report, event ->
+                BlobAccess.uploadBody(
+                    reportFormat,
+                    messageBody,
+                    report.id.toString(),
+                    receiver.fullName,
+                    event.eventAction
+                )
+            }
+        }
+
+        /**
+         * Same as [generateReportAndUploadBlob], but the message body is written by [writeBody] while it is
+         * uploaded to blob storage in blocks, so large bodies like batches do not have to be built in memory.
+         * @return the newly generated Report, nextAction event, and blobInfo
+         */
+        fun generateReportAndStreamBlob(
+            nextAction: Event.EventAction,
+            sourceReportIds: List<ReportId>,
+            receiver: Receiver,
+            metadata: Metadata,
+            actionHistory: ActionHistory,
+            topic: Topic,
+            format: MimeFormat? = null,
+            externalName: String? = null,
+            writeBody: (BlockBlobWriter) -> Unit,
+        ): Triple<Report, Event, BlobAccess.BlobInfo> = generateReport(
+            nextAction, sourceReportIds, receiver, metadata, actionHistory, topic, format, externalName
+        ) { reportFormat, report, event ->
+            BlobAccess.uploadBodyInBlocks(reportFormat, report.id.toString(), receiver.fullName, event.eventAction) {
+                writeBody(it)
+                check(it.size > 0)
+            }
+        }
+
+        /**
+         * Creates the report and event for [generateReportAndUploadBlob] and [generateReportAndStreamBlob], using
+         * [upload] to upload the body of the report.
+         */
+        private fun generateReport(
+            nextAction: Event.EventAction,
+            sourceReportIds: List<ReportId>,
+            receiver: Receiver,
+            metadata: Metadata,
+            actionHistory: ActionHistory,
+            topic: Topic,
+            format: MimeFormat?,
+            externalName: String?,
+            upload: (MimeFormat, Report, Event) -> BlobAccess.BlobInfo,
+        ): Triple<Report, Event, BlobAccess.BlobInfo> {
             check(sourceReportIds.isNotEmpty())
 
             // create report object
@@ -1678,13 +1741,7 @@ class Report : Logging {
                 }
 
             // upload the translated copy to blobstore
-            val blobInfo = BlobAccess.uploadBody(
-                reportFormat,
-                messageBody,
-                report.id.toString(),
-                receiver.fullName,
-                event.eventAction
-            )
+            val blobInfo = upload(reportFormat, report, event)
             report.bodyURL = blobInfo.blobUrl
             report.nextAction = event.eventAction.toTaskAction()
 
@@ -27,6 +27,11 @@ interface SettingsProvider {
     fun findSender(fullName: String): Sender?
 
     fun findOrganizationAndReceiver(fullName: String): Pair<Organization, Receiver>?
+
+    /**
+     * Find the receivers for a [topic].
+     */
+    fun findReceivers(topic: Topic): Collection<Receiver> = receivers.filter { it.topic == topic }
 }
 
 /**
@@ -39,11 +39,16 @@ class Translator(private val metadata: Metadata, private val settings: SettingsP
     ): RoutedReportsResult {
         val warnings = mutableListOf<ActionLog>()
         if (input.isEmpty()) return RoutedReportsResult(emptyList(), warnings)
+        // The distinct values of the columns that jurisdictional filters compare to literals, shared by all the
+        // receivers, so the receivers for other jurisdictions are skipped without filtering the whole report
+        val distinctValues = mutableMapOf<String, Set<String>?>()
         val routedReports = settings.receivers.filter { receiver ->
             receiver.topic == input.schema.topic &&
                 (limitReceiversTo.isEmpty() || limitReceiversTo.contains(receiver.fullName))
         }.mapNotNull { receiver ->
             try {
+                if (!canMatchJurisdiction(input, receiver, distinctValues)) return@mapNotNull null
+
                 // Filter the report
                 val filteredReport = filterByAllFilterTypes(settings, input, receiver) ?: return@mapNotNull null
                 if (filteredReport.isEmpty()) return@mapNotNull RoutedReport(filteredReport, receiver)
@@ -141,24 +146,15 @@ class Translator(private val metadata: Metadata, private val settings: SettingsP
     }
 
     /**
-     * Apply a set of ReportStreamFilters associated with a [filterType] to report [input]. eg, Apply one of:
-     * jurisdictionalFilter, qualityFilter, and routingFilter.
-     *
-     * Filter usages can be defined at three different levels:  default, organization-level, and receiver-level.
-     * The [receiver] has only one topic (eg, 'covid-19'), but its [organization] can handle many topics, so
-     * we must look up default- and organization-level filters per topic.
-     * Any/all of the three levels are allowed to be null.  If all are null, we do no filtering for this filterType.
-     *
-     * @return the filtered report.   Might be empty.  Might be unchanged if no filtering was done.
+     * Find the filters of a [filterType] to apply for a [receiver] of an [organization].  The organization and
+     * receiver filters are combined and override the default filter for the receiver's topic.
+     * @return the filters or null if there are none at any level
      */
-    fun filterByOneFilterType(
-        input: Report,
+    private fun findFilterToApply(
         receiver: Receiver,
         organization: Organization,
         filterType: ReportStreamFilterType,
-        trackingElement: String?,
-        doLogging: Boolean,
-    ): Report {
+    ): ReportStreamFilter? {
         // First, retrieve the default filter for this topic and filterType
         val defaultFilters = ReportStreamFilters.defaultFiltersByTopic[receiver.topic]
         val defaultFilter = if (defaultFilters != null) {
@@ -182,16 +178,88 @@ class Translator(private val metadata: Metadata, private val settings: SettingsP
 
         // Use the "and" of the  org filter and receiver filter if either or both exists - and override the default.
         // Otherwise use the default.
-        val filterToApply: ReportStreamFilter = when {
+        return when {
             (orgFilter != null && receiverFilter != null) -> orgFilter + receiverFilter
             (orgFilter == null && receiverFilter != null) -> receiverFilter
             (orgFilter != null && receiverFilter == null) -> orgFilter
-            (defaultFilter != null) -> defaultFilter
-            else -> {
-                // Probably an error if there's no defaultFilter
-                logger.error("NOT ${filterType.name} filtering for topic ${receiver.topic}. No filters found.")
-                emptyList()
+            else -> defaultFilter
+        }
+    }
+
+    /**
+     * Check if the jurisdictional filters of [receiver] can select any item of the [input] report, without
+     * filtering the report.  A filter that is an [OrEquals] or [Matches] of literal values can only select items
+     * if one of its columns has one of its values, which is checked against the [distinctValues] of the column.
+     * @return false if the receiver's jurisdictional filters cannot select any item, true if they might
+     */
+    private fun canMatchJurisdiction(
+        input: Report,
+        receiver: Receiver,
+        distinctValues: MutableMap<String, Set<String>?>,
+    ): Boolean {
+        val organization = settings.findOrganization(receiver.organizationName) ?: return true
+        val filters = findFilterToApply(receiver, organization, ReportStreamFilterType.JURISDICTIONAL_FILTER)
+            ?: return true
+        val filterAndArgs = filters.map { filterSpec ->
+            val (fnName, fnArgs) = ReportStreamFilterDefinition.parseReportStreamFilter(filterSpec)
+            // leave filters that are not defined to report their error when the report is filtered
+            val filterFn = metadata.findReportStreamFilterDefinitions(fnName) ?: return true
+            Pair(filterFn, fnArgs)
+        }
+        return filterAndArgs.all { (filterFn, fnArgs) ->
+            val columnsAndValues = literalColumnValues(filterFn, fnArgs) ?: return@all true
+            columnsAndValues.any { (column, value) ->
+                distinctValues.getOrPut(column) { input.getDistinctValues(column) }?.contains(value) == true
+            }
+        }
+    }
+
+    /**
+     * Get the columns and values compared by an [OrEquals] or [Matches] filter with only literal values, which
+     * are regexes that only match themselves.
+     * @return the column and value pairs or null if the filter is of another kind or has a regex value
+     */
+    private fun literalColumnValues(
+        filterFn: ReportStreamFilterDefinition,
+        fnArgs: List<String>,
+    ): List<Pair<String, String>>? {
+        val columnsAndValues = when (filterFn) {
+            is OrEquals -> {
+                if (fnArgs.isEmpty() || fnArgs.size % 2 != 0) return null
+                fnArgs.chunked(2).map { it[0] to it[1] }
+            }
+            is Matches -> {
+                if (fnArgs.size < 2) return null
+                fnArgs.drop(1).map { fnArgs[0] to it }
             }
+            else -> return null
+        }
+        return if (columnsAndValues.all { (_, value) -> literalFilterValue.matches(value) }) columnsAndValues else null
+    }
+
+    /**
+     * Apply a set of ReportStreamFilters associated with a [filterType] to report [input]. eg, Apply one of:
+     * jurisdictionalFilter, qualityFilter, and routingFilter.
+     *
+     * Filter usages can be defined at three different levels:  default, organization-level, and receiver-level.
+     * The [receiver] has only one topic (eg, 'covid-19'), but its [organization] can handle many topics, so
+     * we must look up default- and organization-level filters per topic.
+     * Any/all of the three levels are allowed to be null.  If all are null, we do no filtering for this filterType.
+     *
+     * @return the filtered report.   Might be empty.  Might be unchanged if no filtering was done.
+     */
+    fun filterByOneFilterType(
+        input: Report,
+        receiver: Receiver,
+        organization: Organization,
+        filterType: ReportStreamFilterType,
+        trackingElement: String?,
+        doLogging: Boolean,
+    ): Report {
+        val filterToApply = findFilterToApply(receiver, organization, filterType) ?: run {
+            // Probably an error if there's no defaultFilter
+            logger.error("NOT ${filterType.name} filtering for topic ${receiver.topic}. No filters found.")
+            emptyList()
         }
 
         // Warn if this receiver/org does not have a jurisdictionalFilter that overrides the default 'allowNone()'.
@@ -331,4 +399,9 @@ class Translator(private val metadata: Metadata, private val settings: SettingsP
         }
         return Mapping(toSchema, fromSchema, useDirectly, useValueSet, useMapper, useDefault, missing)
     }
-}
\ No newline at end of file
+
+    companion object {
+        /** A filter value without regex metacharacters, which only matches itself */
+        private val literalFilterValue = Regex("[A-Za-z0-9_ ]+")
+    }
+}
@@ -57,23 +57,31 @@ data class ValueSet(
         val system: SetSystem? = null,
     )
 
-    fun toDisplayFromCode(code: String): String? = values.find { code.equals(it.code, ignoreCase = true) }?.display
+    /** The first value for each code, keyed by the code ignoring case, see [caseKey] */
+    private val valuesByCode: Map<String, Value> by lazy { indexValues { it.code } }
+
+    /** The first value for each display, keyed by the display ignoring case, see [caseKey] */
+    private val valuesByDisplay: Map<String, Value> by lazy { indexValues { it.display } }
+
+    private fun indexValues(key: (Value) -> String?): Map<String, Value> {
+        val index = HashMap<String, Value>(values.size * 2)
+        values.forEach { value -> key(value)?.let { index.putIfAbsent(caseKey(it), value) } }
+        return index
+    }
+
+    fun toDisplayFromCode(code: String): String? = valuesByCode[caseKey(code)]?.display
 
     // set a version on the whole value set if you want, but you can still use
     // the value-specific version if you're adding something from a different version
-    fun toVersionFromCode(code: String): String? = values.find { code.equals(it.code, ignoreCase = true) }?.version
+    fun toVersionFromCode(code: String): String? = valuesByCode[caseKey(code)]?.version
             ?: this.version
 
-    fun toSystemFromCode(code: String): String? = values.find {
-        code.equals(it.code, ignoreCase = true)
-    }?.system?.toString()?.uppercase()
+    fun toSystemFromCode(code: String): String? = valuesByCode[caseKey(code)]?.system?.toString()?.uppercase()
             ?: this.systemCode
 
-    fun toCodeFromDisplay(display: String): String? = values.find {
-        display.equals(it.display, ignoreCase = true)
-    }?.code
+    fun toCodeFromDisplay(display: String): String? = valuesByDisplay[caseKey(display)]?.code
 
-    fun toNormalizedCode(code: String): String? = values.find { code.equals(it.code, ignoreCase = true) }?.code
+    fun toNormalizedCode(code: String): String? = valuesByCode[caseKey(code)]?.code
 
     fun mergeAltValues(altValues: List<Value>?): ValueSet {
         // if we have alt values then we need to merge them in
@@ -97,4 +105,16 @@ data class ValueSet(
         // there's nothing to do, return self
         return this
     }
-}
\ No newline at end of file
+
+    companion object {
+        /**
+         * A key for [value] that is the same for all the strings that are equal to it ignoring case, as compared by
+         * [String.equals] with ignoreCase.
+         */
+        private fun caseKey(value: String): String {
+            val key = CharArray(value.length)
+            for (i in value.indices) key[i] = Character.toLowerCase(Character.toUpperCase(value[i]))
+            return String(key)
+        }
+    }
+}
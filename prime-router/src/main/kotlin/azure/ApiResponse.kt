@@ -11,6 +11,7 @@ import kotlin.math.ceil
  * @param totalPages the total number of pages available
  * @param previousPage the index (1-based) of the previous page
  * @param nextPage the index (1-based) of the nexdt page
+ * @param nextCursor the cursor to pass in the next search to read the page after this one
  */
 data class PaginationApiResponse(
     @JsonInclude(JsonInclude.Include.NON_NULL)
@@ -19,6 +20,8 @@ data class PaginationApiResponse(
     val previousPage: Int? = null,
     @JsonInclude(JsonInclude.Include.NON_NULL)
     val nextPage: Int? = null,
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    val nextCursor: String? = null,
 ) {
     /**
      * Static functions for generating a [PaginationApiResponse]
@@ -27,7 +30,8 @@ data class PaginationApiResponse(
 
         /**
          * Conversion function going from an [ApiSearch] and [ApiSearchResult] into an [PaginationApiResponse]
-         * It's responsible for calculating the total pages, next and previous page
+         * It's responsible for calculating the total pages, next and previous page.  Searches that read the page
+         * after a cursor do not know their page index, so they only return the next cursor.
          *
          * @param search the [ApiSearchResult] used to retrieve the results
          * @param results the [ApiSearchResult] resulting running the search
@@ -37,10 +41,14 @@ data class PaginationApiResponse(
             results: ApiSearchResult<*>,
         ): PaginationApiResponse {
             val totalPages = ceil(results.filteredCount.toDouble() / search.limit).toInt()
+            if (search.cursor != null) {
+                return PaginationApiResponse(totalPages = totalPages, nextCursor = results.nextCursor)
+            }
             return PaginationApiResponse(
                 totalPages = totalPages,
                 previousPage = if (search.page == 1) null else search.page - 1,
-                nextPage = if (totalPages < search.page + 1) null else search.page + 1
+                nextPage = if (totalPages < search.page + 1) null else search.page + 1,
+                nextCursor = results.nextCursor
             )
         }
     }
@@ -1,5 +1,8 @@
 package gov.cdc.prime.router.azure
 
+import com.fasterxml.jackson.databind.SerializationFeature
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import com.microsoft.azure.functions.HttpRequestMessage
 import gov.cdc.prime.router.common.JacksonMapperUtilities
 import kotlinx.coroutines.Dispatchers
@@ -14,18 +17,35 @@ import org.jooq.Condition
 import org.jooq.DSLContext
 import org.jooq.Field
 import org.jooq.Record
+import org.jooq.Select
 import org.jooq.SelectFieldOrAsterisk
 import org.jooq.SortField
 import org.jooq.Table
 import org.jooq.TableField
 import org.jooq.WithStep
 import org.jooq.impl.DSL
+import java.time.Duration
+import java.util.Base64
 import kotlin.time.ExperimentalTime
 
-data class ApiSearchResult<T>(val totalCount: Int, val filteredCount: Int, val results: List<T>) {
+/**
+ * The results of an [ApiSearch]
+ *
+ * @param totalCount the number of rows before the filters are applied
+ * @param filteredCount the number of rows after the filters are applied
+ * @param results the rows for the requested page
+ * @param nextCursor the opaque cursor for the page after this one, or null if this is the last page
+ */
+data class ApiSearchResult<T>(
+    val totalCount: Int,
+    val filteredCount: Int,
+    val results: List<T>,
+    val nextCursor: String? = null,
+) {
     fun <MappedType> map(
         mappingFunction: (value: T) -> MappedType,
-    ): ApiSearchResult<MappedType> = ApiSearchResult(totalCount, filteredCount, results.map { mappingFunction(it) })
+    ): ApiSearchResult<MappedType> =
+        ApiSearchResult(totalCount, filteredCount, results.map { mappingFunction(it) }, nextCursor)
 }
 enum class SortDirection {
     ASC,
@@ -116,8 +136,11 @@ abstract class ApiSearchParser<
  */
 data class RawFilter(val value: String, val filterName: String)
 
-/** Pagination data */
-data class RawPagination(val page: Int, val limit: Int)
+/**
+ * Pagination data.  The [cursor] is the next cursor returned by a previous search; when it is set the search reads
+ * the page after that cursor and the [page] is ignored.
+ */
+data class RawPagination(val page: Int, val limit: Int, val cursor: String? = null)
 
 /** A raw sort that a parser will convert */
 data class RawApiSort(val direction: SortDirection, val property: String)
@@ -138,12 +161,17 @@ data class RawApiSearch(val sort: RawApiSort?, val pagination: RawPagination, va
  * @param recordClass -  the class object that the results will be fetched into
  * @param page - which page to read out of the search results
  * @param limit - the number of results to to return
+ * @param cursor - the next cursor from a previous search to read the page after, instead of using [page]
  */
 abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilter<RecordType, *>>(
     private val recordClass: Class<PojoType>,
     val page: Int,
     val limit: Int,
+    val cursor: String? = null,
 ) : Logging {
+    /** The cache for the total and filtered counts, or null to always count the rows */
+    open val countCache: ApiSearchCountCache? = ApiSearchCountCache.shared
+
     /** The list of filters that should be applied */
     abstract val filters: List<ApiFilterType>
 
@@ -172,7 +200,8 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
     abstract fun getPrimarySortColumn(): Field<*>
 
     /**
-     * Converts the [sortParameter] and [sortDirection] into a JOOQ [SortField]
+     * Converts the [sortParameter] and [sortDirection] into a JOOQ [SortField].  Null values keep the database
+     * ordering, which sorts them as larger than any value, so pages read by offset do not change.
      */
     fun getSortClause(): SortField<*> {
         val sortColumn = getSortColumn()
@@ -190,6 +219,74 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
         }
     }
 
+    /**
+     * Converts the [cursor] into a JOOQ [Condition] that seeks past the last row of the previous page, using the
+     * sort column and the primary sort column as the key.  Null if there is no cursor.
+     *
+     * The rows with a null sort value are sorted as larger than any value (see [getSortClause]), so they come after
+     * the rows with a sort value when ascending and before them when descending.  The rows with a null sort value
+     * are ordered by the primary sort column.
+     */
+    @Suppress("UNCHECKED_CAST")
+    fun getCursorCondition(): Condition? {
+        if (cursor == null) return null
+        val sortColumn = getSortColumn() as Field<Any?>
+        val primarySortColumn = getPrimarySortColumn() as Field<Any?>
+        val (sortValue, primarySortValue) = decodeCursor(cursor)
+        val lastPrimaryValue = DSL.value(primarySortValue, primarySortColumn)
+        if (sortValue == null) {
+            return when (sortDirection) {
+                SortDirection.ASC -> sortColumn.isNull.and(primarySortColumn.gt(lastPrimaryValue))
+                SortDirection.DESC -> sortColumn.isNull.and(primarySortColumn.lt(lastPrimaryValue))
+                    .or(sortColumn.isNotNull)
+            }
+        }
+        val key = DSL.row(sortColumn, primarySortColumn)
+        val lastKey = DSL.row(DSL.value(sortValue, sortColumn), lastPrimaryValue)
+        return when (sortDirection) {
+            SortDirection.ASC -> key.gt(lastKey).or(sortColumn.isNull)
+            SortDirection.DESC -> key.lt(lastKey)
+        }
+    }
+
+    /**
+     * Reads the sort column values out of a cursor created by [encodeCursor]
+     */
+    private fun decodeCursor(cursor: String): Pair<Any?, Any?> {
+        val values = try {
+            cursorMapper.readTree(Base64.getUrlDecoder().decode(cursor))
+        } catch (e: Exception) {
+            throw IllegalArgumentException("Invalid pagination cursor", e)
+        }
+        require(values.isArray && values.size() == 2) { "Invalid pagination cursor" }
+        return Pair(
+            if (values[0].isNull) null else cursorMapper.treeToValue(values[0], getSortColumn().type),
+            cursorMapper.treeToValue(values[1], getPrimarySortColumn().type)
+        )
+    }
+
+    /**
+     * Creates the cursor for the page after [lastRecord].  A null sort value is kept in the cursor, as the rows with
+     * a null sort value are paged by the primary sort column.  There is no cursor if [lastRecord] does not have the
+     * sort columns.
+     */
+    private fun encodeCursor(lastRecord: Record): String? {
+        val sortField = lastRecord.field(getSortColumn().name) ?: return null
+        val sortValue = lastRecord.get(sortField)
+        val primarySortValue =
+            lastRecord.field(getPrimarySortColumn().name)?.let { lastRecord.get(it) } ?: return null
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(cursorMapper.writeValueAsBytes(listOf(sortValue, primarySortValue)))
+    }
+
+    /**
+     * Counts the rows of [select], using the [countCache] if there is one
+     */
+    private fun fetchCount(dslContext: DSLContext, select: Select<*>): Int {
+        val cache = countCache ?: return dslContext.fetchCount(select)
+        return cache.getCount(dslContext.renderInlined(select)) { dslContext.fetchCount(select) }
+    }
+
     /**
      * Runs the specified select using the passed context applying the where, sort, pagination
      * clauses and finally reading the results into the specified [PojoType].
@@ -254,7 +351,8 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
                         val totalCount = async(Dispatchers.IO) {
                             val timeSource = kotlin.time.TimeSource.Monotonic
                             val start = timeSource.markNow()
-                            val count = dslContext.fetchCount(
+                            val count = fetchCount(
+                                dslContext,
                                 dsl.select(selectFields).from(table)
                             )
                             val end = timeSource.markNow()
@@ -264,7 +362,8 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
                         val filteredCount = async(Dispatchers.IO) {
                             val timeSource = kotlin.time.TimeSource.Monotonic
                             val start = timeSource.markNow()
-                            val filteredCount = dslContext.fetchCount(
+                            val filteredCount = fetchCount(
+                                dslContext,
                                 dsl.select(selectFields).from(table)
                                     .where(getWhereClause())
                             )
@@ -275,18 +374,26 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
                         val results = async(Dispatchers.IO) {
                             val timeSource = kotlin.time.TimeSource.Monotonic
                             val start = timeSource.markNow()
-                            val results = dslContext.fetch(
+                            // One extra row is read to find out if there is a next page
+                            val records = dslContext.fetch(
                                 dsl.select(selectFields).from(table)
-                                    .where(getWhereClause())
+                                    .where(DSL.and(listOfNotNull(getWhereClause(), getCursorCondition())))
                                     .orderBy(getSortClause(), getPrimarySortClause())
-                                    .limit(limit)
-                                    .offset(getOffset())
-                            ).into(recordClass)
+                                    .limit(limit + 1)
+                                    .offset(if (cursor == null) getOffset() else 0)
+                            )
+                            val nextCursor = if (limit > 0 && records.size > limit) {
+                                encodeCursor(records[limit - 1])
+                            } else {
+                                null
+                            }
+                            val results = records.into(recordClass).take(limit)
                             val end = timeSource.markNow()
                             logger.info("Fetching the results took: ${end - start}")
-                            results
+                            Pair(results, nextCursor)
                         }
-                        val result = ApiSearchResult(totalCount.await(), filteredCount.await(), results.await())
+                        val (pageResults, nextCursor) = results.await()
+                        val result = ApiSearchResult(totalCount.await(), filteredCount.await(), pageResults, nextCursor)
                         logger.info("All queries completed in ${overallTimeSource.markNow() - overallStart}")
                         result
                     }
@@ -296,4 +403,44 @@ abstract class ApiSearch<PojoType, RecordType : Record, ApiFilterType : ApiFilte
 
     /** Converts the limit and page value into an offset */
     private fun getOffset(): Int = limit * (page - 1)
+
+    companion object {
+        /** Mapper for the sort column values in a cursor */
+        private val cursorMapper = JacksonMapperUtilities.defaultMapper.copy()
+            .disable(SerializationFeature.INDENT_OUTPUT)
+    }
+}
+
+/**
+ * Short-lived cache for the total and filtered counts of an [ApiSearch], keyed by the count query.  Paging through
+ * a search runs the same count queries for every page, and for large senders those counts cost more than the page
+ * itself.  The counts can be up to [ttl] old.
+ *
+ * @param ttl how long a count is kept
+ * @param maximumSize the maximum number of counts kept
+ */
+class ApiSearchCountCache(val ttl: Duration, maximumSize: Long = 1000) {
+    private val counts: Cache<String, Int> = CacheBuilder.newBuilder()
+        .expireAfterWrite(ttl)
+        .maximumSize(maximumSize)
+        .build()
+
+    /**
+     * Get the count for the query [key], calling [fetch] to count the rows if it is not cached
+     */
+    fun getCount(key: String, fetch: () -> Int): Int = counts.getIfPresent(key) ?: fetch().also { counts.put(key, it) }
+
+    /**
+     * Remove all the cached counts
+     */
+    fun clear() = counts.invalidateAll()
+
+    companion object {
+        /** The environment variable with the number of seconds to cache counts for.  Counts are not cached if unset */
+        const val ttlEnvVar = "API_SEARCH_COUNT_CACHE_TTL_SECONDS"
+
+        /** The cache shared by all the searches, or null if counts are not cached */
+        val shared: ApiSearchCountCache? = System.getenv(ttlEnvVar)?.toLongOrNull()?.takeIf { it > 0 }
+            ?.let { ApiSearchCountCache(Duration.ofSeconds(it)) }
+    }
 }
\ No newline at end of file
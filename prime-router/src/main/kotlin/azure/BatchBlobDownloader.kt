@@ -0,0 +1,101 @@
+package gov.cdc.prime.router.azure
+
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.sync.Semaphore
+import kotlinx.coroutines.sync.withPermit
+import org.apache.logging.log4j.kotlin.Logging
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Downloads the blobs of the reports in a batch concurrently.
+ *
+ * Blob downloads are blocking calls, so they are run on the IO dispatcher with at most [parallelism] downloads at a
+ * time.  Every downloaded blob is kept in memory until the batch for the receiver is sent, so no new download is
+ * started once the downloaded content reaches [memoryBudgetBytes].  The items that were not downloaded are returned
+ * as deferred so they can be left for the next batch.  The first download is always started, so a single blob larger
+ * than the budget can still be batched.
+ *
+ * @property parallelism the maximum number of blobs to download at the same time
+ * @property memoryBudgetBytes the number of downloaded bytes after which no new downloads are started
+ */
+class BatchBlobDownloader(
+    val parallelism: Int = defaultParallelism,
+    val memoryBudgetBytes: Long = defaultMemoryBudgetBytes,
+) : Logging {
+    init {
+        require(parallelism > 0) { "The blob download parallelism must be greater than zero" }
+    }
+
+    /**
+     * The [downloaded] items with their content, in the same order as the items to download, and the [deferred] items
+     * that were not downloaded because the memory budget was used up.  The content is null for a blob that does not
+     * exist.
+     */
+    data class Result<T>(val downloaded: List<Pair<T, ByteArray?>>, val deferred: List<T>)
+
+    /**
+     * The [content] downloaded for an item, or no content if the download was [isDeferred].
+     */
+    private class Download(val content: ByteArray?, val isDeferred: Boolean)
+
+    /**
+     * Download the content of all the [items] using [fetch], which returns null when there is no content for an item.
+     * An exception thrown by [fetch] fails the whole download.
+     * @return the downloaded and deferred items
+     */
+    fun <T> download(items: List<T>, fetch: (T) -> ByteArray?): Result<T> {
+        val permits = Semaphore(parallelism)
+        val startedCount = AtomicInteger()
+        val downloadedBytes = AtomicLong()
+        val downloads = runBlocking(Dispatchers.IO) {
+            items.map { item ->
+                async {
+                    permits.withPermit {
+                        if (startedCount.get() > 0 && downloadedBytes.get() >= memoryBudgetBytes) {
+                            Download(null, true)
+                        } else {
+                            startedCount.incrementAndGet()
+                            val content = fetch(item)
+                            content?.let { downloadedBytes.addAndGet(it.size.toLong()) }
+                            Download(content, false)
+                        }
+                    }
+                }
+            }.awaitAll()
+        }
+
+        val downloaded = mutableListOf<Pair<T, ByteArray?>>()
+        val deferred = mutableListOf<T>()
+        items.zip(downloads).forEach { (item, download) ->
+            if (download.isDeferred) deferred.add(item) else downloaded.add(item to download.content)
+        }
+        if (deferred.isNotEmpty()) {
+            logger.warn(
+                "Downloaded ${downloadedBytes.get()} bytes for ${downloaded.size} items, reaching the memory budget " +
+                    "of $memoryBudgetBytes bytes. ${deferred.size} items were not downloaded."
+            )
+        }
+        return Result(downloaded, deferred)
+    }
+
+    companion object {
+        /**
+         * Environment variable to override the maximum number of blobs downloaded at the same time for a batch.
+         */
+        const val parallelismEnvVar = "BATCH_DOWNLOAD_PARALLELISM"
+
+        /**
+         * Environment variable to override the number of megabytes downloaded for one receiver's batch before the
+         * remaining reports are left for the next batch.
+         */
+        const val memoryBudgetEnvVar = "BATCH_DOWNLOAD_MEMORY_BUDGET_MB"
+
+        private val defaultParallelism = System.getenv(parallelismEnvVar)?.toIntOrNull() ?: 8
+
+        private val defaultMemoryBudgetBytes = (System.getenv(memoryBudgetEnvVar)?.toLongOrNull() ?: 512) * 1024 * 1024
+    }
+}
@@ -11,6 +11,8 @@ import com.azure.storage.blob.models.BlobListDetails
 import com.azure.storage.blob.models.BlobStorageException
 import com.azure.storage.blob.models.DownloadRetryOptions
 import com.azure.storage.blob.models.ListBlobsOptions
+import com.azure.storage.blob.sas.BlobSasPermission
+import com.azure.storage.blob.sas.BlobServiceSasSignatureValues
 import gov.cdc.prime.reportstream.shared.BlobUtils
 import gov.cdc.prime.reportstream.shared.BlobUtils.sha256Digest
 import gov.cdc.prime.router.BlobStoreTransportType
@@ -27,6 +29,8 @@ import java.net.URL
 import java.net.URLDecoder
 import java.nio.charset.Charset
 import java.time.Duration
+import java.time.OffsetDateTime
+import java.util.HexFormat
 
 const val defaultBlobContainerName = "reports"
 const val defaultBlobDownloadRetryCount = 5
@@ -132,6 +136,17 @@ class BlobAccess : Logging {
                 defaultEnvVar
             )
         }
+        private const val readSasExpirationMinutes = 15L
+
+        /**
+         * The directory of the blobs stored under their digest, see [uploadBodyByDigest].
+         */
+        const val contentAddressedDirectory = "sha256"
+
+        /**
+         * Metadata set on a content addressed blob each time a new report references it.
+         */
+        private const val lastReferencedMetadataKey = "lastReferencedAt"
         private val blobDownloadRetryCount = System.getenv(defaultBlobDownloadRetryVar)?.toIntOrNull()
             ?: defaultBlobDownloadRetryCount
 
@@ -172,14 +187,96 @@ class BlobAccess : Logging {
             subfolderName: String? = null,
             action: Event.EventAction = Event.EventAction.OTHER,
         ): BlobInfo {
-            val subfolderNameChecked = if (subfolderName.isNullOrBlank()) "" else "$subfolderName/"
-            val blobName = "${directoryForAction(action)}/$subfolderNameChecked$reportName.${bodyFormat.ext}"
+            val blobName = bodyBlobName(bodyFormat, reportName, subfolderName, action)
 
             val digest = sha256Digest(blobBytes)
             val blobUrl = uploadBlob(blobName, blobBytes)
             return BlobInfo(bodyFormat, blobUrl, digest)
         }
 
+        /**
+         * Upload a raw [blobBytes] in the [bodyFormat] once under its SHA-256 digest, so the same body uploaded for
+         * many reports is stored in a single blob that all their report files reference.  The [action] and optional
+         * [subfolderName] determine the folder like for [uploadBody], within a [contentAddressedDirectory].
+         *
+         * Blobs are removed by the storage retention policy some days after they were last modified, so every new
+         * reference to an existing blob touches it to keep the blob as long as its newest reference.  Content
+         * addressed blobs must never be deleted for a single report, as other reports may reference them.
+         * @return the information about the uploaded or existing blob
+         */
+        fun uploadBodyByDigest(
+            bodyFormat: MimeFormat,
+            blobBytes: ByteArray,
+            subfolderName: String? = null,
+            action: Event.EventAction = Event.EventAction.OTHER,
+        ): BlobInfo {
+            val digest = sha256Digest(blobBytes)
+            val blobName = bodyBlobName(
+                bodyFormat,
+                "$contentAddressedDirectory/${HexFormat.of().formatHex(digest)}",
+                subfolderName,
+                action
+            )
+            val blobUrl = uploadBlobIfAbsent(blobName, blobBytes)
+            return BlobInfo(bodyFormat, blobUrl, digest)
+        }
+
+        /**
+         * Upload a body in the [bodyFormat] for a given [reportName] like [uploadBody], but with the body written by
+         * [writeBody] to a [BlockBlobWriter].  The body is uploaded in blocks of [blockSize] bytes as it is written,
+         * so it is never held in memory as a whole.
+         * @return the information about the uploaded blob
+         */
+        fun uploadBodyInBlocks(
+            bodyFormat: MimeFormat,
+            reportName: String,
+            subfolderName: String? = null,
+            action: Event.EventAction = Event.EventAction.OTHER,
+            blockSize: Int = BlockBlobWriter.defaultBlockSize,
+            blobConnInfo: BlobContainerMetadata = defaultBlobMetadata,
+            writeBody: (BlockBlobWriter) -> Unit,
+        ): BlobInfo {
+            val blobName = bodyBlobName(bodyFormat, reportName, subfolderName, action)
+            logger.info("Starting block upload of $blobName")
+            val blobClient = getBlobContainer(blobConnInfo).getBlobClient(blobName)
+            val writer = BlockBlobWriter(blobClient.blockBlobClient, blockSize) { sourceUrl ->
+                getReadSasUrl(sourceUrl, blobConnInfo)
+            }
+            writeBody(writer)
+            val digest = writer.commit()
+            logger.info("Done block upload of $blobName")
+            return BlobInfo(bodyFormat, blobClient.blobUrl, digest)
+        }
+
+        /**
+         * The name of the blob for a body in the [bodyFormat] for a given [reportName], see [uploadBody].
+         */
+        private fun bodyBlobName(
+            bodyFormat: MimeFormat,
+            reportName: String,
+            subfolderName: String?,
+            action: Event.EventAction,
+        ): String {
+            val subfolderNameChecked = if (subfolderName.isNullOrBlank()) "" else "$subfolderName/"
+            return "${directoryForAction(action)}/$subfolderNameChecked$reportName.${bodyFormat.ext}"
+        }
+
+        /**
+         * Get a URL with a short-lived, read-only SAS token for the blob at [blobUrl], so the storage service can
+         * read the blob on behalf of another request.  Requires a connection string with an account key.
+         */
+        internal fun getReadSasUrl(
+            blobUrl: String,
+            blobConnInfo: BlobContainerMetadata = defaultBlobMetadata,
+        ): String {
+            val blobClient = getBlobClient(blobUrl, blobConnInfo)
+            val sasValues = BlobServiceSasSignatureValues(
+                OffsetDateTime.now().plusMinutes(readSasExpirationMinutes),
+                BlobSasPermission().setReadPermission(true)
+            )
+            return "${blobClient.blobUrl}?${blobClient.generateSas(sasValues)}"
+        }
+
         /**
          * Obtain the blob connection string for a given environment variable name.
          */
@@ -214,6 +311,28 @@ class BlobAccess : Logging {
             return blobClient.blobUrl
         }
 
+        /**
+         * Upload a raw blob [bytes] as [blobName] unless the blob already exists, in which case only its metadata is
+         * updated so its last modified time is the time of this upload.
+         * @return the url for the uploaded or existing blob
+         */
+        internal fun uploadBlobIfAbsent(
+            blobName: String,
+            bytes: ByteArray,
+            blobConnInfo: BlobContainerMetadata = defaultBlobMetadata,
+        ): String {
+            val blobClient = getBlobContainer(blobConnInfo).getBlobClient(blobName)
+            try {
+                blobClient.upload(ByteArrayInputStream(bytes), bytes.size.toLong(), false)
+                logger.info("Uploaded $blobName")
+            } catch (error: BlobStorageException) {
+                if (error.errorCode != BlobErrorCode.BLOB_ALREADY_EXISTS) throw error
+                blobClient.setMetadata(mapOf(lastReferencedMetadataKey to OffsetDateTime.now().toString()))
+                logger.info("Reused existing $blobName")
+            }
+            return blobClient.blobUrl
+        }
+
         /** Checks if a blob actually exists in the blobstore */
         fun exists(
             blobUrl: String,
@@ -371,6 +490,15 @@ class BlobAccess : Logging {
             return downloadBlobAsByteArray(blobClient.blobUrl, blobConnInfo, retries)
         }
 
+        /**
+         * Get the ETag of the blob at the given [blobUrl].  The ETag changes every time the blob is written, so it can
+         * be used to check if a previously downloaded blob is still current without downloading it again.
+         */
+        fun getBlobETag(
+            blobUrl: String,
+            blobConnInfo: BlobContainerMetadata = defaultBlobMetadata,
+        ): String = getBlobClient(blobUrl, blobConnInfo).properties.eTag
+
         /**
          * Download the blob at the given [blobUrl] as BinaryData
          */
@@ -0,0 +1,126 @@
+package gov.cdc.prime.router.azure
+
+import com.azure.storage.blob.specialized.BlockBlobClient
+import org.apache.logging.log4j.kotlin.Logging
+import java.io.ByteArrayInputStream
+import java.io.OutputStream
+import java.security.MessageDigest
+import java.util.Base64
+
+/**
+ * Writes a blob as a list of staged blocks, so a large blob can be uploaded while it is generated without holding
+ * the whole blob in memory.  Written bytes are buffered until they fill a block of [blockSize] bytes, which is
+ * then staged on the [blobClient].  The blob only exists once it is committed with [commit].
+ *
+ * Content that is already in another blob can be added with [writeBlob].  Large blobs are then copied into a block
+ * by the storage service instead of being uploaded again, if [getSourceUrl] can provide a URL the service can read.
+ *
+ * @property blockSize the size of the staged blocks, which is the most memory used by the writer
+ * @property getSourceUrl provides a URL that the storage service can read a source blob from, or throws if that is
+ * not possible
+ */
+class BlockBlobWriter internal constructor(
+    private val blobClient: BlockBlobClient,
+    val blockSize: Int = defaultBlockSize,
+    private val getSourceUrl: ((String) -> String)? = null,
+) : OutputStream(), Logging {
+    private val buffer = ByteArray(blockSize)
+    private var bufferSize = 0
+    private val blockIds = mutableListOf<String>()
+    private val digest = MessageDigest.getInstance("SHA-256")
+    private var copySourceBlobs = getSourceUrl != null
+    private var committed = false
+
+    /**
+     * The number of bytes written so far.
+     */
+    var size: Long = 0
+        private set
+
+    override fun write(b: Int) {
+        write(byteArrayOf(b.toByte()), 0, 1)
+    }
+
+    override fun write(b: ByteArray, off: Int, len: Int) {
+        check(!committed) { "Blob was already committed" }
+        digest.update(b, off, len)
+        size += len
+        var offset = off
+        var remaining = len
+        while (remaining > 0) {
+            val count = minOf(remaining, blockSize - bufferSize)
+            System.arraycopy(b, offset, buffer, bufferSize, count)
+            bufferSize += count
+            offset += count
+            remaining -= count
+            if (bufferSize == blockSize) stageBuffer()
+        }
+    }
+
+    /**
+     * Write [text] in UTF-8.
+     */
+    fun write(text: String) {
+        write(text.toByteArray())
+    }
+
+    /**
+     * Write the [content] of the blob at [sourceUrl].  Content of at least a block is copied by the storage service
+     * from the source blob when possible; otherwise, or if the copy fails, the [content] is written like any other
+     * bytes.  The [content] is always used for the digest of the blob.
+     */
+    fun writeBlob(sourceUrl: String?, content: ByteArray) {
+        check(!committed) { "Blob was already committed" }
+        if (sourceUrl != null && copySourceBlobs && content.size >= blockSize) {
+            try {
+                val url = getSourceUrl!!(sourceUrl)
+                stageBuffer()
+                val blockId = nextBlockId()
+                blobClient.stageBlockFromUrl(blockId, url, null)
+                blockIds.add(blockId)
+                digest.update(content)
+                size += content.size
+                return
+            } catch (ex: RuntimeException) {
+                logger.warn("Unable to copy $sourceUrl into a block, uploading its content instead", ex)
+                copySourceBlobs = false
+            }
+        }
+        write(content)
+    }
+
+    /**
+     * Stage the remaining buffered bytes and commit all the staged blocks as the content of the blob, replacing any
+     * existing blob.
+     * @return the SHA-256 digest of the content of the blob
+     */
+    fun commit(): ByteArray {
+        check(!committed) { "Blob was already committed" }
+        stageBuffer()
+        blobClient.commitBlockList(blockIds, true)
+        committed = true
+        logger.debug("Committed ${blockIds.size} blocks with $size bytes")
+        return digest.digest()
+    }
+
+    private fun stageBuffer() {
+        if (bufferSize == 0) return
+        val blockId = nextBlockId()
+        blobClient.stageBlock(blockId, ByteArrayInputStream(buffer, 0, bufferSize), bufferSize.toLong())
+        blockIds.add(blockId)
+        bufferSize = 0
+    }
+
+    /**
+     * Block IDs must all have the same length, so they are a padded sequence number.
+     */
+    private fun nextBlockId(): String =
+        Base64.getEncoder().encodeToString("%08d".format(blockIds.size).toByteArray())
+
+    companion object {
+        /**
+         * The default size of the staged blocks.
+         */
+        const val defaultBlockSize = 4 * 1024 * 1024
+    }
+}
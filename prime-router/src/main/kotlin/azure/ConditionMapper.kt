@@ -7,6 +7,8 @@ import org.hl7.fhir.r4.model.Coding
 import org.hl7.fhir.r4.model.Extension
 import org.hl7.fhir.r4.model.Observation
 import org.hl7.fhir.r4.model.StringType
+import tech.tablesaw.api.StringColumn
+import tech.tablesaw.api.Table
 
 interface IConditionMapper {
     /**
@@ -26,37 +28,45 @@ class LookupTableConditionMapper(metadata: Metadata) : IConditionMapper {
     val mappingTable = metadata.findLookupTable("observation-mapping")
         ?: throw IllegalStateException("Unable to load lookup table 'observation-mapping' for code to condition lookup")
 
+    /**
+     * A condition mapped to a test code in the observation mapping table.  [row] is the position of the mapping
+     * in the table, so mappings found for different test codes can be kept in table order.
+     */
+    private data class ConditionMapping(
+        val row: Int,
+        val conditionSystem: String?,
+        val conditionCode: String?,
+        val conditionName: String?,
+        val memberOid: String?,
+    )
+
+    /**
+     * The condition mappings grouped by test code for the currently loaded version of the mapping table.
+     */
+    private val mappingsByTestCode: Map<String, List<ConditionMapping>>
+        get() = mappingTable.getIndex(INDEX_NAME) { buildIndex(it) }
+
     override fun lookupConditions(codings: List<Coding>): Map<Coding, List<Coding>> {
-        val codesToCodings = codings.associateBy { it.code }
-        return mappingTable.FilterBuilder().isIn(ObservationMappingConstants.TEST_CODE_KEY, codings.map { it.code })
-            .filter().caseSensitiveDataRowsMap.fold(mutableMapOf<Coding, List<Coding>>()) { acc, condition ->
-                val code = codesToCodings[condition[ObservationMappingConstants.TEST_CODE_KEY]]!!
-                val conditions = acc[code] ?: mutableListOf()
-                acc[code] = conditions.plus(
-                    Coding(
-                        condition[ObservationMappingConstants.CONDITION_CODE_SYSTEM_KEY],
-                        condition[ObservationMappingConstants.CONDITION_CODE_KEY],
-                        condition[ObservationMappingConstants.CONDITION_NAME_KEY]
-                    )
-                )
-                acc
-            }
+        val index = mappingsByTestCode
+        return codings.associateBy { it.code }.mapNotNull { (code, coding) ->
+            val mappings = code?.let { index[it] } ?: return@mapNotNull null
+            coding to mappings.map { Coding(it.conditionSystem, it.conditionCode, it.conditionName) }
+        }.toMap()
     }
 
     override fun lookupMemberOid(codings: List<Coding>): Map<String, String> {
-        // Extract condition codes using the mapping table, not directly from codings
-        val testCodes = codings.mapNotNull { it.code } // These are the input test codes
+        val index = mappingsByTestCode
 
-        // Filter rows related to condition mappings based on test codes
-        val filteredRows = mappingTable.FilterBuilder()
-            .isIn(ObservationMappingConstants.TEST_CODE_KEY, testCodes) // Map test codes to conditions
-            .filter().caseSensitiveDataRowsMap
+        // Find the mappings for the input test codes in table order, so the last mapping for a condition code wins
+        val mappings = codings.mapNotNull { it.code }.distinct()
+            .flatMap { index[it].orEmpty() }
+            .sortedBy { it.row }
 
         // Create a map of condition codes to member OIDs
-        return filteredRows
-            .mapNotNull { condition ->
-                val conditionCode = condition[ObservationMappingConstants.CONDITION_CODE_KEY]
-                val memberOid = condition[ObservationMappingConstants.TEST_OID_KEY]
+        return mappings
+            .mapNotNull { mapping ->
+                val conditionCode = mapping.conditionCode
+                val memberOid = mapping.memberOid
                 if (!conditionCode.isNullOrEmpty() && !memberOid.isNullOrEmpty()) {
                     conditionCode to memberOid
                 } else {
@@ -65,6 +75,32 @@ class LookupTableConditionMapper(metadata: Metadata) : IConditionMapper {
             }
             .toMap()
     }
+
+    companion object {
+        private const val INDEX_NAME = "condition-mappings-by-test-code"
+
+        /**
+         * Group the rows of the observation mapping [table] by test code.
+         * @return the condition mappings for each test code, in table order
+         */
+        private fun buildIndex(table: Table): Map<String, List<ConditionMapping>> {
+            fun column(name: String): StringColumn? = if (table.containsColumn(name)) table.stringColumn(name) else null
+            val testCodes = column(ObservationMappingConstants.TEST_CODE_KEY) ?: return emptyMap()
+            val conditionSystems = column(ObservationMappingConstants.CONDITION_CODE_SYSTEM_KEY)
+            val conditionCodes = column(ObservationMappingConstants.CONDITION_CODE_KEY)
+            val conditionNames = column(ObservationMappingConstants.CONDITION_NAME_KEY)
+            val memberOids = column(ObservationMappingConstants.TEST_OID_KEY)
+            return (0 until table.rowCount()).groupBy({ testCodes.get(it) }) { row ->
+                ConditionMapping(
+                    row,
+                    conditionSystems?.get(row),
+                    conditionCodes?.get(row),
+                    conditionNames?.get(row),
+                    memberOids?.get(row)
+                )
+            }
+        }
+    }
 }
 
 class ConditionStamper(private val conditionMapper: IConditionMapper) {
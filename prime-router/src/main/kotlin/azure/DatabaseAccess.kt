@@ -15,6 +15,7 @@ import gov.cdc.prime.router.azure.db.Tables.EMAIL_SCHEDULE
 import gov.cdc.prime.router.azure.db.Tables.ITEM_LINEAGE
 import gov.cdc.prime.router.azure.db.Tables.JTI_CACHE
 import gov.cdc.prime.router.azure.db.Tables.RECEIVER_CONNECTION_CHECK_RESULTS
+import gov.cdc.prime.router.azure.db.Tables.REPORT_ANCESTOR_BACKFILL
 import gov.cdc.prime.router.azure.db.Tables.REPORT_FACILITIES
 import gov.cdc.prime.router.azure.db.Tables.REPORT_LINEAGE
 import gov.cdc.prime.router.azure.db.Tables.SETTING
@@ -296,6 +297,13 @@ class DatabaseAccess(val create: DSLContext) : Logging {
 
     fun insertReportFile(reportFile: ReportFile, txn: Configuration, action: Action) {
         DSL.using(txn).newRecord(Tables.REPORT_FILE, reportFile).store()
+        logSavedReportFile(reportFile, action)
+    }
+
+    /**
+     * Logs that [reportFile] was saved for [action], with the sender and receiver of the report.
+     */
+    private fun logSavedReportFile(reportFile: ReportFile, action: Action) {
         val fromInfo =
             if (!reportFile.sendingOrg.isNullOrEmpty()) {
                 "${reportFile.sendingOrg}.${reportFile.sendingOrgClient} --> "
@@ -1028,19 +1036,33 @@ class DatabaseAccess(val create: DSLContext) : Logging {
             ?.getValue(DSL.max(SETTING.VERSION))
             ?: -1
 
-    fun insertJti(jti: String, expiresAt: OffsetDateTime? = null, txn: DataAccessTransaction) {
-        val jtiCache = JtiCache()
-        jtiCache.jti = jti
-        jtiCache.expiresAt = expiresAt
-        DSL.using(txn).newRecord(JTI_CACHE, jtiCache).store()
+    /**
+     * Record [jti] as used until [expiresAt] with a single statement, unless it is already recorded and has not
+     * expired.  An expired record of the same JTI is reused.
+     * @return true if the JTI was recorded, false if it was already used
+     */
+    fun insertJtiIfAbsent(jti: String, expiresAt: OffsetDateTime, txn: DataAccessTransaction): Boolean {
+        val now = OffsetDateTime.now()
+        return DSL.using(txn)
+            .insertInto(JTI_CACHE, JTI_CACHE.JTI, JTI_CACHE.EXPIRES_AT, JTI_CACHE.CREATED_AT)
+            .values(jti, expiresAt, now)
+            .onConflict(JTI_CACHE.JTI)
+            .doUpdate()
+            .set(JTI_CACHE.EXPIRES_AT, expiresAt)
+            .set(JTI_CACHE.CREATED_AT, now)
+            .where(JTI_CACHE.EXPIRES_AT.lt(now))
+            .returning(JTI_CACHE.JTI_CACHE_ID)
+            .fetchOne() != null
     }
 
-    fun deleteExpiredJtis(txn: DataAccessTransaction) {
-        DSL.using(txn)
+    /**
+     * Delete the expired JTIs.
+     * @return the number of JTIs deleted
+     */
+    fun deleteExpiredJtis(txn: DataAccessTransaction): Int = DSL.using(txn)
             .deleteFrom(JTI_CACHE)
             .where(JTI_CACHE.EXPIRES_AT.lt(OffsetDateTime.now()))
             .execute()
-    }
 
     fun fetchJti(jti: String, txn: DataAccessTransaction): JtiCache? = DSL.using(txn)
             .selectFrom(JTI_CACHE)
@@ -1283,11 +1305,9 @@ class DatabaseAccess(val create: DSLContext) : Logging {
         // generate lineage records
         actionHistory.generateLineages()
 
-        // insert report lineages
-        actionHistory.reportLineages.forEach {
-            it.actionId = actionId
-            this.insertReportLineage(it, txn)
-        }
+        // insert report lineages and add them to the report ancestor closure
+        actionHistory.reportLineages.forEach { it.actionId = actionId }
+        this.insertReportLineages(actionHistory.reportLineages, txn)
 
         // insert item lineages
         this.insertItemLineages(actionHistory.itemLineages, txn, actionHistory.action)
@@ -1296,9 +1316,7 @@ class DatabaseAccess(val create: DSLContext) : Logging {
         actionHistory.nullifyReportIdsForNonTrackedReports()
 
         // insert action logs
-        actionHistory.actionLogs.forEach {
-            this.insertActionLog(it, txn)
-        }
+        this.insertActionLogs(actionHistory.actionLogs, txn)
 
         // log for app insights
         val actionEndTime = LocalDateTime.now()
@@ -1320,27 +1338,77 @@ class DatabaseAccess(val create: DSLContext) : Logging {
      * Inserts all reports tracked within [actionHistory] using [txn]
      */
     private fun insertReports(actionHistory: ActionHistory, txn: Configuration) {
-        actionHistory.reportsReceived.values.forEach {
-            this.insertReportFile(it, txn, actionHistory.action)
-        }
-        actionHistory.reportsOut.values.forEach {
-            this.insertReportFile(it, txn, actionHistory.action)
-        }
-        actionHistory.filteredOutReports.values.forEach {
-            this.insertReportFile(it, txn, actionHistory.action)
-        }
+        val reportFiles = actionHistory.reportsReceived.values + actionHistory.reportsOut.values +
+            actionHistory.filteredOutReports.values
+        DSL.using(txn).batchInsert(reportFiles.map { DSL.using(txn).newRecord(REPORT_FILE, it) }).execute()
+        reportFiles.forEach { logSavedReportFile(it, actionHistory.action) }
     }
 
     /**
-     * Inserts the provided [lineage] using [txn] as the data context
+     * Inserts the provided [lineage] and adds it to the report ancestor closure using [txn] as the data context
      */
     fun insertReportLineage(lineage: ReportLineage, txn: Configuration) {
         DSL.using(txn).newRecord(REPORT_LINEAGE, lineage).store()
+        insertReportAncestors(listOf(lineage), txn)
         logger.debug(
             "Report ${lineage.parentReportId} is a parent of child report ${lineage.childReportId}"
         )
     }
 
+    /**
+     * Inserts the provided [lineages] in a batch and adds them to the report ancestor closure using [txn] as the
+     * data context.
+     */
+    internal fun insertReportLineages(lineages: Collection<ReportLineage>, txn: Configuration) {
+        DSL.using(txn).batchInsert(lineages.map { DSL.using(txn).newRecord(REPORT_LINEAGE, it) }).execute()
+        insertReportAncestors(lineages, txn)
+        logger.debug("Inserted ${lineages.size} report lineages into db")
+    }
+
+    /**
+     * Adds the [lineages] to the report_ancestor closure table with a single call, so the parent of each lineage
+     * and all its ancestors become ancestors of the child and all its descendants.  While the closure is being
+     * backfilled, this waits for the backfill batch in progress but not for other lineage inserts.
+     */
+    internal fun insertReportAncestors(lineages: Collection<ReportLineage>, txn: Configuration) {
+        if (lineages.isEmpty()) return
+        val added = Routines.addReportAncestors(
+            txn,
+            lineages.map { it.parentReportId }.toTypedArray(),
+            lineages.map { it.childReportId }.toTypedArray()
+        )
+        logger.debug("Added $added report ancestors for ${lineages.size} report lineages")
+    }
+
+    /**
+     * Adds the next [batchSize] report lineages recorded before the report_ancestor closure table existed to it, then
+     * reruns the lineages inserted while the backfill ran.  See [isReportAncestorClosureComplete] for when it is done.
+     * @return the number of lineages added
+     */
+    fun backfillReportAncestors(batchSize: Int, txn: DataAccessTransaction): Int =
+        Routines.backfillReportAncestors(txn, batchSize) ?: 0
+
+    /**
+     * Whether all the report lineages are in the report_ancestor closure table, so the ancestors and descendants of
+     * a report can be looked up in it.  Once complete, the closure stays complete and this is not queried again.
+     */
+    fun isReportAncestorClosureComplete(txn: DataAccessTransaction? = null): Boolean {
+        if (reportAncestorClosureComplete) return true
+        val ctx = if (txn != null) DSL.using(txn) else create
+        reportAncestorClosureComplete = ctx
+            .fetchExists(
+                ctx.selectFrom(REPORT_ANCESTOR_BACKFILL).where(REPORT_ANCESTOR_BACKFILL.COMPLETED_AT.isNotNull)
+            )
+        return reportAncestorClosureComplete
+    }
+
+    /**
+     * Inserts the provided [actionLogs] in a batch using [txn] as the data context.
+     */
+    internal fun insertActionLogs(actionLogs: Collection<ActionLog>, txn: Configuration) {
+        DSL.using(txn).batchInsert(actionLogs.map { DSL.using(txn).newRecord(ACTION_LOG, it) }).execute()
+    }
+
     /**
      * Inserts the provided [actionLog] using [txn] as the data context.
      */
@@ -1403,6 +1471,18 @@ class DatabaseAccess(val create: DSLContext) : Logging {
         /** Global var. Set to false prior to the lazy init, to prevent flyway migrations */
         var isFlywayMigrationOK = true
 
+        /** Set once the report ancestor closure table is backfilled, see [isReportAncestorClosureComplete] */
+        @Volatile
+        private var reportAncestorClosureComplete = false
+
+        /**
+         * Forget that the report ancestor closure table is backfilled, so the next [isReportAncestorClosureComplete]
+         * queries the backfill progress again.  Only the tests that change the backfill progress need this.
+         */
+        internal fun resetReportAncestorClosureComplete() {
+            reportAncestorClosureComplete = false
+        }
+
         /**
          * Create a connection pool
          *
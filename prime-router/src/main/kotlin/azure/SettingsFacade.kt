@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonInclude
 import com.fasterxml.jackson.databind.SerializationFeature
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import gov.cdc.prime.reportstream.shared.StringUtilities.trimToNull
+import gov.cdc.prime.router.ClientSource
 import gov.cdc.prime.router.CustomerStatus
 import gov.cdc.prime.router.Metadata
 import gov.cdc.prime.router.Organization
@@ -26,14 +27,24 @@ import gov.cdc.prime.router.tokens.AuthenticatedClaims
 import gov.cdc.prime.router.tokens.JwkSet
 import org.apache.logging.log4j.kotlin.Logging
 import org.jooq.JSONB
+import java.time.Duration
+import java.time.Instant
 import java.time.OffsetDateTime
+import java.util.concurrent.atomic.AtomicReference
 
 /**
  * Settings for Organization, Receivers, and Senders from the Azure Database.
  * Contains all business logic regarding settings as well as JSON serialization.
+ *
+ * The [organizations], [senders] and [receivers] collections and the lookups of a single organization, sender or
+ * receiver are served from an in-memory [SettingsSnapshot].  At most once per [refreshCheckInterval] the facade
+ * checks if any setting changed and, if so, reads a new snapshot.
  */
-class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAccess = DatabaseAccess()) :
-    SettingsProvider,
+class SettingsFacade(
+    private val metadata: Metadata,
+    private val db: DatabaseAccess = DatabaseAccess(),
+    private val refreshCheckInterval: Duration = defaultRefreshCheckInterval,
+) : SettingsProvider,
     Logging {
     enum class AccessResult {
         SUCCESS,
@@ -50,21 +61,87 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
         mapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
     }
 
+    /**
+     * The current snapshot of the settings and when it was last checked against the database.
+     */
+    private val snapshot = AtomicReference<Pair<SettingsSnapshot, Instant>?>(null)
+
     override val organizations: Collection<Organization>
-        get() = findSettings(OrganizationAPI::class.java)
+        get() = currentSnapshot().organizations
 
     override val senders: Collection<Sender>
-        get() = findSettings(Sender::class.java)
+        get() = currentSnapshot().senders
 
     override val receivers: Collection<Receiver>
-        get() = findSettings(ReceiverAPI::class.java)
+        get() = currentSnapshot().receivers
+
+    override fun findReceivers(topic: Topic): Collection<Receiver> = currentSnapshot().findReceivers(topic)
+
+    /**
+     * Get the current settings snapshot, reading a new one if the settings changed since the snapshot was read.
+     * The database is checked for changes at most once per [refreshCheckInterval].  Readers that already have a
+     * snapshot keep using it while a new one is read.
+     */
+    fun currentSnapshot(): SettingsSnapshot {
+        val now = Instant.now()
+        val current = snapshot.get()
+        if (current != null && Duration.between(current.second, now) < refreshCheckInterval) {
+            return current.first
+        }
+        if (current != null && !current.first.isOutOfDate(db.fetchLastModified())) {
+            snapshot.compareAndSet(current, Pair(current.first, now))
+            return current.first
+        }
+        val newSnapshot = readSnapshot()
+        snapshot.set(Pair(newSnapshot, now))
+        return newSnapshot
+    }
 
-    override fun findOrganization(name: String): Organization? = findSetting(name, OrganizationAPI::class.java)
+    /**
+     * Read all active settings in one transaction.
+     */
+    private fun readSnapshot(): SettingsSnapshot {
+        val startTime = System.currentTimeMillis()
+        val newSnapshot = db.transactReturning { txn ->
+            val lastModified = db.fetchLastModified(txn)
+            SettingsSnapshot(
+                readSettings(OrganizationAPI::class.java, txn, withMetadata = true),
+                readSettings(Sender::class.java, txn, withMetadata = true),
+                readSettings(ReceiverAPI::class.java, txn, withMetadata = true),
+                lastModified
+            )
+        }
+        logger.info(
+            "Read settings snapshot last modified at ${newSnapshot.lastModified} with " +
+                "${newSnapshot.organizations.size} organizations, ${newSnapshot.senders.size} senders and " +
+                "${newSnapshot.receivers.size} receivers in ${System.currentTimeMillis() - startTime} ms"
+        )
+        return newSnapshot
+    }
+
+    /**
+     * Read all the active settings of [clazz], adding the created and version metadata if [withMetadata] is set
+     */
+    private fun <T : SettingAPI> readSettings(
+        clazz: Class<T>,
+        txn: DataAccessTransaction,
+        withMetadata: Boolean = false,
+    ): List<T> = db.fetchSettings(settingTypeFromClass(clazz.name), txn).map { setting ->
+            val result = mapper.readValue(setting.values.data(), clazz)
+            if (withMetadata) {
+                result.createdAt = setting.createdAt
+                result.createdBy = setting.createdBy
+                result.version = setting.version
+            }
+            result
+        }
+
+    override fun findOrganization(name: String): Organization? = currentSnapshot().findOrganization(name)
 
     override fun findReceiver(fullName: String): Receiver? {
         try {
-            val pair = Receiver.parseFullName(fullName)
-            return findSetting(pair.second, ReceiverAPI::class.java, pair.first)
+            val (organizationName, receiverName) = Receiver.parseFullName(fullName)
+            return currentSnapshot().findReceiver(Receiver.createFullName(organizationName, receiverName))
         } catch (e: RuntimeException) {
             logger.warn("Cannot find receiver: ${e.localizedMessage} ${e.stackTraceToString()}")
             return null
@@ -73,8 +150,8 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
 
     override fun findSender(fullName: String): Sender? {
         try {
-            val pair = Sender.parseFullName(fullName)
-            return findSetting(pair.second, Sender::class.java, pair.first)
+            val (organizationName, senderName) = Sender.parseFullName(fullName)
+            return currentSnapshot().findSender(ClientSource(organizationName, senderName).name)
         } catch (e: RuntimeException) {
             logger.warn("Cannot find sender: ${e.localizedMessage} ${e.stackTraceToString()}")
             return null
@@ -124,16 +201,9 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
         return mapper.writeValueAsString(list)
     }
 
-    private fun <T : SettingAPI> findSettings(clazz: Class<T>): List<T> {
-        val settingType = settingTypeFromClass(clazz.name)
-        val settings = db.transactReturning { txn ->
-            db.fetchSettings(settingType, txn)
+    private fun <T : SettingAPI> findSettings(clazz: Class<T>): List<T> = db.transactReturning { txn ->
+            readSettings(clazz, txn)
         }
-        return settings.map {
-            val result = mapper.readValue(it.values.data(), clazz)
-            result
-        }
-    }
 
     fun <T : SettingAPI> findSettingsAsJson(organizationName: String, clazz: Class<T>): Pair<AccessResult, String> {
         val (result, settings, errorMessage) = db.transactReturning { txn ->
@@ -246,7 +316,7 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
 
             val outputJson = mapper.writeValueAsString(settingResult)
             Pair(accessResult, outputJson)
-        }
+        }.also { snapshot.set(null) }
     }
 
     /**
@@ -293,7 +363,7 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
             db.deactivateSettingAndChildren(current.settingId, txn)
             // returned content-type is json/application, so return empty json not empty string
             Pair(AccessResult.SUCCESS, "{}")
-        }
+        }.also { snapshot.set(null) }
     }
 
     companion object {
@@ -302,6 +372,15 @@ class SettingsFacade(private val metadata: Metadata, private val db: DatabaseAcc
             SettingsFacade(Metadata.getInstance(), DatabaseAccess())
         }
 
+        /**
+         * Environment variable to override the number of seconds between checks for changed settings.
+         */
+        const val refreshCheckSecondsEnvVar = "SETTINGS_REFRESH_CHECK_SECONDS"
+
+        private val defaultRefreshCheckInterval: Duration = Duration.ofSeconds(
+            System.getenv(refreshCheckSecondsEnvVar)?.toLongOrNull() ?: 30
+        )
+
         private fun settingTypeFromClass(className: String): SettingType = when (className) {
                 OrganizationAPI::class.qualifiedName -> SettingType.ORGANIZATION
                 ReceiverAPI::class.qualifiedName -> SettingType.RECEIVER
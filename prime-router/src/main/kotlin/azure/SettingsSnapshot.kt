@@ -0,0 +1,42 @@
+package gov.cdc.prime.router.azure
+
+import gov.cdc.prime.router.Organization
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.Sender
+import gov.cdc.prime.router.Topic
+import java.time.OffsetDateTime
+
+/**
+ * An immutable copy of all the active [organizations], [senders] and [receivers] as of [lastModified], indexed for
+ * lookups by name and topic.  A snapshot is never updated; a new snapshot is created when the settings change.
+ *
+ * @property lastModified the creation time of the newest setting when the snapshot was read
+ */
+class SettingsSnapshot(
+    val organizations: List<Organization>,
+    val senders: List<Sender>,
+    val receivers: List<Receiver>,
+    val lastModified: OffsetDateTime?,
+) {
+    private val organizationsByName = organizations.associateBy { it.name }
+    private val sendersByFullName = senders.associateBy { it.fullName }
+    private val receiversByFullName = receivers.associateBy { it.fullName }
+    private val receiversByTopic = receivers.groupBy { it.topic }
+
+    fun findOrganization(name: String): Organization? = organizationsByName[name]
+
+    fun findSender(fullName: String): Sender? = sendersByFullName[fullName]
+
+    fun findReceiver(fullName: String): Receiver? = receiversByFullName[fullName]
+
+    fun findReceivers(topic: Topic): List<Receiver> = receiversByTopic[topic] ?: emptyList()
+
+    /**
+     * Is this snapshot older than the settings last modified at [currentLastModified]?
+     */
+    fun isOutOfDate(currentLastModified: OffsetDateTime?): Boolean = when {
+        currentLastModified == null -> false
+        lastModified == null -> true
+        else -> currentLastModified.isAfter(lastModified)
+    }
+}
@@ -9,8 +9,10 @@ import com.microsoft.azure.functions.annotation.AuthorizationLevel
 import com.microsoft.azure.functions.annotation.FunctionName
 import com.microsoft.azure.functions.annotation.HttpTrigger
 import com.microsoft.azure.functions.annotation.StorageAccount
+import com.microsoft.azure.functions.annotation.TimerTrigger
 import gov.cdc.prime.router.Metadata
 import gov.cdc.prime.router.azure.db.enums.TaskAction
+import gov.cdc.prime.router.common.BaseEngine
 import gov.cdc.prime.router.tokens.DatabaseJtiCache
 import gov.cdc.prime.router.tokens.FindReportStreamSecretInVault
 import gov.cdc.prime.router.tokens.Server2ServerAuthentication
@@ -121,4 +123,19 @@ class TokenFunction(val metadata: Metadata = Metadata.getInstance()) : Logging {
         workflowEngine.recordAction(actionHistory)
         return response
     }
+
+    /**
+     * Removes the expired JTIs from the database, so checking a JTI in the [token] function does not have to.
+     */
+    @FunctionName("jti-cache-sweep")
+    @StorageAccount("AzureWebJobsStorage")
+    fun sweepJtiCache(
+        // run every five minutes (NCRONTAB expression {second} {minute} {hour} {day} {month} {day-of-week})
+        @TimerTrigger(name = "jtiCacheSweep", schedule = "0 */5 * * * *")
+        @Suppress("UNUSED_PARAMETER")
+        timerInfo: String,
+    ) {
+        val swept = DatabaseJtiCache(BaseEngine.databaseAccessSingleton).sweep()
+        logger.info("Removed $swept expired JTIs from the JTI cache")
+    }
 }
\ No newline at end of file
@@ -39,9 +39,6 @@ import gov.cdc.prime.router.transport.RetryItems
 import gov.cdc.prime.router.transport.RetryToken
 import gov.cdc.prime.router.transport.SftpTransport
 import gov.cdc.prime.router.transport.SoapTransport
-import kotlinx.coroutines.async
-import kotlinx.coroutines.awaitAll
-import kotlinx.coroutines.runBlocking
 import org.jooq.Configuration
 import org.jooq.Field
 import java.io.ByteArrayInputStream
@@ -75,6 +72,7 @@ class WorkflowEngine(
     val restTransport: RESTTransport = RESTTransport(),
     val nullTransport: NullTransport = NullTransport(),
     val emailTransport: EmailTransport = EmailTransport(),
+    val batchBlobDownloader: BatchBlobDownloader = BatchBlobDownloader(),
 ) : BaseEngine(queue) {
 
     /**
@@ -633,7 +631,14 @@ class WorkflowEngine(
     }
 
     /**
-     * Creates Header objects for all Tasks passed in with content downloaded.
+     * The [headers] created for a batch and the [deferredTasks] whose reports were not downloaded because the batch
+     * reached the memory budget of the [BatchBlobDownloader].
+     */
+    data class BatchHeaders(val headers: List<Header>, val deferredTasks: List<Task>)
+
+    /**
+     * Creates Header objects for all Tasks passed in with content downloaded.  The blobs are downloaded concurrently
+     * by the [batchBlobDownloader], and the tasks it did not download are returned as deferred.
      * TODO: rename function or handle other nullable attributes if Header survives refactor (see #11636)
      *
      * @param tasks list of tasks to process
@@ -646,46 +651,48 @@ class WorkflowEngine(
         reportFiles: Map<UUID, ReportFile>,
         organization: Organization,
         receiver: Receiver,
-    ): List<Header> {
+    ): BatchHeaders {
         val startTime = OffsetDateTime.now()
-        val headers = runBlocking {
-            tasks.mapNotNull {
-                async {
-                    if (reportFiles[it.reportId] == null) {
-                        logger.error(
-                            "Failed reportFile lookup on ReportId: ${it.reportId}"
-                        )
-                        null
-                    } else if (reportFiles[it.reportId]!!.bodyUrl == null) {
-                        logger.error(
-                            "Missing bodyURL on ReportId: ${it.reportId}"
-                        )
-                        null
-                    } else {
-                        val header = createHeader(
-                            it,
-                            reportFiles[it.reportId]!!,
-                            null,
-                            organization,
-                            receiver,
-                            true
-                        )
-                        if (header.content!!.isEmpty()) {
-                            logger.error(
-                                "Failure to download ${it.bodyUrl} from blobstore. " +
-                                    "ReportId: ${it.reportId}"
-                            )
-                            null
-                        } else {
-                            header
-                        }
-                    }
-                }
-            }.awaitAll()
-        }.filterNotNull()
+        val downloadableTasks = tasks.filter {
+            if (reportFiles[it.reportId] == null) {
+                logger.error(
+                    "Failed reportFile lookup on ReportId: ${it.reportId}"
+                )
+                false
+            } else if (reportFiles[it.reportId]!!.bodyUrl == null) {
+                logger.error(
+                    "Missing bodyURL on ReportId: ${it.reportId}"
+                )
+                false
+            } else {
+                true
+            }
+        }
+        val downloads = batchBlobDownloader.download(downloadableTasks) {
+            val bodyUrl = reportFiles.getValue(it.reportId).bodyUrl
+            if (BlobAccess.exists(bodyUrl)) BlobAccess.downloadBlobAsByteArray(bodyUrl) else null
+        }
+        val headers = downloads.downloaded.mapNotNull { (task, content) ->
+            if (content == null || content.isEmpty()) {
+                logger.error(
+                    "Failure to download ${task.bodyUrl} from blobstore. " +
+                        "ReportId: ${task.reportId}"
+                )
+                null
+            } else {
+                val reportFile = reportFiles.getValue(task.reportId)
+                Header(task, reportFile, null, organization, receiver, findReportSchema(reportFile), content, true)
+            }
+        }
+        if (downloads.deferred.isNotEmpty()) {
+            logger.warn(
+                "${downloads.deferred.size} reports for ${receiver.fullName} were left for the next batch as the " +
+                    "batch reached its download memory budget"
+            )
+        }
         val duration = Duration.between(startTime, OffsetDateTime.now())
         logger.info("BatchFunction Downloading blobs and creating rich headers took $duration")
-        return headers
+        return BatchHeaders(headers, downloads.deferred)
     }
 
     /**
@@ -727,13 +734,15 @@ class WorkflowEngine(
             // This check is needed as long as TASK does not FK to REPORT_FILE.  @todo FK TASK to REPORT_FILE
             ActionHistory.sanityCheckReports(tasks, reportFiles, false)
 
-            val headers = createDeepHeaders(tasks, reportFiles, organization, receiver)
+            val (headers, deferredTasks) = createDeepHeaders(tasks, reportFiles, organization, receiver)
 
             updateBlock(headers, txn)
             // Here we iterate through the original tasks, rather than headers.
             // So even TASK entries whose report_id is missing from REPORT_FILE are marked as done,
             // because missing report_id is an unrecoverable error. @todo  See #2185 for better solution.
-            tasks.forEach {
+            // Deferred tasks were not downloaded, so they are left as they are for the next batch.
+            val deferredReportIds = deferredTasks.map { it.reportId }.toSet()
+            tasks.filter { it.reportId !in deferredReportIds }.forEach {
                 val currentAction = Event.EventAction.parseQueueMessage(it.nextAction.literal)
                 updateHeader(
                     it.reportId,
@@ -834,11 +843,7 @@ class WorkflowEngine(
         receiver: Receiver?,
         fetchBlobBody: Boolean = true,
     ): Header {
-        val schema = if (reportFile.schemaName != null) {
-            metadata.findSchema(reportFile.schemaName)
-        } else {
-            null
-        }
+        val schema = findReportSchema(reportFile)
 
         val downloadContent = (reportFile.bodyUrl != null && fetchBlobBody)
         val content = if (downloadContent && BlobAccess.exists(reportFile.bodyUrl)) {
@@ -849,6 +854,15 @@ class WorkflowEngine(
         return Header(task, reportFile, itemLineages, organization, receiver, schema, content, downloadContent)
     }
 
+    /**
+     * Find the schema used by the [reportFile], if any.
+     */
+    private fun findReportSchema(reportFile: ReportFile): Schema? = if (reportFile.schemaName != null) {
+            metadata.findSchema(reportFile.schemaName)
+        } else {
+            null
+        }
+
     fun fetchHeader(
         reportId: ReportId,
         organization: Organization,
@@ -9,6 +9,7 @@ import gov.cdc.prime.router.Receiver
 import gov.cdc.prime.router.Report
 import gov.cdc.prime.router.azure.ActionHistory
 import gov.cdc.prime.router.azure.BatchEvent
+import gov.cdc.prime.router.azure.BlockBlobWriter
 import gov.cdc.prime.router.azure.Event
 import gov.cdc.prime.router.azure.WorkflowEngine
 import gov.cdc.prime.router.common.BaseEngine
@@ -159,31 +160,23 @@ class UniversalBatchFunction(private val workflowEngine: WorkflowEngine = Workfl
             (receiver.timing.whenEmpty.action == Receiver.EmptyOperation.SEND)
         ) {
             // Batch all reports into one
-            val messages = validHeaders.map {
+            validHeaders.forEach {
                 // track reportId as 'parent'
                 actionHistory.trackExistingInputReport(it.task.reportId)
-
-                // return message as string
-                String(it.content!!)
             }
-
-            // Generate the batch message
-            val batchMessage = when (receiver.format) {
-                MimeFormat.HL7, MimeFormat.HL7_BATCH -> HL7MessageHelpers.batchMessages(messages, receiver)
-                MimeFormat.FHIR -> FHIRBundleHelpers.batchMessages(messages)
-                else -> throw IllegalStateException("Unsupported receiver format ${receiver.format} found during batch")
+            if (receiver.format !in batchFormats) {
+                throw IllegalStateException("Unsupported receiver format ${receiver.format} found during batch")
             }
 
-            // get a Report from the message
-            val (report, sendEvent, blobInfo) = Report.generateReportAndUploadBlob(
+            // get a Report from the batch message, which is written straight to the blob store
+            val (report, sendEvent, blobInfo) = Report.generateReportAndStreamBlob(
                 Event.EventAction.SEND,
-                batchMessage.toByteArray(),
                 validHeaders.map { it.task.reportId },
                 receiver,
                 workflowEngine.metadata,
                 actionHistory,
                 topic = receiver.topic,
-            )
+            ) { writer -> writeBatchMessage(writer, validHeaders, receiver) }
 
             // insert the 'Send' task
             workflowEngine.db.insertTask(
@@ -195,4 +188,46 @@ class UniversalBatchFunction(private val workflowEngine: WorkflowEngine = Workfl
             )
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Write the batch message for the [headers] to the [writer] in the format of the [receiver], framing the
+     * messages as they are written instead of building the batch in memory.  HL7 messages are wrapped in batch
+     * headers if the receiver uses them and FHIR bundles are separated by new lines.
+     */
+    internal fun writeBatchMessage(
+        writer: BlockBlobWriter,
+        headers: List<WorkflowEngine.Header>,
+        receiver: Receiver,
+    ) {
+        when (receiver.format) {
+            MimeFormat.HL7, MimeFormat.HL7_BATCH -> {
+                val firstMessage = headers.firstOrNull()?.content?.let { String(it) }
+                writer.write(HL7MessageHelpers.batchHeader(firstMessage, receiver))
+                headers.forEach {
+                    val content = it.content!!
+                    writer.writeBlob(it.task.bodyUrl, content)
+                    if (content.isEmpty() || content.last() != hl7SegmentDelimiter) {
+                        writer.write(HL7MessageHelpers.hl7SegmentDelimiter)
+                    }
+                }
+                writer.write(HL7MessageHelpers.batchTrailer(headers.size, receiver))
+            }
+
+            MimeFormat.FHIR -> headers.forEachIndexed { index, it ->
+                if (index > 0) writer.write(FHIRBundleHelpers.ndjsonDelimiter)
+                writer.writeBlob(it.task.bodyUrl, it.content!!)
+            }
+
+            else -> error("Unsupported receiver format ${receiver.format} found during batch")
+        }
+    }
+
+    companion object {
+        /**
+         * The receiver formats that can be merged into a batch.
+         */
+        private val batchFormats = setOf(MimeFormat.HL7, MimeFormat.HL7_BATCH, MimeFormat.FHIR)
+
+        private val hl7SegmentDelimiter = HL7MessageHelpers.hl7SegmentDelimiter.first().code.toByte()
+    }
+}
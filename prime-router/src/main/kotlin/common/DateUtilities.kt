@@ -3,6 +3,7 @@ package gov.cdc.prime.router.common
 import gov.cdc.prime.reportstream.shared.StringUtilities.trimToNull
 import gov.cdc.prime.router.Hl7Configuration
 import gov.cdc.prime.router.Report
+import java.text.ParsePosition
 import java.time.DateTimeException
 import java.time.Duration
 import java.time.Instant
@@ -17,6 +18,7 @@ import java.time.format.DateTimeParseException
 import java.time.temporal.ChronoField
 import java.time.temporal.TemporalAccessor
 import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
 import kotlin.math.abs
 import kotlin.math.floor
 
@@ -134,54 +136,154 @@ object DateUtilities {
             }
         }
 
+    /**
+     * One of the formats tried in order by [parseDate]: the [formatter] for the format, and how to [parse] a value
+     * with it.  The format only [appliesTo] some values.
+     */
+    private class DateParser(
+        val formatter: DateTimeFormatter,
+        val appliesTo: (String) -> Boolean = { true },
+        val parse: (String) -> TemporalAccessor,
+    ) {
+        /**
+         * Check if [value] has the syntax of the format, without resolving the date and without throwing.
+         */
+        fun matches(value: String): Boolean = appliesTo(value) && formatter.matches(value)
+    }
+
+    /** The formatter for the [variableDateTimePattern] */
+    private val variableDateTimeFormatter = DateTimeFormatter.ofPattern(variableDateTimePattern)
+
+    /**
+     * The formats tried by [parseDate], in order: the variable date time pattern, ISO instants in UTC for values
+     * with a Z, and then each of the [allowedDateFormats].
+     */
+    private val dateParsers = listOf(
+        DateParser(variableDateTimeFormatter) {
+            variableDateTimeFormatter.parseBest(
+                it,
+                OffsetDateTime::from,
+                ZonedDateTime::from,
+                LocalDateTime::from,
+                Instant::from,
+                LocalDate::from
+            )
+        },
+        DateParser(DateTimeFormatter.ISO_INSTANT, { it.indexOf('Z', ignoreCase = true) > -1 }) {
+            Instant.parse(it).toOffsetDateTime(utcZone)
+        }
+    ) + allowedDateFormats.map { format ->
+        val formatter = DateTimeFormatter.ofPattern(format)
+        DateParser(formatter) { parseBestAllowedDate(it, formatter) }
+    }
+
+    /**
+     * The indexes of the [dateParsers] that match the syntax of values with a given shape, see [dateShape].  Once a
+     * value of a shape was parsed, later values of the same shape only try the parsers that can match them.
+     */
+    private val dateParsersByShape = ConcurrentHashMap<String, IntArray>()
+
+    /** The most shapes kept in [dateParsersByShape], so unusual values cannot grow it without bounds */
+    private const val maxDateShapes = 1024
+
+    /** Formatters for the single patterns passed to [parseDate] and [getDateTime] */
+    private val formattersByPattern = ConcurrentHashMap<String, DateTimeFormatter>()
+
     /**
      * This method takes a date value as a string and returns a
      * TemporalAccessor based on the variable date time pattern
+     *
+     * The formats are tried in the order of [dateParsers], and the first one that can parse the value wins.
+     * Formats that do not match the syntax of the value are skipped without parsing, and the formats that match
+     * are remembered for the shape of the value, so the usual value is parsed exactly once.
      */
     fun parseDate(dateValue: String): TemporalAccessor {
         // check to see if the value has something in it
         if (dateValue.trimToNull() == null) {
             throw DateTimeException("Invalid value passed in for date value. Received $dateValue")
         }
-        // parse out the date
-        return try {
-            DateTimeFormatter.ofPattern(variableDateTimePattern)
-                .parseBest(
-                    dateValue,
-                    OffsetDateTime::from,
-                    ZonedDateTime::from,
-                    LocalDateTime::from,
-                    Instant::from,
-                    LocalDate::from
-                )
+        val shape = dateShape(dateValue)
+        val knownParsers = dateParsersByShape[shape]
+        if (knownParsers != null) {
+            parseDate(dateValue, knownParsers)?.let { return it }
+        }
+
+        // A new shape, or a value that is not valid for the known formats of its shape
+        val matchingParsers = dateParsers.indices.filter { dateParsers[it].matches(dateValue) }.toIntArray()
+        val parsed = parseDate(dateValue, matchingParsers)
+        if (parsed != null) {
+            if (dateParsersByShape.size < maxDateShapes) dateParsersByShape[shape] = matchingParsers
+            return parsed
+        }
+
+        // none of the formats work, so get the error from our variable pattern
+        val cause = try {
+            dateParsers.first().parse(dateValue)
+            null
         } catch (t: Throwable) {
-            // our variable pattern has failed. let's try each one-by-one. if none of them
-            // work, throw an error
-            if (dateValue.indexOf('Z', ignoreCase = true) > -1) {
-                val isoDate = tryParseIsoDate(dateValue)
-                if (isoDate != null) {
-                    return isoDate.toOffsetDateTime(utcZone)
-                }
-            }
-            allowedDateFormats.forEach { format ->
-                val parsedDate = parseDate(dateValue, format)
-                if (parsedDate != null) return parsedDate
+            t
+        }
+        throw DateTimeParseException("Unable to parse $dateValue.", dateValue, 0, cause)
+    }
+
+    /**
+     * Parse [dateValue] with the first of the [dateParsers] at [parserIndexes] that can resolve it.
+     * @return the date or null if none of the parsers can resolve it
+     */
+    private fun parseDate(dateValue: String, parserIndexes: IntArray): TemporalAccessor? {
+        for (index in parserIndexes) {
+            try {
+                return dateParsers[index].parse(dateValue)
+            } catch (_: DateTimeException) {
+                // not a valid date for this format, for example the 13th month, so try the next one
             }
-            throw DateTimeParseException("Unable to parse $dateValue.", dateValue, 0, t)
         }
+        return null
+    }
+
+    /**
+     * The shape of a date [value], which is the value with all its digits replaced by zeros.  Whether a format
+     * matches the syntax of a value only depends on its shape.
+     */
+    private fun dateShape(value: String): String {
+        val shape = CharArray(value.length)
+        for (i in value.indices) {
+            val c = value[i]
+            shape[i] = if (c in '0'..'9') '0' else c
+        }
+        return String(shape)
+    }
+
+    /**
+     * Check if [value] has the syntax of this formatter, without resolving the date and without throwing.
+     */
+    private fun DateTimeFormatter.matches(value: String): Boolean {
+        val position = ParsePosition(0)
+        return parseUnresolved(value, position) != null && position.errorIndex < 0 && position.index == value.length
     }
 
+    /**
+     * Get the cached formatter for [pattern].
+     */
+    private fun formatterFor(pattern: String, locale: Locale? = null): DateTimeFormatter =
+        formattersByPattern.computeIfAbsent(if (locale == null) pattern else "$pattern|$locale") {
+            if (locale == null) DateTimeFormatter.ofPattern(pattern) else DateTimeFormatter.ofPattern(pattern, locale)
+        }
+
+    private fun parseBestAllowedDate(dateValue: String, formatter: DateTimeFormatter): TemporalAccessor =
+        formatter.parseBest(
+            dateValue,
+            OffsetDateTime::from,
+            ZonedDateTime::from,
+            LocalDateTime::from,
+            LocalDate::from,
+            Instant::from
+        )
+
     /** Parse the date according to the single pattern passed in, or return null */
     fun parseDate(dateValue: String, formatString: String): TemporalAccessor? = try {
-            DateTimeFormatter.ofPattern(formatString)
-                .parseBest(
-                    dateValue,
-                    OffsetDateTime::from,
-                    ZonedDateTime::from,
-                    LocalDateTime::from,
-                    LocalDate::from,
-                    Instant::from
-                )
+            val formatter = formatterFor(formatString)
+            if (formatter.matches(dateValue)) parseBestAllowedDate(dateValue, formatter) else null
         } catch (_: Throwable) {
             null
         }
@@ -352,46 +454,48 @@ object DateUtilities {
      * @return [OffsetDateTime] the best parsed datetime value
      */
     fun getDateTime(cleanedFormattedValue: String, format: String?): OffsetDateTime {
-        val dateTime = try {
+        // A pattern is only tried if the value matches its syntax, so no exceptions are thrown for the patterns
+        // that cannot apply
+        val formatter = formatterFor(format ?: datetimePattern, Locale.ENGLISH)
+        val dateTime = tryParse(cleanedFormattedValue, DateTimeFormatter.ISO_OFFSET_DATE_TIME) {
             // Try an ISO pattern
-            OffsetDateTime.parse(cleanedFormattedValue)
-        } catch (e: DateTimeParseException) {
-            null
-        } ?: try {
+            OffsetDateTime.parse(it)
+        } ?: tryParse(cleanedFormattedValue, formatter) {
             // Try a HL7 pattern
-            val formatter = DateTimeFormatter.ofPattern(format ?: datetimePattern, Locale.ENGLISH)
-            OffsetDateTime.parse(cleanedFormattedValue, formatter)
-        } catch (e: DateTimeParseException) {
-            null
-        } ?: try {
+            OffsetDateTime.parse(it, formatter)
+        } ?: tryParse(cleanedFormattedValue, dateFormatter) {
             // Try to parse using a LocalDate pattern assuming it is in our canonical dateFormatter. Central timezone.
-            val date = LocalDate.parse(cleanedFormattedValue, dateFormatter)
-            OffsetDateTime.of(date, LocalTime.of(0, 0), Environment.rsTimeZone)
-        } catch (e: DateTimeParseException) {
-            null
-        } ?: try {
+            OffsetDateTime.of(LocalDate.parse(it, dateFormatter), LocalTime.of(0, 0), Environment.rsTimeZone)
+        } ?: tryParse(cleanedFormattedValue, formatter) {
             // Try to parse using a LocalDate pattern, assuming it follows a non-canonical format value.
             // Example: 'yyyy-mm-dd' - the incoming data is a Date, but not our canonical date format.
-            val formatter = DateTimeFormatter.ofPattern(format ?: datetimePattern, Locale.ENGLISH)
-            val date = LocalDate.parse(cleanedFormattedValue, formatter)
-            OffsetDateTime.of(date, LocalTime.of(0, 0), Environment.rsTimeZone)
-        } catch (e: DateTimeParseException) {
-            null
-        } ?: try {
-            getBestDateTime(cleanedFormattedValue)
-        } catch (e: DateTimeParseException) {
-            null
-        } catch (e: DateTimeException) {
-            null
-        } ?: try {
+            OffsetDateTime.of(LocalDate.parse(it, formatter), LocalTime.of(0, 0), Environment.rsTimeZone)
+        }
+
+        return dateTime ?: try {
             getBestDateTime(cleanedFormattedValue)
         } catch (e: DateTimeParseException) {
             throw DateTimeParseException(e.message, e.parsedString, e.errorIndex)
         } catch (e: DateTimeException) {
             throw DateTimeException(e.message)
         }
+    }
 
-        return dateTime
+    /**
+     * Parse [value] with [parse] if it matches the syntax of [formatter].
+     * @return the parsed value or null if the value does not match or is not a valid date
+     */
+    private fun tryParse(
+        value: String,
+        formatter: DateTimeFormatter,
+        parse: (String) -> OffsetDateTime,
+    ): OffsetDateTime? {
+        if (!formatter.matches(value)) return null
+        return try {
+            parse(value)
+        } catch (e: DateTimeParseException) {
+            null
+        }
     }
 
     /**
@@ -65,6 +65,7 @@ object ReportFileApiFilters : ApiFilters<ReportFileRecord, ReportFileApiFilter<*
  * @param sortDirection the direction of the ordering clause
  * @param page the page of results to fetch
  * @param limit the number of results to fetch
+ * @param cursor the next cursor from a previous search to read the page after, instead of using the page
  */
 class ReportFileApiSearch internal constructor(
     override val filters: List<ReportFileApiFilter<*>>,
@@ -72,10 +73,12 @@ class ReportFileApiSearch internal constructor(
     override val sortDirection: SortDirection = SortDirection.DESC,
     page: Int = 1,
     limit: Int = 25,
+    cursor: String? = null,
 ) : ApiSearch<ReportFilePojo, ReportFileRecord, ReportFileApiFilter<*>>(
     ReportFilePojo::class.java,
     page,
-    limit
+    limit,
+    cursor
 ) {
 
     /** Converts a [ReportFileApiFilter] into a JOOQ condition */
@@ -121,7 +124,8 @@ class ReportFileApiSearch internal constructor(
                 sortParameter = sortProperty,
                 sortDirection = rawApiSearch.sort?.direction ?: SortDirection.DESC,
                 page = rawApiSearch.pagination.page,
-                limit = rawApiSearch.pagination.limit
+                limit = rawApiSearch.pagination.limit,
+                cursor = rawApiSearch.pagination.cursor
             )
         }
     }
@@ -22,4 +22,15 @@ class AzureSchemaServiceProvider(val blobConnectionInfo: BlobAccess.BlobContaine
             throw SchemaException("Cannot read $schemaUri")
         }
     }
-}
\ No newline at end of file
+
+    override fun getVersion(schemaUri: URI): String {
+        try {
+            return BlobAccess.getBlobETag(
+                "${blobConnectionInfo.getBlobEndpoint()}${schemaUri.path}",
+                blobConnectionInfo
+            )
+        } catch (e: Exception) {
+            throw SchemaException("Cannot read $schemaUri")
+        }
+    }
+}
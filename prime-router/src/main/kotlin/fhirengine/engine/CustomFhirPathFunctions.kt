@@ -8,8 +8,10 @@ import gov.cdc.prime.router.Metadata
 import gov.cdc.prime.router.common.DateUtilities
 import gov.cdc.prime.router.common.NPIUtilities
 import gov.cdc.prime.router.fhirengine.translation.hl7.SchemaException
+import gov.cdc.prime.router.metadata.FipsCountyIndex
 import gov.cdc.prime.router.metadata.GeoData
 import gov.cdc.prime.router.metadata.LivdLookup
+import gov.cdc.prime.router.metadata.ZipCodeStateIndex
 import org.hl7.fhir.r4.fhirpath.FHIRPathUtilityClasses.FunctionDetails
 import org.hl7.fhir.r4.model.Base
 import org.hl7.fhir.r4.model.Device
@@ -337,8 +339,7 @@ class CustomFhirPathFunctions : FhirPathFunctions {
         parameters: MutableList<MutableList<Base>>?,
         metadata: Metadata = Metadata.getInstance(),
     ): MutableList<Base> {
-        val lookupTable = metadata.findLookupTable(name = "fips-county")
-        var filters = lookupTable?.FilterBuilder() ?: error("Could not find table fips-county")
+        val lookupTable = metadata.findLookupTable(name = "fips-county") ?: error("Could not find table fips-county")
 
         // it says it cannot be null, but it can
         if (parameters == null || parameters.first().isNullOrEmpty()) {
@@ -346,15 +347,13 @@ class CustomFhirPathFunctions : FhirPathFunctions {
         }
 
         val county = parameters.first().first().primitiveValue() ?: return mutableListOf(StringType(""))
-        filters = filters.equalsIgnoreCase("County", county)
 
         // it says it cannot be null, but it can
         if (parameters[1].isNullOrEmpty()) {
             return mutableListOf(StringType(county))
         }
         val state = parameters[1].first().primitiveValue() ?: return mutableListOf(StringType(county))
-        filters = filters.equalsIgnoreCase("State", state.uppercase())
-        val result = filters.findSingleResult("FIPS")
+        val result = FipsCountyIndex.get(lookupTable).getFips(state, county)
         return if (!result.isNullOrBlank()) {
             mutableListOf(StringType(result))
         } else {
@@ -371,14 +370,9 @@ class CustomFhirPathFunctions : FhirPathFunctions {
         focus: MutableList<Base>,
         metadata: Metadata = Metadata.getInstance(),
     ): MutableList<Base> {
-        val lookupTable = metadata.findLookupTable("zip-code-data")
-        var filters = lookupTable?.FilterBuilder() ?: error("Could not find table zip-code-data")
+        val lookupTable = metadata.findLookupTable("zip-code-data") ?: error("Could not find table zip-code-data")
 
         val zipCode = focus[0].primitiveValue().substringBefore("-")
-        filters = filters.isEqualTo("zipcode", zipCode)
-        val result = filters.findAllUnique("state_abbr")
-
-        val stateList = result.joinToString(",")
-        return mutableListOf(StringType(stateList))
+        return mutableListOf(StringType(ZipCodeStateIndex.get(lookupTable).getStates(zipCode)))
     }
 }
\ No newline at end of file
@@ -613,12 +613,15 @@ class FHIRConverter(
      *
      * @param rawReport the string to convert into FHIR bundles
      * @param validator instance of a validator to use for each parsed FHIR bundle
+     * @param translator the translator used to convert each parsed message, which the benchmarks set since the
+     * default catchall configuration is read relative to the working directory
      *
      * @return the [IProcessedItem] produced from the raw report
      */
-    private fun getBundlesFromRawHL7(
+    fun getBundlesFromRawHL7(
         rawReport: String,
         validator: IItemValidator,
+        translator: HL7toFhirTranslator = HL7toFhirTranslator.getHL7ToFhirTranslatorInstance(),
     ): List<IProcessedItem<Message>> {
         val itemStream =
             Hl7InputStreamMessageStringIterator(rawReport.byteInputStream()).asSequence()
@@ -629,7 +632,7 @@ class FHIRConverter(
         return maybeParallelize(itemStream.size, itemStream.stream(), "Generating FHIR bundles in").map { item ->
             parseHL7Item(item)
         }.map { item ->
-            validateAndConvertHL7Item(item, validator)
+            validateAndConvertHL7Item(item, validator, translator)
         }.collect(Collectors.toList())
     }
 
@@ -651,11 +654,12 @@ class FHIRConverter(
     private fun validateAndConvertHL7Item(
         item: ProcessedHL7Item,
         validator: IItemValidator,
+        translator: HL7toFhirTranslator,
     ): ProcessedHL7Item = if (item.parsedItem != null) {
         val validationResult = validator.validate(item.parsedItem)
         if (validationResult.isValid()) {
             try {
-                val bundle = HL7toFhirTranslator.getHL7ToFhirTranslatorInstance().translate(item.parsedItem)
+                val bundle = translator.translate(item.parsedItem)
                 item.setBundle(bundle)
             } catch (ex: Exception) {
                 item.setConversionError(
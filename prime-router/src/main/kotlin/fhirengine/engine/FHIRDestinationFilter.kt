@@ -30,7 +30,6 @@ import gov.cdc.prime.router.azure.observability.event.IReportStreamEventService
 import gov.cdc.prime.router.azure.observability.event.ReportStreamEventName
 import gov.cdc.prime.router.azure.observability.event.ReportStreamEventProperties
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
-import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathUtils
 import gov.cdc.prime.router.fhirengine.utils.FhirTranscoder
 import gov.cdc.prime.router.logging.LogMeasuredTime
 import gov.cdc.prime.router.report.ReportService
@@ -59,7 +58,7 @@ class FHIRDestinationFilter(
     override val taskAction: TaskAction = TaskAction.destination_filter
 
     internal fun findTopicReceivers(topic: Topic): List<Receiver> =
-        settings.receivers.filter { it.customerStatus != CustomerStatus.INACTIVE && it.topic == topic }
+        settings.findReceivers(topic).filter { it.customerStatus != CustomerStatus.INACTIVE }
 
     /**
      * Accepts a [message] in internal FHIR format
@@ -114,22 +113,23 @@ class FHIRDestinationFilter(
             val bundle = FhirTranscoder.decode(fhirJson)
             val bodyString = FhirTranscoder.encode(bundle)
 
-            // get the receivers that this bundle should go to
-            val receivers = findTopicReceivers(queueMessage.topic).filter { receiver ->
-                receiver.jurisdictionalFilter.all { filter ->
-                    FhirPathUtils.evaluateCondition(
-                        CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions()),
-                        bundle,
-                        bundle,
-                        bundle,
-                        filter
-                    )
-                }
-            }
+            // get the receivers that this bundle should go to. The filter expressions are shared by all bundles, so
+            // they are compiled once by FhirPathUtils and only evaluated here, and only for the receivers whose
+            // jurisdictions can match the bundle.  The index is shared until the receiver settings change.
+            val filterContext = CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions())
+            val receivers = ReceiverJurisdictionIndex.forReceivers(findTopicReceivers(queueMessage.topic))
+                .findReceivers(bundle, filterContext)
 
             // check if there are any receivers
             if (receivers.isNotEmpty()) {
                 logger.info("Routing to receiver filter queue for ${receivers.size} receiver(s)")
+                // every receiver gets the same bundle, so it is stored once and referenced by all their reports
+                val blobInfo = BlobAccess.uploadBodyByDigest(
+                    MimeFormat.FHIR,
+                    bodyString.toByteArray(),
+                    queueMessage.blobSubFolderName,
+                    Event.EventAction.RECEIVER_ENRICHMENT
+                )
                 return receivers.flatMap { receiver ->
                     val report = Report(
                         MimeFormat.FHIR,
@@ -164,14 +164,6 @@ class FHIRDestinationFilter(
                         emptyList()
                     )
 
-                    // upload new copy to blobstore
-                    val blobInfo = BlobAccess.uploadBody(
-                        MimeFormat.FHIR,
-                        bodyString.toByteArray(),
-                        report.id.toString(),
-                        queueMessage.blobSubFolderName,
-                        nextEvent.eventAction
-                    )
                     report.bodyURL = blobInfo.blobUrl
                     // ensure tracking is set
                     actionHistory.trackCreatedReport(nextEvent, report, blobInfo = blobInfo)
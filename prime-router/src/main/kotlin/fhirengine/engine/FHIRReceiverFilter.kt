@@ -293,10 +293,11 @@ class FHIRReceiverFilter(
         filters: List<String>,
         filterType: String,
     ): FhirExpressionEvaluationResult {
+        val filterContext = CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions())
         val filtersEvaluated = filters.map { filter ->
             Pair(
                 FhirPathUtils.evaluateCondition(
-                    CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions()),
+                    filterContext,
                     bundle,
                     bundle,
                     bundle,
@@ -36,6 +36,7 @@ import gov.cdc.prime.router.fhirengine.config.HL7TranslationConfig
 import gov.cdc.prime.router.fhirengine.translation.hl7.FhirToHl7Context
 import gov.cdc.prime.router.fhirengine.translation.hl7.FhirToHl7Converter
 import gov.cdc.prime.router.fhirengine.translation.hl7.FhirTransformer
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.HL7ConverterSchema
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.HL7Utils.defaultHl7EncodingFiveChars
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.HL7Utils.defaultHl7EncodingFourChars
@@ -53,6 +54,7 @@ import java.time.OffsetDateTime
  * [db] mockable database access
  * [blob] mockable blob storage
  * [queue] mockable azure queue
+ * [translationCache] HL7 translations shared by the receivers of a bundle
  */
 class FHIRTranslator(
     metadata: Metadata = Metadata.getInstance(),
@@ -62,6 +64,7 @@ class FHIRTranslator(
     azureEventService: AzureEventService = AzureEventServiceImpl(),
     reportService: ReportService = ReportService(),
     reportStreamEventService: IReportStreamEventService,
+    private val translationCache: TranslationCache = sharedTranslationCache,
 ) : FHIREngine(metadata, settings, db, blob, azureEventService, reportService, reportStreamEventService) {
     /**
      * Accepts a [FhirTranslateQueueMessage] [message] and, based on its parameters, sends a report to the next pipeline
@@ -158,7 +161,17 @@ class FHIRTranslator(
         logger.trace("Preparing to send translated message")
         val originalReport = reportService.getRootReport(message.reportId)
         val bundle = FhirTranscoder.decode(BlobAccess.downloadBlob(message.blobURL, message.digest))
-        val bodyBytes = getByteArrayFromBundle(receiver, bundle)
+        val bodyBytes = when (receiver.format) {
+            // receivers with the same schema and settings get the same translation of the same bundle
+            MimeFormat.HL7, MimeFormat.HL7_BATCH -> translationCache.getOrTranslate(
+                message.topic,
+                message.digest,
+                receiver,
+                getHL7Schema(receiver)
+            ) { getByteArrayFromBundle(receiver, bundle) }
+
+            else -> getByteArrayFromBundle(receiver, bundle)
+        }
 
         val (report, event, blobInfo) = Report.generateReportAndUploadBlob(
             Event.EventAction.BATCH,
@@ -255,10 +268,7 @@ class FHIRTranslator(
         }
 
         val converter = FhirToHl7Converter(
-            SchemaReferenceResolverHelper.retrieveHl7SchemaReference(
-                receiver.schemaName,
-                BlobAccess.BlobContainerMetadata.build("metadata", Environment.get().storageEnvVar)
-            ),
+            getHL7Schema(receiver),
             context = FhirToHl7Context(CustomFhirPathFunctions(), config, CustomTranslationFunctions()),
             errors = mutableListOf(),
             warnings = mutableListOf(),
@@ -277,6 +287,22 @@ class FHIRTranslator(
 
         return hl7Message
     }
+
+    /**
+     * Get the HL7 schema of the [receiver] from the schema cache.
+     */
+    private fun getHL7Schema(receiver: Receiver): HL7ConverterSchema =
+        SchemaReferenceResolverHelper.retrieveHl7SchemaReference(
+            receiver.schemaName,
+            BlobAccess.BlobContainerMetadata.build("metadata", Environment.get().storageEnvVar)
+        )
+
+    companion object {
+        /**
+         * HL7 translations shared by all the translators in this instance.
+         */
+        val sharedTranslationCache = TranslationCache()
+    }
 }
 
 /**
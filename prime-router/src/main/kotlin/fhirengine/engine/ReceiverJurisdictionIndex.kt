@@ -0,0 +1,216 @@
+package gov.cdc.prime.router.fhirengine.engine
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathUtils
+import org.apache.logging.log4j.kotlin.Logging
+import org.hl7.fhir.r4.model.Bundle
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Index of [receivers] by the values their jurisdictional filters require, so routing a bundle only evaluates
+ * the filters of the receivers that can match it.
+ *
+ * Most jurisdictional filters compare a path in the bundle to a literal, like a patient or facility state:
+ *
+ *     (<path>.exists() and <path> = 'CO') or (<otherPath>.exists() and <otherPath> = 'CO')
+ *
+ * Such a filter can only be true if one of its paths has one of its values, so the receiver is indexed by those
+ * paths and values.  Each indexed path is evaluated once per bundle and only the receivers indexed by the values
+ * found, plus the receivers with filters that are not recognized, are candidates.  The candidates still have
+ * all their filters evaluated, so the index never changes which receivers a bundle is routed to.
+ *
+ * Building an index evaluates nothing but still parses every filter, so the index for a list of receivers is shared
+ * by all the bundles routed with the same settings through [forReceivers].
+ */
+class ReceiverJurisdictionIndex(val receivers: List<Receiver>) : Logging {
+    /** A [path] to evaluate against a bundle and the [value] it must have for a filter to be true */
+    internal data class PathValue(val path: String, val value: String)
+
+    /** The receivers indexed by the values of each path */
+    private val receiversByPathValue = mutableMapOf<String, MutableMap<String, MutableList<Receiver>>>()
+
+    /** The receivers without a recognized filter, which are candidates for every bundle */
+    private val unindexedReceivers = mutableListOf<Receiver>()
+
+    init {
+        receivers.forEach { receiver ->
+            val pathValues = receiver.jurisdictionalFilter.firstNotNullOfOrNull { recognizeFilter(it) }
+            if (pathValues == null) {
+                unindexedReceivers.add(receiver)
+            } else {
+                pathValues.forEach { (path, value) ->
+                    receiversByPathValue.getOrPut(path) { mutableMapOf() }.getOrPut(value) { mutableListOf() }
+                        .add(receiver)
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the receivers that [bundle] can be routed to, which are the candidates whose jurisdictional filters are
+     * all true.  The receivers are returned in the same order as [receivers].
+     */
+    fun findReceivers(bundle: Bundle, filterContext: CustomContext): List<Receiver> {
+        val candidates = candidates(bundle, filterContext)
+        return receivers.filter { receiver ->
+            receiver in candidates &&
+                receiver.jurisdictionalFilter.all { filter ->
+                    FhirPathUtils.evaluateCondition(filterContext, bundle, bundle, bundle, filter)
+                }
+        }
+    }
+
+    /**
+     * The receivers whose jurisdictional filters can be true for [bundle].
+     */
+    internal fun candidates(bundle: Bundle, filterContext: CustomContext): Set<Receiver> {
+        val candidates = HashSet<Receiver>(unindexedReceivers)
+        receiversByPathValue.forEach { (path, receiversByValue) ->
+            val values = try {
+                FhirPathUtils.evaluateCompiled(
+                    filterContext,
+                    bundle,
+                    bundle,
+                    FhirPathUtils.compilePath(path, filterContext.customFhirFunctions)
+                ).mapNotNull { it.primitiveValue() }
+            } catch (e: Exception) {
+                // let the full evaluation of the filters report the problem
+                logger.debug("Unable to evaluate $path to find receivers, evaluating all its receivers", e)
+                receiversByValue.values.forEach { candidates.addAll(it) }
+                return@forEach
+            }
+            values.forEach { value -> receiversByValue[value]?.let { candidates.addAll(it) } }
+        }
+        return candidates
+    }
+
+    companion object {
+        /**
+         * Key of a shared index.  The receivers are compared by identity, as a new settings snapshot creates new
+         * receivers, so an index is never used after the settings of its receivers change.
+         */
+        private class ReceiversKey(val receivers: List<Receiver>) {
+            private val hash = receivers.fold(1) { acc, receiver -> 31 * acc + System.identityHashCode(receiver) }
+
+            override fun equals(other: Any?): Boolean = other is ReceiversKey &&
+                other.receivers.size == receivers.size &&
+                receivers.indices.all { receivers[it] === other.receivers[it] }
+
+            override fun hashCode(): Int = hash
+        }
+
+        /** The shared indexes, one per topic for each settings snapshot in use */
+        private val indexes: Cache<ReceiversKey, ReceiverJurisdictionIndex> = CacheBuilder.newBuilder()
+            .maximumSize(32)
+            .build()
+
+        /**
+         * Get the index of [receivers], building it if these receivers were not indexed yet.
+         */
+        fun forReceivers(receivers: List<Receiver>): ReceiverJurisdictionIndex =
+            indexes.get(ReceiversKey(receivers)) { ReceiverJurisdictionIndex(receivers) }
+
+        /**
+         * A path in a FHIR bundle, like Bundle.entry.resource.ofType(Patient).address.state.  Paths with spaces or
+         * quotes are not recognized, so the expression around them stays unambiguous.
+         */
+        private const val pathPattern = """[A-Za-z0-9_%.\[\]()]+"""
+
+        /** `<path>.exists() and <path> = '<value>'` */
+        private val existsAndEqualsRegex = Regex(
+            """^($pathPattern)\.exists\(\)\s+and\s+($pathPattern)\s*=\s*'([^'\\]*)'$"""
+        )
+
+        /** `<path> = '<value>'` */
+        private val equalsRegex = Regex("""^($pathPattern)\s*=\s*'([^'\\]*)'$""")
+
+        /** The recognized filters by their expression, with an empty list for filters that are not recognized */
+        private val recognizedFilters = ConcurrentHashMap<String, List<PathValue>>()
+
+        /**
+         * Recognize a jurisdictional [filter] that is a disjunction of terms that each compare a path to a literal.
+         * @return the paths and values one of which the bundle must have for the filter to be true, or null if the
+         * filter is not recognized
+         */
+        internal fun recognizeFilter(filter: String): List<PathValue>? =
+            recognizedFilters.computeIfAbsent(filter) { expression ->
+                val pathValues = splitTopLevel(expression.trim(), " or ")?.map { term ->
+                    recognizeTerm(unwrap(term.trim())) ?: return@computeIfAbsent emptyList()
+                }
+                pathValues ?: emptyList()
+            }.ifEmpty { null }
+
+        private fun recognizeTerm(term: String): PathValue? {
+            existsAndEqualsRegex.matchEntire(term)?.let { match ->
+                val (existsPath, path, value) = match.destructured
+                return if (existsPath == path) PathValue(path, value) else null
+            }
+            return equalsRegex.matchEntire(term)?.let { match ->
+                val (path, value) = match.destructured
+                PathValue(path, value)
+            }
+        }
+
+        /**
+         * Remove the parentheses around all of [term], if any.
+         */
+        private fun unwrap(term: String): String {
+            var unwrapped = term
+            while (unwrapped.startsWith("(") && closingParenthesis(unwrapped) == unwrapped.length - 1) {
+                unwrapped = unwrapped.substring(1, unwrapped.length - 1).trim()
+            }
+            return unwrapped
+        }
+
+        /**
+         * The index of the parenthesis that closes the one at the start of [text], or -1.
+         */
+        private fun closingParenthesis(text: String): Int {
+            var depth = 0
+            var inQuote = false
+            text.forEachIndexed { index, c ->
+                when {
+                    c == '\'' -> inQuote = !inQuote
+                    inQuote -> {}
+                    c == '(' -> depth++
+                    c == ')' -> if (--depth == 0) return index
+                }
+            }
+            return -1
+        }
+
+        /**
+         * Split [text] on the [separator]s that are not within parentheses or quotes.
+         * @return the parts or null if the parentheses or quotes are not balanced
+         */
+        private fun splitTopLevel(text: String, separator: String): List<String>? {
+            val parts = mutableListOf<String>()
+            var depth = 0
+            var inQuote = false
+            var start = 0
+            var index = 0
+            while (index < text.length) {
+                val c = text[index]
+                when {
+                    c == '\'' -> inQuote = !inQuote
+                    inQuote -> {}
+                    c == '(' -> depth++
+                    c == ')' -> if (--depth < 0) return null
+                    depth == 0 && text.startsWith(separator, index) -> {
+                        parts.add(text.substring(start, index))
+                        index += separator.length
+                        start = index
+                        continue
+                    }
+                }
+                index++
+            }
+            if (depth != 0 || inQuote) return null
+            parts.add(text.substring(start))
+            return parts
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package gov.cdc.prime.router.fhirengine.engine
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import gov.cdc.prime.router.CustomerStatus
+import gov.cdc.prime.router.Hl7Configuration
+import gov.cdc.prime.router.MimeFormat
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.USTimeZone
+import gov.cdc.prime.router.common.DateUtilities
+import gov.cdc.prime.router.fhirengine.translation.hl7.config.TruncationConfig
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchema
+import org.apache.logging.log4j.kotlin.Logging
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of the HL7 translations of bundles, so a bundle routed to many receivers that share a translation schema is
+ * only translated once.  Wide fan-out topics send the same bundle to many jurisdictions, each with its own queue
+ * message for the translate step.
+ *
+ * A translation is keyed by the digest of the bundle after the receiver enrichments and filters, the schema and the
+ * receiver settings the HL7 converter reads (see [Key]).  The digest is verified when the bundle is downloaded, so
+ * the same digest means the same bundle.  The schema is compared by identity, as the schema cache returns a new
+ * schema whenever one of its files changed.
+ *
+ * @property maximumBytes the maximum total size of the cached translations
+ * @property expireAfter how long a translation is cached, which only needs to cover a routing fan-out
+ */
+class TranslationCache(
+    val maximumBytes: Long = 64L * 1024 * 1024,
+    val expireAfter: Duration = Duration.ofMinutes(10),
+) : Logging {
+    /**
+     * Key of a translation.  Besides the [bundleDigest] and [schemaName], these are the receiver settings read while
+     * converting a bundle to HL7, which must be added here if the converter starts using more settings.  Settings
+     * like the receiving organization are not used by the converter, so receivers that only differ by those share
+     * translations.
+     */
+    private data class Key(
+        val bundleDigest: String,
+        val schemaName: String,
+        val format: MimeFormat,
+        val isTesting: Boolean,
+        val useTestProcessingMode: Boolean?,
+        val convertTimestampToDateTime: String?,
+        val convertDateTimesToReceiverLocalTime: Boolean?,
+        val convertPositiveDateTimeOffsetToNegative: Boolean?,
+        val useHighPrecisionHeaderDateTimeFormat: Boolean?,
+        val truncationConfig: TruncationConfig?,
+        val dateTimeFormat: DateUtilities.DateTimeFormat?,
+        val timeZone: USTimeZone?,
+    )
+
+    /**
+     * A translated [body] and the [schema] it was translated with.
+     */
+    private class Entry(val schema: ConfigSchema<*, *, *, *>, val body: ByteArray)
+
+    /**
+     * Counters for the cache.  [hits] and [misses] are lookups that did or did not find a translation.
+     */
+    data class Stats(val hits: Long, val misses: Long) {
+        /**
+         * The ratio of lookups that found a translation.
+         */
+        val hitRate: Double get() = if (hits + misses == 0L) 0.0 else hits.toDouble() / (hits + misses)
+    }
+
+    private class Counters {
+        val hits = AtomicLong()
+        val misses = AtomicLong()
+    }
+
+    private val translations: Cache<Key, Entry> = CacheBuilder.newBuilder()
+        .maximumWeight(maximumBytes)
+        .weigher<Key, Entry> { _, entry -> entry.body.size }
+        .expireAfterWrite(expireAfter)
+        .build()
+    private val counters = ConcurrentHashMap<Topic, Counters>()
+
+    /**
+     * Get the translation of the bundle with [bundleDigest] for the [receiver] using [schema], calling [translate]
+     * if it was not translated yet.  Nothing is cached if [translate] throws.  The lookup is counted for [topic].
+     * @return the translated bundle, which must not be modified
+     */
+    fun getOrTranslate(
+        topic: Topic,
+        bundleDigest: String,
+        receiver: Receiver,
+        schema: ConfigSchema<*, *, *, *>,
+        translate: () -> ByteArray,
+    ): ByteArray {
+        val key = key(bundleDigest, receiver)
+        val topicCounters = counters.computeIfAbsent(topic) { Counters() }
+        val entry = translations.getIfPresent(key)
+        if (entry != null && entry.schema === schema) {
+            topicCounters.hits.incrementAndGet()
+            logger.debug(
+                "Reused the translation of $bundleDigest with ${receiver.schemaName} for ${receiver.fullName}, " +
+                    "hit rate for ${topic.jsonVal} is ${stats(topic).hitRate}"
+            )
+            return entry.body
+        }
+        topicCounters.misses.incrementAndGet()
+        return translate().also { translations.put(key, Entry(schema, it)) }
+    }
+
+    /**
+     * The counters for lookups of [topic].
+     */
+    fun stats(topic: Topic): Stats = counters[topic]?.let { Stats(it.hits.get(), it.misses.get()) } ?: Stats(0, 0)
+
+    /**
+     * The counters for each topic looked up so far.
+     */
+    fun stats(): Map<Topic, Stats> = counters.keys.associateWith { stats(it) }
+
+    /**
+     * Remove all the translations from the cache.  The counters are not reset.
+     */
+    fun invalidateAll() = translations.invalidateAll()
+
+    private fun key(bundleDigest: String, receiver: Receiver): Key {
+        val hl7Configuration = receiver.translation as? Hl7Configuration
+        return Key(
+            bundleDigest,
+            receiver.schemaName,
+            receiver.format,
+            receiver.customerStatus == CustomerStatus.TESTING,
+            hl7Configuration?.useTestProcessingMode,
+            hl7Configuration?.convertTimestampToDateTime,
+            hl7Configuration?.convertDateTimesToReceiverLocalTime,
+            hl7Configuration?.convertPositiveDateTimeOffsetToNegative,
+            hl7Configuration?.useHighPrecisionHeaderDateTimeFormat,
+            hl7Configuration?.truncationConfig,
+            receiver.dateTimeFormat,
+            receiver.timeZone
+        )
+    }
+}
@@ -375,6 +375,8 @@ class TranslationSchemaManager : Logging {
             "".toByteArray(),
             destinationBlobContainerMetadata
         )
+        // The synced schemas replace any that were cached
+        SchemaReferenceResolverHelper.schemaCache.invalidateAll()
     }
 
     /**
@@ -392,6 +394,8 @@ class TranslationSchemaManager : Logging {
         val blobs =
             BlobAccess.listBlobs(schemaType.directory, blobContainerInfo, false)
         val inputs = blobs.filter { it.currentBlobItem.name.contains("/input.") }
+        // Validate the schemas as they are now rather than a previously cached version
+        SchemaReferenceResolverHelper.schemaCache.invalidateAll()
 
         return inputs.map { currentInput ->
             val inputDirectoryPath =
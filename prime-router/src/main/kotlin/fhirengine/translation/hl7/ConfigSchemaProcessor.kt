@@ -1,7 +1,10 @@
 package gov.cdc.prime.router.fhirengine.translation.hl7
 
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaCompiler
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElement
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElementPlan
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CompiledFhirPath
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathUtils
 import org.apache.logging.log4j.kotlin.Logging
@@ -34,6 +37,12 @@ abstract class ConfigSchemaProcessor<
 
     abstract fun checkForEquality(converted: Converted, expectedOutput: Converted): Boolean
 
+    /**
+     * The compiler of the plans for the schema elements, which must be shared by all the processors of a type so
+     * each element is only compiled once.
+     */
+    protected abstract val compiler: ConfigSchemaCompiler<SchemaElement, *>
+
     /**
      *
      * Accepts an input value and applies the schema to it returning the converted value
@@ -58,8 +67,8 @@ abstract class ConfigSchemaProcessor<
     ): Base? {
         var retVal: Base? = null
         run findValue@{
-            element.value?.forEach {
-                val value = if (it.isBlank()) {
+            compiler.plan(element).values.forEach {
+                val value = if (it.expression.isBlank()) {
                     emptyList()
                 } else {
                     FhirPathUtils.evaluate(context, focusResource, bundle, it)
@@ -108,6 +117,27 @@ abstract class ConfigSchemaProcessor<
         return resourceList
     }
 
+    /**
+     * Determine the focus resource from the compiled [resource] using [bundle] and the [previousFocusResource].
+     * @return a list of focus resources containing at least one resource.  Multiple resources are returned for collections
+     */
+    internal fun getFocusResources(
+        resource: CompiledFhirPath?,
+        bundle: Bundle,
+        previousFocusResource: Base,
+        context: CustomContext,
+    ): List<Base> = when {
+            resource == null -> listOf(previousFocusResource)
+
+            // Sibling elements often have the same focus resources, like the patient or an observation
+            context.evaluationCache != null ->
+                context.evaluationCache.evaluate(resource.expression, previousFocusResource, context) {
+                    FhirPathUtils.evaluate(context, previousFocusResource, bundle, resource)
+                }
+
+            else -> FhirPathUtils.evaluate(context, previousFocusResource, bundle, resource)
+        }
+
     /**
      * Test if an [element] can be evaluated based on the [element]'s condition.  Use the [bundle], [schemaResource] and [focusResource] * to evaluate the condition expression.
      * @return true if the condition expression evaluates to a boolean or if the condition expression is empty, false otherwise
@@ -118,12 +148,23 @@ abstract class ConfigSchemaProcessor<
         focusResource: Base,
         schemaResource: Base,
         context: CustomContext,
-    ): Boolean = element.condition?.let {
+    ): Boolean = canEvaluate(compiler.plan(element), bundle, focusResource, schemaResource, context)
+
+    /**
+     * Test if an element can be evaluated based on the condition in its [plan].  See [canEvaluate].
+     */
+    internal fun canEvaluate(
+        plan: ConfigSchemaElementPlan,
+        bundle: Bundle,
+        focusResource: Base,
+        schemaResource: Base,
+        context: CustomContext,
+    ): Boolean = plan.condition?.let {
             try {
                 FhirPathUtils.evaluateCondition(context, focusResource, schemaResource, bundle, it)
             } catch (e: SchemaException) {
                 logger.warn(
-                    "Condition for element ${element.name} did not evaluate to a boolean type, " +
+                    "Condition for element ${plan.name} did not evaluate to a boolean type, " +
                         "so the condition failed. ${e.message}"
                 )
                 false
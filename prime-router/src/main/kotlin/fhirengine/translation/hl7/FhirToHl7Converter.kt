@@ -5,11 +5,14 @@ import ca.uhn.hl7v2.model.Message
 import ca.uhn.hl7v2.util.Terser
 import fhirengine.translation.hl7.utils.FhirPathFunctions
 import gov.cdc.prime.router.fhirengine.translation.hl7.config.ContextConfig
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaCompiler
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElementPlan
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElementProcessingException
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.ConverterSchemaElement
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.HL7ConverterSchema
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.ConstantSubstitutor
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathEvaluationCache
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirPathUtils
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.HL7Utils
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.HL7Utils.encodePreserveEncodingChars
@@ -43,6 +46,15 @@ class FhirToHl7Converter(
 ),
 Logging {
 
+    override val compiler: ConfigSchemaCompiler<ConverterSchemaElement, ConverterSchemaElementPlan>
+        get() = elementCompiler
+
+    /**
+     * The counters of the FHIR path evaluations memoized by the last call to [process].
+     */
+    var evaluationStats: FhirPathEvaluationCache.Stats? = null
+        private set
+
     /**
      * Convert the given [bundle] to an HL7 message.
      * @return the HL7 message
@@ -53,13 +65,29 @@ Logging {
         val message = HL7Utils.getMessageInstance(schemaRef.hl7Class!!)
 
         terser = Terser(message)
+        // The bundle is not changed by the conversion, so its constants and focus resources can be memoized
+        val evaluationCache = FhirPathEvaluationCache()
         try {
-            processSchema(schemaRef, input, input)
+            processSchema(
+                schemaRef,
+                input,
+                input,
+                CustomContext(
+                    input, input,
+                    customFhirFunctions = context?.fhirFunctions,
+                    config = context?.config,
+                    translationFunctions = context?.translationFunctions,
+                    evaluationCache = evaluationCache
+                )
+            )
         } catch (e: Exception) {
             if (e.message != null) {
                 errors.add(e.message!!)
             }
         }
+        val stats = evaluationCache.stats()
+        evaluationStats = stats
+        logger.debug("Memoized ${stats.hits} FHIR path evaluations and did ${stats.misses}")
         return message
     }
 
@@ -80,8 +108,8 @@ Logging {
     ): String {
         var retVal = ""
         run findValue@{
-            element.value?.forEach {
-                val value = if (it.isBlank()) {
+            compiler.plan(element).values.forEach {
+                val value = if (it.expression.isBlank()) {
                     ""
                 } else {
                     try {
@@ -114,19 +142,14 @@ Logging {
         schema: HL7ConverterSchema,
         bundle: Bundle,
         schemaResource: Base,
-        context: CustomContext = CustomContext(
-            bundle, bundle,
-            customFhirFunctions = this.context?.fhirFunctions,
-            config = this.context?.config,
-            translationFunctions = this.context?.translationFunctions
-        ),
+        context: CustomContext,
         debug: Boolean = false,
     ) {
         val logLevel = if (debug) Level.INFO else Level.DEBUG
         logger.log(logLevel, "Processing schema: ${schema.name} with ${schema.elements.size} elements")
         // Add any schema level constants to the context
         // We need to create a new context, so constants exist only within their specific schema tree
-        val schemaContext = CustomContext.addConstants(schema.constants, context)
+        val schemaContext = compiler.constants(schema).addTo(context)
 
         schema.elements.forEach { element ->
             try {
@@ -150,12 +173,13 @@ Logging {
     ) {
         val logLevel = if (element.debug || debug) Level.INFO else Level.DEBUG
         logger.trace("Started processing of element ${element.name}...")
+        val plan = compiler.plan(element)
         // Add any element level constants to the context
-        val elementContext = CustomContext.addConstants(element.constants, context)
+        val elementContext = plan.constants.addTo(context)
         var debugMsg = "Processed element name: ${element.name}, required: ${element.required}, "
 
         // First we need to resolve a resource value if available.
-        val focusResources = getFocusResources(element.resource, bundle, schemaResource, elementContext)
+        val focusResources = getFocusResources(plan.resource, bundle, schemaResource, elementContext)
         if (focusResources.isEmpty() && element.required == true) {
             // There are no sources to parse, but the element was required
             throw RequiredElementException(element)
@@ -175,7 +199,7 @@ Logging {
                     elementContext
                 )
             }
-            if (canEvaluate(element, bundle, focusResource, schemaResource, indexContext)) {
+            if (canEvaluate(plan, bundle, focusResource, schemaResource, indexContext)) {
                 when {
                     // If this is a schema then process it.
                     element.schemaRef != null -> {
@@ -228,8 +252,12 @@ Logging {
             // The value is empty, but the element was required
             throw RequiredElementException(element)
         }
-        element.hl7Spec.forEach { rawHl7Spec ->
-            val resolvedHl7Spec = constantSubstitutor.replace(rawHl7Spec, context)
+        compiler.plan(element).hl7Specs.forEach { hl7Spec ->
+            val resolvedHl7Spec = if (hl7Spec.usesConstants) {
+                constantSubstitutor.replace(hl7Spec.spec, context)
+            } else {
+                hl7Spec.spec
+            }
             try {
                 val maybeTruncatedValue = context.translationFunctions?.maybeTruncateHL7Field(
                     value,
@@ -266,6 +294,27 @@ Logging {
             }
         }
     }
+
+    companion object {
+        /**
+         * The compiler of the converter schema elements, shared by all the converters.
+         */
+        private val elementCompiler = ConfigSchemaCompiler(::ConverterSchemaElementPlan)
+    }
+}
+
+/**
+ * The compiled form of a converter schema [element], which also knows which of its HL7 specs use constants.
+ */
+class ConverterSchemaElementPlan(element: ConverterSchemaElement) : ConfigSchemaElementPlan(element) {
+    /**
+     * An HL7 [spec] of the element.  Only the specs that [usesConstants] need to be resolved for each value.
+     */
+    class Hl7Spec(val spec: String) {
+        val usesConstants = spec.contains("%{")
+    }
+
+    val hl7Specs = element.hl7Spec.map { Hl7Spec(it) }
 }
 
 /**
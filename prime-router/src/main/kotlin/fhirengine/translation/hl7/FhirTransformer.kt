@@ -1,10 +1,15 @@
 package gov.cdc.prime.router.fhirengine.translation.hl7
 
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
 import fhirengine.engine.CustomFhirPathFunctions
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaCompiler
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElementPlan
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaElementProcessingException
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.fhirTransform.FhirTransformSchema
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.fhirTransform.FhirTransformSchemaElement
 import gov.cdc.prime.router.fhirengine.translation.hl7.schema.fhirTransform.FhirTransformSchemaElementAction
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CompiledFhirPath
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirBundleUtils
 import gov.cdc.prime.router.fhirengine.translation.hl7.utils.FhirBundleUtils.deleteResource
@@ -29,9 +34,8 @@ class FhirTransformer(
         FhirTransformSchema,
         FhirTransformSchemaElement
     >(schemaRef, errors, warnings) {
-    private val extensionRegex = """^extension\(["'](?<extensionUrl>[^'"]+)["']\)""".toRegex()
-    private val valueXRegex = Regex("""value[A-Z][a-z]*""")
-    private val indexRegex = Regex("""(?<child>.*)\[%?(?<indexVar>[0-9A-Za-z]*)\]""")
+    override val compiler: ConfigSchemaCompiler<FhirTransformSchemaElement, FhirTransformSchemaElementPlan>
+        get() = elementCompiler
 
     /**
      * Transform the given [bundle]. The bundle passed in will be updated directly, and will also be returned.
@@ -60,7 +64,7 @@ class FhirTransformer(
         logger.log(logLevel, "Processing schema: ${schema.name} with ${schema.elements.size} elements")
         // Add any schema level constants to the context
         // We need to create a new context, so constants exist only within their specific schema tree
-        val schemaContext = CustomContext.addConstants(schema.constants, context)
+        val schemaContext = compiler.constants(schema).addTo(context)
 
         schema.elements.forEach { element ->
             try {
@@ -84,12 +88,13 @@ class FhirTransformer(
     ) {
         val logLevel = if (element.debug || debug) Level.INFO else Level.DEBUG
         logger.trace("Started processing of element ${element.name}...")
+        val plan = compiler.plan(element)
         // Add any element level constants to the context
-        val elementContext = CustomContext.addConstants(element.constants, context)
+        val elementContext = plan.constants.addTo(context)
         var debugMsg = "Processed element name: ${element.name}, required: ${element.required}, "
 
         // First we need to resolve a resource value if available.
-        val focusResources = getFocusResources(element.resource, bundle, focusResource, elementContext)
+        val focusResources = getFocusResources(plan.resource, bundle, focusResource, elementContext)
         if (focusResources.isEmpty() && element.required == true) {
             // There are no sources to parse, but the element was required
             throw RequiredElementException(element)
@@ -99,7 +104,7 @@ class FhirTransformer(
 
         val warnings = mutableListOf<String>()
         val eligibleFocusResources =
-            focusResources.filter { canEvaluate(element, bundle, it, focusResource, elementContext) }
+            focusResources.filter { canEvaluate(plan, bundle, it, focusResource, elementContext) }
         when (element.action) {
             FhirTransformSchemaElementAction.SET -> {
                 eligibleFocusResources.forEach { singleFocusResource ->
@@ -143,8 +148,8 @@ class FhirTransformer(
             }
             FhirTransformSchemaElementAction.APPEND -> {
                 val existing =
-                    if (element.appendToProperty != null) {
-                        FhirPathUtils.evaluate(elementContext, bundle, bundle, element.appendToProperty).size
+                    if (plan.appendToProperty != null) {
+                        FhirPathUtils.evaluate(elementContext, bundle, bundle, plan.appendToProperty).size
                     } else {
                         0
                     }
@@ -247,6 +252,36 @@ class FhirTransformer(
      * @return [ElementInformation]
      */
     private fun extractChildProperty(rawProperty: String, context: CustomContext, parent: Base): ElementInformation {
+        val childProperty = childProperties.getIfPresent(rawProperty) ?: parseChildProperty(rawProperty).also {
+            childProperties.put(rawProperty, it)
+        }
+        val propertyString = childProperty.propertyString
+        val property: Property? = parent.getNamedProperty(propertyString)
+        val indexVariable = childProperty.indexVariable
+        val index = if (indexVariable?.all { it.isDigit() } == true) {
+            indexVariable.toInt()
+        } else {
+            context.constants[indexVariable]?.toInt()
+        }
+
+        return ElementInformation(
+            rawProperty,
+            propertyString,
+            property,
+            childProperty.extensionUrl,
+            index
+        )
+    }
+
+    /**
+     * The parts of a [rawProperty] of a FHIR path that do not depend on the bundle.
+     */
+    private class ChildProperty(val propertyString: String, val extensionUrl: String?, val indexVariable: String?)
+
+    /**
+     * Parse a part of a FHIR path expression, see [extractChildProperty].
+     */
+    private fun parseChildProperty(rawProperty: String): ChildProperty {
         val indexMatch = indexRegex.find(rawProperty)
         val valueMatch = valueXRegex.find(rawProperty)
         val extensionMatch = extensionRegex.find(rawProperty)
@@ -262,21 +297,10 @@ class FhirTransformer(
         if (propertyString == null) {
             throw SchemaException("Could not part child property from $rawProperty")
         }
-        val property: Property? = propertyString.let { parent.getNamedProperty(propertyString) }
-        val extensionUrl = extensionMatch?.groups?.get("extensionUrl")?.value
-        val indexVariable = indexMatch?.groups?.get("indexVar")?.value
-        val index = if (indexVariable?.all { it.isDigit() } == true) {
-            indexVariable.toInt()
-        } else {
-            context.constants[indexVariable]?.toInt()
-        }
-
-        return ElementInformation(
-            rawProperty,
+        return ChildProperty(
             propertyString,
-            property,
-            extensionUrl,
-            index
+            extensionMatch?.groups?.get("extensionUrl")?.value,
+            indexMatch?.groups?.get("indexVar")?.value
         )
     }
 
@@ -533,6 +557,7 @@ class FhirTransformer(
             logger.error("bundleProperty was not set.")
             throw SchemaException("bundleProperty was not set.")
         }
+        bundlePropertyParts.getIfPresent(bundleProperty)?.let { return it }
 
         val pathParts = splitBundlePropertyPath(bundleProperty)
         if (pathParts.isEmpty()) {
@@ -550,6 +575,7 @@ class FhirTransformer(
                 " '${pathParts.last()}'."
             )
         }
+        bundlePropertyParts.put(bundleProperty, pathParts)
         return pathParts
     }
 
@@ -560,15 +586,15 @@ class FhirTransformer(
     internal fun splitBundlePropertyPath(bundleProperty: String): List<String> {
         val parts: MutableList<String> = mutableListOf()
         var foundParenthesis = false
-        var part = ""
-        bundleProperty.toList().forEach {
+        val part = StringBuilder()
+        bundleProperty.forEach {
             // Only add parts if outside parenthesis. To make sure things
             // like extensions are not split up
             if (!foundParenthesis && it == '.') {
-                parts += part
-                part = ""
+                parts += part.toString()
+                part.setLength(0)
             } else {
-                part += it
+                part.append(it)
                 if (it == '(') {
                     foundParenthesis = true
                 } else if (foundParenthesis && it == ')') {
@@ -576,8 +602,8 @@ class FhirTransformer(
                 }
             }
         }
-        if (part != "") {
-            parts += part
+        if (part.isNotEmpty()) {
+            parts += part.toString()
         }
 
         // This is an invalid path if a closing parenthesis is not found
@@ -587,4 +613,41 @@ class FhirTransformer(
             parts
         }
     }
-}
\ No newline at end of file
+
+    companion object {
+        private val extensionRegex = """^extension\(["'](?<extensionUrl>[^'"]+)["']\)""".toRegex()
+        private val valueXRegex = Regex("""value[A-Z][a-z]*""")
+        private val indexRegex = Regex("""(?<child>.*)\[%?(?<indexVar>[0-9A-Za-z]*)\]""")
+
+        /**
+         * The compiler of the transform schema elements, shared by all the transformers.
+         */
+        private val elementCompiler = ConfigSchemaCompiler(::FhirTransformSchemaElementPlan)
+
+        /** The maximum number of bundle properties and their parts to keep parsed */
+        private const val maximumParsedProperties = 10_000L
+
+        /**
+         * The valid bundle properties of the schemas split into their path parts.  Bounded, as schemas are reloaded
+         * when they change and a property may come from any version of a schema.
+         */
+        private val bundlePropertyParts: Cache<String, List<String>> = CacheBuilder.newBuilder()
+            .maximumSize(maximumParsedProperties)
+            .build()
+
+        /**
+         * The parsed parts of the bundle properties of the schemas.
+         */
+        private val childProperties: Cache<String, ChildProperty> = CacheBuilder.newBuilder()
+            .maximumSize(maximumParsedProperties)
+            .build()
+    }
+}
+
+/**
+ * The compiled form of a transform schema [element].
+ */
+class FhirTransformSchemaElementPlan(element: FhirTransformSchemaElement) : ConfigSchemaElementPlan(element) {
+    /** The FHIR path to the existing values that appended values are added after */
+    val appendToProperty = element.appendToProperty?.let { CompiledFhirPath(it) }
+}
@@ -0,0 +1,85 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.schema
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import gov.cdc.prime.router.fhirengine.translation.hl7.SchemaException
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CompiledFhirPath
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+
+/**
+ * The [constants] of a schema or schema element, with their names checked once instead of every time they are
+ * added to a context.
+ */
+class ConstantsPlan(constants: Map<String, String>) {
+    val constants: Map<String, String> = constants.toMap()
+
+    private val namesAreValid = try {
+        CustomContext.checkConstantNames(this.constants)
+        true
+    } catch (e: SchemaException) {
+        false
+    }
+
+    /**
+     * Add the constants to the [context].
+     * @return a new context with the constants added or the [context] if there are no constants
+     * @throws SchemaException if a constant uses a reserved name
+     */
+    fun addTo(context: CustomContext): CustomContext = if (namesAreValid) {
+            CustomContext.addCheckedConstants(constants, context)
+        } else {
+            CustomContext.addConstants(constants, context)
+        }
+}
+
+/**
+ * The compiled form of a schema [element]: the parts of the element that are the same for every bundle, prepared
+ * once so they are not parsed again for every bundle and focus resource.  A plan does not keep a reference to its
+ * element, so the [ConfigSchemaCompiler] can drop the plan once the element is no longer used.
+ */
+open class ConfigSchemaElementPlan(element: ConfigSchemaElement<*, *, *, *>) {
+    /** The name of the element */
+    val name = element.name
+
+    /** The element level constants */
+    val constants = ConstantsPlan(element.constants)
+
+    /** The FHIR path to the focus resources, or null if the focus resource of the schema is used */
+    val resource = element.resource?.takeIf { it.isNotEmpty() }?.let { CompiledFhirPath(it) }
+
+    /** The condition of the element, or null if the element is always evaluated */
+    val condition = element.condition?.let { CompiledFhirPath(it) }
+
+    /** The FHIR paths to the values of the element, in order of preference */
+    val values = element.value?.map { CompiledFhirPath(it) } ?: emptyList()
+}
+
+/**
+ * Compiles the elements of merged schemas into plans with [compileElement] the first time they are processed.
+ *
+ * Schemas are loaded once and shared by all the processors, so plans are looked up by the identity of the schemas
+ * and elements, and are dropped once a reloaded schema replaced their schemas and elements.  Plans do not refer to
+ * their schemas or elements, which would keep them in use.  Merged schemas are not changed after they are loaded,
+ * so the plans do not need to be invalidated.
+ */
+class ConfigSchemaCompiler<SchemaElement : ConfigSchemaElement<*, *, *, *>, Plan : ConfigSchemaElementPlan>(
+    private val compileElement: (SchemaElement) -> Plan,
+) {
+    private val schemaConstants: Cache<ConfigSchema<*, *, *, *>, ConstantsPlan> =
+        CacheBuilder.newBuilder().weakKeys().build()
+
+    private val elementPlans: Cache<SchemaElement, Plan> = CacheBuilder.newBuilder().weakKeys().build()
+
+    /**
+     * Get the plan for the schema level constants of the [schema].
+     */
+    fun constants(schema: ConfigSchema<*, *, *, *>): ConstantsPlan = schemaConstants.getIfPresent(schema)
+        ?: ConstantsPlan(schema.constants).also { schemaConstants.put(schema, it) }
+
+    /**
+     * Get the plan for the [element], compiling it the first time.  Two threads may compile the same element at
+     * the same time, which is harmless as the plans are the same.
+     */
+    fun plan(element: SchemaElement): Plan = elementPlans.getIfPresent(element)
+        ?: compileElement(element).also { elementPlans.put(element, it) }
+}
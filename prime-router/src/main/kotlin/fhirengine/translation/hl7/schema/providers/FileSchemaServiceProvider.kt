@@ -13,4 +13,6 @@ class FileSchemaServiceProvider : SchemaServiceProvider {
         if (!file.canRead()) throw SchemaException("Cannot read ${file.absolutePath}")
         return file.inputStream()
     }
-}
\ No newline at end of file
+
+    override fun getVersion(schemaUri: URI): String = File(schemaUri).lastModified().toString()
+}
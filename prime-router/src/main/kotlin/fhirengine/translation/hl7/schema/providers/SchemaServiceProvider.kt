@@ -6,4 +6,11 @@ import java.net.URI
 interface SchemaServiceProvider {
     fun getProviderType(): String
     fun getInputStream(schemaUri: URI): InputStream
-}
\ No newline at end of file
+
+    /**
+     * Get a version marker for the schema at [schemaUri] that changes when the schema changes, such as a blob ETag
+     * or a file modification time.
+     * @return the version or null if the schema cannot change while the application is running
+     */
+    fun getVersion(schemaUri: URI): String? = null
+}
@@ -0,0 +1,37 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils
+
+import fhirengine.translation.hl7.utils.FhirPathFunctions
+import org.hl7.fhir.r4.fhirpath.ExpressionNode
+
+/**
+ * A FHIR path [expression] from a schema that keeps its compiled form, so evaluating it for every bundle and focus
+ * resource does not look it up in the [FhirPathUtils.expressionRegistry] again.
+ *
+ * The expression is compiled the first time it is evaluated, as the custom FHIR functions it can use are only known
+ * then, and compilation errors are left to the evaluation like for expressions that are not compiled in advance.
+ */
+class CompiledFhirPath(val expression: String) {
+    /**
+     * The last compiled expression and the type of custom FHIR functions it was compiled with.
+     */
+    private class Compiled(val functionsType: Class<*>?, val expressionNode: ExpressionNode?)
+
+    @Volatile
+    private var compiled: Compiled? = null
+
+    /**
+     * Compile the expression that uses [customFhirFunctions].
+     * @return the compiled expression or null if the expression is blank
+     * @throws FHIRLexerException if the expression is invalid
+     */
+    fun compile(customFhirFunctions: FhirPathFunctions?): ExpressionNode? {
+        val functionsType = customFhirFunctions?.javaClass
+        val current = compiled
+        if (current != null && current.functionsType == functionsType) return current.expressionNode
+        return FhirPathUtils.compilePath(expression, customFhirFunctions).also {
+            compiled = Compiled(functionsType, it)
+        }
+    }
+
+    override fun toString(): String = expression
+}
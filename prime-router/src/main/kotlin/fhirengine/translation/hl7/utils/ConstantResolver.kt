@@ -23,7 +23,8 @@ import java.lang.NumberFormatException
 /**
  * Context used for resolving [constants] and custom FHIR functions. The class is for us to add our customer function
  * [customFhirFunctions], customer [config] object for us to pass any object to our custom translation function
- * [translationFunctions] (eg, handler function to do custom translation).
+ * [translationFunctions] (eg, handler function to do custom translation).  The [evaluationCache], if any, memoizes
+ * the constants and focus resources evaluated while the bundle is processed.
  */
 data class CustomContext(
     val bundle: Bundle,
@@ -32,6 +33,7 @@ data class CustomContext(
     val customFhirFunctions: FhirPathFunctions? = null,
     val config: ContextConfig? = null,
     val translationFunctions: TranslationFunctions? = Hl7TranslationFunctions(),
+    val evaluationCache: FhirPathEvaluationCache? = null,
 ) {
     companion object {
         val appendToIndexKey = "appendToIndex"
@@ -58,6 +60,29 @@ data class CustomContext(
             previousContext: CustomContext,
         ): CustomContext = addConstants(constants, previousContext, true)
 
+        /**
+         * Add [constants] that were already checked with [checkConstantNames] to a context.
+         * @return a new context with the [constants] added or the existing context if no new constants are specified
+         */
+        internal fun addCheckedConstants(
+            constants: Map<String, String>,
+            previousContext: CustomContext,
+        ): CustomContext = addConstants(constants, previousContext, false)
+
+        /**
+         * Check that none of the [constants] use a reserved name.
+         * @throws SchemaException if a constant uses a reserved name
+         */
+        fun checkConstantNames(constants: Map<String, String>) {
+            if (constants.keys.any { reservedConstantNames.contains(it) }) {
+                throw SchemaException(
+                    """Constants contained reserved name,
+                    reserved constants are: $reservedConstantNames
+                    """.trimMargin()
+                )
+            }
+        }
+
         private fun addConstants(
             constants: Map<String, String>,
             previousContext: CustomContext,
@@ -65,20 +90,15 @@ data class CustomContext(
         ): CustomContext = if (constants.isEmpty()) {
                 previousContext
             } else {
-                if (checkReservedNames && constants.keys.any { reservedConstantNames.contains(it) }) {
-                    throw SchemaException(
-                        """Constants contained reserved name,
-                        reserved constants are: $reservedConstantNames
-                        """.trimMargin()
-                    )
-                }
+                if (checkReservedNames) checkConstantNames(constants)
                 val newContext = CustomContext(
                     previousContext.bundle,
                     previousContext.focusResource,
-                    previousContext.constants.toMap().toMutableMap(), // This makes a copy of the map
+                    LinkedHashMap(previousContext.constants), // This makes a copy of the map
                     previousContext.customFhirFunctions,
                     previousContext.config,
-                    previousContext.translationFunctions
+                    previousContext.translationFunctions,
+                    previousContext.evaluationCache
                 )
                 constants.forEach { newContext.constants[it.key] = it.value }
                 newContext
@@ -196,25 +216,38 @@ class FhirPathCustomResolver(private val customFhirFunctions: FhirPathFunctions?
         // Evaluate the constant before it is used.
         return if (constantValue.isNullOrBlank()) {
             emptyList()
+        } else if (appContext.evaluationCache != null) {
+            // The engine gets its own copy of the values, so it cannot change the memoized values
+            appContext.evaluationCache.evaluate(constantValue, appContext.focusResource, appContext) {
+                evaluateConstant(name, constantValue, appContext)
+            }.toMutableList()
         } else {
-            val values = FhirPathUtils.evaluate(appContext, appContext.focusResource, appContext.bundle, constantValue)
-            if (values.isEmpty()) {
-                emptyList()
-            } else {
-                logger.trace("Evaluated FHIR Path constant $name to: $values")
-                // Convert string constants that are whole integers to Integer type to facilitate math operations
-                values.map {
-                    if (it is StringType && StringUtils.isNumeric(it.primitiveValue())) {
-                        try {
-                            IntegerType(it.primitiveValue())
-                        } catch (e: IllegalArgumentException) {
-                            // fallback to string; see https://github.com/CDCgov/prime-reportstream/issues/12609
-                            if (e.cause !is NumberFormatException) throw e
-                            it
-                        }
-                    } else {
+            evaluateConstant(name, constantValue, appContext)
+        }
+    }
+
+    /**
+     * Evaluate the FHIR path [constantValue] of the constant [name] in the [appContext].
+     * @return the values of the constant
+     */
+    private fun evaluateConstant(name: String, constantValue: String, appContext: CustomContext): List<Base> {
+        val values = FhirPathUtils.evaluate(appContext, appContext.focusResource, appContext.bundle, constantValue)
+        return if (values.isEmpty()) {
+            emptyList()
+        } else {
+            logger.trace("Evaluated FHIR Path constant $name to: $values")
+            // Convert string constants that are whole integers to Integer type to facilitate math operations
+            values.map {
+                if (it is StringType && StringUtils.isNumeric(it.primitiveValue())) {
+                    try {
+                        IntegerType(it.primitiveValue())
+                    } catch (e: IllegalArgumentException) {
+                        // fallback to string; see https://github.com/CDCgov/prime-reportstream/issues/12609
+                        if (e.cause !is NumberFormatException) throw e
                         it
                     }
+                } else {
+                    it
                 }
             }
         }
@@ -0,0 +1,71 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils
+
+import org.hl7.fhir.r4.model.Base
+
+/**
+ * Memo of FHIR path evaluations for the processing of a single bundle, used to evaluate the constants and the focus
+ * resources of schema elements once instead of for every element and every reference to a constant.
+ *
+ * An evaluation is keyed by its expression, the identity of the focus resource it starts from and, for expressions
+ * that use constants, the identity of the constants of the context and of the context focus resource the constants
+ * are resolved against.  Contexts get a new map of constants whenever their constants change, like when a
+ * resourceIndex or append index is added, so evaluations in a different constant scope are never shared.
+ *
+ * The memo assumes the bundle is not changed while it is in use, so it must only be used while reading a bundle
+ * and discarded once the bundle is processed.  It is not thread safe.
+ */
+class FhirPathEvaluationCache {
+    /**
+     * Key of an evaluation, comparing the resources and constants by identity.
+     */
+    private class Key(val expression: String, val focusResource: Base, val constants: Any?, val contextResource: Any?) {
+        override fun equals(other: Any?): Boolean = other is Key && expression == other.expression &&
+            focusResource === other.focusResource && constants === other.constants &&
+            contextResource === other.contextResource
+
+        override fun hashCode(): Int = (
+            (expression.hashCode() * 31 + System.identityHashCode(focusResource)) * 31 +
+                System.identityHashCode(constants)
+            ) * 31 + System.identityHashCode(contextResource)
+    }
+
+    /**
+     * Counters for the memo.  [hits] are the evaluations that were saved and [misses] the ones that were done.
+     */
+    data class Stats(val hits: Long, val misses: Long)
+
+    private val evaluations = HashMap<Key, List<Base>>()
+    private var hits = 0L
+    private var misses = 0L
+
+    /**
+     * Get the values of the [expression] starting at the [focusResource] in the [context], calling [evaluate] if
+     * the expression was not evaluated in the same scope before.  Nothing is stored if [evaluate] throws.
+     * @return the values of the expression
+     */
+    fun evaluate(
+        expression: String,
+        focusResource: Base,
+        context: CustomContext,
+        evaluate: () -> List<Base>,
+    ): List<Base> {
+        val usesConstants = expression.contains('%')
+        val key = Key(
+            expression,
+            focusResource,
+            if (usesConstants) context.constants else null,
+            if (usesConstants) context.focusResource else null
+        )
+        evaluations[key]?.let {
+            hits++
+            return it
+        }
+        misses++
+        return evaluate().also { evaluations[key] = it }
+    }
+
+    /**
+     * The counters for this memo.
+     */
+    fun stats(): Stats = Stats(hits, misses)
+}
@@ -0,0 +1,76 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import fhirengine.translation.hl7.utils.FhirPathFunctions
+import org.hl7.fhir.r4.fhirpath.ExpressionNode
+
+/**
+ * Bounded registry of compiled FHIR path expressions.
+ *
+ * Schema elements and receiver filters use the same set of expressions for every bundle, so each expression is parsed
+ * into an [ExpressionNode] once and reused.  Expressions are keyed by their text and the type of custom FHIR functions
+ * used to parse them, as the custom functions that are available determine if an expression is valid.
+ *
+ * A parsed [ExpressionNode] is not modified by evaluation, so the same node can be shared between threads.
+ *
+ * @property maximumSize the maximum number of compiled expressions to keep before evicting the least recently used
+ */
+class FhirPathExpressionRegistry(val maximumSize: Long = DEFAULT_MAXIMUM_SIZE) {
+
+    /**
+     * Key for a compiled [expression] given the [functionsType] it was parsed with.
+     */
+    private data class Key(val expression: String, val functionsType: String?)
+
+    /**
+     * Counters for the registry.  [hits] and [misses] are lookups that did or did not find a compiled expression,
+     * [evictions] are the expressions removed because the registry was full and [size] is the current number of
+     * compiled expressions.
+     */
+    data class Stats(val hits: Long, val misses: Long, val evictions: Long, val size: Long)
+
+    private val cache: Cache<Key, ExpressionNode> = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .recordStats()
+        .build()
+
+    /**
+     * Get the compiled [expression] that uses [customFhirFunctions], calling [compiler] to parse the expression if it
+     * has not been compiled before.  Exceptions thrown by the [compiler] are passed on to the caller and nothing
+     * is stored for the expression.
+     * @return the compiled expression or null if the [expression] is blank
+     */
+    fun compile(
+        expression: String?,
+        customFhirFunctions: FhirPathFunctions?,
+        compiler: (String) -> ExpressionNode?,
+    ): ExpressionNode? {
+        if (expression.isNullOrBlank()) return null
+        val key = Key(expression, customFhirFunctions?.javaClass?.name)
+        // Two threads may compile the same expression at the same time. That is harmless as the results are the same
+        // and avoids wrapping the parser exceptions as a loading cache would.
+        return cache.getIfPresent(key) ?: compiler(expression)?.also { cache.put(key, it) }
+    }
+
+    /**
+     * The current counters for the registry.
+     */
+    fun stats(): Stats {
+        val stats = cache.stats()
+        return Stats(stats.hitCount(), stats.missCount(), stats.evictionCount(), cache.size())
+    }
+
+    /**
+     * Remove all compiled expressions.  The counters are not reset.
+     */
+    fun clear() = cache.invalidateAll()
+
+    companion object {
+        /**
+         * Default number of compiled expressions to keep. This comfortably covers the expressions used by all the
+         * schemas and filters in use.
+         */
+        const val DEFAULT_MAXIMUM_SIZE = 10_000L
+    }
+}
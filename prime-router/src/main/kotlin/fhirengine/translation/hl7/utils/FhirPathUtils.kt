@@ -3,6 +3,7 @@ package gov.cdc.prime.router.fhirengine.translation.hl7.utils
 import ca.uhn.fhir.context.FhirContext
 import ca.uhn.fhir.model.api.TemporalPrecisionEnum
 import ca.uhn.hl7v2.model.v251.datatype.DT
+import fhirengine.translation.hl7.utils.FhirPathFunctions
 import gov.cdc.prime.router.fhirengine.config.HL7TranslationConfig
 import gov.cdc.prime.router.fhirengine.translation.hl7.HL7ConversionException
 import gov.cdc.prime.router.fhirengine.translation.hl7.SchemaException
@@ -34,18 +35,27 @@ object FhirPathUtils : Logging {
     private val fhirContext = FhirContext.forR4()
 
     /**
-     * The FHIR path engine
+     * FHIR path engines, one per thread.
      *
-     * For each call to the functions in this object, the path engine evaluation context is being
-     * set to support additional constants outside the base specification.
-     *
-     * Be very careful that you set this to the appropriate value for your use case!
-     *
-     * ex: pathEngine.hostServices = FhirPathCustomResolver(appContext?.customFhirFunctions)
+     * The engine resolves constants and custom functions through its host services, which the functions in this
+     * object set for the duration of each call.  Each thread has its own engine, so conversion, filtering and
+     * translation can run on parallel streams without racing on the host services of a shared engine.
+     */
+    private val threadPathEngines: ThreadLocal<FHIRPathEngine> = ThreadLocal.withInitial {
+        FHIRPathEngine(HapiWorkerContext(fhirContext, fhirContext.validationSupport)).apply {
+            hostServices = FhirPathCustomResolver()
+        }
+    }
+
+    /**
+     * The FHIR path engine for the current thread.  Do not share the returned engine with other threads.
      *
-     * TODO: Think about changing this pattern to avoid future bugs if a new function was written incorrectly
+     * The functions in this object set the evaluation context of the engine for each call and restore it afterward.
+     * Code that sets the evaluation context directly must do the same, as the engine is reused by later calls on
+     * the same thread.
      */
-    val pathEngine = FHIRPathEngine(HapiWorkerContext(fhirContext, fhirContext.validationSupport))
+    val pathEngine: FHIRPathEngine
+        get() = threadPathEngines.get()
 
     /**
      * The HL7 time format. We are converting from a FHIR TimeType which does not include a time zone.
@@ -53,9 +63,10 @@ object FhirPathUtils : Logging {
      */
     private val timeFormatter: DateTimeFormatter = DateTimeFormatter.ofPattern("HHmmss.SSSS")
 
-    init {
-        pathEngine.hostServices = FhirPathCustomResolver()
-    }
+    /**
+     * Registry of the compiled expressions used by [evaluate], [evaluateCondition] and [evaluateString].
+     */
+    val expressionRegistry = FhirPathExpressionRegistry()
 
     /**
      * Parse a FHIR path from a [fhirPath] string.  This will also provide some format validation.
@@ -68,6 +79,19 @@ object FhirPathUtils : Logging {
             pathEngine.parse(fhirPath)
         }
 
+    /**
+     * Compile a FHIR path [expression] that uses the [customFhirFunctions] and store it in the [expressionRegistry],
+     * or get the previously compiled expression.
+     * @return the compiled FHIR path or null if the [expression] is blank
+     * @throws FHIRLexerException if the path is invalid
+     */
+    fun compilePath(
+        expression: String?,
+        customFhirFunctions: FhirPathFunctions? = null,
+    ): ExpressionNode? = expressionRegistry.compile(expression, customFhirFunctions) { path ->
+            withEvaluationContext(FhirPathCustomResolver(customFhirFunctions)) { engine -> engine.parse(path) }
+        }
+
     /**
      * Is the provided path a valid FHIR path given the evaluation context?
      */
@@ -88,15 +112,35 @@ object FhirPathUtils : Logging {
         focusResource: Base,
         bundle: Bundle,
         expression: String,
+    ): List<Base> = evaluate(appContext, focusResource, bundle, expression) {
+            compilePath(expression, appContext?.customFhirFunctions)
+        }
+
+    /**
+     * Gets a FHIR base resource from the schema [path] using [bundle] and starting from a specific [focusResource].
+     * See [evaluate].
+     */
+    fun evaluate(
+        appContext: CustomContext?,
+        focusResource: Base,
+        bundle: Bundle,
+        path: CompiledFhirPath,
+    ): List<Base> = evaluate(appContext, focusResource, bundle, path.expression) {
+            path.compile(appContext?.customFhirFunctions)
+        }
+
+    /**
+     * Evaluates the [expression] compiled by [compile].  See [evaluate].
+     */
+    private fun evaluate(
+        appContext: CustomContext?,
+        focusResource: Base,
+        bundle: Bundle,
+        expression: String,
+        compile: () -> ExpressionNode?,
     ): List<Base> {
         val retVal = try {
-            pathEngine.hostServices = FhirPathCustomResolver(appContext?.customFhirFunctions)
-            val expressionNode = parsePath(expression)
-            if (expressionNode == null) {
-                emptyList()
-            } else {
-                pathEngine.evaluate(appContext, focusResource, bundle, bundle, expressionNode)
-            }
+            evaluateCompiled(appContext, focusResource, bundle, compile())
         } catch (e: FHIRLexer.FHIRLexerException) {
             logger.error("FHIRLexerException: ${e.message}. Trying to evaluate: $expression.")
             emptyList()
@@ -116,6 +160,25 @@ object FhirPathUtils : Logging {
         return retVal
     }
 
+    /**
+     * Gets a FHIR base resource from the compiled [expressionNode] using [bundle] and starting from a specific
+     * [focusResource]. [focusResource] can be the same as [bundle] when starting from the root.
+     * [appContext] provides custom context (e.g. variables) used for the evaluation.
+     * @return the evaluated values or an empty list if there is no expression
+     */
+    fun evaluateCompiled(
+        appContext: CustomContext?,
+        focusResource: Base,
+        bundle: Bundle,
+        expressionNode: ExpressionNode?,
+    ): List<Base> = if (expressionNode == null) {
+            emptyList()
+        } else {
+            withEvaluationContext(FhirPathCustomResolver(appContext?.customFhirFunctions)) { engine ->
+                engine.evaluate(appContext, focusResource, bundle, bundle, expressionNode)
+            }
+        }
+
     /**
      * Gets a boolean result from the given [expression] using [rootResource], [contextResource] (which in most cases is
      * the resource the schema is being evaluated against) and starting from a specific [focusResource].
@@ -131,14 +194,66 @@ object FhirPathUtils : Logging {
         contextResource: Base,
         rootResource: Bundle,
         expression: String,
+    ): Boolean = evaluateCondition(appContext, focusResource, contextResource, rootResource, expression) {
+            compilePath(expression, appContext?.customFhirFunctions)
+        }
+
+    /**
+     * Gets a boolean result from the schema [path] using [rootResource], [contextResource] and starting from a
+     * specific [focusResource].  See [evaluateCondition].
+     */
+    fun evaluateCondition(
+        appContext: CustomContext?,
+        focusResource: Base,
+        contextResource: Base,
+        rootResource: Bundle,
+        path: CompiledFhirPath,
+    ): Boolean = evaluateCondition(appContext, focusResource, contextResource, rootResource, path.expression) {
+            path.compile(appContext?.customFhirFunctions)
+        }
+
+    /**
+     * Gets a boolean result from the [expressionNode] compiled from [expression] using [rootResource],
+     * [contextResource] and starting from a specific [focusResource]. [appContext] provides custom context (e.g.
+     * variables) used for the evaluation.  The source [expression] is used in the log and error messages.
+     * Note that if the [expressionNode] does not evaluate to a boolean then the result is false.
+     * @return true if the expression evaluates to true, otherwise false
+     * @throws SchemaException if the FHIR path does not evaluate to a boolean type or fails to evaluate
+     */
+    fun evaluateCompiledCondition(
+        appContext: CustomContext?,
+        focusResource: Base,
+        contextResource: Base,
+        rootResource: Bundle,
+        expression: String,
+        expressionNode: ExpressionNode,
+    ): Boolean = evaluateCondition(
+            appContext,
+            focusResource,
+            contextResource,
+            rootResource,
+            expression
+        ) { expressionNode }
+
+    /**
+     * Evaluates the condition [expression] compiled by [compile].  See [evaluateCondition].
+     */
+    private fun evaluateCondition(
+        appContext: CustomContext?,
+        focusResource: Base,
+        contextResource: Base,
+        rootResource: Bundle,
+        expression: String,
+        compile: () -> ExpressionNode?,
     ): Boolean {
         val retVal = try {
-            pathEngine.hostServices = FhirPathCustomResolver(appContext?.customFhirFunctions)
-            val expressionNode = parsePath(expression)
+            val expressionNode = compile()
             val value = if (expressionNode == null) {
                 emptyList()
             } else {
-                pathEngine.evaluate(appContext, focusResource, rootResource, contextResource, expressionNode)
+                withEvaluationContext(FhirPathCustomResolver(appContext?.customFhirFunctions)) { engine ->
+                    engine.evaluate(appContext, focusResource, rootResource, contextResource, expressionNode)
+                }
             }
             if (value.size == 1 && value[0].isBooleanPrimitive) {
                 (value[0] as BooleanType).value
@@ -180,14 +295,48 @@ object FhirPathUtils : Logging {
         expression: String,
         element: ConverterSchemaElement? = null,
         constantSubstitutor: ConstantSubstitutor? = null,
+    ): String = evaluateString(
+            appContext,
+            focusResource,
+            bundle,
+            expression,
+            element,
+            constantSubstitutor
+        ) { compilePath(expression, appContext?.customFhirFunctions) }
+
+    /**
+     * Gets a string result from the schema [path] using [bundle] and starting from a specific [focusResource].
+     * See [evaluateString].
+     */
+    fun evaluateString(
+        appContext: CustomContext?,
+        focusResource: Base,
+        bundle: Bundle,
+        path: CompiledFhirPath,
+        element: ConverterSchemaElement? = null,
+        constantSubstitutor: ConstantSubstitutor? = null,
+    ): String = evaluateString(
+            appContext,
+            focusResource,
+            bundle,
+            path.expression,
+            element,
+            constantSubstitutor
+        ) { path.compile(appContext?.customFhirFunctions) }
+
+    /**
+     * Evaluates the [expression] compiled by [compile] to a string.  See [evaluateString].
+     */
+    private fun evaluateString(
+        appContext: CustomContext?,
+        focusResource: Base,
+        bundle: Bundle,
+        expression: String,
+        element: ConverterSchemaElement?,
+        constantSubstitutor: ConstantSubstitutor?,
+        compile: () -> ExpressionNode?,
     ): String {
-        pathEngine.hostServices = FhirPathCustomResolver(appContext?.customFhirFunctions)
-        val expressionNode = parsePath(expression)
-        val evaluated = if (expressionNode == null) {
-            emptyList()
-        } else {
-            pathEngine.evaluate(appContext, focusResource, bundle, bundle, expressionNode)
-        }
+        val evaluated = evaluateCompiled(appContext, focusResource, bundle, compile())
         return when {
             // If we couldn't evaluate the path we should return an empty string
             evaluated.isEmpty() -> ""
@@ -270,21 +419,24 @@ object FhirPathUtils : Logging {
     }
 
     /**
-     * Stores the previous evaluation context in a temporary variable and then
-     * runs the lambda with the new evaluation context.
+     * Stores the previous evaluation context of the current thread's engine in a temporary variable and then
+     * runs the lambda with the engine using the new evaluation context.
      *
-     * After executing the lambda, it will set the evaluation context back to the initial value.
+     * After executing the lambda, it will set the evaluation context back to the initial value. This keeps
+     * nested evaluations, such as constants resolved while evaluating an expression, from changing the context
+     * of the outer evaluation.
      */
     private fun <T> withEvaluationContext(
         evaluationContext: FHIRPathEngine.IEvaluationContext,
-        block: () -> T,
+        block: (FHIRPathEngine) -> T,
     ): T {
-        val previousEvaluationContext = pathEngine.hostServices
-        pathEngine.hostServices = evaluationContext
+        val engine = pathEngine
+        val previousEvaluationContext = engine.hostServices
+        engine.hostServices = evaluationContext
         return try {
-            block()
+            block(engine)
         } finally {
-            pathEngine.hostServices = previousEvaluationContext
+            engine.hostServices = previousEvaluationContext
         }
     }
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package gov.cdc.prime.router.fhirengine.translation.hl7.utils
 
 import ca.uhn.hl7v2.DefaultHapiContext
 import ca.uhn.hl7v2.HL7Exception
+import ca.uhn.hl7v2.HapiContext
 import ca.uhn.hl7v2.model.AbstractMessage
 import ca.uhn.hl7v2.model.Message
 import ca.uhn.hl7v2.model.Segment
@@ -9,6 +10,7 @@ import ca.uhn.hl7v2.util.Terser
 import ca.uhn.hl7v2.validation.impl.ValidationContextFactory
 import fhirengine.utils.ReportStreamCanonicalModelClassFactory
 import org.apache.logging.log4j.kotlin.Logging
+import java.util.concurrent.ConcurrentHashMap
 
 /**
  * Utilities to handle HL7 messages
@@ -25,6 +27,12 @@ object HL7Utils : Logging {
     const val defaultHl7EncodingFourChars = "^~\\&"
     const val defaultHl7EncodingFiveChars = "^~\\&#"
 
+    /**
+     * The HAPI contexts used to create messages, by message class.  Contexts are expensive to create, so they are
+     * created once per message class and shared by all the threads.
+     */
+    private val messageContexts = ConcurrentHashMap<Class<out Message>, HapiContext>()
+
     /**
      * Gets a new object for the given [hl7Class].
      * @return a message object
@@ -35,9 +43,11 @@ object HL7Utils : Logging {
                 // We verify above that we have a valid subclass of Message as required for parsing
                 // but the compiler does not know that, so we have to cast
                 @Suppress("UNCHECKED_CAST")
-                val context =
-                    DefaultHapiContext(ReportStreamCanonicalModelClassFactory(messageClass as Class<out Message>))
-                context.validationContext = ValidationContextFactory.noValidation()
+                val context = messageContexts.computeIfAbsent(messageClass as Class<out Message>) {
+                    DefaultHapiContext(ReportStreamCanonicalModelClassFactory(it)).apply {
+                        validationContext = ValidationContextFactory.noValidation()
+                    }
+                }
                 val message = context.newMessage(messageClass)
                 message
             } else {
@@ -0,0 +1,158 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils.helpers
+
+import gov.cdc.prime.router.azure.BlobAccess
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.providers.SchemaServiceProvider
+import org.apache.logging.log4j.kotlin.Logging
+import java.io.InputStream
+import java.net.URI
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of merged and validated translation schemas keyed by the schema URI.
+ *
+ * Loading a schema reads every file in its tree and `extends` chain, so the cache records a version for each file
+ * read (see [SchemaServiceProvider.getVersion]).  Once [revalidationInterval] has passed since the versions were last
+ * checked, the versions are read again and the schema is reloaded if any of them changed.  Schemas read only from
+ * the classpath never change and are never reloaded.
+ *
+ * Cached schemas are shared by all callers, so they must not be modified after they are loaded.
+ *
+ * @property revalidationInterval how long a schema is used before checking if its files changed
+ * @property clock the clock used to decide when to check the schema files
+ */
+class SchemaCache(
+    val revalidationInterval: Duration = defaultRevalidationInterval,
+    private val clock: Clock = Clock.systemUTC(),
+) : Logging {
+
+    /**
+     * Key for a schema [schemaUri] of type [schemaClass] read using the [blobInfo] connection.
+     */
+    private data class Key(
+        val schemaUri: String,
+        val schemaClass: Class<*>,
+        val blobInfo: BlobAccess.BlobContainerMetadata,
+    )
+
+    /**
+     * A cached [schema], the [versions] of the files that were read to load it and when the versions were
+     * [checkedAt].  Files that cannot change, such as classpath resources, have no version.
+     */
+    private data class Entry(
+        val schema: ConfigSchema<*, *, *, *>,
+        val versions: Map<URI, String>,
+        val checkedAt: Instant,
+    )
+
+    /**
+     * Counters for the cache.  [hits] and [misses] are lookups that did or did not find a current schema,
+     * [reloads] are the misses caused by a changed schema file, and [loadTimeMillis] is the total time spent loading
+     * schemas.
+     */
+    data class Stats(val hits: Long, val misses: Long, val reloads: Long, val loadTimeMillis: Long)
+
+    private val entries = ConcurrentHashMap<Key, Entry>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+    private val reloads = AtomicLong()
+    private val loadTimeMillis = AtomicLong()
+
+    /**
+     * Get the schema [schemaUri] of type [schemaClass] for the [blobInfo] connection, calling [loader] with the
+     * [schemaServiceProviders] to read and merge the schema if it is not cached or any of its files changed.
+     * @return the merged and validated schema
+     */
+    fun <Schema : ConfigSchema<*, *, *, *>> get(
+        schemaUri: String,
+        schemaClass: Class<Schema>,
+        blobInfo: BlobAccess.BlobContainerMetadata,
+        schemaServiceProviders: Map<String, SchemaServiceProvider>,
+        loader: (Map<String, SchemaServiceProvider>) -> Schema,
+    ): Schema {
+        val key = Key(schemaUri, schemaClass, blobInfo)
+        val now = clock.instant()
+        val entry = entries[key]
+        if (entry != null) {
+            if (Duration.between(entry.checkedAt, now) < revalidationInterval) {
+                hits.incrementAndGet()
+                return schemaClass.cast(entry.schema)
+            }
+            if (isCurrent(entry, schemaServiceProviders)) {
+                entries[key] = entry.copy(checkedAt = now)
+                hits.incrementAndGet()
+                return schemaClass.cast(entry.schema)
+            }
+            logger.info("Schema $schemaUri changed since it was loaded, reloading it")
+            reloads.incrementAndGet()
+        }
+        misses.incrementAndGet()
+
+        // Record the version of every file read while loading the schema.  A schema with a file whose version
+        // cannot be read is not cached as there would be no way to tell when it changes.
+        val versions = ConcurrentHashMap<URI, String>()
+        val isCacheable = AtomicBoolean(true)
+        val recordingProviders = schemaServiceProviders.mapValues { (_, provider) ->
+            object : SchemaServiceProvider by provider {
+                override fun getInputStream(schemaUri: URI): InputStream {
+                    try {
+                        provider.getVersion(schemaUri)?.let { versions[schemaUri] = it }
+                    } catch (e: Exception) {
+                        logger.warn("Unable to get the version of schema file $schemaUri", e)
+                        isCacheable.set(false)
+                    }
+                    return provider.getInputStream(schemaUri)
+                }
+            }
+        }
+        val startTime = System.currentTimeMillis()
+        val schema = loader(recordingProviders)
+        val loadTime = System.currentTimeMillis() - startTime
+        loadTimeMillis.addAndGet(loadTime)
+        logger.info("Loaded schema $schemaUri in $loadTime ms")
+
+        if (isCacheable.get()) {
+            entries[key] = Entry(schema, versions.toMap(), now)
+        } else {
+            entries.remove(key)
+        }
+        return schema
+    }
+
+    /**
+     * Check if all the files of the cached [entry] still have the same version.
+     * @return true if no file changed
+     */
+    private fun isCurrent(entry: Entry, schemaServiceProviders: Map<String, SchemaServiceProvider>): Boolean = try {
+            entry.versions.all { (uri, version) -> schemaServiceProviders[uri.scheme]?.getVersion(uri) == version }
+        } catch (e: Exception) {
+            logger.warn("Unable to check the version of schema ${entry.schema.name}", e)
+            false
+        }
+
+    /**
+     * Remove all cached schemas, for example after the schemas were synced.  The counters are not reset.
+     */
+    fun invalidateAll() = entries.clear()
+
+    /**
+     * The current counters for the cache.
+     */
+    fun stats(): Stats = Stats(hits.get(), misses.get(), reloads.get(), loadTimeMillis.get())
+
+    companion object {
+        /**
+         * Environment variable to override the number of seconds between checks for changed schema files.
+         */
+        const val revalidationSecondsEnvVar = "SCHEMA_CACHE_REVALIDATION_SECONDS"
+
+        private val defaultRevalidationInterval: Duration = Duration.ofSeconds(
+            System.getenv(revalidationSecondsEnvVar)?.toLongOrNull() ?: 60
+        )
+    }
+}
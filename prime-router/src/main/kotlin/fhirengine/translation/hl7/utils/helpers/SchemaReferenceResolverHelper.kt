@@ -12,25 +12,44 @@ import gov.cdc.prime.router.fhirengine.translation.hl7.schema.providers.SchemaSe
 
 object SchemaReferenceResolverHelper {
 
+    /**
+     * Merged and validated schemas, shared by every message that uses the same schema.
+     */
+    val schemaCache = SchemaCache()
+
     fun retrieveHl7SchemaReference(schema: String): HL7ConverterSchema =
         retrieveHl7SchemaReference(schema, getBlobConnectionInfo())
 
     fun retrieveHl7SchemaReference(schema: String, blobInfo: BlobAccess.BlobContainerMetadata): HL7ConverterSchema =
-        ConfigSchemaReader.fromFile(
+        schemaCache.get(
             schema,
             HL7ConverterSchema::class.java,
+            blobInfo,
             getSchemaServiceProviders(blobInfo)
-        )
+        ) { schemaServiceProviders ->
+            ConfigSchemaReader.fromFile(
+                schema,
+                HL7ConverterSchema::class.java,
+                schemaServiceProviders
+            )
+        }
 
     fun retrieveFhirSchemaReference(schema: String): FhirTransformSchema =
         retrieveFhirSchemaReference(schema, getBlobConnectionInfo())
 
     fun retrieveFhirSchemaReference(schema: String, blobInfo: BlobAccess.BlobContainerMetadata): FhirTransformSchema =
-        ConfigSchemaReader.fromFile(
+        schemaCache.get(
             schema,
-            schemaClass = FhirTransformSchema::class.java,
+            FhirTransformSchema::class.java,
+            blobInfo,
             getSchemaServiceProviders(blobInfo)
-        )
+        ) { schemaServiceProviders ->
+            ConfigSchemaReader.fromFile(
+                schema,
+                schemaClass = FhirTransformSchema::class.java,
+                schemaServiceProviders
+            )
+        }
 
     fun getBlobConnectionInfo(): BlobAccess.BlobContainerMetadata =
         BlobAccess.BlobContainerMetadata.build(
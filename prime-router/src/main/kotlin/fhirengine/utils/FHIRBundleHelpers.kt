@@ -342,21 +342,16 @@ fun Bundle.handleBirthTime(hl7Message: Message) {
  */
 class FHIRBundleHelpers {
     companion object {
+        /**
+         * The delimiter between the bundles of a fhir+ndjson batch.
+         */
+        const val ndjsonDelimiter = "\n"
+
         /**
          * Returns the given [messages] in fhir+ndjson format, which is generated by putting a new line between each message
          *
          * Each entry in [messages] is assumed to be a single-line string representing a fhir bundle
          */
-        fun batchMessages(messages: List<String>): String {
-            var result = ""
-            messages.forEach {
-                result += if (result.isEmpty()) {
-                    it
-                } else {
-                    "\n$it"
-                }
-            }
-            return result
-        }
+        fun batchMessages(messages: List<String>): String = messages.joinToString(ndjsonDelimiter)
     }
 }
\ No newline at end of file
@@ -34,19 +34,35 @@ object HL7MessageHelpers : Logging {
      * @return a string with the HL7 batch file
      */
     fun batchMessages(hl7RawMsgs: List<String>, receiver: Receiver): String {
+        val builder = StringBuilder()
+        builder.append(batchHeader(hl7RawMsgs.firstOrNull(), receiver))
+        hl7RawMsgs.forEach {
+            builder.append(it)
+            if (!it.endsWith(hl7SegmentDelimiter)) builder.append(hl7SegmentDelimiter)
+        }
+        builder.append(batchTrailer(hl7RawMsgs.size, receiver))
+        return builder.toString()
+    }
+
+    /**
+     * Generate the FHS and BHS segments that start a HL7 Batch file for the given [receiver], using the
+     * [firstMessage] of the batch for the values that are not set in the receiver settings.
+     * @return the segments, or an empty string if the [receiver] does not use batch headers
+     */
+    fun batchHeader(firstMessage: String?, receiver: Receiver): String {
         check(receiver.translation is Hl7Configuration)
-        val useBatchHeaders = receiver.translation.useBatchHeaders
+        if (!receiver.translation.useBatchHeaders) return ""
         // Grab the first message to extract some data if not set in the settings
-        val firstMessage = if (hl7RawMsgs.isNotEmpty()) {
+        val firstMessageTerser = if (firstMessage != null) {
             try {
-                val message = HL7Reader.parseHL7Message(hl7RawMsgs[0])
+                val message = HL7Reader.parseHL7Message(firstMessage)
                 Terser(message)
             } catch (exception: Hl7InputStreamMessageStringIterator.ParseFailureError) {
-                logger.warn("Unable to extract batch header values from HL7: ${hl7RawMsgs[0].take(80)} ...")
+                logger.warn("Unable to extract batch header values from HL7: ${firstMessage.take(80)} ...")
                 HL7Reader.logHL7ParseFailure(exception, actionLogger)
                 null
             } catch (exception: AbstractHL7Exception) {
-                logger.warn("Unable to extract batch header values from HL7: ${hl7RawMsgs[0].take(80)} ...")
+                logger.warn("Unable to extract batch header values from HL7: ${firstMessage.take(80)} ...")
                 HL7Reader.recordError(exception, actionLogger)
                 null
             }
@@ -56,54 +72,52 @@ object HL7MessageHelpers : Logging {
         val time = DTM(null)
         time.setValue(Date())
 
-        val hl7BatchFileHeaderEncodingChar: String? = "${firstMessage?.get("MSH-2") ?: hl7BatchHeaderEncodingChar}"
+        val hl7BatchFileHeaderEncodingChar: String? =
+            "${firstMessageTerser?.get("MSH-2") ?: hl7BatchHeaderEncodingChar}"
 
         // The extraction of these values mimics how the COVID HL7 serializer works
         var sendingApp =
-            "${firstMessage?.get("MSH-3-1") ?: REPORT_STREAM_APPLICATION_NAME}^" +
-                "${firstMessage?.get("MSH-3-2") ?: REPORT_STREAM_UNIVERSAL_ID}^" +
-                "${firstMessage?.get("MSH-3-3") ?: REPORT_STREAM_UNIVERSAL_ID_TYPE}"
-        val receivingApp = receiver.translation.receivingApplicationName ?: firstMessage?.get("MSH-5-1") ?: ""
-        val receivingFacility = receiver.translation.receivingFacilityName ?: firstMessage?.get("MSH-6-1") ?: ""
-        val messageCreateDate = firstMessage?.get("MSH-7") ?: time.value
+            "${firstMessageTerser?.get("MSH-3-1") ?: REPORT_STREAM_APPLICATION_NAME}^" +
+                "${firstMessageTerser?.get("MSH-3-2") ?: REPORT_STREAM_UNIVERSAL_ID}^" +
+                "${firstMessageTerser?.get("MSH-3-3") ?: REPORT_STREAM_UNIVERSAL_ID_TYPE}"
+        val receivingApp = receiver.translation.receivingApplicationName ?: firstMessageTerser?.get("MSH-5-1") ?: ""
+        val receivingFacility = receiver.translation.receivingFacilityName ?: firstMessageTerser?.get("MSH-6-1")
+            ?: ""
+        val messageCreateDate = firstMessageTerser?.get("MSH-7") ?: time.value
 
         val builder = StringBuilder()
-        if (useBatchHeaders) {
-            builder.append(
-                "FHS|$hl7BatchFileHeaderEncodingChar|" +
-                    "$sendingApp|" +
-                    "$sendingApp|" +
-                    "$receivingApp|" +
-                    "$receivingFacility|" +
-                    messageCreateDate
-            )
-            builder.append(hl7SegmentDelimiter)
-            builder.append(
-                "BHS|$hl7BatchFileHeaderEncodingChar|" +
-                    "$sendingApp|" +
-                    "$sendingApp|" +
-                    "$receivingApp|" +
-                    "$receivingFacility|" +
-                    messageCreateDate
-            )
-            builder.append(hl7SegmentDelimiter)
-        }
-
-        hl7RawMsgs.forEach {
-            builder.append(it)
-            if (!it.endsWith(hl7SegmentDelimiter)) builder.append(hl7SegmentDelimiter)
-        }
-
-        if (useBatchHeaders) {
-            builder.append("BTS|${hl7RawMsgs.size}")
-            builder.append(hl7SegmentDelimiter)
-            builder.append("FTS|1")
-            builder.append(hl7SegmentDelimiter)
-        }
-
+        builder.append(
+            "FHS|$hl7BatchFileHeaderEncodingChar|" +
+                "$sendingApp|" +
+                "$sendingApp|" +
+                "$receivingApp|" +
+                "$receivingFacility|" +
+                messageCreateDate
+        )
+        builder.append(hl7SegmentDelimiter)
+        builder.append(
+            "BHS|$hl7BatchFileHeaderEncodingChar|" +
+                "$sendingApp|" +
+                "$sendingApp|" +
+                "$receivingApp|" +
+                "$receivingFacility|" +
+                messageCreateDate
+        )
+        builder.append(hl7SegmentDelimiter)
         return builder.toString()
     }
 
+    /**
+     * Generate the BTS and FTS segments that end a HL7 Batch file of [messageCount] messages for the given
+     * [receiver].
+     * @return the segments, or an empty string if the [receiver] does not use batch headers
+     */
+    fun batchTrailer(messageCount: Int, receiver: Receiver): String {
+        check(receiver.translation is Hl7Configuration)
+        if (!receiver.translation.useBatchHeaders) return ""
+        return "BTS|$messageCount$hl7SegmentDelimiter" + "FTS|1$hl7SegmentDelimiter"
+    }
+
     fun messageCount(rawHl7: String): Int =
         Hl7InputStreamMessageStringIterator(rawHl7.byteInputStream()).asSequence().count()
 }
\ No newline at end of file
@@ -67,38 +67,38 @@ class HL7Reader {
         }
 
         /**
-         * Creates a HAPI context that can be used to parse an HL7 string.  If no configuration is passed, the function
+         * Creates a HAPI context that parses messages into the ReportStream structure [messageClass].
+         */
+        private fun canonicalParsingContext(messageClass: Class<out Message>): HapiContext = DefaultHapiContext(
+                ParserConfiguration(),
+                ValidationContextFactory.noValidation(),
+                ReportStreamCanonicalModelClassFactory(messageClass),
+            )
+
+        /**
+         * The HAPI contexts for the message structures (MSH-9-3) that are parsed into the ReportStream structures.
+         * Contexts are expensive to create and cache the model classes they look up, so they are created once and
+         * shared by all the threads; contexts and the parsers they provide are thread safe.
+         */
+        private val parsingContexts: Map<String, HapiContext> = mapOf(
+            "ORU_R01" to canonicalParsingContext(ORU_R01::class.java),
+            "OML_O21" to canonicalParsingContext(OML_O21::class.java),
+            "ORM_O01" to canonicalParsingContext(ORM_O01::class.java),
+        )
+
+        /**
+         * The HAPI context with the HAPI defaults, shared like the [parsingContexts].
+         */
+        private val defaultParsingContext: HapiContext = DefaultHapiContext(ValidationContextFactory.noValidation())
+
+        /**
+         * Gets the HAPI context that can be used to parse an HL7 string.  If no configuration is passed, the function
          * will return a context with the HAPI defaults which will defer to that library to determine the kind of message
          *
          */
-        private fun getHL7ParsingContext(
+        internal fun getHL7ParsingContext(
             hl7MessageType: HL7MessageType?,
-        ): HapiContext = when (hl7MessageType?.msh93) {
-                "ORU_R01" -> {
-                    DefaultHapiContext(
-                        ParserConfiguration(),
-                        ValidationContextFactory.noValidation(),
-                        ReportStreamCanonicalModelClassFactory(ORU_R01::class.java),
-                    )
-                }
-                "OML_O21" -> {
-                    DefaultHapiContext(
-                        ParserConfiguration(),
-                        ValidationContextFactory.noValidation(),
-                        ReportStreamCanonicalModelClassFactory(OML_O21::class.java),
-                    )
-                }
-                "ORM_O01" -> {
-                    DefaultHapiContext(
-                        ParserConfiguration(),
-                        ValidationContextFactory.noValidation(),
-                        ReportStreamCanonicalModelClassFactory(ORM_O01::class.java),
-                    )
-                }
-                else -> {
-                    DefaultHapiContext(ValidationContextFactory.noValidation())
-                }
-            }
+        ): HapiContext = parsingContexts[hl7MessageType?.msh93] ?: defaultParsingContext
 
         /**
          * Parses just the first line of an HL7 string to determine
@@ -3,6 +3,7 @@ package gov.cdc.prime.router.history.azure
 import gov.cdc.prime.router.azure.DatabaseAccess
 import gov.cdc.prime.router.azure.db.Tables
 import gov.cdc.prime.router.azure.db.Tables.ACTION
+import gov.cdc.prime.router.azure.db.Tables.REPORT_ANCESTOR
 import gov.cdc.prime.router.azure.db.Tables.REPORT_FILE
 import gov.cdc.prime.router.azure.db.Tables.REPORT_LINEAGE
 import gov.cdc.prime.router.azure.db.enums.TaskAction
@@ -143,7 +144,13 @@ class DatabaseSubmissionsAccess(db: DatabaseAccess = BaseEngine.databaseAccessSi
                 logger.warn("Invalid report file lineage with multiple action IDs for parent report $reportId")
                 null
             }
-            if (actionId != null) {
+            if (actionId != null && db.isReportAncestorClosureComplete(txn)) {
+                DSL.using(txn)
+                    .selectDistinct(detailedSelect())
+                    .from(ACTION)
+                    .where(ACTION.ACTION_ID.`in`(reportDescendantActionIds(actionId)))
+                    .fetchInto(klass)
+            } else if (actionId != null) {
                 val cte = reportDescendantExpression(actionId)
                 DSL.using(txn)
                     .withRecursive(cte)
@@ -157,6 +164,32 @@ class DatabaseSubmissionsAccess(db: DatabaseAccess = BaseEngine.databaseAccessSi
             }
         }
 
+    /**
+     * Select the ids of the actions that created the child reports of an action's lineages and all their
+     * descendants, using the report_ancestor closure table.  These are the same actions as the ones found by
+     * [reportDescendantExpression], as a report lineage has the action id of the action that created its child.
+     *
+     * @param actionId the action id attached to the action to find relations for.
+     * @return a select of the action ids of the descendants for the given action id.
+     */
+    private fun reportDescendantActionIds(actionId: Long) = DSL.select(REPORT_FILE.ACTION_ID)
+        .from(REPORT_FILE)
+        .where(
+            REPORT_FILE.REPORT_ID.`in`(
+                DSL.select(REPORT_LINEAGE.CHILD_REPORT_ID)
+                    .from(REPORT_LINEAGE)
+                    .where(REPORT_LINEAGE.ACTION_ID.eq(actionId))
+            ).or(
+                REPORT_FILE.REPORT_ID.`in`(
+                    DSL.select(REPORT_ANCESTOR.REPORT_ID)
+                        .from(REPORT_ANCESTOR)
+                        .join(REPORT_LINEAGE)
+                        .on(REPORT_LINEAGE.CHILD_REPORT_ID.eq(REPORT_ANCESTOR.ANCESTOR_REPORT_ID))
+                        .where(REPORT_LINEAGE.ACTION_ID.eq(actionId))
+                )
+            )
+        )
+
     /**
      * Fetch the details of an action's relations (descendants).
      * This is done through a recursive query on the report_lineage table.
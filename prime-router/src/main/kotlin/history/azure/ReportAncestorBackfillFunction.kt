@@ -0,0 +1,51 @@
+package gov.cdc.prime.router.history.azure
+
+import com.microsoft.azure.functions.annotation.FunctionName
+import com.microsoft.azure.functions.annotation.StorageAccount
+import com.microsoft.azure.functions.annotation.TimerTrigger
+import gov.cdc.prime.router.azure.DatabaseAccess
+import gov.cdc.prime.router.common.BaseEngine
+import org.apache.logging.log4j.kotlin.Logging
+
+/**
+ * Backfills the report_ancestor closure table with the report lineages recorded before it existed.  New lineages
+ * are added to the closure table when they are inserted, and the history queries walk the report lineages until
+ * the backfill is complete.
+ *
+ * @param db database access to backfill
+ * @param batchSize the number of lineages added in each transaction
+ * @param maxBatches the maximum number of batches in one run, so a run stays well within the function timeout
+ */
+class ReportAncestorBackfillFunction(
+    private val db: DatabaseAccess = BaseEngine.databaseAccessSingleton,
+    private val batchSize: Int = 1000,
+    private val maxBatches: Int = 100,
+) : Logging {
+    /**
+     * Adds the next batches of report lineages to the report ancestor closure table, until it is complete.
+     */
+    @FunctionName("report-ancestor-backfill")
+    @StorageAccount("AzureWebJobsStorage")
+    fun run(
+        // run every five minutes (NCRONTAB expression {second} {minute} {hour} {day} {month} {day-of-week})
+        @TimerTrigger(name = "reportAncestorBackfill", schedule = "0 */5 * * * *")
+        @Suppress("UNUSED_PARAMETER")
+        timerInfo: String,
+    ) {
+        logger.info("Backfilled ${backfill()} report lineages into the report ancestor closure table")
+    }
+
+    /**
+     * Adds up to [maxBatches] batches of report lineages to the report ancestor closure table, each in its own
+     * transaction, stopping once the backfill is complete.
+     * @return the number of lineages added
+     */
+    internal fun backfill(): Int {
+        var backfilled = 0
+        var batches = 0
+        while (batches++ < maxBatches && !db.isReportAncestorClosureComplete()) {
+            backfilled += db.transactReturning { txn -> db.backfillReportAncestors(batchSize, txn) }
+        }
+        return backfilled
+    }
+}
@@ -95,10 +95,12 @@ class DeliveryApiSearch(
     override val sortDirection: SortDirection = SortDirection.DESC,
     page: Int = 1,
     limit: Int = 25,
+    cursor: String? = null,
 ) : ApiSearch<Delivery, DeliveryRecord, DeliveryApiSearchFilter<*>>(
     Delivery::class.java,
     page,
-    limit
+    limit,
+    cursor
 ) {
     override fun getCondition(filter: DeliveryApiSearchFilter<*>): Condition = when (filter) {
             is DeliveryApiSearchFilter.Since -> filter.tableField.ge(filter.value)
@@ -137,7 +139,8 @@ class DeliveryApiSearch(
                 sortParameter = sortProperty,
                 sortDirection = rawApiSearch.sort?.direction ?: SortDirection.DESC,
                 page = rawApiSearch.pagination.page,
-                limit = rawApiSearch.pagination.limit
+                limit = rawApiSearch.pagination.limit,
+                cursor = rawApiSearch.pagination.cursor
             )
         }
     }
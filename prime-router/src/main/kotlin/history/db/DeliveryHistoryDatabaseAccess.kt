@@ -130,10 +130,12 @@ class DeliveryHistoryApiSearch(
     override val sortDirection: SortDirection = SortDirection.DESC,
     page: Int = 1,
     limit: Int = 25,
+    cursor: String? = null,
 ) : ApiSearch<DeliveryHistory, DeliveryHistoryRecord, DeliveryHistoryApiSearchFilter<*>>(
     DeliveryHistory::class.java,
     page,
-    limit
+    limit,
+    cursor
 ) {
     override fun getCondition(filter: DeliveryHistoryApiSearchFilter<*>): Condition = when (filter) {
         is DeliveryHistoryApiSearchFilter.Since -> filter.tableField.ge(filter.value)
@@ -181,7 +183,8 @@ class DeliveryHistoryApiSearch(
                 sortParameter = sortProperty,
                 sortDirection = rawApiSearch.sort?.direction ?: SortDirection.DESC,
                 page = rawApiSearch.pagination.page,
-                limit = rawApiSearch.pagination.limit
+                limit = rawApiSearch.pagination.limit,
+                cursor = rawApiSearch.pagination.cursor
             )
         }
     }
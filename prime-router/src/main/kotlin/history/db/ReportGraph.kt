@@ -6,6 +6,7 @@ import gov.cdc.prime.router.azure.DatabaseAccess
 import gov.cdc.prime.router.azure.db.Tables.ACTION
 import gov.cdc.prime.router.azure.db.Tables.COVID_RESULT_METADATA
 import gov.cdc.prime.router.azure.db.Tables.ITEM_LINEAGE
+import gov.cdc.prime.router.azure.db.Tables.REPORT_ANCESTOR
 import gov.cdc.prime.router.azure.db.Tables.REPORT_LINEAGE
 import gov.cdc.prime.router.azure.db.enums.TaskAction
 import gov.cdc.prime.router.azure.db.tables.Action
@@ -21,6 +22,7 @@ import org.jooq.Record
 import org.jooq.Record1
 import org.jooq.SelectConditionStep
 import org.jooq.SelectOnConditionStep
+import org.jooq.SelectSeekStep1
 import org.jooq.impl.CustomRecord
 import org.jooq.impl.CustomTable
 import org.jooq.impl.DSL
@@ -69,6 +71,10 @@ class ItemGraphRecord : CustomRecord<ItemGraphRecord>(ItemGraphTable.ITEM_GRAPH)
  * unique Postgres feature used here is a recursive CTE (see ancestorLineageExpression and descendantLineageExpression)
  * that walk either up or down the lineages.
  *
+ * The ancestors and descendants of a report are looked up in the report_ancestor closure table instead, once all the
+ * report lineages are in it (see [DatabaseAccess.isReportAncestorClosureComplete]).  Until the closure table is
+ * backfilled, the report lineages are walked with the recursive CTEs.
+ *
  *
  * @param db database access to run the generated queries against
  */
@@ -124,8 +130,12 @@ class ReportGraph(val db: DatabaseAccess = BaseEngine.databaseAccessSingleton) :
      * the root is passed in
      */
     fun getRootReport(childReportId: UUID): ReportFile? = db.transactReturning { txn ->
-            val cte = reportAncestorGraphCommonTableExpression(listOf(childReportId))
-            rootReportRecords(txn, cte).fetchOneInto(ReportFile::class.java)
+            if (db.isReportAncestorClosureComplete(txn)) {
+                rootReportRecords(txn, childReportId).fetchOneInto(ReportFile::class.java)
+            } else {
+                val cte = reportAncestorGraphCommonTableExpression(listOf(childReportId))
+                rootReportRecords(txn, cte).fetchOneInto(ReportFile::class.java)
+            }
         }
 
     /**
@@ -176,8 +186,12 @@ class ReportGraph(val db: DatabaseAccess = BaseEngine.databaseAccessSingleton) :
      * If the passed in report ID has multiple root reports, they will all be returned
      */
     fun getRootReports(childReportId: UUID): List<ReportFile> = db.transactReturning { txn ->
-            val cte = reportAncestorGraphCommonTableExpression(listOf(childReportId))
-            rootReportRecords(txn, cte).fetchInto(ReportFile::class.java)
+            if (db.isReportAncestorClosureComplete(txn)) {
+                rootReportRecords(txn, childReportId).fetchInto(ReportFile::class.java)
+            } else {
+                val cte = reportAncestorGraphCommonTableExpression(listOf(childReportId))
+                rootReportRecords(txn, cte).fetchInto(ReportFile::class.java)
+            }
         }
 
     /**
@@ -194,6 +208,10 @@ class ReportGraph(val db: DatabaseAccess = BaseEngine.databaseAccessSingleton) :
         parentReportId: UUID,
         searchedForTaskActions: Set<TaskAction>? = null,
     ): List<ReportFile> {
+        if (db.isReportAncestorClosureComplete(txn)) {
+            return descendantReportRecords(txn, parentReportId, searchedForTaskActions)
+                .fetchInto(ReportFile::class.java)
+        }
         val cte = reportDescendantGraphCommonTableExpression(listOf(parentReportId))
         return descendantReportRecords(txn, cte, searchedForTaskActions).fetchInto(ReportFile::class.java)
     }
@@ -463,6 +481,28 @@ class ReportGraph(val db: DatabaseAccess = BaseEngine.databaseAccessSingleton) :
         .on(ACTION.ACTION_ID.eq(REPORT_FILE.ACTION_ID))
         .where(ACTION.ACTION_NAME.eq(TaskAction.receive))
 
+    /**
+     * Fetches the root report records of [childReportId] from the report ancestor closure table, in the order
+     * they became ancestors.
+     *
+     * @param txn the data access transaction
+     * @param childReportId the report to find the roots of
+     * @return the root report records
+     */
+    private fun rootReportRecords(
+        txn: DataAccessTransaction,
+        childReportId: UUID,
+    ): SelectSeekStep1<Record, Long> = DSL.using(txn)
+        .select(REPORT_FILE.asterisk())
+        .from(REPORT_ANCESTOR)
+        .join(REPORT_FILE)
+        .on(REPORT_FILE.REPORT_ID.eq(REPORT_ANCESTOR.ANCESTOR_REPORT_ID))
+        .join(ACTION)
+        .on(ACTION.ACTION_ID.eq(REPORT_FILE.ACTION_ID))
+        .where(REPORT_ANCESTOR.REPORT_ID.eq(childReportId))
+        .and(ACTION.ACTION_NAME.eq(TaskAction.receive))
+        .orderBy(REPORT_ANCESTOR.REPORT_ANCESTOR_ID)
+
     /**
      * Accepts a list of ids and walks down the report lineage graph
      *
@@ -519,6 +559,37 @@ class ReportGraph(val db: DatabaseAccess = BaseEngine.databaseAccessSingleton) :
         return select
     }
 
+    /**
+     * Fetches the descendant report records of [parentReportId] from the report ancestor closure table.  Like the
+     * recursive query, the parent report itself is included if it has any descendants.
+     *
+     * @param txn the data access transaction
+     * @param parentReportId the report to find the descendants of
+     * @param searchedForTaskActions the actions of the descendants to return, or null for all of them
+     * @return the descendant report records
+     */
+    private fun descendantReportRecords(
+        txn: DataAccessTransaction,
+        parentReportId: UUID,
+        searchedForTaskActions: Set<TaskAction>?,
+    ): SelectSeekStep1<Record, UUID> {
+        val descendantReportIds = DSL.select(REPORT_ANCESTOR.REPORT_ID)
+            .from(REPORT_ANCESTOR)
+            .where(REPORT_ANCESTOR.ANCESTOR_REPORT_ID.eq(parentReportId))
+        var condition = REPORT_FILE.REPORT_ID.`in`(descendantReportIds)
+            .or(REPORT_FILE.REPORT_ID.eq(parentReportId).andExists(descendantReportIds))
+        if (searchedForTaskActions != null) {
+            condition = condition.and(ACTION.ACTION_NAME.`in`(searchedForTaskActions))
+        }
+        return DSL.using(txn)
+            .select(REPORT_FILE.asterisk())
+            .from(REPORT_FILE)
+            .join(ACTION)
+            .on(ACTION.ACTION_ID.eq(REPORT_FILE.ACTION_ID))
+            .where(condition)
+            .orderBy(REPORT_FILE.REPORT_ID)
+    }
+
     /**
      * Fetches all ancestor report records in a recursive manner.
      *
@@ -116,10 +116,12 @@ class SubmitterApiSearch(
     override val sortDirection: SortDirection = SortDirection.DESC,
     page: Int = 1,
     limit: Int = 25,
+    cursor: String? = null,
 ) : ApiSearch<Submitter, SubmitterRecord, SubmitterApiSearchFilter<*>>(
     Submitter::class.java,
     page,
-    limit
+    limit,
+    cursor
 ) {
     override fun getCondition(filter: SubmitterApiSearchFilter<*>): Condition = when (filter) {
             is SubmitterApiSearchFilter.Since -> filter.tableField.ge(filter.value)
@@ -159,7 +161,8 @@ class SubmitterApiSearch(
                 sortParameter = sortProperty,
                 sortDirection = rawApiSearch.sort?.direction ?: SortDirection.DESC,
                 page = rawApiSearch.pagination.page,
-                limit = rawApiSearch.pagination.limit
+                limit = rawApiSearch.pagination.limit,
+                cursor = rawApiSearch.pagination.cursor
             )
         }
     }
@@ -0,0 +1,128 @@
+package gov.cdc.prime.router.metadata
+
+import tech.tablesaw.api.Table
+
+/**
+ * Index of the states for each zip code in the zip code lookup [table], so finding the states for a zip code is a
+ * hash lookup instead of a filter over the whole table.  The index is built once per version of the table, see
+ * [LookupTable.getIndex].
+ */
+class ZipCodeStateIndex private constructor(table: Table) {
+    /**
+     * The comma-separated states by five-digit zip code.
+     */
+    private val statesByZip5 = HashMap<Int, String>()
+
+    /**
+     * The comma-separated states for any zip code in the table that is not five digits.
+     */
+    private val statesByOtherZipCode = HashMap<String, String>()
+
+    init {
+        if (table.containsColumn(zipCodeColumn) && table.containsColumn(stateColumn)) {
+            val zipCodes = table.column(zipCodeColumn)
+            val states = table.column(stateColumn)
+            val statesByZipCode = LinkedHashMap<String, MutableSet<String>>()
+            for (row in 0 until table.rowCount()) {
+                statesByZipCode.getOrPut(zipCodes.getString(row)) { LinkedHashSet() }.add(states.getString(row))
+            }
+            statesByZipCode.forEach { (zipCode, zipStates) ->
+                val joinedStates = zipStates.joinToString(",")
+                val zip5 = toZip5(zipCode)
+                if (zip5 != null) statesByZip5[zip5] = joinedStates else statesByOtherZipCode[zipCode] = joinedStates
+            }
+        }
+    }
+
+    /**
+     * Get the states for a [zipCode] without its +4 extension.
+     * @return the comma-separated state abbreviations or an empty string if the zip code is not in the table
+     */
+    fun getStates(zipCode: String): String {
+        val zip5 = toZip5(zipCode)
+        return (if (zip5 != null) statesByZip5[zip5] else statesByOtherZipCode[zipCode]) ?: ""
+    }
+
+    companion object {
+        /**
+         * The name of the index in the [LookupTable].
+         */
+        const val indexName = "zipCodeStates"
+
+        private const val zipCodeColumn = "zipcode"
+        private const val stateColumn = "state_abbr"
+
+        /**
+         * Get the index for the current version of the zip code [lookupTable].
+         */
+        fun get(lookupTable: LookupTable): ZipCodeStateIndex =
+            lookupTable.getIndex(indexName) { ZipCodeStateIndex(it) }
+
+        /**
+         * Convert a five-digit [zipCode] to a number.
+         * @return the number or null if the zip code is not five digits
+         */
+        private fun toZip5(zipCode: String): Int? {
+            if (zipCode.length != 5) return null
+            var zip5 = 0
+            for (c in zipCode) {
+                if (c !in '0'..'9') return null
+                zip5 = zip5 * 10 + (c - '0')
+            }
+            return zip5
+        }
+    }
+}
+
+/**
+ * Index of the FIPS code for each state and county in the FIPS county lookup [table], so finding a FIPS code is a
+ * hash lookup instead of a filter over the whole table.  The index is built once per version of the table, see
+ * [LookupTable.getIndex].
+ */
+class FipsCountyIndex private constructor(table: Table) {
+    /**
+     * The FIPS code by uppercase state and then uppercase county.  Counties with more than one FIPS code have an
+     * empty code, so they are not found.
+     */
+    private val fipsByStateAndCounty = HashMap<String, HashMap<String, String>>()
+
+    init {
+        if (table.containsColumn(fipsColumn) && table.containsColumn(stateColumn) &&
+            table.containsColumn(countyColumn)
+        ) {
+            val fipsCodes = table.column(fipsColumn)
+            val states = table.column(stateColumn)
+            val counties = table.column(countyColumn)
+            for (row in 0 until table.rowCount()) {
+                val fips = fipsCodes.getString(row)
+                fipsByStateAndCounty.getOrPut(states.getString(row).uppercase()) { HashMap() }
+                    .merge(counties.getString(row).uppercase(), fips) { existing, new ->
+                        if (existing == new) existing else ""
+                    }
+            }
+        }
+    }
+
+    /**
+     * Get the FIPS code for a [county] in a [state], ignoring case.
+     * @return the FIPS code or null if the county is not in the table or has more than one FIPS code
+     */
+    fun getFips(state: String, county: String): String? =
+        fipsByStateAndCounty[state.uppercase()]?.get(county.uppercase())?.ifBlank { null }
+
+    companion object {
+        /**
+         * The name of the index in the [LookupTable].
+         */
+        const val indexName = "fipsCounties"
+
+        private const val fipsColumn = "FIPS"
+        private const val stateColumn = "State"
+        private const val countyColumn = "County"
+
+        /**
+         * Get the index for the current version of the FIPS county [lookupTable].
+         */
+        fun get(lookupTable: LookupTable): FipsCountyIndex = lookupTable.getIndex(indexName) { FipsCountyIndex(it) }
+    }
+}
@@ -0,0 +1,126 @@
+package gov.cdc.prime.router.metadata
+
+import tech.tablesaw.api.Table
+
+/**
+ * Index over the LIVD [table] so that [LivdLookup] can find the rows for a device with hash lookups instead of
+ * filtering the whole table for every observation.  Keys are case-insensitive like the table filters they replace.
+ * The index is built once per version of the table, see [LookupTable.getIndex].
+ */
+internal class LivdIndex(private val table: Table) {
+    /**
+     * Lowercase values of the key columns by column name, or no entry if the table does not have the column.
+     */
+    private val keys = indexedColumns.filter { table.containsColumn(it.colName) }.associate { column ->
+        val values = table.column(column.colName)
+        column.colName to Array(table.rowCount()) { values.getString(it).lowercase() }
+    }
+
+    /**
+     * Rows by their lowercase value for the columns that are searched by value.
+     */
+    private val rowsByValue = equalsColumns.filter { keys.containsKey(it.colName) }.associate { column ->
+        column.colName to keys.getValue(column.colName).withIndex()
+            .groupBy({ it.value }, { it.index })
+            .mapValues { it.value.toIntArray() }
+    }
+
+    /**
+     * Lowercase values and their row sorted by value for the columns that are searched by prefix, so the rows
+     * starting with a prefix are a contiguous range.
+     */
+    private val sortedValues = prefixColumns.filter { keys.containsKey(it.colName) }.associate { column ->
+        column.colName to keys.getValue(column.colName).withIndex()
+            .sortedBy { it.value }
+            .map { it.value to it.index }
+    }
+
+    /**
+     * A search on the index for the rows with the [testPerformedCode] if one is given, ignoring the rows for test
+     * devices unless [includeTestDevices] is set.  Every lookup of the search applies these filters.
+     */
+    inner class Search(private val testPerformedCode: String? = null, private val includeTestDevices: Boolean = true) {
+        private val testPerformedCodes = keys[LivdTableColumns.TEST_PERFORMED_CODE.colName]
+        private val processingModeCodes = keys[LivdTableColumns.PROCESSING_MODE_CODE.colName]
+        private val lowercaseTestPerformedCode = testPerformedCode?.lowercase()
+        private val lowercaseTestProcessingModeCode = LivdLookup.testProcessingModeCode.lowercase()
+
+        /**
+         * False if the table is missing a column needed for the filters, in which case nothing is found.
+         */
+        val isValid = (testPerformedCode == null || testPerformedCodes != null) &&
+            (includeTestDevices || processingModeCodes != null)
+
+        /**
+         * Test if the row at [index] passes the filters of the search.
+         */
+        private fun isIncluded(index: Int): Boolean =
+            (lowercaseTestPerformedCode == null || testPerformedCodes!![index] == lowercaseTestPerformedCode) &&
+                (includeTestDevices || processingModeCodes!![index] != lowercaseTestProcessingModeCode)
+
+        /**
+         * Find the rows where [column] is equal to [value] ignoring case.
+         * @return the rows or null if the table does not have the column
+         */
+        fun equalTo(column: LivdTableColumns, value: String): Set<Int>? {
+            val rows = rowsByValue[column.colName] ?: return null
+            if (!isValid) return null
+            return rows[value.lowercase()]?.filterTo(LinkedHashSet()) { isIncluded(it) } ?: emptySet()
+        }
+
+        /**
+         * Find the rows where [column] starts with [prefix] ignoring case.
+         * @return the rows or null if the table does not have the column
+         */
+        fun startsWith(column: LivdTableColumns, prefix: String): Set<Int>? {
+            val values = sortedValues[column.colName] ?: return null
+            if (!isValid) return null
+            val lowercasePrefix = prefix.lowercase()
+            var from = values.binarySearch { it.first.compareTo(lowercasePrefix) }
+            if (from < 0) from = -from - 1
+            val rows = LinkedHashSet<Int>()
+            for (i in from until values.size) {
+                val (value, index) = values[i]
+                if (!value.startsWith(lowercasePrefix)) break
+                if (isIncluded(index)) rows.add(index)
+            }
+            return rows
+        }
+
+        /**
+         * Get the value of [lookupColumn] if all the [rows] have the same value.
+         * @return the value or null if there are no rows, the rows have different values or there is no such column
+         */
+        fun findSingleResult(rows: Set<Int>?, lookupColumn: String): String? {
+            if (rows.isNullOrEmpty() || !table.containsColumn(lookupColumn)) return null
+            val values = table.column(lookupColumn)
+            val unique = rows.mapTo(HashSet()) { values.getString(it) }
+            return if (unique.size == 1) unique.first() else null
+        }
+    }
+
+    companion object {
+        /**
+         * The name of the index in the [LookupTable].
+         */
+        const val indexName = "livd"
+
+        private val equalsColumns = listOf(
+            LivdTableColumns.TESTKIT_NAME_ID,
+            LivdTableColumns.EQUIPMENT_UID,
+            LivdTableColumns.MODEL,
+        )
+
+        private val prefixColumns = listOf(LivdTableColumns.TESTKIT_NAME_ID, LivdTableColumns.EQUIPMENT_UID)
+
+        private val indexedColumns = equalsColumns + listOf(
+            LivdTableColumns.TEST_PERFORMED_CODE,
+            LivdTableColumns.PROCESSING_MODE_CODE
+        )
+
+        /**
+         * Get the index for the current version of the [lookupTable].
+         */
+        fun get(lookupTable: LookupTable): LivdIndex = lookupTable.getIndex(indexName) { LivdIndex(it) }
+    }
+}
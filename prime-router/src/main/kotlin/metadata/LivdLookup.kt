@@ -29,49 +29,37 @@ object LivdLookup {
         tableColumn: String,
         tableRef: LookupTable? = Metadata.getInstance().findLookupTable(name = livdTableName),
     ): String? {
-        val filters = tableRef?.FilterBuilder() ?: error("Could not find table '$tableRef'\"")
-        // get the test performed code for additional filtering of the test information in case we are
-        // dealing with tests that check for more than one type of disease, for example COVID + influenza
-        if (testPerformedCode != null) {
-            filters.equalsIgnoreCase(LivdTableColumns.TEST_PERFORMED_CODE.colName, testPerformedCode)
-        }
-
-        // If the data is NOT flagged as test data then ignore any test devices in the LIVD table
-        if (processingModeCode == null ||
-            processingModeCode.uppercase() != testProcessingModeCode
-        ) {
-            filters.notEqualsIgnoreCase(
-                LivdTableColumns.PROCESSING_MODE_CODE.colName,
-                testProcessingModeCode
-            )
-        }
+        if (tableRef == null) error("Could not find table '$tableRef'\"")
+        // filter on the test performed code in case we are dealing with tests that check for more than one type
+        // of disease, for example COVID + influenza.  If the data is NOT flagged as test data then ignore any test
+        // devices in the LIVD table
+        val search = search(
+            tableRef,
+            testPerformedCode,
+            includeTestDevices = processingModeCode?.uppercase() == testProcessingModeCode
+        )
+        if (!search.isValid) return null
 
-        // carry on as usual
-        val filtersCopy = filters.copy() // Filters are not reusable
         return when {
-            !deviceId.isNullOrEmpty() -> lookupByDeviceId(
-                tableColumn,
-                deviceId,
-                filtersCopy
-            )
-            !equipmentModelId.isNullOrEmpty() -> lookupByEquipmentUid(
-                tableColumn,
-                equipmentModelId,
-                filtersCopy
-            )
-            !testKitNameId.isNullOrEmpty() -> lookupByTestkitId(
-                tableColumn,
-                testKitNameId,
-                filtersCopy
-            )
-            !equipmentModelName.isNullOrEmpty() -> lookupByEquipmentModelName(
-                tableColumn, equipmentModelName, filtersCopy
-            )
-
+            !deviceId.isNullOrEmpty() -> lookupByDeviceId(tableColumn, deviceId, search)
+            !equipmentModelId.isNullOrEmpty() -> lookupByEquipmentUid(tableColumn, equipmentModelId, search)
+            !testKitNameId.isNullOrEmpty() -> lookupByTestkitId(tableColumn, testKitNameId, search)
+            !equipmentModelName.isNullOrEmpty() -> lookupByEquipmentModelName(tableColumn, equipmentModelName, search)
             else -> null
         }
     }
 
+    /**
+     * Create a search on the LIVD index of [table] for the rows with the [testPerformedCode] if one is given,
+     * ignoring the rows for test devices unless [includeTestDevices] is set.
+     * @return the search
+     */
+    internal fun search(
+        table: LookupTable,
+        testPerformedCode: String? = null,
+        includeTestDevices: Boolean = true,
+    ): LivdIndex.Search = LivdIndex.get(table).Search(testPerformedCode, includeTestDevices)
+
     private val standard99ELRTypes = listOf("EUA", "DII", "DIT", "DIM", "MNT", "MNI", "MNM")
 
     /**
@@ -83,13 +71,13 @@ object LivdLookup {
      * Does a lookup in the LIVD table based on the element Id
      * @param tableColumn the column to lookup the value in
      * @param deviceId the ID of the test device to lookup LIVD information by
-     * @param filters an optional list of additional filters to limit our search by
+     * @param search the search on the LIVD index with the filters to limit our search by
      * @return a possible String? value based on the lookup
      */
     private fun lookupByDeviceId(
         tableColumn: String,
         deviceId: String,
-        filters: LookupTable.FilterBuilder,
+        search: LivdIndex.Search,
     ): String? {
         /*
          Dev Note:
@@ -109,100 +97,99 @@ object LivdLookup {
         val suffix = deviceId.substringAfterLast('_', "")
         if (standard99ELRTypes.contains(suffix)) {
             val value = deviceId.substringBeforeLast('_', "")
-            return lookup(tableColumn, value, LivdTableColumns.TESTKIT_NAME_ID.colName, filters)
-                ?: lookup(tableColumn, value, LivdTableColumns.EQUIPMENT_UID.colName, filters)
+            return lookupTestkitThenEquipment(
+                tableColumn,
+                search.equalTo(LivdTableColumns.TESTKIT_NAME_ID, value),
+                search.equalTo(LivdTableColumns.EQUIPMENT_UID, value),
+                search
+            )
         }
 
         // truncated 99ELR type
         if (deviceId.endsWith("#")) {
             val value = deviceId.substringBeforeLast('#', "")
-            return lookupPrefix(tableColumn, value, LivdTableColumns.TESTKIT_NAME_ID.colName, filters)
-                ?: lookupPrefix(tableColumn, value, LivdTableColumns.EQUIPMENT_UID.colName, filters)
+            return lookupTestkitThenEquipment(
+                tableColumn,
+                search.startsWith(LivdTableColumns.TESTKIT_NAME_ID, value),
+                search.startsWith(LivdTableColumns.EQUIPMENT_UID, value),
+                search
+            )
         }
 
         // May be the DI from a GUDID either test-kit or equipment
-        return lookup(tableColumn, deviceId, LivdTableColumns.TESTKIT_NAME_ID.colName, filters)
-            ?: lookup(tableColumn, deviceId, LivdTableColumns.EQUIPMENT_UID.colName, filters)
+        return lookupTestkitThenEquipment(
+            tableColumn,
+            search.equalTo(LivdTableColumns.TESTKIT_NAME_ID, deviceId),
+            search.equalTo(LivdTableColumns.EQUIPMENT_UID, deviceId),
+            search
+        )
     }
 
     /**
      * Does a lookup in the LIVD table based on the element unique identifier
      * @param tableColumn the column to lookup the value in
      * @param value the unique ID of the test device to lookup LIVD information by
-     * @param filters an optional list of additional filters to limit our search by
+     * @param search the search on the LIVD index with the filters to limit our search by
      * @return a possible String? value based on the lookup
      */
     private fun lookupByEquipmentUid(
         tableColumn: String,
         value: String,
-        filters: LookupTable.FilterBuilder,
-    ): String? = lookup(tableColumn, value, LivdTableColumns.EQUIPMENT_UID.colName, filters)
+        search: LivdIndex.Search,
+    ): String? = search.findSingleResult(search.equalTo(LivdTableColumns.EQUIPMENT_UID, value), tableColumn)
 
     /**
      * Does a lookup in the LIVD table based on the test kit Id
      * @param tableColumn the column to lookup the value in
      * @param value the test kit ID of the test device to lookup LIVD information by
-     * @param filters an optional list of additional filters to limit our search by
+     * @param search the search on the LIVD index with the filters to limit our search by
      * @return a possible String? value based on the lookup
      */
     private fun lookupByTestkitId(
         tableColumn: String,
         value: String,
-        filters: LookupTable.FilterBuilder,
+        search: LivdIndex.Search,
     ): String? {
         if (value.isBlank()) return null
-        return lookup(tableColumn, value, LivdTableColumns.TESTKIT_NAME_ID.colName, filters)
+        return search.findSingleResult(search.equalTo(LivdTableColumns.TESTKIT_NAME_ID, value), tableColumn)
     }
 
     /**
      * Does a lookup in the LIVD table based on the equipment model name
      * @param tableColumn the column to lookup the value in
      * @param value the model name of the test device to lookup LIVD information by
-     * @param filters an optional list of additional filters to limit our search by
+     * @param search the search on the LIVD index with the filters to limit our search by
      * @return a possible String? value based on the lookup
      */
     internal fun lookupByEquipmentModelName(
         tableColumn: String,
         value: String,
-        filters: LookupTable.FilterBuilder,
+        search: LivdIndex.Search,
     ): String? {
         if (value.isBlank()) return null
-        return lookup(
-            tableColumn,
-            LivdLookupUtilities.getCleanedModelName(value),
-            LivdTableColumns.MODEL.colName,
-            filters
+        return search.findSingleResult(
+            search.equalTo(LivdTableColumns.MODEL, LivdLookupUtilities.getCleanedModelName(value)),
+            tableColumn
         )
     }
 
     /**
-     * Does the lookup in the LIVD table based on the lookup type and the values passed in
-     * @param lookupColumn the column to filter the results on
-     * @param lookup the value to search the index column for
-     * @param onColumn the name of the index column to do the lookup in
-     * @param filters an optional list of additional filters to limit our search by
-     * @return a possible String? value based on the lookup
-     */
-    private fun lookup(
-        lookupColumn: String,
-        lookup: String,
-        onColumn: String,
-        filters: LookupTable.FilterBuilder,
-    ): String? = filters.equalsIgnoreCase(onColumn, lookup).findSingleResult(lookupColumn)
-
-    /**
-     * Does the lookup in the LIVD table based on the lookup type and the values passed in,
-     * by seeing if any values in the index column starts with the index value
-     * @param lookupColumn the column to filter the results on
-     * @param lookup the value to search the index column for
-     * @param onColumn the name of the index column to do the lookup in
-     * @param filters an optional list of additional filters to limit our search by
+     * Does the lookup for a device ID that may be a test kit ID or an equipment UID.  The [testkitRows] are used if
+     * they have a single value, otherwise the lookup is narrowed down to the rows that also are [equipmentRows].
+     * @param tableColumn the column to lookup the value in
+     * @param testkitRows the rows that matched on the test kit ID
+     * @param equipmentRows the rows that matched on the equipment UID
+     * @param search the search on the LIVD index the rows were found with
      * @return a possible String? value based on the lookup
      */
-    private fun lookupPrefix(
-        lookupColumn: String,
-        lookup: String,
-        onColumn: String,
-        filters: LookupTable.FilterBuilder,
-    ): String? = filters.startsWithIgnoreCase(onColumn, lookup).findSingleResult(lookupColumn)
-}
\ No newline at end of file
+    private fun lookupTestkitThenEquipment(
+        tableColumn: String,
+        testkitRows: Set<Int>?,
+        equipmentRows: Set<Int>?,
+        search: LivdIndex.Search,
+    ): String? = search.findSingleResult(testkitRows, tableColumn)
+        ?: search.findSingleResult(
+            if (testkitRows == null || equipmentRows == null) null else testkitRows.intersect(equipmentRows),
+            tableColumn
+        )
+}
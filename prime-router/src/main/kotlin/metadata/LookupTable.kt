@@ -15,6 +15,7 @@ import tech.tablesaw.api.Table
 import tech.tablesaw.io.csv.CsvReadOptions
 import tech.tablesaw.selection.Selection
 import java.io.InputStream
+import java.util.concurrent.ConcurrentHashMap
 import java.util.function.BiPredicate
 
 /**
@@ -50,6 +51,11 @@ open class LookupTable : Logging {
     var isSourceDatabase = false
         private set
 
+    /**
+     * Indexes built by [getIndex] along with the table data each index was built from.
+     */
+    private val indexes = ConcurrentHashMap<String, Pair<Table, Any>>()
+
     /**
      * Create table named [name] based on raw [table] data.  The optional [dbAccess] is for dependency injection.
      */
@@ -171,6 +177,21 @@ open class LookupTable : Logging {
      */
     fun hasColumn(column: String): Boolean = table.containsColumn(column)
 
+    /**
+     * Get the index named [indexName] for the current table data, calling [builder] to build it from the table data
+     * the first time it is used or after a new version of the table was loaded.  Indexes let callers that do many
+     * lookups on a large table use a hash lookup instead of filtering the whole table for every lookup, so the index
+     * returned by [builder] must not be modified once it is built.
+     * @return the index for the current table data
+     */
+    @Suppress("UNCHECKED_CAST") // An index name is always used with the same builder
+    fun <T : Any> getIndex(indexName: String, builder: (Table) -> T): T {
+        val currentTable = table
+        val cached = indexes[indexName]
+        if (cached != null && cached.first === currentTable) return cached.second as T
+        return builder(currentTable).also { indexes[indexName] = currentTable to it }
+    }
+
     /**
      * Filter builder used to find values or filter the lookup table.
      */
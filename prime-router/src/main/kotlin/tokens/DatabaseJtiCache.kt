@@ -1,21 +1,39 @@
 package gov.cdc.prime.router.tokens
 
 import gov.cdc.prime.router.azure.DatabaseAccess
+import java.time.Duration
 import java.time.OffsetDateTime
 
-class DatabaseJtiCache(val db: DatabaseAccess) : JtiCache() {
+/**
+ * JTI cache stored in the database so replays are caught across all the function instances.  JTIs are first
+ * checked against the in-memory [front] cache so replays seen by this instance are rejected without a database
+ * round trip, and new JTIs are recorded with a single upsert.  Expired JTIs are removed from the database by a
+ * scheduled sweep, see [sweep].
+ */
+class DatabaseJtiCache(val db: DatabaseAccess, private val front: MemoryJtiCache? = sharedFront) : JtiCache() {
 
-    override fun cleanupCache() {
-        db.transact { txn ->
-            db.deleteExpiredJtis(txn)
+    override fun insertIfAbsent(jti: String, expiresAt: OffsetDateTime): Boolean {
+        if (front != null && !front.insertIfAbsent(jti, expiresAt)) return false
+        try {
+            return db.transactReturning { txn -> db.insertJtiIfAbsent(jti, expiresAt, txn) }
+        } catch (ex: Exception) {
+            // Do not reject a retry of the same token because it could not be recorded the first time
+            front?.remove(jti)
+            throw ex
         }
     }
 
-    override fun insertIntoCache(jti: String, expiresAt: OffsetDateTime) {
-        db.transact { txn -> db.insertJti(jti, expiresAt, txn) }
-    }
+    override fun sweep(): Int = db.transactReturning { txn -> db.deleteExpiredJtis(txn) }
 
-    override fun isPresentInCache(jti: String): Boolean = db.transactReturning { txn ->
-            (db.fetchJti(jti, txn) != null)
-        }
-}
\ No newline at end of file
+    companion object {
+        /**
+         * How often the expired JTIs are removed from the in-memory front cache.
+         */
+        private val frontSweepInterval = Duration.ofMinutes(1)
+
+        /**
+         * In-memory cache of the JTIs seen by this instance, shared by all the database caches.
+         */
+        val sharedFront = MemoryJtiCache().apply { startSweeping(frontSweepInterval) }
+    }
+}
@@ -15,28 +15,31 @@ import java.time.OffsetDateTime
 abstract class JtiCache : Logging {
     val EXPIRATION_MINUTES: Long = 5
 
-    abstract fun cleanupCache()
-
-    abstract fun insertIntoCache(jti: String, expiresAt: OffsetDateTime)
+    /**
+     * Atomically add [jti] to the cache unless it is already there and has not expired.  An expired entry for the
+     * same [jti] is replaced, so expired entries do not have to be removed before checking a JTI; that is left to
+     * a background [sweep].
+     * @return true if the [jti] was added, false if it was already in the cache
+     */
+    abstract fun insertIfAbsent(jti: String, expiresAt: OffsetDateTime): Boolean
 
-    abstract fun isPresentInCache(jti: String): Boolean
+    /**
+     * Remove the expired entries from the cache.
+     * @return the number of entries removed
+     */
+    abstract fun sweep(): Int
 
     /**
-     * Rather than having a timer based cache cleanup, this lazily only cleans up stale cache entries when its called.
+     * Check that [jti] has not been used before and record it so it cannot be used again, for at least
+     * [EXPIRATION_MINUTES] even if the JWT expires sooner.
      */
     fun isJTIOk(jti: String, expiresAt: OffsetDateTime): Boolean {
-        cleanupCache()
-        if (isPresentInCache(jti)) {
+        val minimumExpirationTime = OffsetDateTime.now().plusMinutes(EXPIRATION_MINUTES)
+        val cacheUntil = if (expiresAt.isBefore(minimumExpirationTime)) minimumExpirationTime else expiresAt
+        if (!insertIfAbsent(jti, cacheUntil)) {
             logger.warn("JTI $jti is being replayed")
             return false
-        } else {
-            val minimumExpirationTime = OffsetDateTime.now().plusMinutes(EXPIRATION_MINUTES)
-            if (expiresAt.isBefore(minimumExpirationTime)) {
-                insertIntoCache(jti, minimumExpirationTime)
-            } else {
-                insertIntoCache(jti, expiresAt)
-            }
-            return true
         }
+        return true
     }
-}
\ No newline at end of file
+}
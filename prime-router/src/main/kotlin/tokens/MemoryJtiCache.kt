@@ -1,24 +1,103 @@
 package gov.cdc.prime.router.tokens
 
+import java.time.Clock
+import java.time.Duration
 import java.time.OffsetDateTime
+import java.util.concurrent.Executors
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.ScheduledFuture
+import java.util.concurrent.TimeUnit
 
-class MemoryJtiCache : JtiCache() {
+/**
+ * In-memory JTI cache.  The JTIs are split over [shardCount] shards, each with its own lock, so concurrent token
+ * requests rarely wait on each other, and a [sweep] only locks one shard at a time.
+ *
+ * Expired JTIs are removed by [sweep], which can be scheduled in the background with [startSweeping].
+ *
+ * @property clock the clock used to find the expired JTIs
+ */
+class MemoryJtiCache(
+    val shardCount: Int = DEFAULT_SHARD_COUNT,
+    private val clock: Clock = Clock.systemUTC(),
+) : JtiCache(), AutoCloseable {
+    // each shard is a map from JTI string name to its expiration time
+    private val shards = Array(shardCount) { HashMap<String, OffsetDateTime>() }
 
-    // implement the cache as a map from JTI string name to its expiration time
-    var cache = mutableMapOf<String, OffsetDateTime>()
+    private var sweeping: ScheduledFuture<*>? = null
 
-    override fun cleanupCache() {
-        cache.forEach {
-            if (it.value.isBefore(OffsetDateTime.now())) {
-                cache.remove(it.key)
+    private fun shardFor(jti: String) = shards[Math.floorMod(jti.hashCode(), shardCount)]
+
+    override fun insertIfAbsent(jti: String, expiresAt: OffsetDateTime): Boolean {
+        val shard = shardFor(jti)
+        val now = OffsetDateTime.now(clock)
+        synchronized(shard) {
+            val existing = shard[jti]
+            if (existing != null && !existing.isBefore(now)) return false
+            shard[jti] = expiresAt
+            return true
+        }
+    }
+
+    override fun sweep(): Int {
+        val now = OffsetDateTime.now(clock)
+        return shards.sumOf { shard ->
+            synchronized(shard) {
+                val sizeBefore = shard.size
+                shard.values.removeIf { it.isBefore(now) }
+                sizeBefore - shard.size
             }
         }
     }
 
-    override fun insertIntoCache(jti: String, expiresAt: OffsetDateTime) {
-        if (cache[jti] != null) error("cannot insert $jti into cache - its already there")
-        cache[jti] = expiresAt
+    /**
+     * Remove [jti] from the cache, for example when it could not be recorded in a slower tier.
+     */
+    fun remove(jti: String) {
+        val shard = shardFor(jti)
+        synchronized(shard) { shard.remove(jti) }
+    }
+
+    /**
+     * The number of JTIs in the cache, including the expired JTIs that have not been swept yet.
+     */
+    val size: Int get() = shards.sumOf { shard -> synchronized(shard) { shard.size } }
+
+    /**
+     * Run [sweep] every [interval] in the background until the cache is closed.
+     */
+    @Synchronized
+    fun startSweeping(interval: Duration) {
+        sweeping?.cancel(false)
+        sweeping = sweeper.scheduleWithFixedDelay(
+            {
+                try {
+                    val swept = sweep()
+                    if (swept > 0) logger.debug("Swept $swept expired JTIs")
+                } catch (ex: Exception) {
+                    logger.error("Failed to sweep the JTI cache", ex)
+                }
+            },
+            interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS
+        )
+    }
+
+    /**
+     * Stop the background sweep.
+     */
+    @Synchronized
+    override fun close() {
+        sweeping?.cancel(false)
+        sweeping = null
     }
 
-    override fun isPresentInCache(jti: String): Boolean = cache[jti] != null
-}
\ No newline at end of file
+    companion object {
+        const val DEFAULT_SHARD_COUNT = 16
+
+        /**
+         * Single daemon thread shared by the background sweeps of all the caches.
+         */
+        private val sweeper: ScheduledExecutorService = Executors.newSingleThreadScheduledExecutor { runnable ->
+            Thread(runnable, "jti-cache-sweeper").apply { isDaemon = true }
+        }
+    }
+}
@@ -5,6 +5,10 @@ import io.jsonwebtoken.SignatureAlgorithm
 import io.jsonwebtoken.io.Decoders
 import io.jsonwebtoken.io.Encoders
 import io.jsonwebtoken.security.Keys
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.atomic.AtomicLong
 import javax.crypto.SecretKey
 
 interface ReportStreamSecretFinder {
@@ -57,4 +61,78 @@ class GetInMemorySecret : ReportStreamSecretFinder {
         }
         return Keys.hmacShaKeyFor(Decoders.BASE64.decode(tokenSigningSecret))
     }
-}
\ No newline at end of file
+}
+/**
+ * Caches the ReportStream secret found by [delegate] for [ttl], so authenticating a request does not fetch the
+ * secret from the vault every time.  Since the secret can be rotated while it is cached, a caller that fails to
+ * verify a token with the cached secret can [refresh] it, at most once per [minRefreshInterval] so that tokens
+ * with bad signatures do not turn into vault requests.
+ *
+ * @property clock the clock used to expire the cached secret
+ * @property onRotation called when a fetch finds a secret that is different from the cached secret, so that
+ * anything verified with the old secret can be dropped
+ */
+class CachedReportStreamSecretFinder(
+    private val delegate: ReportStreamSecretFinder,
+    val ttl: Duration = Duration.ofMinutes(5),
+    val minRefreshInterval: Duration = Duration.ofSeconds(30),
+    private val clock: Clock = Clock.systemUTC(),
+    private val onRotation: () -> Unit = {},
+) : ReportStreamSecretFinder {
+    /**
+     * A [secret] that was fetched at [fetchedAt].
+     */
+    private data class CachedSecret(val secret: SecretKey, val fetchedAt: Instant)
+
+    /**
+     * Counters for the cache.  [hits] are requests for the secret served from the cache, [fetches] are the
+     * requests to the [delegate] and [rotations] are fetches that found a different secret.
+     */
+    data class Stats(val hits: Long, val fetches: Long, val rotations: Long)
+
+    @Volatile
+    private var cached: CachedSecret? = null
+    private val hits = AtomicLong()
+    private val fetches = AtomicLong()
+    private val rotations = AtomicLong()
+
+    override fun getReportStreamTokenSigningSecret(): SecretKey {
+        val current = cached
+        if (current != null && clock.instant().isBefore(current.fetchedAt.plus(ttl))) {
+            hits.incrementAndGet()
+            return current.secret
+        }
+        return synchronized(this) {
+            val latest = cached
+            if (latest !== current && latest != null) latest.secret else fetch().secret
+        }
+    }
+
+    /**
+     * Fetch the secret again if it was last fetched more than [minRefreshInterval] ago.
+     * @return the fetched secret if it is different from the cached secret, otherwise null
+     */
+    fun refresh(): SecretKey? = synchronized(this) {
+        val current = cached
+        if (current != null && clock.instant().isBefore(current.fetchedAt.plus(minRefreshInterval))) return null
+        val refreshed = fetch()
+        if (current == null || current.secret == refreshed.secret) null else refreshed.secret
+    }
+
+    /**
+     * The current counters for the cache.
+     */
+    fun stats(): Stats = Stats(hits.get(), fetches.get(), rotations.get())
+
+    private fun fetch(): CachedSecret {
+        fetches.incrementAndGet()
+        val previous = cached
+        val fetched = CachedSecret(delegate.getReportStreamTokenSigningSecret(), clock.instant())
+        cached = fetched
+        if (previous != null && previous.secret != fetched.secret) {
+            rotations.incrementAndGet()
+            onRotation()
+        }
+        return fetched
+    }
+}
@@ -7,7 +7,9 @@ import gov.cdc.prime.router.Organization
 import gov.cdc.prime.router.azure.ActionHistory
 import gov.cdc.prime.router.azure.WorkflowEngine
 import gov.cdc.prime.router.common.Environment
+import io.jsonwebtoken.Claims
 import io.jsonwebtoken.ExpiredJwtException
+import io.jsonwebtoken.Jws
 import io.jsonwebtoken.JwtException
 import io.jsonwebtoken.Jwts
 import io.jsonwebtoken.MalformedJwtException
@@ -19,6 +21,7 @@ import java.security.Key
 import java.security.SignatureException
 import java.util.Date
 import java.util.UUID
+import io.jsonwebtoken.security.SignatureException as JwtSignatureException
 
 /**
  * Implementation of two-legged auth, using a sender's public key pre-authorized
@@ -256,12 +259,13 @@ class Server2ServerAuthentication(val workflowEngine: WorkflowEngine) : Logging
     /**
      * This confirms that [accessToken]'s token is proper and authentic. This does not do authorization,
      * that is, it does not confirm that the claims authorize access to any particular scope.
+     * The signing secret and the claims of verified tokens are cached across requests.
      *
      * @return the ReportStream AuthenticatedClaims obj if authentication was successful.  Otherwise returns null.
      */
     fun authenticate(
         accessToken: String,
-    ): AuthenticatedClaims? = authenticate(accessToken, FindReportStreamSecretInVault())
+    ): AuthenticatedClaims? = authenticate(accessToken, signingSecret, verifiedAccessTokens)
 
     /**
      * This confirms that [accessToken] is properly unexpired and signed by that secret. This does not do authorization,
@@ -269,22 +273,31 @@ class Server2ServerAuthentication(val workflowEngine: WorkflowEngine) : Logging
      *
      * [lookup] is a call back to get the ReportStream secret used to sign the [accessToken].  Using a callback
      * makes this easy to test - can pass in a static test secret
-     * This does not need to be a public/private key.
+     * This does not need to be a public/private key.  If [lookup] is a [CachedReportStreamSecretFinder], the secret
+     * is refreshed once when the signature does not match in case it was rotated.
+     *
+     * [verifiedTokens] is an optional cache of tokens that were already verified, which is checked before the token
+     * is parsed and is updated after the token is verified.
      *
      * @return the authenticated JWT Claims set if authentication was both successful.  Otherwise returns null.
      */
-    fun authenticate(accessToken: String, lookup: ReportStreamSecretFinder): AuthenticatedClaims? {
+    fun authenticate(
+        accessToken: String,
+        lookup: ReportStreamSecretFinder,
+        verifiedTokens: VerifiedAccessTokenCache? = null,
+    ): AuthenticatedClaims? {
         try {
             if (accessToken.isNullOrEmpty()) {
                 logger.error("Missing or bad format 'Authorization: Bearer <tok>' header. Not authenticated.")
                 return null
             }
-            val secret = lookup.getReportStreamTokenSigningSecret()
+            val cachedClaims = verifiedTokens?.get(accessToken)
+            if (cachedClaims != null) {
+                logger.info("AccessToken ${cachedClaims.userName} : authenticated from cache.")
+                return cachedClaims
+            }
             // Check the signature.  Throws JwtException on problems.
-            val jws = Jwts.parserBuilder()
-                .setSigningKey(secret)
-                .build()
-                .parseClaimsJws(accessToken)
+            val jws = parseAccessToken(accessToken, lookup)
             if (jws.body == null) {
                 logger.error("AccessToken check failed - no claims.  Not authenticated.")
                 return null
@@ -302,7 +315,9 @@ class Server2ServerAuthentication(val workflowEngine: WorkflowEngine) : Logging
             }
             logger.info("AccessToken $subject : authenticated.")
             // convert the JWS Claims obj to our ReportStream AuthenticatedClaims obj
-            return AuthenticatedClaims(jws.body, AuthenticationType.Server2Server)
+            val claims = AuthenticatedClaims(jws.body, AuthenticationType.Server2Server)
+            verifiedTokens?.put(accessToken, claims, jws.body.expiration.toInstant())
+            return claims
         } catch (ex: JwtException) {
             logger.error("AccessToken not authenticated: $ex")
             return null
@@ -312,7 +327,37 @@ class Server2ServerAuthentication(val workflowEngine: WorkflowEngine) : Logging
         }
     }
 
+    /**
+     * Parse [accessToken] and check its signature with the secret from [lookup], retrying with a refreshed secret
+     * if the secret is cached and may have been rotated.
+     * @throws JwtException if the token is invalid
+     */
+    private fun parseAccessToken(accessToken: String, lookup: ReportStreamSecretFinder): Jws<Claims> {
+        val parse = { secret: Key -> Jwts.parserBuilder().setSigningKey(secret).build().parseClaimsJws(accessToken) }
+        return try {
+            parse(lookup.getReportStreamTokenSigningSecret())
+        } catch (ex: JwtSignatureException) {
+            val refreshedSecret = (lookup as? CachedReportStreamSecretFinder)?.refresh() ?: throw ex
+            logger.info("ReportStream token signing secret was rotated.")
+            parse(refreshedSecret)
+        }
+    }
+
     companion object : Logging {
+        /**
+         * The access tokens that were already verified, cached across requests.
+         */
+        val verifiedAccessTokens = VerifiedAccessTokenCache()
+
+        /**
+         * The ReportStream secret used to verify access tokens, cached across requests.  The verified access tokens
+         * are dropped when the secret is rotated, since they were verified with the old secret.
+         */
+        val signingSecret = CachedReportStreamSecretFinder(
+            FindReportStreamSecretInVault(),
+            onRotation = { verifiedAccessTokens.clear() }
+        )
+
         fun isExpiredToken(exp: Date): Boolean {
             return (Date().after(exp)) // no need to include clock skew, since we generated token ourselves
         }
@@ -0,0 +1,87 @@
+package gov.cdc.prime.router.tokens
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import java.security.MessageDigest
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.Base64
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of the claims of access tokens that were already verified by [Server2ServerAuthentication.authenticate], so
+ * senders that make many requests with the same token do not have the token parsed and its signature verified on
+ * every request.  Tokens are keyed by their SHA-256 hash so the cache does not hold the bearer tokens themselves,
+ * and a token is only served from the cache until its expiration.
+ *
+ * @property maximumSize the maximum number of tokens to cache
+ * @property maximumLifetime how long a token is cached at most, even if it expires later
+ * @property clock the clock used to check if a token expired
+ */
+class VerifiedAccessTokenCache(
+    val maximumSize: Long = 10_000,
+    val maximumLifetime: Duration = Duration.ofMinutes(10),
+    private val clock: Clock = Clock.systemUTC(),
+) {
+    /**
+     * Verified [claims] of a token that expires at [expiresAt].
+     */
+    private data class VerifiedToken(val claims: AuthenticatedClaims, val expiresAt: Instant)
+
+    /**
+     * Counters for the cache.  [hits] and [misses] are lookups that did or did not find an unexpired token and
+     * [size] is the approximate number of cached tokens.
+     */
+    data class Stats(val hits: Long, val misses: Long, val size: Long)
+
+    private val tokens: Cache<String, VerifiedToken> = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .expireAfterWrite(maximumLifetime)
+        .build()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * Get the verified claims for [accessToken].
+     * @return the claims or null if the token was not verified or has expired
+     */
+    fun get(accessToken: String): AuthenticatedClaims? {
+        val key = hash(accessToken)
+        val verified = tokens.getIfPresent(key)
+        if (verified != null && clock.instant().isBefore(verified.expiresAt)) {
+            hits.incrementAndGet()
+            return verified.claims
+        }
+        if (verified != null) tokens.invalidate(key)
+        misses.incrementAndGet()
+        return null
+    }
+
+    /**
+     * Add the verified [claims] for [accessToken], which are valid until [expiresAt].
+     */
+    fun put(accessToken: String, claims: AuthenticatedClaims, expiresAt: Instant) {
+        if (clock.instant().isBefore(expiresAt)) tokens.put(hash(accessToken), VerifiedToken(claims, expiresAt))
+    }
+
+    /**
+     * Remove all the tokens from the cache.
+     */
+    fun clear() {
+        tokens.invalidateAll()
+    }
+
+    /**
+     * The current counters for the cache.
+     */
+    fun stats(): Stats = Stats(hits.get(), misses.get(), tokens.size())
+
+    companion object {
+        /**
+         * The SHA-256 hash of [accessToken] as a Base64 string.
+         */
+        private fun hash(accessToken: String): String =
+            Base64.getEncoder().encodeToString(MessageDigest.getInstance("SHA-256").digest(accessToken.toByteArray()))
+    }
+}
@@ -0,0 +1,82 @@
+package gov.cdc.prime.router.transport
+
+import com.google.common.cache.Cache
+import com.google.common.cache.CacheBuilder
+import com.google.common.cache.RemovalListener
+import gov.cdc.prime.router.RESTTransportType
+import gov.cdc.prime.router.credentials.UserJksCredential
+import io.ktor.client.HttpClient
+import java.time.Duration
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Pool of long-lived HTTP clients for the REST transport, one per receiver, transport settings and TLS credential.
+ *
+ * Creating a client per report means a new connection and TLS handshake for every request.  A pooled client keeps
+ * its connections alive between reports sent to the same receiver.  Pooled clients are shared, so they do not carry
+ * any per-request state such as the access token, and they are closed once they have not been used for
+ * [expireAfterAccess].  A client is only reused while the receiver's transport settings and credential are unchanged,
+ * so the client for the previous settings is no longer used and expires.
+ *
+ * @property expireAfterAccess how long an unused client is kept
+ */
+class HttpClientPool(
+    val expireAfterAccess: Duration = Duration.ofMinutes(30),
+    private val clientFactory: (UserJksCredential?, RESTTransportType) -> HttpClient = { jks, transport ->
+        RESTTransport.createDefaultHttpClient(jks, null, transport)
+    },
+) {
+    /**
+     * Key for the client used to send to [receiverFullName] with the [transport] settings and optional
+     * [jksCredential].  Both are data classes, so any change to the settings, like the URLs, auth type, TLS keystore
+     * or headers, or to the credential results in a new client.
+     */
+    private data class Key(
+        val receiverFullName: String,
+        val transport: RESTTransportType,
+        val jksCredential: UserJksCredential?,
+    )
+
+    /**
+     * Counters for the pool.  [created] are the clients created, [reused] are the requests for a client that got an
+     * existing client and [size] is the current number of clients.
+     */
+    data class Stats(val created: Long, val reused: Long, val size: Long)
+
+    private val clients: Cache<Key, HttpClient> = CacheBuilder.newBuilder()
+        .expireAfterAccess(expireAfterAccess)
+        .removalListener(RemovalListener<Key, HttpClient> { it.value?.close() })
+        .build()
+    private val created = AtomicLong()
+    private val reused = AtomicLong()
+
+    /**
+     * Get the client used to send to [receiverFullName] with the [transport] settings and optional [jksCredential],
+     * creating it if needed.  The client must not be closed by the caller.
+     * @return the HTTP client
+     */
+    fun getClient(
+        receiverFullName: String,
+        jksCredential: UserJksCredential?,
+        transport: RESTTransportType,
+    ): HttpClient {
+        var isNew = false
+        val key = Key(receiverFullName, transport, jksCredential)
+        val client = clients.asMap().computeIfAbsent(key) {
+            isNew = true
+            clientFactory(jksCredential, transport)
+        }
+        if (isNew) created.incrementAndGet() else reused.incrementAndGet()
+        return client
+    }
+
+    /**
+     * The current counters for the pool.
+     */
+    fun stats(): Stats = Stats(created.get(), reused.get(), clients.size())
+
+    /**
+     * Close and remove all the clients.  The counters are not reset.
+     */
+    fun clear() = clients.invalidateAll()
+}
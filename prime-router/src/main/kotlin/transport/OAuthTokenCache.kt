@@ -0,0 +1,89 @@
+package gov.cdc.prime.router.transport
+
+import gov.cdc.prime.router.RESTTransportType
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Cache of the OAuth access tokens used by the REST transport, so a token is requested once for all the reports sent
+ * to a receiver while it is valid instead of once per report.
+ *
+ * A token is kept until [refreshMargin] before it expires, or a tenth of its lifetime for short-lived tokens, so
+ * a new token is requested before the receiver starts rejecting the cached one.  Tokens without an `expires_in` are
+ * not cached, and expired tokens are removed whenever a new token is requested.
+ *
+ * @property refreshMargin how long before a token expires to request a new one
+ * @property clock the clock used to check if a token is about to expire
+ */
+class OAuthTokenCache(
+    val refreshMargin: Duration = Duration.ofSeconds(60),
+    private val clock: Clock = Clock.systemUTC(),
+) {
+    /**
+     * Key for the token requested with the [transport] settings for the receiver [receiverFullName].  The credentials
+     * of a receiver are found from its name and transport settings, so the key does not need them, and a token is
+     * found without reading the credentials.
+     */
+    data class Key(val transport: RESTTransportType, val receiverFullName: String)
+
+    /**
+     * A cached [accessToken] that is used until [refreshAt].
+     */
+    private data class CachedToken(val accessToken: String, val refreshAt: Instant)
+
+    /**
+     * Counters for the cache.  [hits] and [misses] are lookups that did or did not find a valid token and [size] is
+     * the current number of cached tokens.
+     */
+    data class Stats(val hits: Long, val misses: Long, val size: Int)
+
+    private val tokens = ConcurrentHashMap<Key, CachedToken>()
+    private val hits = AtomicLong()
+    private val misses = AtomicLong()
+
+    /**
+     * Get the access token for [key], calling [fetch] to request a new token if there is no cached token or it is
+     * about to expire.  Exceptions thrown by [fetch] are passed on to the caller.
+     * @return the access token
+     */
+    suspend fun getToken(key: Key, fetch: suspend () -> TokenInfo): String {
+        val now = clock.instant()
+        val cached = tokens[key]
+        if (cached != null && now.isBefore(cached.refreshAt)) {
+            hits.incrementAndGet()
+            return cached.accessToken
+        }
+        misses.incrementAndGet()
+        tokens.values.removeIf { !now.isBefore(it.refreshAt) }
+
+        val tokenInfo = fetch()
+        val expiresIn = tokenInfo.expiresIn
+        if (expiresIn != null && expiresIn > 0) {
+            val margin = minOf(refreshMargin, Duration.ofSeconds(expiresIn).dividedBy(10))
+            tokens[key] = CachedToken(tokenInfo.accessToken, now.plusSeconds(expiresIn).minus(margin))
+        } else {
+            tokens.remove(key)
+        }
+        return tokenInfo.accessToken
+    }
+
+    /**
+     * Remove the token for [key], for example after the receiver rejected it.  If [accessToken] is given, the cached
+     * token is only removed if it is still that token, so a token another send just requested is kept.
+     */
+    fun invalidate(key: Key, accessToken: String? = null) {
+        if (accessToken == null) {
+            tokens.remove(key)
+        } else {
+            tokens.computeIfPresent(key) { _, cached -> if (cached.accessToken == accessToken) null else cached }
+        }
+    }
+
+    /**
+     * The current counters for the cache.
+     */
+    fun stats(): Stats = Stats(hits.get(), misses.get(), tokens.size)
+}
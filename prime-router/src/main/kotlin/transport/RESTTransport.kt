@@ -50,6 +50,7 @@ import io.ktor.http.ContentType
 import io.ktor.http.Headers
 import io.ktor.http.HttpHeaders
 import io.ktor.http.HttpMessageBuilder
+import io.ktor.http.HttpStatusCode
 import io.ktor.http.Parameters
 import io.ktor.http.content.TextContent
 import io.ktor.http.contentType
@@ -73,8 +74,14 @@ import javax.net.ssl.SSLContext
 /**
  * A REST transport that will get an authentication token from the authTokenUrl
  * and POST HL7 to the reportUrl
+ *
+ * Reports are sent with the pooled HTTP client for the receiver, and OAuth tokens are reused while they are valid.
+ * An injected [httpClient] is used as is, with its own [tokenCache] so tests do not share tokens.
  */
-class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
+class RESTTransport(
+    private val httpClient: HttpClient? = null,
+    private val tokenCache: OAuthTokenCache = if (httpClient == null) sharedTokenCache else OAuthTokenCache(),
+) : ITransport {
     /**
      * Send the content on the specific transport. Return retry information, if needed. Null, if not.
      *
@@ -102,9 +109,12 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
         val restTransportInfo = transportType as RESTTransportType
         val reportId = "${header.reportFile.reportId}"
         val receiver = header.receiver ?: error("No receiver defined for report $reportId")
-        var reportContent: ByteArray = header.content ?: error("No content for report $reportId")
+        val reportContent: ByteArray = header.content ?: error("No content for report $reportId")
 
-        val (credential, jksCredential) = getCredential(restTransportInfo, receiver)
+        val jksCredential = getJksCredential(restTransportInfo)
+        // Only read when a token is requested or the receiver uses an API key, as two-legged credentials are signed
+        val credential = lazy { getRestCredential(restTransportInfo, receiver) }
+        val tokenKey = OAuthTokenCache.Key(restTransportInfo, receiver.fullName)
 
         return try {
             // run our call to the endpoint in a blocking fashion
@@ -112,41 +122,64 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
                 launch {
                     try {
                         val httpHeaders = getHeaders(restTransportInfo, reportId)
+                        val client = httpClient
+                            ?: clientPool.getClient(receiver.fullName, jksCredential, restTransportInfo)
+
+                        // The pooled client is shared, so the token is sent as a header of each request
+                        suspend fun postWithToken(accessToken: String?): HttpResponse {
+                            val requestHeaders = addAuthorizationHeader(httpHeaders, accessToken, restTransportInfo)
+                            // If encryption is needed.
+                            val content = if (restTransportInfo.encryptionKeyUrl.isNotEmpty()) {
+                                encryptTheReport(
+                                    reportContent,
+                                    restTransportInfo.encryptionKeyUrl,
+                                    requestHeaders,
+                                    client
+                                )
+                            } else {
+                                reportContent
+                            }
+
+                            // post the report
+                            return postReport(
+                                content,
+                                externalFileName,
+                                restTransportInfo.reportUrl,
+                                requestHeaders,
+                                logger,
+                                client,
+                                header.reportFile.createdAt
+                            )
+                        }
 
-                        val accessToken = getAccessToken(
+                        var requestedToken = false
+                        val accessToken = getCachedAccessToken(
                             restTransportInfo,
+                            tokenKey,
                             jksCredential,
-                            credential,
                             httpHeaders,
                             logger
-                        )
-
-                        // If encryption is needed.
-                        if (restTransportInfo.encryptionKeyUrl.isNotEmpty()) {
-                            reportContent = encryptTheReport(
-                                reportContent,
-                                restTransportInfo.encryptionKeyUrl,
-                                httpHeaders,
-                                httpClient ?: createDefaultHttpClient(
-                                    jksCredential, accessToken,
-                                    restTransportInfo
-                                )
+                        ) {
+                            requestedToken = true
+                            credential.value
+                        }
+                        val response = try {
+                            postWithToken(accessToken)
+                        } catch (e: ResponseException) {
+                            if (e.response.status != HttpStatusCode.Unauthorized || requestedToken ||
+                                !usesOAuthToken(restTransportInfo)
+                            ) {
+                                throw e
+                            }
+                            // the cached token may have been revoked or expired early, so retry once with a new one
+                            logger.warning("Cached token for ${receiver.fullName} was rejected, requesting a new one")
+                            tokenCache.invalidate(tokenKey, accessToken)
+                            postWithToken(
+                                getCachedAccessToken(restTransportInfo, tokenKey, jksCredential, httpHeaders, logger) {
+                                    credential.value
+                                }
                             )
                         }
-
-                        // post the report
-                        val response = postReport(
-                            reportContent,
-                            externalFileName,
-                            restTransportInfo.reportUrl,
-                            httpHeaders,
-                            logger,
-                            httpClient ?: createDefaultHttpClient(
-                                jksCredential, accessToken,
-                                restTransportInfo
-                            ),
-                            header.reportFile.createdAt
-                        )
                         val responseBody = response.bodyAsText()
                         // update the action history
                         val msg = "Success: REST transport of $externalFileName to $restTransportInfo:\n$responseBody"
@@ -188,6 +221,10 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
             when (t) {
                 // do not retry on any response exception that is a client exception unless it is a 429
                 is ResponseException -> {
+                    // a rejected token is not used again
+                    if (t.response.status == HttpStatusCode.Unauthorized) {
+                        tokenCache.invalidate(tokenKey)
+                    }
                     if (t.response.status.value in 400..499 && t.response.status.value != 429) {
                         (t).let {
                             logger.severe(
@@ -228,18 +265,26 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
      * @param transport the transport type of two-legged or default
      * @param receiver the receiver setting
      */
-    fun getCredential(transport: RESTTransportType, receiver: Receiver): Pair<RestCredential, UserJksCredential?> {
-        val jwtParams = transport.jwtParams
-        val credential: RestCredential = if (transport.authType == "two-legged") {
-            lookupTwoLeggedCredential(receiver, jwtParams)
+    fun getCredential(transport: RESTTransportType, receiver: Receiver): Pair<RestCredential, UserJksCredential?> =
+        Pair(getRestCredential(transport, receiver), getJksCredential(transport))
+
+    /**
+     * Get the credential used to authenticate, either two-legged or default.
+     * @param transport the transport type of two-legged or default
+     * @param receiver the receiver setting
+     */
+    fun getRestCredential(transport: RESTTransportType, receiver: Receiver): RestCredential =
+        if (transport.authType == "two-legged") {
+            lookupTwoLeggedCredential(receiver, transport.jwtParams)
         } else {
             lookupDefaultCredential(receiver)
         }
 
-        val jksCredential: UserJksCredential? = transport.tlsKeystore?.let { lookupJksCredentials(it) }
-
-        return Pair(credential, jksCredential)
-    }
+    /**
+     * Get the JKS credential of the [transport], if it has a TLS keystore.
+     */
+    fun getJksCredential(transport: RESTTransportType): UserJksCredential? =
+        transport.tlsKeystore?.let { lookupJksCredentials(it) }
 
     /**
      * Get a credential from the credential service
@@ -332,20 +377,44 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
             accessToken = apiKeyCredential.apiKey
         }
 
-        if (restTransportInfo.authType == "two-legged" || restTransportInfo.authType == null) {
+        if (usesOAuthToken(restTransportInfo)) {
             // parse headers for any dynamic values, OK needs the report ID
-            accessToken = getOAuthToken(
-                restTransportInfo,
-                jksCredential,
-                credential,
-                logger
-            )
+            accessToken = getOAuthToken(restTransportInfo, jksCredential, credential, logger)
             logger.info("Token successfully added!")
         }
 
         return accessToken
     }
 
+    /**
+     * Get the access token like [getAccessToken], reusing the OAuth token cached for [tokenKey] while it is valid.
+     * The [credential] is only read when a new OAuth token is requested or the receiver uses an API key.
+     *
+     * @param restTransportInfo - Transport setting
+     * @param tokenKey - the key of the cached OAuth token
+     * @param jksCredential The jks credential
+     */
+    private suspend fun getCachedAccessToken(
+        restTransportInfo: RESTTransportType,
+        tokenKey: OAuthTokenCache.Key,
+        jksCredential: UserJksCredential?,
+        httpHeaders: MutableMap<String, String>,
+        logger: Logger,
+        credential: () -> RestCredential,
+    ): String? = if (usesOAuthToken(restTransportInfo)) {
+            tokenCache.getToken(tokenKey) {
+                getOAuthTokenInfo(restTransportInfo, jksCredential, credential(), logger)
+            }.also { logger.info("Token successfully added!") }
+        } else {
+            getAccessToken(restTransportInfo, jksCredential, credential(), httpHeaders, logger)
+        }
+
+    /**
+     * Whether the receiver with the [restTransportInfo] settings is sent reports with an OAuth token.
+     */
+    private fun usesOAuthToken(restTransportInfo: RESTTransportType): Boolean =
+        restTransportInfo.authType == "two-legged" || restTransportInfo.authType == null
+
     /**
      * Get the OAuth token based on credential type
      *
@@ -357,7 +426,20 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
         jksCredential: UserJksCredential?,
         credential: RestCredential,
         logger: Logger,
-    ): String {
+    ): String = getOAuthTokenInfo(restTransportInfo, jksCredential, credential, logger).accessToken
+
+    /**
+     * Get the OAuth token and its lifetime based on credential type
+     *
+     * @param restTransportInfo - Transport setting
+     * @param jksCredential The jks credential
+     */
+    suspend fun getOAuthTokenInfo(
+        restTransportInfo: RESTTransportType,
+        jksCredential: UserJksCredential?,
+        credential: RestCredential,
+        logger: Logger,
+    ): TokenInfo {
         val tokenClient = httpClient ?: createDefaultHttpClient(jksCredential, null, null)
         // get the credential and use it to request an OAuth token
         // Usually credential is a UserApiKey, with an apiKey field (NY)
@@ -393,7 +475,7 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
 
             else -> error("UserApiKey or UserPass credential required")
         }
-        return tokenInfo.accessToken
+        return tokenInfo
     }
 
     /**
@@ -550,22 +632,18 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
      *
      * @param encryptionKeyUrl - Url to extract the key from
      * @param headers - headers
-     * @param httpClient - given http client engine
+     * @param httpClient - given http client engine, which is not closed as it can be a pooled client
      *
      */
     suspend fun getEncryptionKey(
         encryptionKeyUrl: String,
         headers: Map<String, String>,
         httpClient: HttpClient,
-    ): String {
-        httpClient.use { client ->
-            return client.get(encryptionKeyUrl) {
-                buildHeaders(
-                    headers.map { (key, value) -> Pair(key, value) }.toMap()
-                )
-            }.body<String>()
-        }
-    }
+    ): String = httpClient.get(encryptionKeyUrl) {
+            buildHeaders(
+                headers.map { (key, value) -> Pair(key, value) }.toMap()
+            )
+        }.body<String>()
 
     /**
      * Encrypt the report to the REST service. This is a suspend function, meaning it can get called as an
@@ -607,6 +685,7 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
      * @param message The report we want to send as a ByteArray
      * @param restUrl The URL to post the report to
      * @param context Really just here to get logging injected
+     * @param httpClient the HTTP client to make the call, which is not closed as it can be a pooled client
      */
     suspend fun postReport(
         message: ByteArray,
@@ -619,26 +698,47 @@ class RESTTransport(private val httpClient: HttpClient? = null) : ITransport {
     ): HttpResponse {
         logger.info(fileName)
         val boundary = "WebAppBoundary"
-        httpClient.use { client ->
-
-            val response: HttpResponse = if (headers["method"] == "PUT") {
-                client.put(restUrl) {
-                    build(logger, headers, message, fileName, boundary, reportCreateDate)
-                }
-            } else {
-                client.post(restUrl) {
-                    build(logger, headers, message, fileName, boundary, reportCreateDate)
-                }
+        val response: HttpResponse = if (headers["method"] == "PUT") {
+            httpClient.put(restUrl) {
+                build(logger, headers, message, fileName, boundary, reportCreateDate)
+            }
+        } else {
+            httpClient.post(restUrl) {
+                build(logger, headers, message, fileName, boundary, reportCreateDate)
             }
-
-            return response
         }
+
+        return response
     }
 
     companion object {
         /** A default value for the timeouts to connect and send messages */
         private const val TIMEOUT = 120_000
 
+        /** The HTTP clients shared by all the REST transports */
+        val clientPool = HttpClientPool()
+
+        /** The OAuth tokens shared by all the REST transports that use the pooled clients */
+        val sharedTokenCache = OAuthTokenCache()
+
+        /**
+         * Add the Authorization header for the [accessToken] to the [headers], unless the receiver settings already
+         * have an Authorization header.  This is the header the default HTTP client adds when it is created with a
+         * token.
+         * @return the headers to send
+         */
+        fun addAuthorizationHeader(
+            headers: Map<String, String>,
+            accessToken: String?,
+            restTransportInfo: RESTTransportType?,
+        ): Map<String, String> = if (accessToken == null ||
+            headers.keys.any { it.equals(HttpHeaders.Authorization, ignoreCase = true) }
+        ) {
+            headers
+        } else {
+            headers + (HttpHeaders.Authorization to getAuthorizationHeader(restTransportInfo) + " $accessToken")
+        }
+
         /** Get Authentication header.  It is hear to ease Unit Test */
         fun getAuthorizationHeader(
             restTransportInfo: RESTTransportType?,
@@ -0,0 +1,36 @@
+/*
+ * The Flyway tool applies this migration to create the database.
+ *
+ * Follow this style guide https://about.gitlab.com/handbook/business-ops/data-team/platform/sql-style-guide/
+ * use VARCHAR(63) for names in organization and schema
+ *
+ * Copy a version of this comment into the next migration
+ *
+ */
+
+/*
+ * Makes the jti column of the jti_cache table unique so a JTI can be checked and recorded with a single
+ * INSERT ... ON CONFLICT statement.  Expired JTIs are removed first, and then any remaining duplicates,
+ * keeping the record that expires last.  A record without an expiration never expires, so it is the one kept.
+ */
+DELETE FROM jti_cache WHERE expires_at < NOW();
+
+DELETE FROM jti_cache
+    WHERE jti_cache_id IN (
+        SELECT jti_cache_id
+        FROM (
+            SELECT
+                jti_cache_id,
+                ROW_NUMBER() OVER (
+                    PARTITION BY jti
+                    ORDER BY expires_at DESC NULLS FIRST, jti_cache_id DESC
+                ) AS jti_rank
+            FROM jti_cache
+            WHERE jti IS NOT NULL
+        ) AS ranked
+        WHERE jti_rank > 1
+    )
+;
+
+DROP INDEX IF EXISTS jti_cache_jti_idx;
+CREATE UNIQUE INDEX jti_cache_jti_idx ON jti_cache(jti);
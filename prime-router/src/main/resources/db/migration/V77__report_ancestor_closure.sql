@@ -0,0 +1,171 @@
+/*
+ * The Flyway tool applies this migration to create the database.
+ *
+ * Follow this style guide https://about.gitlab.com/handbook/business-ops/data-team/platform/sql-style-guide/
+ * use VARCHAR(63) for names in organization and schema
+ *
+ * Copy a version of this comment into the next migration
+ *
+ */
+
+/*
+ * Adds the report_ancestor closure table of the report_lineage table, so the ancestors and descendants of a report
+ * are found with an index lookup instead of walking the lineage with a recursive query.  The table is maintained
+ * when report lineages are inserted, using the add_report_ancestors function.  The lineages recorded before this
+ * migration are added by backfill_report_ancestors, and the closure table is only complete once
+ * report_ancestor_backfill.completed_at is set.
+ */
+CREATE TABLE report_ancestor (
+    report_ancestor_id BIGSERIAL PRIMARY KEY,
+    report_id UUID NOT NULL REFERENCES report_file(report_id) ON DELETE CASCADE,
+    ancestor_report_id UUID NOT NULL REFERENCES report_file(report_id) ON DELETE CASCADE,
+    depth INTEGER NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL DEFAULT NOW()
+);
+
+CREATE UNIQUE INDEX report_ancestor_report_id_ancestor_report_id_idx
+    ON report_ancestor(report_id, ancestor_report_id);
+CREATE INDEX report_ancestor_ancestor_report_id_idx ON report_ancestor(ancestor_report_id);
+
+COMMENT ON TABLE report_ancestor IS
+    'Closure of report_lineage with a row for every report and each of its ancestors';
+COMMENT ON COLUMN report_ancestor.depth IS
+    'The number of lineages between the report and the ancestor on the shortest path, 1 for a parent';
+
+/*
+ * Progress of the backfill of the lineages recorded before the report_ancestor table existed.  There is a single
+ * row, which is complete right away for a database without lineages.
+ *
+ * The backfill adds the lineages up to migrated_report_lineage_id, then reruns the lineages inserted since the
+ * migration up to fixup_report_lineage_id, which is set when the first pass is done.  Lineages inserted by a
+ * transaction that started before the migration, or by an instance that was not yet deployed with the
+ * add_report_ancestors call, are not in the closure, and the fix-up pass adds them before the backfill is complete.
+ */
+CREATE TABLE report_ancestor_backfill (
+    report_ancestor_backfill_id INTEGER PRIMARY KEY DEFAULT 1 CHECK (report_ancestor_backfill_id = 1),
+    last_report_lineage_id BIGINT NOT NULL DEFAULT 0,
+    migrated_report_lineage_id BIGINT NOT NULL DEFAULT 0,
+    fixup_report_lineage_id BIGINT,
+    completed_at TIMESTAMP WITH TIME ZONE
+);
+
+INSERT INTO report_ancestor_backfill (migrated_report_lineage_id, completed_at)
+SELECT COALESCE(MAX(report_lineage_id), 0), CASE WHEN COUNT(*) = 0 THEN NOW() END
+FROM report_lineage;
+
+/*
+ * Add the lineages from each parent_report_ids[i] to child_report_ids[i] to the closure table, in order.  The parent
+ * and its ancestors become ancestors of the child and of all its descendants, so lineages can be added in any order.
+ * Returns the number of rows added or updated.
+ *
+ * Every path between a descendant of the child and an ancestor of the parent that goes through the new lineage is
+ * made of the shortest paths already in the closure, so updating the depth of each of those rows when it gets
+ * shorter keeps the depth of every row the shortest, including the rows of the descendants of the child.
+ *
+ * A backfill batch does not see the closure rows of lineages that are being added at the same time, and they do not
+ * see the rows of the batch, so while the backfill is running this takes a shared transaction lock that waits for
+ * the batch in progress in backfill_report_ancestors to commit.  The lock is shared, so lineages added at the same
+ * time do not wait for each other, and it is not taken at all once the backfill is complete.  The lock is keyed on
+ * the report_ancestor_backfill table.
+ */
+CREATE OR REPLACE FUNCTION add_report_ancestors(parent_report_ids UUID[], child_report_ids UUID[])
+RETURNS INTEGER
+AS $$
+DECLARE
+    added INTEGER := 0;
+    inserted INTEGER;
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM report_ancestor_backfill WHERE completed_at IS NOT NULL) THEN
+        PERFORM pg_advisory_xact_lock_shared('report_ancestor_backfill'::REGCLASS::OID::BIGINT);
+    END IF;
+    FOR i IN 1 .. COALESCE(array_length(parent_report_ids, 1), 0) LOOP
+        INSERT INTO report_ancestor (report_id, ancestor_report_id, depth)
+        SELECT D.report_id, A.ancestor_report_id, D.depth + A.depth + 1
+        FROM (
+            SELECT child_report_ids[i] AS report_id, 0 AS depth, 0::BIGINT AS report_ancestor_id
+           UNION ALL
+            SELECT RA.report_id, RA.depth, RA.report_ancestor_id
+            FROM report_ancestor AS RA
+            WHERE RA.ancestor_report_id = child_report_ids[i]
+        ) AS D
+        CROSS JOIN (
+            SELECT parent_report_ids[i] AS ancestor_report_id, 0 AS depth, 0::BIGINT AS report_ancestor_id
+           UNION ALL
+            SELECT RA.ancestor_report_id, RA.depth, RA.report_ancestor_id
+            FROM report_ancestor AS RA
+            WHERE RA.report_id = parent_report_ids[i]
+        ) AS A
+        -- keep the ancestors in the order they were added, which is the order of the lineages
+        ORDER BY D.report_ancestor_id, A.report_ancestor_id
+        ON CONFLICT (report_id, ancestor_report_id) DO UPDATE
+            SET depth = EXCLUDED.depth
+            WHERE EXCLUDED.depth < report_ancestor.depth;
+        GET DIAGNOSTICS inserted = ROW_COUNT;
+        added := added + inserted;
+    END LOOP;
+    RETURN added;
+END;
+$$  LANGUAGE PLPGSQL;
+
+/*
+ * Add the next batch_size lineages after the last backfilled one to the closure table and record the progress.
+ * The first pass adds the lineages recorded before the migration.  Once a batch has fewer lineages than batch_size,
+ * the fix-up pass reruns the lineages inserted since the migration, up to the last one at that time, and the backfill
+ * is complete once one of its batches has fewer lineages than batch_size.  Adding a lineage again only adds the
+ * closure rows that are missing.  Lineages inserted while the backfill is running only wait for the batch in
+ * progress to commit, see add_report_ancestors.
+ * Returns the number of lineages added.
+ */
+CREATE OR REPLACE FUNCTION backfill_report_ancestors(batch_size INTEGER)
+RETURNS INTEGER
+AS $$
+DECLARE
+    progress report_ancestor_backfill%ROWTYPE;
+    end_id BIGINT;
+    lineage_ids BIGINT[];
+    parent_ids UUID[];
+    child_ids UUID[];
+    lineage_count INTEGER;
+BEGIN
+    -- wait for the lineages being inserted to commit, and make the ones inserted from now on and concurrent
+    -- backfills wait for this batch to commit
+    PERFORM pg_advisory_xact_lock('report_ancestor_backfill'::REGCLASS::OID::BIGINT);
+    SELECT * INTO progress FROM report_ancestor_backfill FOR UPDATE;
+    IF progress.completed_at IS NOT NULL THEN
+        RETURN 0;
+    END IF;
+    end_id := COALESCE(progress.fixup_report_lineage_id, progress.migrated_report_lineage_id);
+
+    SELECT
+        array_agg(RL.report_lineage_id ORDER BY RL.report_lineage_id),
+        array_agg(RL.parent_report_id ORDER BY RL.report_lineage_id),
+        array_agg(RL.child_report_id ORDER BY RL.report_lineage_id)
+    INTO lineage_ids, parent_ids, child_ids
+    FROM (
+        SELECT report_lineage_id, parent_report_id, child_report_id
+        FROM report_lineage
+        WHERE report_lineage_id > progress.last_report_lineage_id AND report_lineage_id <= end_id
+        ORDER BY report_lineage_id
+        LIMIT batch_size
+    ) AS RL;
+
+    lineage_count := COALESCE(array_length(lineage_ids, 1), 0);
+    IF lineage_count > 0 THEN
+        PERFORM add_report_ancestors(parent_ids, child_ids);
+        UPDATE report_ancestor_backfill SET last_report_lineage_id = lineage_ids[lineage_count];
+    END IF;
+    IF lineage_count < batch_size THEN
+        IF progress.fixup_report_lineage_id IS NULL THEN
+            UPDATE report_ancestor_backfill
+            SET last_report_lineage_id = progress.migrated_report_lineage_id,
+                fixup_report_lineage_id = (
+                    SELECT COALESCE(MAX(report_lineage_id), progress.migrated_report_lineage_id)
+                    FROM report_lineage
+                );
+        ELSE
+            UPDATE report_ancestor_backfill SET completed_at = NOW();
+        END IF;
+    END IF;
+    RETURN lineage_count;
+END;
+$$  LANGUAGE PLPGSQL;
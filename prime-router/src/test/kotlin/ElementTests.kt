@@ -335,6 +335,41 @@ internal class ElementTests {
         }
     }
 
+    @Test
+    fun `test plain US phone numbers match the phone number library`() {
+        val element = Element(
+            "a",
+            type = Element.Type.TELEPHONE,
+            csvFields = Element.csvFields("phone")
+        )
+        listOf(
+            "5559938322",
+            "555-968-5052",
+            "(555) 968-5052",
+            "(555)-968-5052",
+            "555 968 5052",
+        ).forEach {
+            assertThat(Element.usNationalNumber(it)).isEqualTo(it.filter { c -> c.isDigit() })
+            val number = Element.phoneNumberUtil.parse(it, "US")
+            assertThat(element.toNormalized(it))
+                .isEqualTo("${number.nationalNumber}:${number.countryCode}:${number.extension}")
+            assertThat(Element.checkPhoneNumber(it, "phone")).isNull()
+        }
+
+        // values that need the phone number library
+        listOf(
+            "1(555)-968-5052",
+            "+1 555 968 5052",
+            "555.968.5052",
+            "0559938322",
+            "555993832",
+            "55599383221",
+            "555-968-5052 x123",
+        ).forEach {
+            assertThat(Element.usNationalNumber(it)).isNull()
+        }
+    }
+
     @Test
     fun `test checkPhoneNumber method`() {
         listOf(
@@ -833,6 +868,30 @@ internal class ElementTests {
         assertThat(one.checkForError("Y", "\$code")).isNull()
     }
 
+    @Test
+    fun `test value set lookups ignore case`() {
+        val values = ValueSet(
+            "test",
+            system = ValueSet.SetSystem.LOCAL,
+            version = "1",
+            values = listOf(
+                ValueSet.Value(code = "Y", display = "Yes"),
+                ValueSet.Value(code = "y", display = "Lowercase yes"),
+                ValueSet.Value(code = "N", display = "No", version = "2", system = ValueSet.SetSystem.HL7),
+                ValueSet.Value(code = "U")
+            )
+        )
+        assertThat(values.toNormalizedCode("y")).isEqualTo("Y")
+        assertThat(values.toDisplayFromCode("y")).isEqualTo("Yes")
+        assertThat(values.toCodeFromDisplay("NO")).isEqualTo("N")
+        assertThat(values.toCodeFromDisplay("Unknown")).isNull()
+        assertThat(values.toVersionFromCode("n")).isEqualTo("2")
+        assertThat(values.toVersionFromCode("U")).isEqualTo("1")
+        assertThat(values.toSystemFromCode("n")).isEqualTo("HL7")
+        assertThat(values.toSystemFromCode("X")).isEqualTo("LOCAL")
+        assertThat(values.toNormalizedCode("X")).isNull()
+    }
+
     @Test
     fun `test truncate`() {
         Element(
@@ -6,6 +6,8 @@ import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import assertk.assertions.isTrue
 import gov.cdc.prime.router.unittest.UnitTestUtils
+import io.mockk.spyk
+import io.mockk.verify
 import java.io.ByteArrayInputStream
 import kotlin.test.Test
 import kotlin.test.assertEquals
@@ -469,6 +471,80 @@ class TranslatorTests {
         }
     }
 
+    @Test
+    fun `test filterAndTranslateByReceiver skips other jurisdictions`() {
+        val yaml = """
+        ---
+          - name: phd1
+            description: Arizona PHD
+            jurisdiction: STATE
+            stateCode: AZ
+            filters:
+            - topic: test
+              qualityFilter: [ "allowAll()" ]
+              routingFilter: [ "allowAll()" ]
+              processingModeFilter: [ "allowAll()" ]
+            receivers:
+            - name: literal
+              organizationName: phd1
+              topic: test
+              customerStatus: active
+              jurisdictionalFilter: [ "orEquals(a, 5, b, 4)" ]
+              translation:
+                type: CUSTOM
+                schemaName: one
+                format: CSV
+            - name: other
+              organizationName: phd1
+              topic: test
+              customerStatus: active
+              jurisdictionalFilter: [ "orEquals(a, 5, b, 6)", "allowAll()" ]
+              translation:
+                type: CUSTOM
+                schemaName: one
+                format: CSV
+            - name: missing
+              organizationName: phd1
+              topic: test
+              customerStatus: active
+              jurisdictionalFilter: [ "matches(c, 1)" ]
+              translation:
+                type: CUSTOM
+                schemaName: one
+                format: CSV
+            - name: regex
+              organizationName: phd1
+              topic: test
+              customerStatus: active
+              jurisdictionalFilter: [ "matches(a, [0-9])" ]
+              translation:
+                type: CUSTOM
+                schemaName: one
+                format: CSV
+        """.trimIndent()
+        val theSchema = Schema(name = "one", topic = Topic.TEST, elements = listOf(Element("a"), Element("b")))
+        val metadata = UnitTestUtils.simpleMetadata.loadSchemas(theSchema)
+        val settings = FileSettings().also {
+            it.loadOrganizations(ByteArrayInputStream(yaml.toByteArray()))
+        }
+        val translator = spyk(Translator(metadata, settings))
+        val table1 = Report(
+            theSchema,
+            listOf(
+                listOf("1", "2"), // first row of data
+                listOf("3", "4"), // second row of data
+            ),
+            TestSource,
+            metadata = metadata
+        )
+        translator.filterAndTranslateByReceiver(table1).run {
+            assertThat(this.reports.map { it.receiver.name to it.report.itemCount })
+                .isEqualTo(listOf("literal" to 1, "regex" to 2))
+        }
+        // only the receivers whose jurisdictions can match are filtered
+        verify(exactly = 2) { translator.filterByAllFilterTypes(any(), any(), any()) }
+    }
+
     @Test
     fun `test mappingWithReplace`() {
         val receiverAKYaml = """
@@ -60,10 +60,30 @@ class ApiResponseTest {
         assertThat(pagination).isEqualTo(PaginationApiResponse(6, previousPage = 2, nextPage = 4))
     }
 
+    @Test
+    fun `test buildPaginationFromApiSearch with a cursor`() {
+        // The next cursor is returned alongside the page indexes
+        var search = ApiSearchTest.TestApiSearch(emptyList(), null, page = 1, limit = 2)
+        var results = ApiSearchResult<ApiSearchTest.TestPojo>(10, 6, createResults(2), nextCursor = "next")
+        var pagination = PaginationApiResponse.buildPaginationFromApiSearch(search, results)
+        assertThat(pagination).isEqualTo(PaginationApiResponse(3, previousPage = null, nextPage = 2, "next"))
+
+        // A search after a cursor does not know its page index
+        search = ApiSearchTest.TestApiSearch(emptyList(), null, page = 1, limit = 2, cursor = "previous")
+        pagination = PaginationApiResponse.buildPaginationFromApiSearch(search, results)
+        assertThat(pagination).isEqualTo(PaginationApiResponse(3, nextCursor = "next"))
+
+        // There is no next cursor on the last page
+        results = ApiSearchResult<ApiSearchTest.TestPojo>(10, 6, createResults(2))
+        pagination = PaginationApiResponse.buildPaginationFromApiSearch(search, results)
+        assertThat(pagination).isEqualTo(PaginationApiResponse(3))
+    }
+
     @Test
     fun `test mapping an ApiSearchResult`() {
         val result = ApiSearchResult<ApiSearchTest.TestPojo>(10, 6, createResults(2))
         val mappedResult = result.map { it.foo }
         assertThat(mappedResult.results).isEqualTo(listOf("foo", "foo"))
+        assertThat(ApiSearchResult(10, 6, createResults(2), "next").map { it.foo }.nextCursor).isEqualTo("next")
     }
 }
\ No newline at end of file
@@ -1,8 +1,12 @@
 package gov.cdc.prime.router.azure
 
+import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.contains
+import assertk.assertions.doesNotContain
+import assertk.assertions.hasMessage
 import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import gov.cdc.prime.router.db.ReportFileApiSearch
@@ -14,7 +18,9 @@ import org.jooq.impl.CustomRecord
 import org.jooq.impl.CustomTable
 import org.jooq.impl.DSL.name
 import org.jooq.impl.SQLDataType
+import java.time.Duration
 import java.time.OffsetDateTime
+import java.util.Base64
 import kotlin.test.Test
 
 @Suppress("UNCHECKED_CAST")
@@ -58,7 +64,8 @@ class ApiSearchTest {
         override val sortDirection: SortDirection = SortDirection.DESC,
         page: Int = 1,
         limit: Int = 25,
-    ) : ApiSearch<TestPojo, TestRecord, TestApiFilter<*>>(TestPojo::class.java, page, limit) {
+        cursor: String? = null,
+    ) : ApiSearch<TestPojo, TestRecord, TestApiFilter<*>>(TestPojo::class.java, page, limit, cursor) {
         override fun getCondition(filter: TestApiFilter<*>): Condition = when (filter) {
                 is TestApiFilter.FooFilter -> filter.tableField.eq(filter.value)
             }
@@ -90,7 +97,8 @@ class ApiSearchTest {
                     sort,
                     sortDirection = rawApiSearch.sort?.direction ?: SortDirection.DESC,
                     limit = rawApiSearch.pagination.limit,
-                    page = rawApiSearch.pagination.page
+                    page = rawApiSearch.pagination.page,
+                    cursor = rawApiSearch.pagination.cursor
                 )
             }
         }
@@ -185,6 +193,7 @@ class ApiSearchTest {
         val sortClause = search.getSortClause()
         assertThat(sortClause.order).isEqualTo(SortOrder.DESC)
         assertThat(sortClause.name).isEqualTo("created_at")
+        assertThat(sortClause.toString()).doesNotContain("nulls")
     }
 
     @Test
@@ -213,4 +222,73 @@ class ApiSearchTest {
         assertThat(condition).isNotNull()
         assertThat(condition!!.toString()).contains("\"foo\" = 'A'")
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `Test generates the cursor condition`() {
+        val cursor = Base64.getUrlEncoder().encodeToString("""["2023-05-21T00:00:00Z","A"]""".toByteArray())
+        val rawSearchString = """
+            {
+                "sort": {
+                    "direction": "DESC",
+                    "property": "created_at"
+                },
+                "pagination": {
+                    "page": 1,
+                    "limit": 25,
+                    "cursor": "$cursor"
+                },
+                "filters": [
+                ]
+            }
+        """.trimIndent()
+        val request = MockHttpRequestMessage(rawSearchString)
+        val search = TestApiSearch.parse(request)
+        assertThat(search.cursor).isEqualTo(cursor)
+        val condition = search.getCursorCondition()
+        assertThat(condition).isNotNull()
+        assertThat(condition!!.toString()).contains("(\"created_at\", \"foo\") < (")
+        assertThat(condition.toString()).contains("'A'")
+
+        val ascendingSearch = TestApiSearch(emptyList(), null, SortDirection.ASC, cursor = cursor)
+        assertThat(ascendingSearch.getCursorCondition()!!.toString()).contains("(\"created_at\", \"foo\") > (")
+        assertThat(ascendingSearch.getCursorCondition()!!.toString()).contains("\"created_at\" is null")
+
+        assertThat(TestApiSearch(emptyList(), null).getCursorCondition()).isNull()
+    }
+
+    @Test
+    fun `Test generates the cursor condition after a null sort value`() {
+        val cursor = Base64.getUrlEncoder().encodeToString("""[null,"A"]""".toByteArray())
+        val condition = TestApiSearch(emptyList(), null, cursor = cursor).getCursorCondition()
+        assertThat(condition).isNotNull()
+        assertThat(condition!!.toString()).contains("\"created_at\" is null")
+        assertThat(condition.toString()).contains("\"foo\" < 'A'")
+        assertThat(condition.toString()).contains("\"created_at\" is not null")
+
+        val ascendingSearch = TestApiSearch(emptyList(), null, SortDirection.ASC, cursor = cursor)
+        assertThat(ascendingSearch.getCursorCondition()!!.toString()).contains("\"foo\" > 'A'")
+    }
+
+    @Test
+    fun `Test rejects an invalid cursor`() {
+        assertFailure {
+            TestApiSearch(emptyList(), null, cursor = "not a cursor").getCursorCondition()
+        }.isInstanceOf(IllegalArgumentException::class).hasMessage("Invalid pagination cursor")
+
+        val cursor = Base64.getUrlEncoder().encodeToString("""["A"]""".toByteArray())
+        assertFailure {
+            TestApiSearch(emptyList(), null, cursor = cursor).getCursorCondition()
+        }.isInstanceOf(IllegalArgumentException::class).hasMessage("Invalid pagination cursor")
+    }
+
+    @Test
+    fun `Test count cache`() {
+        val cache = ApiSearchCountCache(Duration.ofMinutes(1))
+        var counts = 0
+        assertThat(cache.getCount("select 1") { ++counts }).isEqualTo(1)
+        assertThat(cache.getCount("select 1") { ++counts }).isEqualTo(1)
+        assertThat(cache.getCount("select 2") { ++counts }).isEqualTo(2)
+        cache.clear()
+        assertThat(cache.getCount("select 1") { ++counts }).isEqualTo(3)
+    }
+}
@@ -0,0 +1,72 @@
+package gov.cdc.prime.router.azure
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.hasMessage
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isNull
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicInteger
+import kotlin.test.Test
+
+class BatchBlobDownloaderTests {
+    @Test
+    fun `test blobs are downloaded concurrently`() {
+        val downloader = BatchBlobDownloader(parallelism = 4)
+        val items = (1..4).toList()
+        // Every download waits for all the others to start, so this only finishes if they run at the same time
+        val allStarted = CountDownLatch(items.size)
+        val result = downloader.download(items) {
+            allStarted.countDown()
+            allStarted.await(10, TimeUnit.SECONDS)
+            if (it == 3) null else "content $it".toByteArray()
+        }
+
+        assertThat(allStarted.count).isEqualTo(0)
+        assertThat(result.deferred).isEmpty()
+        assertThat(result.downloaded.map { it.first }).isEqualTo(items)
+        assertThat(String(result.downloaded[0].second!!)).isEqualTo("content 1")
+        assertThat(result.downloaded[2].second).isNull()
+    }
+
+    @Test
+    fun `test parallelism is bounded`() {
+        val downloader = BatchBlobDownloader(parallelism = 2)
+        val running = AtomicInteger()
+        val maxRunning = AtomicInteger()
+        downloader.download((1..20).toList()) {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), ::maxOf)
+            Thread.sleep(5)
+            running.decrementAndGet()
+            ByteArray(1)
+        }
+        assertThat(maxRunning.get()).isLessThanOrEqualTo(2)
+    }
+
+    @Test
+    fun `test downloads stop at the memory budget`() {
+        val downloader = BatchBlobDownloader(parallelism = 1, memoryBudgetBytes = 10)
+        val result = downloader.download((1..5).toList()) { ByteArray(4) }
+        assertThat(result.downloaded.map { it.first }).isEqualTo(listOf(1, 2, 3))
+        assertThat(result.deferred).isEqualTo(listOf(4, 5))
+
+        // A blob larger than the budget is still downloaded
+        val largeResult = BatchBlobDownloader(parallelism = 1, memoryBudgetBytes = 0)
+            .download(listOf(1, 2)) { ByteArray(100) }
+        assertThat(largeResult.downloaded.size).isEqualTo(1)
+        assertThat(largeResult.deferred).isEqualTo(listOf(2))
+    }
+
+    @Test
+    fun `test download failures are thrown`() {
+        val downloader = BatchBlobDownloader(parallelism = 2)
+        assertFailure {
+            downloader.download(listOf(1, 2, 3)) {
+                if (it == 2) throw IllegalStateException("failed") else ByteArray(1)
+            }
+        }.hasMessage("failed")
+    }
+}
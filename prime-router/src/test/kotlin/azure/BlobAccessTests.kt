@@ -19,7 +19,9 @@ import com.azure.storage.blob.BlobServiceClient
 import com.azure.storage.blob.BlobServiceClientBuilder
 import com.azure.storage.blob.models.BlobDownloadContentResponse
 import com.azure.storage.blob.models.BlobDownloadResponse
+import com.azure.storage.blob.models.BlobErrorCode
 import com.azure.storage.blob.models.BlobItem
+import com.azure.storage.blob.models.BlobStorageException
 import gov.cdc.prime.reportstream.shared.BlobUtils
 import gov.cdc.prime.router.BlobStoreTransportType
 import gov.cdc.prime.router.Metadata
@@ -51,6 +53,7 @@ import java.net.MalformedURLException
 import java.nio.file.Paths
 import java.time.OffsetDateTime
 import java.time.format.DateTimeFormatter
+import java.util.HexFormat
 import java.util.UUID
 import kotlin.test.assertEquals
 
@@ -644,6 +647,63 @@ class BlobAccessTests {
         assertThat(result2).isEqualTo("testurlname")
     }
 
+    @Test
+    fun `upload body by digest`() {
+        val blobSlot = CapturingSlot<String>()
+        val testBytes = "testbytes".toByteArray()
+
+        mockkObject(BlobAccess.Companion)
+        every { BlobAccess.Companion.uploadBlobIfAbsent(capture(blobSlot), any()) } answers
+            { "http://" + blobSlot.captured }
+
+        val result = BlobAccess.uploadBodyByDigest(
+            MimeFormat.FHIR, testBytes, "testfolder", Event.EventAction.RECEIVER_ENRICHMENT
+        )
+        val result2 = BlobAccess.uploadBodyByDigest(
+            MimeFormat.FHIR, testBytes, "testfolder", Event.EventAction.RECEIVER_ENRICHMENT
+        )
+
+        val hexDigest = HexFormat.of().formatHex(BlobUtils.sha256Digest(testBytes))
+        assertThat(result.blobUrl).isEqualTo("http://receiver-enrichment/testfolder/sha256/$hexDigest.fhir")
+        assertThat(result.digest).isEqualTo(BlobUtils.sha256Digest(testBytes))
+        assertThat(result2.blobUrl).isEqualTo(result.blobUrl)
+    }
+
+    @Test
+    fun `upload blob if absent`() {
+        val mockBlobContainerMetadata = mockk<BlobAccess.BlobContainerMetadata>()
+        val mockBlobContainer = mockk<BlobContainerClient>()
+        val mockBlobClient = mockk<BlobClient>()
+        val testBytes = "testbytes".toByteArray()
+        val alreadyExists = mockk<BlobStorageException>()
+        every { alreadyExists.errorCode } returns BlobErrorCode.BLOB_ALREADY_EXISTS
+        mockkObject(BlobAccess)
+        every { BlobAccess.getBlobContainer(mockBlobContainerMetadata) } returns mockBlobContainer
+        every { mockBlobContainer.getBlobClient("testblob") } returns mockBlobClient
+        every { mockBlobClient.blobUrl } returns "http://testblob"
+        every {
+            mockBlobClient.upload(any<ByteArrayInputStream>(), any<Long>(), false)
+        } returns Unit andThenThrows alreadyExists
+        every { mockBlobClient.setMetadata(any()) } returns Unit
+
+        val result = BlobAccess.uploadBlobIfAbsent("testblob", testBytes, mockBlobContainerMetadata)
+        verify(exactly = 0) { mockBlobClient.setMetadata(any()) }
+
+        // a second upload of the same blob only refreshes its last modified time
+        val result2 = BlobAccess.uploadBlobIfAbsent("testblob", testBytes, mockBlobContainerMetadata)
+        verify(exactly = 2) { mockBlobClient.upload(any<ByteArrayInputStream>(), testBytes.size.toLong(), false) }
+        verify(exactly = 1) { mockBlobClient.setMetadata(match { it.containsKey("lastReferencedAt") }) }
+        assertThat(result).isEqualTo("http://testblob")
+        assertThat(result2).isEqualTo("http://testblob")
+
+        val otherError = mockk<BlobStorageException>()
+        every { otherError.errorCode } returns BlobErrorCode.AUTHORIZATION_FAILURE
+        every { mockBlobClient.upload(any<ByteArrayInputStream>(), any<Long>(), false) } throws otherError
+        assertThrows<BlobStorageException> {
+            BlobAccess.uploadBlobIfAbsent("testblob", testBytes, mockBlobContainerMetadata)
+        }
+    }
+
     @Test
     fun `blob exists`() {
         val testUrl = "http://blobexists"
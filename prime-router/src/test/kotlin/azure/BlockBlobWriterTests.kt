@@ -0,0 +1,73 @@
+package gov.cdc.prime.router.azure
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import com.azure.storage.blob.specialized.BlockBlobClient
+import gov.cdc.prime.reportstream.shared.BlobUtils.sha256Digest
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import java.io.InputStream
+import kotlin.test.Test
+
+class BlockBlobWriterTests {
+    /**
+     * The staged blocks by block ID, where blocks copied from another blob hold the URL of the blob.
+     */
+    private val stagedBlocks = mutableMapOf<String, ByteArray>()
+    private var committedBlockIds = emptyList<String>()
+
+    private val blobClient = mockk<BlockBlobClient>(relaxed = true).also { client ->
+        every { client.stageBlock(any(), any(), any()) } answers {
+            stagedBlocks[firstArg()] = secondArg<InputStream>().readBytes()
+        }
+        every { client.stageBlockFromUrl(any(), any(), any()) } answers {
+            stagedBlocks[firstArg()] = secondArg<String>().toByteArray()
+        }
+        every { client.commitBlockList(any(), any()) } answers {
+            committedBlockIds = firstArg()
+            mockk()
+        }
+    }
+
+    private fun committedBlocks() = committedBlockIds.map { String(stagedBlocks.getValue(it)) }
+
+    @Test
+    fun `test content is staged in blocks`() {
+        val writer = BlockBlobWriter(blobClient, blockSize = 4)
+        writer.write("FHS|")
+        writer.write("message1\r")
+        writer.writeBlob(null, "message2\r".toByteArray())
+        val digest = writer.commit()
+
+        assertThat(committedBlocks()).isEqualTo(listOf("FHS|", "mess", "age1", "\rmes", "sage", "2\r"))
+        assertThat(writer.size).isEqualTo(22)
+        assertThat(digest.toList()).isEqualTo(sha256Digest("FHS|message1\rmessage2\r".toByteArray()).toList())
+        assertFailure { writer.write("more") }.isInstanceOf(IllegalStateException::class)
+    }
+
+    @Test
+    fun `test large source blobs are copied by the storage service`() {
+        val writer = BlockBlobWriter(blobClient, blockSize = 4) { "$it?sas" }
+        writer.write("a")
+        writer.writeBlob("http://blob/1", "large".toByteArray())
+        writer.writeBlob("http://blob/2", "s".toByteArray())
+        val digest = writer.commit()
+
+        assertThat(committedBlocks()).isEqualTo(listOf("a", "http://blob/1?sas", "s"))
+        assertThat(digest.toList()).isEqualTo(sha256Digest("alarges".toByteArray()).toList())
+    }
+
+    @Test
+    fun `test content is uploaded when a source blob cannot be copied`() {
+        val writer = BlockBlobWriter(blobClient, blockSize = 4) { error("No account key") }
+        writer.writeBlob("http://blob/1", "large".toByteArray())
+        writer.writeBlob("http://blob/2", "large".toByteArray())
+        writer.commit()
+
+        assertThat(committedBlocks()).isEqualTo(listOf("larg", "elar", "ge"))
+        verify(exactly = 0) { blobClient.stageBlockFromUrl(any(), any(), any()) }
+    }
+}
@@ -0,0 +1,96 @@
+package gov.cdc.prime.router.azure
+
+import assertk.assertThat
+import assertk.assertions.isEmpty
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import gov.cdc.prime.router.Metadata
+import gov.cdc.prime.router.metadata.LookupTable
+import gov.cdc.prime.router.metadata.ObservationMappingConstants
+import gov.cdc.prime.router.unittest.UnitTestUtils
+import org.hl7.fhir.r4.model.Coding
+import kotlin.test.Test
+
+class ConditionMapperTests {
+    private val header = listOf(
+        ObservationMappingConstants.TEST_CODE_KEY,
+        ObservationMappingConstants.CONDITION_CODE_KEY,
+        ObservationMappingConstants.CONDITION_CODE_SYSTEM_KEY,
+        ObservationMappingConstants.CONDITION_NAME_KEY,
+        ObservationMappingConstants.TEST_OID_KEY
+    )
+
+    private fun createMapper(mappingTable: LookupTable): LookupTableConditionMapper {
+        val metadata = Metadata(UnitTestUtils.simpleSchema)
+        metadata.lookupTableStore += mapOf("observation-mapping" to mappingTable)
+        return LookupTableConditionMapper(metadata)
+    }
+
+    @Test
+    fun `test lookup conditions`() {
+        val mapper = createMapper(
+            LookupTable(
+                "observation-mapping",
+                listOf(
+                    header,
+                    listOf("80382-5", "6142004", "SNOMEDCT", "Influenza (disorder)", "oid1"),
+                    listOf("80382-5", "840539006", "SNOMEDCT", "COVID-19", "oid2"),
+                    listOf("260373001", "Some Condition Code", "Condition Code System", "Condition Name", "")
+                )
+            )
+        )
+        val flu = Coding("http://loinc.org", "80382-5", "Flu")
+        val detected = Coding("http://snomed.info/sct", "260373001", "Detected")
+        val unmapped = Coding("http://loinc.org", "12345-6", "Unmapped")
+
+        val conditions = mapper.lookupConditions(listOf(flu, detected, unmapped))
+        assertThat(conditions.size).isEqualTo(2)
+        assertThat(conditions[flu]?.map { it.code }).isEqualTo(listOf("6142004", "840539006"))
+        assertThat(conditions[detected]?.single()?.system).isEqualTo("Condition Code System")
+        assertThat(conditions[detected]?.single()?.display).isEqualTo("Condition Name")
+        assertThat(conditions[unmapped]).isNull()
+
+        assertThat(mapper.lookupMemberOid(listOf(flu, detected, unmapped)))
+            .isEqualTo(mapOf("6142004" to "oid1", "840539006" to "oid2"))
+        assertThat(mapper.lookupConditions(listOf(unmapped))).isEmpty()
+    }
+
+    @Test
+    fun `test lookups without a member OID column`() {
+        val mapper = createMapper(
+            LookupTable(
+                "observation-mapping",
+                listOf(
+                    header.dropLast(1),
+                    listOf("80382-5", "6142004", "SNOMEDCT", "Influenza (disorder)")
+                )
+            )
+        )
+        val flu = Coding("http://loinc.org", "80382-5", "Flu")
+        assertThat(mapper.lookupConditions(listOf(flu))[flu]).isNotNull()
+        assertThat(mapper.lookupMemberOid(listOf(flu))).isEmpty()
+    }
+
+    @Test
+    fun `test lookups use the current table data`() {
+        val mappingTable = LookupTable(
+            "observation-mapping",
+            listOf(header, listOf("80382-5", "6142004", "SNOMEDCT", "Influenza (disorder)", "oid1"))
+        )
+        val mapper = createMapper(mappingTable)
+        val flu = Coding("http://loinc.org", "80382-5", "Flu")
+        assertThat(mapper.lookupConditions(listOf(flu))[flu]?.single()?.code).isEqualTo("6142004")
+
+        // The table data is replaced when a new version of the table is loaded
+        mappingTable.table = LookupTable(
+            "observation-mapping",
+            listOf(header, listOf("80382-5", "840539006", "SNOMEDCT", "COVID-19", "oid2"))
+        ).table
+        assertThat(mapper.lookupConditions(listOf(flu))[flu]?.single()?.code).isEqualTo("840539006")
+        assertThat(mapper.lookupMemberOid(listOf(flu))).isEqualTo(mapOf("840539006" to "oid2"))
+
+        mappingTable.clear()
+        assertThat(mapper.lookupConditions(listOf(flu))).isEmpty()
+    }
+}
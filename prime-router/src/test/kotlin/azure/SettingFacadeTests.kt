@@ -1,11 +1,15 @@
 package gov.cdc.prime.router.azure
 
 import assertk.assertThat
+import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
 import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import gov.cdc.prime.router.Metadata
 import gov.cdc.prime.router.MimeFormat
 import gov.cdc.prime.router.Organization
+import gov.cdc.prime.router.Topic
 import gov.cdc.prime.router.azure.db.enums.SettingType
 import gov.cdc.prime.router.azure.db.tables.pojos.Setting
 import gov.cdc.prime.router.common.JacksonMapperUtilities
@@ -13,6 +17,7 @@ import gov.cdc.prime.router.unittest.UnitTestUtils
 import io.mockk.clearAllMocks
 import io.mockk.every
 import io.mockk.spyk
+import io.mockk.verify
 import org.jooq.JSONB
 import org.jooq.tools.jdbc.MockConnection
 import org.jooq.tools.jdbc.MockDataProvider
@@ -20,6 +25,7 @@ import org.jooq.tools.jdbc.MockResult
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.TestInstance
+import java.time.Duration
 import java.time.OffsetDateTime
 
 @TestInstance(TestInstance.Lifecycle.PER_CLASS)
@@ -82,6 +88,10 @@ class SettingFacadeTests {
     )
 
     private fun setupOrgDatabaseAccess() {
+        every { accessSpy.fetchLastModified(any()) }.returns(testOrg.createdAt)
+        every {
+            accessSpy.fetchSettings(SettingType.RECEIVER, txn = any())
+        }.returns(emptyList())
         every {
             accessSpy.fetchSetting(SettingType.ORGANIZATION, "test", null, any())
         }.returns(testOrg)
@@ -236,6 +246,59 @@ class SettingFacadeTests {
         assertThat(receiver).isNull()
     }
 
+    @Test
+    fun `get receivers by topic test`() {
+        setupReceiverDatabaseAccess()
+        val facade = SettingsFacade(testMetadata(), accessSpy)
+        assertThat(facade.findReceivers(Topic.COVID_19).map { it.fullName }).isEqualTo(listOf("test.elr-test"))
+        assertThat(facade.findReceivers(Topic.FULL_ELR)).isEmpty()
+    }
+
+    @Test
+    fun `test settings snapshot is refreshed when settings change`() {
+        setupReceiverDatabaseAccess()
+        val facade = SettingsFacade(testMetadata(), accessSpy, Duration.ZERO)
+
+        val first = facade.currentSnapshot()
+        assertThat(facade.receivers.first().name).isEqualTo("elr-test")
+        assertThat(facade.currentSnapshot()).isSameInstanceAs(first)
+        verify(exactly = 1) { accessSpy.fetchSettings(SettingType.RECEIVER, txn = any()) }
+
+        every { accessSpy.fetchLastModified(any()) }.returns(testOrg.createdAt!!.plusMinutes(1))
+        assertThat(facade.currentSnapshot()).isNotSameInstanceAs(first)
+        verify(exactly = 2) { accessSpy.fetchSettings(SettingType.RECEIVER, txn = any()) }
+    }
+
+    @Test
+    fun `test settings snapshot is not checked within the refresh interval`() {
+        setupReceiverDatabaseAccess()
+        val facade = SettingsFacade(testMetadata(), accessSpy, Duration.ofHours(1))
+
+        val first = facade.currentSnapshot()
+        every { accessSpy.fetchLastModified(any()) }.returns(testOrg.createdAt!!.plusMinutes(1))
+        assertThat(facade.currentSnapshot()).isSameInstanceAs(first)
+        verify(exactly = 1) { accessSpy.fetchLastModified(any()) }
+    }
+
+    @Test
+    fun `test single settings are found in the settings snapshot`() {
+        setupSenderDatabaseAccess()
+        setupReceiverDatabaseAccess()
+        val facade = SettingsFacade(testMetadata(), accessSpy, Duration.ofHours(1))
+
+        assertThat(facade.findOrganization("test")?.name).isEqualTo("test")
+        val sender = facade.findSender("test")
+        assertThat(sender?.fullName).isEqualTo("test.default")
+        assertThat(sender?.version).isEqualTo(defaultSender.version)
+        assertThat(facade.findReceiver("test.elr-test")?.name).isEqualTo("elr-test")
+        assertThat(facade.findReceiver("test.foo")).isNull()
+
+        verify(exactly = 1) { accessSpy.fetchSettings(SettingType.SENDER, txn = any()) }
+        verify(exactly = 0) { accessSpy.fetchSetting(SettingType.ORGANIZATION, "test", null, any()) }
+        verify(exactly = 0) { accessSpy.fetchSetting(SettingType.SENDER, "default", "test", any()) }
+        verify(exactly = 0) { accessSpy.fetchSetting(SettingType.RECEIVER, "elr-test", "test", any()) }
+    }
+
     @Test
     fun `test findSettingsAsJson`() {
         setupOrgDatabaseAccess()
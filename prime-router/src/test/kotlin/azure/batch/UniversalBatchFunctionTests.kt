@@ -1,7 +1,10 @@
 package gov.cdc.prime.router.azure.batch
 
 import assertk.assertFailure
+import assertk.assertThat
 import assertk.assertions.hasClass
+import assertk.assertions.isEqualTo
+import com.azure.storage.blob.specialized.BlockBlobClient
 import gov.cdc.prime.router.CustomConfiguration
 import gov.cdc.prime.router.CustomerStatus
 import gov.cdc.prime.router.DeepOrganization
@@ -20,6 +23,7 @@ import gov.cdc.prime.router.Topic
 import gov.cdc.prime.router.azure.ActionHistory
 import gov.cdc.prime.router.azure.BatchEvent
 import gov.cdc.prime.router.azure.BlobAccess
+import gov.cdc.prime.router.azure.BlockBlobWriter
 import gov.cdc.prime.router.azure.DatabaseAccess
 import gov.cdc.prime.router.azure.Event
 import gov.cdc.prime.router.azure.QueueAccess
@@ -46,6 +50,8 @@ import org.jooq.tools.jdbc.MockDataProvider
 import org.jooq.tools.jdbc.MockResult
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import java.io.ByteArrayOutputStream
+import java.io.InputStream
 import java.util.UUID
 
 class UniversalBatchFunctionTests {
@@ -70,6 +76,23 @@ class UniversalBatchFunctionTests {
         ),
     )
 
+    /**
+     * The content written by the last [batchWriter].
+     */
+    private val batchContent = ByteArrayOutputStream()
+
+    /**
+     * A writer that writes the batch to [batchContent] instead of the blob store.
+     */
+    private fun batchWriter(): BlockBlobWriter {
+        batchContent.reset()
+        val blobClient = mockk<BlockBlobClient>(relaxed = true)
+        every { blobClient.stageBlock(any(), any(), any()) } answers {
+            batchContent.write(secondArg<InputStream>().readBytes())
+        }
+        return BlockBlobWriter(blobClient)
+    }
+
     private fun makeEngine(
         metadata: Metadata,
         settings: SettingsProvider,
@@ -158,7 +181,12 @@ class UniversalBatchFunctionTests {
             every { BlobAccess.Companion.downloadBlobAsByteArray(any()) } returns "somecontent".toByteArray()
             every { Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any()) } returns
                 Triple(mockReport, mockEvent, BlobAccess.BlobInfo(MimeFormat.HL7, "someurl", "digest".toByteArray()))
-            every { HL7MessageHelpers.batchMessages(any(), receiver) } returns "batchstring"
+            every {
+                Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
+            } answers {
+                lastArg<(BlockBlobWriter) -> Unit>().invoke(batchWriter())
+                Triple(mockReport, mockEvent, BlobAccess.BlobInfo(MimeFormat.HL7, "someurl", "digest".toByteArray()))
+            }
         }
         resetMocks()
         batchFunction.batchUniversalData(headers, mockActionHistory, receiver, mockTxn)
@@ -211,10 +239,12 @@ class UniversalBatchFunctionTests {
 //            BlobAccess.Companion.downloadBlobAsByteArray(any(), any(), any()) TODO: re-enable after fixing batch test (see #11639)
         }
         verify(exactly = 1) {
-            Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any())
-            HL7MessageHelpers.batchMessages(any(), receiver)
+            Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
+            HL7MessageHelpers.batchHeader(any(), receiver)
             mockWorkflowEngine.db.insertTask(any(), any(), any(), any(), any())
         }
+        assertThat(String(batchContent.toByteArray()).substringAfter("\rBHS|").substringAfter("\r"))
+            .isEqualTo("content\rcontent2\rBTS|2\rFTS|1\r")
 
         // batch sending when there is no data to send, but receiver wants empty batch
         headers = emptyList()
@@ -233,8 +263,8 @@ class UniversalBatchFunctionTests {
         resetMocks()
         batchFunction.batchUniversalData(headers, mockActionHistory, receiver, mockTxn)
         verify(exactly = 1) {
-            Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any())
-            HL7MessageHelpers.batchMessages(any(), receiver)
+            Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
+            HL7MessageHelpers.batchHeader(any(), receiver)
             mockWorkflowEngine.db.insertTask(any(), any(), any(), any(), any())
         }
 
@@ -289,7 +319,12 @@ class UniversalBatchFunctionTests {
             every { BlobAccess.Companion.downloadBlobAsByteArray(any()) } returns "somecontent".toByteArray()
             every { Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any()) } returns
                 Triple(mockReport, mockEvent, BlobAccess.BlobInfo(MimeFormat.HL7, "someurl", "digest".toByteArray()))
-            every { FHIRBundleHelpers.batchMessages(any()) } returns "batchstring"
+            every {
+                Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
+            } answers {
+                lastArg<(BlockBlobWriter) -> Unit>().invoke(batchWriter())
+                Triple(mockReport, mockEvent, BlobAccess.BlobInfo(MimeFormat.FHIR, "someurl", "digest".toByteArray()))
+            }
         }
         resetMocks()
         batchFunction.batchUniversalData(headers, mockActionHistory, receiver, mockTxn)
@@ -338,10 +373,10 @@ class UniversalBatchFunctionTests {
 //            BlobAccess.Companion.downloadBlobAsByteArray(any(), any(), any()) TODO: re-enable after fixing batch test (see #11639)
         }
         verify(exactly = 1) {
-            Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any())
-            FHIRBundleHelpers.batchMessages(any())
+            Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
             mockWorkflowEngine.db.insertTask(any(), any(), any(), any(), any())
         }
+        assertThat(String(batchContent.toByteArray())).isEqualTo("content\ncontent2")
 
         // batch sending when there is no data to send, but receiver wants empty batch
         headers = emptyList()
@@ -358,10 +393,10 @@ class UniversalBatchFunctionTests {
         resetMocks()
         batchFunction.batchUniversalData(headers, mockActionHistory, receiver, mockTxn)
         verify(exactly = 1) {
-            Report.generateReportAndUploadBlob(any(), any(), any(), any(), any(), any(), any())
-            FHIRBundleHelpers.batchMessages(any())
+            Report.generateReportAndStreamBlob(any(), any(), any(), any(), any(), any(), any(), any(), any())
             mockWorkflowEngine.db.insertTask(any(), any(), any(), any(), any())
         }
+        assertThat(batchContent.size()).isEqualTo(0)
 
         unmockkObject(BlobAccess, FHIRBundleHelpers, Report)
     }
@@ -1,8 +1,12 @@
 package gov.cdc.prime.router.common
 
+import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.isBetween
 import assertk.assertions.isEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
 import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import gov.cdc.prime.router.Element
@@ -18,6 +22,7 @@ import gov.cdc.prime.router.unittest.UnitTestUtils.createConfig
 import io.mockk.every
 import io.mockk.mockk
 import io.mockk.mockkClass
+import java.time.DateTimeException
 import java.time.Duration
 import java.time.Instant
 import java.time.LocalDate
@@ -26,6 +31,7 @@ import java.time.OffsetDateTime
 import java.time.ZoneId
 import java.time.ZonedDateTime
 import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
 import java.time.temporal.TemporalAccessor
 import kotlin.test.Ignore
 import kotlin.test.Test
@@ -438,6 +444,44 @@ class DateUtilitiesTests {
         }
     }
 
+    @Test
+    fun `test parse date with the same shape`() {
+        // the first value is only valid as yyyy-dd-MM, which must not be used for the next values of the same shape
+        mapOf(
+            "2022-13-01" to LocalDate.of(2022, 1, 13),
+            "2022-04-05" to LocalDate.of(2022, 4, 5),
+            "2023-06-07" to LocalDate.of(2023, 6, 7),
+            "2022-31-12" to LocalDate.of(2022, 12, 31),
+        ).forEach { (input, expected) ->
+            assertThat(DateUtilities.parseDate(input).toOffsetDateTime().toLocalDate()).isEqualTo(expected)
+        }
+
+        // a value that is invalid for every format of its shape
+        assertFailure { DateUtilities.parseDate("2022-13-13") }.isInstanceOf(DateTimeParseException::class)
+        assertFailure { DateUtilities.parseDate("not a date") }.isInstanceOf(DateTimeParseException::class)
+        assertFailure { DateUtilities.parseDate(" ") }.isInstanceOf(DateTimeException::class)
+    }
+
+    @Test
+    fun `test parse date with an invalid pattern`() {
+        assertThat(DateUtilities.parseDate("2022-01-02", "yyyy-MM-dd{")).isNull()
+        assertThat(DateUtilities.parseDate("2022-01-02", "yyyy-MM-dd")).isNotNull()
+    }
+
+    @Test
+    fun `test get date time`() {
+        mapOf(
+            Pair("2022-01-02T03:04:05-05:00", null) to OffsetDateTime.parse("2022-01-02T03:04:05-05:00"),
+            Pair("20220102030405-0500", null) to OffsetDateTime.parse("2022-01-02T03:04:05-05:00"),
+            Pair("20220102", null) to OffsetDateTime.of(2022, 1, 2, 0, 0, 0, 0, Environment.rsTimeZone),
+            Pair("01-02-2022", "MM-dd-yyyy") to OffsetDateTime.of(2022, 1, 2, 0, 0, 0, 0, Environment.rsTimeZone),
+            Pair("1/2/2022 3:04", null) to OffsetDateTime.parse("2022-01-02T03:04:00Z"),
+        ).forEach { (input, expected) ->
+            assertThat(DateUtilities.getDateTime(input.first, input.second)).isEqualTo(expected)
+        }
+        assertFailure { DateUtilities.getDateTime("not a date", null) }.isInstanceOf(DateTimeParseException::class)
+    }
+
     @Test
     fun `test calculate duration as years`() {
         // arrange our test cases
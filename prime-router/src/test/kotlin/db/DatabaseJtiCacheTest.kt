@@ -0,0 +1,47 @@
+package gov.cdc.prime.router.db
+
+import assertk.assertThat
+import assertk.assertions.isFalse
+import assertk.assertions.isGreaterThanOrEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNull
+import assertk.assertions.isTrue
+import gov.cdc.prime.router.tokens.DatabaseJtiCache
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.ExtendWith
+import java.time.OffsetDateTime
+import java.util.UUID
+
+@ExtendWith(ReportStreamTestDatabaseSetupExtension::class)
+class DatabaseJtiCacheTest {
+    private val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+
+    @Test
+    fun `test JTI is recorded once until it expires`() {
+        val jti = UUID.randomUUID().toString()
+        val expired = OffsetDateTime.now().minusMinutes(1)
+        assertThat(db.transactReturning { txn -> db.insertJtiIfAbsent(jti, expired, txn) }).isTrue()
+
+        // An expired JTI is reused
+        val expiresAt = OffsetDateTime.now().plusMinutes(5)
+        assertThat(db.transactReturning { txn -> db.insertJtiIfAbsent(jti, expiresAt, txn) }).isTrue()
+        assertThat(db.transactReturning { txn -> db.insertJtiIfAbsent(jti, expiresAt, txn) }).isFalse()
+        assertThat(db.transactReturning { txn -> db.fetchJti(jti, txn) }).isNotNull()
+    }
+
+    @Test
+    fun `test replays are caught by the database and swept`() {
+        val jti = UUID.randomUUID().toString()
+        val expiresAt = OffsetDateTime.now().plusMinutes(5)
+        // Separate instances without a shared front tier, like two function hosts
+        assertThat(DatabaseJtiCache(db, front = null).isJTIOk(jti, expiresAt)).isTrue()
+        assertThat(DatabaseJtiCache(db, front = null).isJTIOk(jti, expiresAt)).isFalse()
+
+        val expiredJti = UUID.randomUUID().toString()
+        val expired = OffsetDateTime.now().minusMinutes(1)
+        db.transact { txn -> db.insertJtiIfAbsent(expiredJti, expired, txn) }
+        assertThat(DatabaseJtiCache(db, front = null).sweep()).isGreaterThanOrEqualTo(1)
+        assertThat(db.transactReturning { txn -> db.fetchJti(expiredJti, txn) }).isNull()
+        assertThat(db.transactReturning { txn -> db.fetchJti(jti, txn) }).isNotNull()
+    }
+}
@@ -7,6 +7,7 @@ import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import gov.cdc.prime.router.Topic
 import gov.cdc.prime.router.azure.MockHttpRequestMessage
+import gov.cdc.prime.router.azure.db.Tables.REPORT_FILE
 import gov.cdc.prime.router.azure.db.tables.pojos.Action
 import gov.cdc.prime.router.azure.db.tables.pojos.ReportFile
 import org.junit.jupiter.api.Nested
@@ -36,14 +37,68 @@ class ReportFileDatabaseAccessTest {
             val rows = reportFileDatabaseAccess.getReports(ReportFileApiSearch(emptyList(), null))
             assertThat(rows.totalCount).isEqualTo(0)
         }
+
+        @Test
+        fun `Test pages after a cursor in the same order as by page`() {
+            repeat(7) { createReport() }
+            val reportFileDatabaseAccess =
+                ReportFileDatabaseAccess(ReportStreamTestDatabaseContainer.testDatabaseAccess)
+
+            val reportIdsByPage = (1..3).flatMap { page ->
+                reportFileDatabaseAccess.getReports(ReportFileApiSearch(emptyList(), null, page = page, limit = 3))
+                    .results.map { it.reportId }
+            }
+
+            val reportIdsByCursor = mutableListOf<UUID>()
+            var rows = reportFileDatabaseAccess.getReports(ReportFileApiSearch(emptyList(), null, limit = 3))
+            reportIdsByCursor.addAll(rows.results.map { it.reportId })
+            while (rows.nextCursor != null) {
+                rows = reportFileDatabaseAccess.getReports(
+                    ReportFileApiSearch(emptyList(), null, limit = 3, cursor = rows.nextCursor)
+                )
+                assertThat(rows.filteredCount).isEqualTo(7)
+                reportIdsByCursor.addAll(rows.results.map { it.reportId })
+            }
+
+            assertThat(reportIdsByPage.size).isEqualTo(7)
+            assertThat(reportIdsByCursor).isEqualTo(reportIdsByPage)
+        }
+
+        @Test
+        fun `Test pages after a cursor past null sort values`() {
+            repeat(3) { createReport("external-$it") }
+            repeat(4) { createReport() }
+            val reportFileDatabaseAccess =
+                ReportFileDatabaseAccess(ReportStreamTestDatabaseContainer.testDatabaseAccess)
+            val sort = REPORT_FILE.EXTERNAL_NAME
+
+            val reportIdsByPage = (1..4).flatMap { page ->
+                reportFileDatabaseAccess.getReports(ReportFileApiSearch(emptyList(), sort, page = page, limit = 2))
+                    .results.map { it.reportId }
+            }
+
+            val reportIdsByCursor = mutableListOf<UUID>()
+            var rows = reportFileDatabaseAccess.getReports(ReportFileApiSearch(emptyList(), sort, limit = 2))
+            reportIdsByCursor.addAll(rows.results.map { it.reportId })
+            while (rows.nextCursor != null) {
+                rows = reportFileDatabaseAccess.getReports(
+                    ReportFileApiSearch(emptyList(), sort, limit = 2, cursor = rows.nextCursor)
+                )
+                reportIdsByCursor.addAll(rows.results.map { it.reportId })
+            }
+
+            assertThat(reportIdsByPage.size).isEqualTo(7)
+            assertThat(reportIdsByCursor).isEqualTo(reportIdsByPage)
+        }
     }
 
-    private fun createReport() {
+    private fun createReport(externalName: String? = null) {
         ReportStreamTestDatabaseContainer.testDatabaseAccess.transact { txn ->
             val action = Action()
             val actionId = ReportStreamTestDatabaseContainer.testDatabaseAccess.insertAction(txn, action)
             val report = ReportFile().setSchemaTopic(Topic.FULL_ELR).setReportId(UUID.randomUUID())
                 .setActionId(actionId).setSchemaName("schema").setBodyFormat("hl7").setItemCount(1)
+                .setExternalName(externalName)
             ReportStreamTestDatabaseContainer.testDatabaseAccess.insertReportFile(
                 report, txn, action
             )
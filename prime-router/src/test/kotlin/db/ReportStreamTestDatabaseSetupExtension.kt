@@ -44,6 +44,7 @@ class ReportStreamTestDatabaseSetupExtension :
                 TRUNCATE TABLE public.item_lineage CASCADE;
                 TRUNCATE TABLE public.jti_cache CASCADE;
                 TRUNCATE TABLE public.receiver_connection_check_results CASCADE;
+                TRUNCATE TABLE public.report_ancestor CASCADE;
                 TRUNCATE TABLE public.report_file CASCADE;
                 TRUNCATE TABLE public.report_lineage CASCADE;
                 TRUNCATE TABLE public.task CASCADE;
@@ -0,0 +1,78 @@
+package gov.cdc.prime.router.db
+
+import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEqualTo
+import gov.cdc.prime.router.ActionLog
+import gov.cdc.prime.router.InvalidHL7Message
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.azure.ActionHistory
+import gov.cdc.prime.router.azure.db.Tables.ACTION_LOG
+import gov.cdc.prime.router.azure.db.Tables.REPORT_FILE
+import gov.cdc.prime.router.azure.db.Tables.REPORT_LINEAGE
+import gov.cdc.prime.router.azure.db.enums.TaskAction
+import gov.cdc.prime.router.azure.db.tables.pojos.Action
+import gov.cdc.prime.router.azure.db.tables.pojos.ItemLineage
+import gov.cdc.prime.router.azure.db.tables.pojos.ReportFile
+import org.jooq.impl.DSL
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.ExtendWith
+import java.util.UUID
+
+@ExtendWith(ReportStreamTestDatabaseSetupExtension::class)
+class SaveActionHistoryTest {
+    private val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+
+    private fun reportFile(reportId: UUID) = ReportFile()
+        .setSchemaTopic(Topic.FULL_ELR)
+        .setReportId(reportId)
+        .setSchemaName("")
+        .setBodyFormat("FHIR")
+        .setItemCount(1)
+        .setBodyUrl("url-$reportId")
+
+    @Test
+    fun `test action history is saved with batched inserts`() {
+        val receiveAction = Action().setActionName(TaskAction.receive)
+        val parentReportId = UUID.randomUUID()
+        db.transact { txn ->
+            receiveAction.actionId = db.insertAction(txn, receiveAction)
+            db.insertReportFile(reportFile(parentReportId).setActionId(receiveAction.actionId), txn, receiveAction)
+        }
+
+        val childReportIds = listOf(UUID.randomUUID(), UUID.randomUUID())
+        val actionHistory = ActionHistory(TaskAction.route)
+        actionHistory.trackExistingInputReport(parentReportId)
+        childReportIds.forEachIndexed { index, childReportId ->
+            actionHistory.reportsOut[childReportId] = reportFile(childReportId)
+            actionHistory.itemLineages.add(
+                ItemLineage(null, parentReportId, index + 1, childReportId, 1, null, null, null, "")
+            )
+            actionHistory.trackLogs(ActionLog(InvalidHL7Message("Item $index"), reportId = childReportId))
+        }
+        db.transact { txn -> db.saveActionHistoryToDb(actionHistory, txn) }
+
+        val actionId = actionHistory.action.actionId
+        db.transact { txn ->
+            assertThat(
+                DSL.using(txn).select(REPORT_FILE.REPORT_ID).from(REPORT_FILE)
+                    .where(REPORT_FILE.ACTION_ID.eq(actionId))
+                    .fetch(REPORT_FILE.REPORT_ID)
+            ).containsExactlyInAnyOrder(*childReportIds.toTypedArray())
+            assertThat(
+                DSL.using(txn).select(REPORT_LINEAGE.PARENT_REPORT_ID, REPORT_LINEAGE.CHILD_REPORT_ID)
+                    .from(REPORT_LINEAGE)
+                    .where(REPORT_LINEAGE.ACTION_ID.eq(actionId))
+                    .fetch { it.value1() to it.value2() }
+            ).containsExactlyInAnyOrder(*childReportIds.map { parentReportId to it }.toTypedArray())
+            assertThat(
+                DSL.using(txn).select(ACTION_LOG.REPORT_ID).from(ACTION_LOG)
+                    .where(ACTION_LOG.ACTION_ID.eq(actionId))
+                    .fetch(ACTION_LOG.REPORT_ID)
+            ).containsExactlyInAnyOrder(*childReportIds.toTypedArray())
+            assertThat(
+                DSL.using(txn).fetchCount(REPORT_FILE, REPORT_FILE.REPORT_ID.eq(parentReportId))
+            ).isEqualTo(1)
+        }
+    }
+}
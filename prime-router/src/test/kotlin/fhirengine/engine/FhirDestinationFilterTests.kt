@@ -285,7 +285,7 @@ class FhirDestinationFilterTests {
         // mock setup
         mockkObject(BlobAccess)
         every { BlobAccess.downloadBlob(any(), any()) }.returns(File(VALID_FHIR_URL).readText())
-        every { BlobAccess.uploadBlob(any(), any()) } returns "test"
+        every { BlobAccess.uploadBlobIfAbsent(any(), any()) } returns "test"
         every { accessSpy.insertTask(any(), MimeFormat.FHIR.toString(), BODY_URL, any()) }.returns(Unit)
 
         // act + assert
@@ -315,7 +315,7 @@ class FhirDestinationFilterTests {
         // mock setup
         mockkObject(BlobAccess)
         every { BlobAccess.downloadBlob(any(), any()) }.returns(File(VALID_FHIR_URL).readText())
-        every { BlobAccess.uploadBlob(any(), any()) } returns "test"
+        every { BlobAccess.uploadBlobIfAbsent(any(), any()) } returns "test"
         every { accessSpy.insertTask(any(), MimeFormat.FHIR.toString(), BODY_URL, any()) }.returns(Unit)
 
         // act + assert
@@ -439,7 +439,7 @@ class FhirDestinationFilterTests {
 
         // assert
         verify(exactly = 1) {
-            BlobAccess.uploadBlob(any(), any(), any())
+            BlobAccess.uploadBlobIfAbsent(any(), any(), any())
             accessSpy.insertTask(any(), any(), any(), any(), any())
         }
     }
@@ -463,7 +463,7 @@ class FhirDestinationFilterTests {
         val fhirData = File(VALID_FHIR_URL).readText()
         mockkObject(BlobAccess)
         every { BlobAccess.downloadBlob(any(), any()) }.returns(fhirData)
-        every { BlobAccess.uploadBlob(any(), any()) } returns "test"
+        every { BlobAccess.uploadBlobIfAbsent(any(), any()) } returns "test"
         every { accessSpy.insertTask(any(), MimeFormat.FHIR.toString(), BODY_URL, any()) }.returns(Unit)
 
         // act + assert
@@ -476,8 +476,11 @@ class FhirDestinationFilterTests {
         }
 
         // assert
+        // the receivers share a single blob
+        verify(exactly = 1) {
+            BlobAccess.uploadBlobIfAbsent(any(), any(), any())
+        }
         verify(exactly = 2) {
-            BlobAccess.uploadBlob(any(), any(), any())
             accessSpy.insertTask(any(), any(), any(), any(), any())
         }
     }
@@ -500,7 +503,7 @@ class FhirDestinationFilterTests {
         // mock setup
         mockkObject(BlobAccess)
         every { BlobAccess.downloadBlob(any(), any()) }.returns(File(VALID_FHIR_URL).readText())
-        every { BlobAccess.uploadBlob(any(), any()) } returns "test"
+        every { BlobAccess.uploadBlobIfAbsent(any(), any()) } returns "test"
         every { accessSpy.insertTask(any(), MimeFormat.FHIR.toString(), BODY_URL, any()) }.returns(Unit)
         every { engine.findTopicReceivers(any()) } returns emptyList()
 
@@ -622,7 +625,7 @@ class FhirDestinationFilterTests {
         // assert
         verify(exactly = 0) {
             accessSpy.insertTask(any(), any(), any(), any())
-            BlobAccess.uploadBlob(any(), any())
+            BlobAccess.uploadBlobIfAbsent(any(), any())
         }
     }
 
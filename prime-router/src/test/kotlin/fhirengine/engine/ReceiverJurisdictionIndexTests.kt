@@ -0,0 +1,97 @@
+package gov.cdc.prime.router.fhirengine.engine
+
+import assertk.assertThat
+import assertk.assertions.containsExactly
+import assertk.assertions.containsExactlyInAnyOrder
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import gov.cdc.prime.router.CustomerStatus
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.ReportStreamFilter
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.fhirengine.engine.ReceiverJurisdictionIndex.PathValue
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+import org.hl7.fhir.r4.model.Bundle
+import org.hl7.fhir.r4.model.Patient
+import kotlin.test.Test
+
+class ReceiverJurisdictionIndexTests {
+    private val patientState = "Bundle.entry.resource.ofType(Patient).address.state"
+    private val facilityState =
+        "Bundle.entry.resource.ofType(ServiceRequest)[0].requester.resolve().organization.resolve().address.state"
+
+    private fun stateFilter(state: String) = "($facilityState.exists() and $facilityState = '$state') or " +
+        "($patientState.exists() and $patientState = '$state')"
+
+    private fun receiver(name: String, filter: ReportStreamFilter) =
+        Receiver(name, "org", Topic.FULL_ELR, CustomerStatus.ACTIVE, "one", jurisdictionalFilter = filter)
+
+    private fun bundleWithPatientState(state: String) = Bundle().apply {
+        addEntry().resource = Patient().apply { addAddress().state = state }
+    }
+
+    @Test
+    fun `test recognize filter`() {
+        assertThat(ReceiverJurisdictionIndex.recognizeFilter(stateFilter("CO")))
+            .isEqualTo(listOf(PathValue(facilityState, "CO"), PathValue(patientState, "CO")))
+        assertThat(ReceiverJurisdictionIndex.recognizeFilter("$patientState.exists() and $patientState = 'CO'"))
+            .isEqualTo(listOf(PathValue(patientState, "CO")))
+        assertThat(ReceiverJurisdictionIndex.recognizeFilter("$patientState='CO'"))
+            .isEqualTo(listOf(PathValue(patientState, "CO")))
+        assertThat(ReceiverJurisdictionIndex.recognizeFilter("(($patientState = 'CO')) or $patientState = 'IL'"))
+            .isEqualTo(listOf(PathValue(patientState, "CO"), PathValue(patientState, "IL")))
+
+        listOf(
+            "true",
+            "$patientState != 'CO'",
+            "$patientState = 'CO' and $facilityState = 'CO'",
+            "$patientState = 'CO' or $patientState.exists()",
+            "$patientState.exists() and $facilityState = 'CO'",
+            "($patientState = 'CO') and ($facilityState = 'CO')",
+            "$patientState ~ 'CO'",
+        ).forEach {
+            assertThat(ReceiverJurisdictionIndex.recognizeFilter(it)).isNull()
+        }
+    }
+
+    @Test
+    fun `test find receivers`() {
+        val coloradoReceiver = receiver("co", listOf(stateFilter("CO")))
+        val illinoisReceiver = receiver("il", listOf(stateFilter("IL")))
+        val allReceiver = receiver("all", listOf("true"))
+        val noneReceiver = receiver("none", listOf("false"))
+        val coloradoEtorReceiver = receiver("co-etor", listOf("$patientState = 'CO'", "false"))
+        val index = ReceiverJurisdictionIndex(
+            listOf(allReceiver, illinoisReceiver, coloradoReceiver, noneReceiver, coloradoEtorReceiver)
+        )
+
+        val bundle = bundleWithPatientState("CO")
+        val context = CustomContext(bundle, bundle, mutableMapOf(), CustomFhirPathFunctions())
+        assertThat(index.candidates(bundle, context))
+            .containsExactlyInAnyOrder(allReceiver, coloradoReceiver, noneReceiver, coloradoEtorReceiver)
+        assertThat(index.findReceivers(bundle, context)).containsExactly(allReceiver, coloradoReceiver)
+
+        val otherBundle = bundleWithPatientState("co")
+        val otherContext = CustomContext(otherBundle, otherBundle, mutableMapOf(), CustomFhirPathFunctions())
+        assertThat(index.candidates(otherBundle, otherContext)).containsExactlyInAnyOrder(allReceiver, noneReceiver)
+        assertThat(index.findReceivers(otherBundle, otherContext)).containsExactly(allReceiver)
+    }
+
+    @Test
+    fun `test index is shared until the receivers change`() {
+        val coloradoReceiver = receiver("co", listOf(stateFilter("CO")))
+        val allReceiver = receiver("all", listOf("true"))
+        val index = ReceiverJurisdictionIndex.forReceivers(listOf(coloradoReceiver, allReceiver))
+
+        assertThat(ReceiverJurisdictionIndex.forReceivers(listOf(coloradoReceiver, allReceiver)))
+            .isSameInstanceAs(index)
+        // a new settings snapshot has new receivers, even if their settings are the same
+        val reloadedReceiver = receiver("co", listOf(stateFilter("CO")))
+        assertThat(ReceiverJurisdictionIndex.forReceivers(listOf(reloadedReceiver, allReceiver)))
+            .isNotSameInstanceAs(index)
+        assertThat(ReceiverJurisdictionIndex.forReceivers(listOf(allReceiver, coloradoReceiver)))
+            .isNotSameInstanceAs(index)
+    }
+}
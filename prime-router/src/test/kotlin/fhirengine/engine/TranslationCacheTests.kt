@@ -0,0 +1,84 @@
+package gov.cdc.prime.router.fhirengine.engine
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import gov.cdc.prime.router.CustomerStatus
+import gov.cdc.prime.router.Receiver
+import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.HL7ConverterSchema
+import gov.cdc.prime.router.unittest.UnitTestUtils
+import kotlin.test.Test
+
+class TranslationCacheTests {
+    private val schemaName = "classpath:/metadata/hl7_mapping/ORU_R01/ORU_R01-base.yml"
+    private val schema = HL7ConverterSchema()
+    private var translationCount = 0
+
+    private fun receiver(
+        name: String,
+        customerStatus: CustomerStatus = CustomerStatus.ACTIVE,
+        truncateHDNamespaceIds: Boolean = false,
+        receivingOrganization: String = name,
+    ) = Receiver(
+        name,
+        "org",
+        Topic.FULL_ELR,
+        customerStatus,
+        UnitTestUtils.createConfig(schemaName = schemaName, truncateHDNamespaceIds = truncateHDNamespaceIds)
+            .copy(receivingOrganization = receivingOrganization)
+    )
+
+    private fun translation(body: String): () -> ByteArray = {
+        translationCount++
+        body.toByteArray()
+    }
+
+    @Test
+    fun `test translations are shared by receivers with the same settings`() {
+        val cache = TranslationCache()
+        val first = cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("co"), schema, translation("co"))
+        assertThat(cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("il"), schema, translation("il")))
+            .isSameInstanceAs(first)
+        cache.getOrTranslate(Topic.FULL_ELR, "other", receiver("il"), schema, translation("other"))
+        val testingReceiver = receiver("test", CustomerStatus.TESTING)
+        cache.getOrTranslate(Topic.FULL_ELR, "digest", testingReceiver, schema, translation("test"))
+        cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("trunc", truncateHDNamespaceIds = true), schema) {
+            "truncated".toByteArray()
+        }
+        cache.getOrTranslate(Topic.ETOR_TI, "digest", receiver("etor"), schema, translation("etor"))
+
+        assertThat(String(first)).isEqualTo("co")
+        assertThat(translationCount).isEqualTo(3)
+        assertThat(cache.stats(Topic.FULL_ELR)).isEqualTo(TranslationCache.Stats(1, 4))
+        assertThat(cache.stats(Topic.FULL_ELR).hitRate).isEqualTo(0.2)
+        assertThat(cache.stats()).isEqualTo(
+            mapOf(Topic.FULL_ELR to TranslationCache.Stats(1, 4), Topic.ETOR_TI to TranslationCache.Stats(1, 0))
+        )
+        assertThat(cache.stats(Topic.ELR_ELIMS)).isEqualTo(TranslationCache.Stats(0, 0))
+    }
+
+    @Test
+    fun `test translations are not shared across schema versions`() {
+        val cache = TranslationCache()
+        cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("co"), schema, translation("old"))
+        val reloaded = cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("il"), HL7ConverterSchema()) {
+            "new".toByteArray()
+        }
+        assertThat(String(reloaded)).isEqualTo("new")
+        assertThat(cache.stats(Topic.FULL_ELR)).isEqualTo(TranslationCache.Stats(0, 2))
+    }
+
+    @Test
+    fun `test failed translations are not cached`() {
+        val cache = TranslationCache()
+        assertFailure { cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("co"), schema) { error("Failed") } }
+        cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("co"), schema, translation("co"))
+        cache.invalidateAll()
+        cache.getOrTranslate(Topic.FULL_ELR, "digest", receiver("co"), schema, translation("co"))
+
+        assertThat(translationCount).isEqualTo(2)
+        assertThat(cache.stats(Topic.FULL_ELR)).isEqualTo(TranslationCache.Stats(0, 3))
+    }
+}
@@ -255,6 +255,29 @@ class FhirToHl7ConverterTests {
             .hasClass(HL7ConversionException::class.java)
     }
 
+    @Test
+    fun `test set HL7 value with constants`() {
+        val mockTerser = mockk<Terser>()
+        val mockSchema = mockk<HL7ConverterSchema>() // Just a dummy schema to pass around
+        val element = ConverterSchemaElement("name", hl7Spec = listOf("MSH-10", "/PATIENT_RESULT(%{index})/PID-5"))
+        val converter =
+            FhirToHl7Converter(mockSchema, terser = mockTerser, warnings = mutableListOf(), errors = mutableListOf())
+        justRun { mockTerser.set(any(), any()) }
+
+        // The constants are resolved for every value, while the plan of the element is reused
+        converter.setHl7Value(element, "value1", CustomContext(Bundle(), Bundle(), mutableMapOf("index" to "0")))
+        converter.setHl7Value(element, "value2", CustomContext(Bundle(), Bundle(), mutableMapOf("index" to "1")))
+        verifySequence {
+            mockTerser.set("MSH-10", "value1")
+            mockTerser.set("/PATIENT_RESULT(0)/PID-5", "value1")
+            mockTerser.set("MSH-10", "value2")
+            mockTerser.set("/PATIENT_RESULT(1)/PID-5", "value2")
+        }
+
+        val plan = ConverterSchemaElementPlan(element)
+        assertThat(plan.hl7Specs.map { it.usesConstants }).isEqualTo(listOf(false, true))
+    }
+
     @Test
     fun `test process element with single focus resource`() {
         val mockTerser = mockk<Terser>()
@@ -405,6 +428,62 @@ class FhirToHl7ConverterTests {
         assertThat(Terser(message).get("MSH-3-1")).isEqualTo("Epic")
     }
 
+    @Test
+    fun `test convert memoizes constants and focus resources`() {
+        val bundle = Bundle()
+        val messageHeader = MessageHeader()
+        messageHeader.source = MessageHeader.MessageSourceComponent().apply { name = "Epic" }
+        bundle.addEntry().resource = messageHeader
+        bundle.addEntry().resource = ServiceRequest().apply { id = "order1" }
+        bundle.addEntry().resource = ServiceRequest().apply { id = "order2" }
+
+        val orderSchema = HL7ConverterSchema(
+            elements = mutableListOf(
+                ConverterSchemaElement(
+                    "order-id",
+                    value = listOf("%orderId"),
+                    hl7Spec = listOf("/PATIENT_RESULT/ORDER_OBSERVATION(%{orderIndex})/OBR-2-1")
+                )
+            ),
+            constants = sortedMapOf("orderId" to "%resource.id")
+        )
+        val schema = HL7ConverterSchema(
+            hl7Class = "ca.uhn.hl7v2.model.v27.message.ORU_R01",
+            elements = mutableListOf(
+                ConverterSchemaElement(
+                    "sending-application",
+                    resource = "Bundle.entry.resource.ofType(MessageHeader)",
+                    value = listOf("%sourceName"),
+                    hl7Spec = listOf("MSH-3-1")
+                ),
+                ConverterSchemaElement(
+                    "sending-facility",
+                    resource = "Bundle.entry.resource.ofType(MessageHeader)",
+                    value = listOf("%sourceName"),
+                    hl7Spec = listOf("MSH-4-1")
+                ),
+                ConverterSchemaElement(
+                    "orders",
+                    resource = "Bundle.entry.resource.ofType(ServiceRequest)",
+                    resourceIndex = "orderIndex",
+                    schema = "orders",
+                    schemaRef = orderSchema
+                )
+            ),
+            constants = sortedMapOf("sourceName" to "%resource.source.name")
+        )
+        val converter = FhirToHl7Converter(schema, warnings = mutableListOf(), errors = mutableListOf())
+        val terser = Terser(converter.process(bundle))
+
+        assertThat(terser.get("MSH-3-1")).isEqualTo("Epic")
+        assertThat(terser.get("MSH-4-1")).isEqualTo("Epic")
+        // Each order has its own index and focus resource, so its constants are not shared with the other order
+        assertThat(terser.get("/PATIENT_RESULT/ORDER_OBSERVATION(0)/OBR-2-1")).isEqualTo("order1")
+        assertThat(terser.get("/PATIENT_RESULT/ORDER_OBSERVATION(1)/OBR-2-1")).isEqualTo("order2")
+        // The message header and its source name are only evaluated for the first element
+        assertThat(converter.evaluationStats!!.hits).isEqualTo(2)
+    }
+
     @Test
     fun `test convert`() {
         mockkObject(BlobAccess.Companion)
@@ -0,0 +1,62 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.schema
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.hasClass
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import gov.cdc.prime.router.fhirengine.translation.hl7.SchemaException
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.ConverterSchemaElement
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.converter.HL7ConverterSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.utils.CustomContext
+import org.hl7.fhir.r4.model.Bundle
+import kotlin.test.Test
+
+class ConfigSchemaPlanTests {
+    @Test
+    fun `test constants plan`() {
+        val context = CustomContext(Bundle(), Bundle(), mutableMapOf("existing" to "'value'"))
+
+        assertThat(ConstantsPlan(emptyMap()).addTo(context)).isSameInstanceAs(context)
+
+        val newContext = ConstantsPlan(sortedMapOf("new" to "'new value'")).addTo(context)
+        assertThat(newContext.constants).isEqualTo(mapOf("existing" to "'value'", "new" to "'new value'"))
+        assertThat(context.constants).isEqualTo(mapOf("existing" to "'value'"))
+
+        assertFailure { ConstantsPlan(mapOf("context" to "'value'")).addTo(context) }
+            .hasClass(SchemaException::class.java)
+    }
+
+    @Test
+    fun `test element plan`() {
+        val element = ConverterSchemaElement(
+            "name",
+            condition = "true",
+            resource = "",
+            value = listOf("'value'", ""),
+            constants = sortedMapOf("const" to "'value'")
+        )
+        val plan = ConfigSchemaElementPlan(element)
+        assertThat(plan.name).isEqualTo("name")
+        assertThat(plan.condition?.expression).isEqualTo("true")
+        assertThat(plan.resource).isNull()
+        assertThat(plan.values.map { it.expression }).isEqualTo(listOf("'value'", ""))
+        assertThat(plan.constants.constants).isEqualTo(mapOf("const" to "'value'"))
+    }
+
+    @Test
+    fun `test compiler reuses plans`() {
+        val compiler = ConfigSchemaCompiler<ConverterSchemaElement, ConfigSchemaElementPlan> {
+            ConfigSchemaElementPlan(it)
+        }
+        val element = ConverterSchemaElement("name", value = listOf("'value'"))
+        val schema = HL7ConverterSchema(constants = sortedMapOf("const" to "'value'"))
+
+        assertThat(compiler.plan(element)).isSameInstanceAs(compiler.plan(element))
+        assertThat(compiler.plan(ConverterSchemaElement("name", value = listOf("'value'"))))
+            .isNotSameInstanceAs(compiler.plan(element))
+        assertThat(compiler.constants(schema)).isSameInstanceAs(compiler.constants(schema))
+    }
+}
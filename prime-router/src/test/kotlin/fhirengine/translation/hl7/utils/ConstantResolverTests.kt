@@ -139,7 +139,7 @@ class ConstantResolverTests {
         val giantStringValue = "9999999999999999999"
 
         mockkObject(FhirPathUtils)
-        every { FhirPathUtils.evaluate(any(), any(), any(), any()) } returns
+        every { FhirPathUtils.evaluate(any(), any(), any(), any<String>()) } returns
             listOf<Base>(StringType(stringValue), StringType(integerValue.toString()), StringType(giantStringValue))
 
         val constants = sortedMapOf("const1" to "'value1'") // this does not matter but context wants something
@@ -0,0 +1,73 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isSameInstanceAs
+import org.hl7.fhir.r4.model.Base
+import org.hl7.fhir.r4.model.Bundle
+import org.hl7.fhir.r4.model.Patient
+import org.hl7.fhir.r4.model.StringType
+import kotlin.test.Test
+
+class FhirPathEvaluationCacheTests {
+    private var evaluationCount = 0
+
+    private fun evaluation(value: String): () -> List<Base> = {
+        evaluationCount++
+        listOf(StringType(value))
+    }
+
+    @Test
+    fun `test evaluations are memoized`() {
+        val cache = FhirPathEvaluationCache()
+        val bundle = Bundle()
+        val context = CustomContext(bundle, bundle, evaluationCache = cache)
+        val expression = "Bundle.entry.resource.ofType(Patient)"
+
+        val first = cache.evaluate(expression, bundle, context, evaluation("first"))
+        assertThat(cache.evaluate(expression, bundle, context, evaluation("second"))).isSameInstanceAs(first)
+        // Expressions without constants do not depend on the constants or focus resource of the context
+        context.focusResource = Patient()
+        val indexContext = CustomContext.addConstant("index", "0", context)
+        assertThat(cache.evaluate(expression, bundle, indexContext, evaluation("third"))).isSameInstanceAs(first)
+        cache.evaluate(expression, Patient(), context, evaluation("fourth"))
+
+        assertThat(evaluationCount).isEqualTo(2)
+        assertThat(cache.stats()).isEqualTo(FhirPathEvaluationCache.Stats(2, 2))
+    }
+
+    @Test
+    fun `test evaluations with constants are memoized per scope`() {
+        val cache = FhirPathEvaluationCache()
+        val bundle = Bundle()
+        val context = CustomContext(bundle, bundle, mutableMapOf("index" to "0"), evaluationCache = cache)
+        val expression = "%resource.entry[%index]"
+
+        cache.evaluate(expression, bundle, context, evaluation("first"))
+        cache.evaluate(expression, bundle, context, evaluation("second"))
+        // A resource index or append index adds its constant to a new scope
+        val indexContext = CustomContext.addConstant("index", "1", context)
+        assertThat(indexContext.evaluationCache).isSameInstanceAs(cache)
+        cache.evaluate(expression, bundle, indexContext, evaluation("third"))
+        cache.evaluate(expression, bundle, CustomContext.setAppendToIndex(2, context), evaluation("fourth"))
+        // Constants are resolved against the focus resource of the context
+        context.focusResource = Patient()
+        cache.evaluate(expression, bundle, context, evaluation("fifth"))
+
+        assertThat(evaluationCount).isEqualTo(4)
+        assertThat(cache.stats()).isEqualTo(FhirPathEvaluationCache.Stats(1, 4))
+    }
+
+    @Test
+    fun `test failed evaluations are not memoized`() {
+        val cache = FhirPathEvaluationCache()
+        val bundle = Bundle()
+        val context = CustomContext(bundle, bundle, evaluationCache = cache)
+
+        assertFailure { cache.evaluate("Bundle.id", bundle, context) { error("Failed") } }
+        assertThat(cache.evaluate("Bundle.id", bundle, context, evaluation("value")).single().primitiveValue())
+            .isEqualTo("value")
+        assertThat(cache.stats()).isEqualTo(FhirPathEvaluationCache.Stats(0, 2))
+    }
+}
@@ -0,0 +1,70 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils
+
+import assertk.assertFailure
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isGreaterThanOrEqualTo
+import assertk.assertions.isInstanceOf
+import assertk.assertions.isLessThanOrEqualTo
+import assertk.assertions.isNotNull
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import fhirengine.engine.CustomFhirPathFunctions
+import org.hl7.fhir.r4.fhirpath.FHIRLexer
+import kotlin.test.Test
+
+class FhirPathExpressionRegistryTests {
+
+    @Test
+    fun `test compiled expressions are reused`() {
+        val registry = FhirPathExpressionRegistry()
+        var parseCount = 0
+        val compiler = { expression: String ->
+            parseCount++
+            FhirPathUtils.parsePath(expression)
+        }
+
+        val first = registry.compile("Bundle.entry.resource.ofType(Patient)", null, compiler)
+        val second = registry.compile("Bundle.entry.resource.ofType(Patient)", null, compiler)
+        assertThat(first).isNotNull()
+        assertThat(second).isSameInstanceAs(first)
+        assertThat(parseCount).isEqualTo(1)
+        assertThat(registry.stats()).isEqualTo(FhirPathExpressionRegistry.Stats(1, 1, 0, 1))
+    }
+
+    @Test
+    fun `test expressions are compiled per custom function type`() {
+        val registry = FhirPathExpressionRegistry()
+        val expression = "Bundle.entry.resource.ofType(Patient)"
+
+        val withoutFunctions = registry.compile(expression, null) { FhirPathUtils.parsePath(it) }
+        val withFunctions = registry.compile(expression, CustomFhirPathFunctions()) { FhirPathUtils.parsePath(it) }
+        assertThat(withFunctions).isNotSameInstanceAs(withoutFunctions)
+        assertThat(registry.compile(expression, CustomFhirPathFunctions()) { null }).isSameInstanceAs(withFunctions)
+    }
+
+    @Test
+    fun `test blank and invalid expressions`() {
+        val registry = FhirPathExpressionRegistry()
+        assertThat(registry.compile(null, null) { FhirPathUtils.parsePath(it) }).isNull()
+        assertThat(registry.compile(" ", null) { FhirPathUtils.parsePath(it) }).isNull()
+
+        assertFailure { registry.compile("Bundle.#*($&id.exists()", null) { FhirPathUtils.parsePath(it) } }
+            .isInstanceOf(FHIRLexer.FHIRLexerException::class)
+        assertThat(registry.stats().size).isEqualTo(0)
+    }
+
+    @Test
+    fun `test registry is bounded`() {
+        val registry = FhirPathExpressionRegistry(2)
+        listOf("Bundle.id", "Bundle.type", "Bundle.timestamp").forEach { expression ->
+            registry.compile(expression, null) { FhirPathUtils.parsePath(it) }
+        }
+        assertThat(registry.stats().size).isLessThanOrEqualTo(2)
+        assertThat(registry.stats().evictions).isGreaterThanOrEqualTo(1)
+
+        registry.clear()
+        assertThat(registry.stats().size).isEqualTo(0)
+    }
+}
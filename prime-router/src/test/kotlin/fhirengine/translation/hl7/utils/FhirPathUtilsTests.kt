@@ -4,6 +4,7 @@ import assertk.all
 import assertk.assertFailure
 import assertk.assertThat
 import assertk.assertions.hasClass
+import assertk.assertions.hasMessage
 import assertk.assertions.isEmpty
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
@@ -16,6 +17,7 @@ import ca.uhn.hl7v2.model.v251.message.ORU_R01
 import ca.uhn.hl7v2.util.Terser
 import fhirengine.engine.CustomFhirPathFunctions
 import fhirengine.engine.CustomTranslationFunctions
+import fhirengine.translation.hl7.utils.FhirPathFunctions
 import gov.cdc.prime.router.Metadata
 import gov.cdc.prime.router.Receiver
 import gov.cdc.prime.router.fhirengine.config.HL7TranslationConfig
@@ -33,7 +35,9 @@ import io.mockk.verify
 import org.apache.logging.log4j.kotlin.KotlinLogger
 import org.hl7.fhir.exceptions.PathEngineException
 import org.hl7.fhir.r4.fhirpath.FHIRLexer
+import org.hl7.fhir.r4.fhirpath.FHIRPathUtilityClasses.FunctionDetails
 import org.hl7.fhir.r4.model.Address
+import org.hl7.fhir.r4.model.Base
 import org.hl7.fhir.r4.model.Bundle
 import org.hl7.fhir.r4.model.DateTimeType
 import org.hl7.fhir.r4.model.DateType
@@ -43,11 +47,15 @@ import org.hl7.fhir.r4.model.InstantType
 import org.hl7.fhir.r4.model.Observation
 import org.hl7.fhir.r4.model.Patient
 import org.hl7.fhir.r4.model.ServiceRequest
+import org.hl7.fhir.r4.model.StringType
 import org.hl7.fhir.r4.model.TimeType
 import org.junit.jupiter.api.BeforeEach
 import tech.tablesaw.api.StringColumn
 import tech.tablesaw.api.Table
 import java.util.Date
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import kotlin.test.Test
 import kotlin.test.assertFailsWith
 
@@ -368,10 +376,98 @@ class FhirPathUtilsTests {
         }
     }
 
+    @Test
+    fun `test evaluateCompiledCondition reports the source expression`() {
+        val bundle = Bundle()
+        bundle.id = "abc123"
+
+        val condition = "Bundle.id.exists() /* has an id */"
+        val conditionNode = FhirPathUtils.compilePath(condition)!!
+        assertThat(FhirPathUtils.evaluateCompiledCondition(null, bundle, bundle, bundle, condition, conditionNode))
+            .isTrue()
+
+        val expression = "Bundle.id /* not a boolean */"
+        val expressionNode = FhirPathUtils.compilePath(expression)!!
+        assertFailure {
+            FhirPathUtils.evaluateCompiledCondition(null, bundle, bundle, bundle, expression, expressionNode)
+        }.all {
+            hasClass(SchemaException::class.java)
+            hasMessage("FHIR Path expression did not evaluate to a boolean type: $expression")
+        }
+    }
+
     @Test
     fun `test evaluateCondition with empty focus resource`() {
         val bundle = Bundle()
         val path = "Bundle.timestamp.is(dateTime)"
         assertThat(FhirPathUtils.evaluateCondition(null, bundle, bundle, bundle, path)).isFalse()
     }
-}
\ No newline at end of file
+
+    /**
+     * Custom functions that return the [marker] of the function set from a function named [functionName].
+     */
+    private open class MarkerFunctions(val functionName: String, val marker: String) : FhirPathFunctions {
+        override fun resolveFunction(
+            functionName: String?,
+            additionalFunctions: FhirPathFunctions?,
+        ): FunctionDetails? = if (functionName == this.functionName) {
+                FunctionDetails("returns the marker of the function set", 0, 0)
+            } else {
+                null
+            }
+
+        override fun executeFunction(
+            focus: MutableList<Base>?,
+            functionName: String?,
+            parameters: MutableList<MutableList<Base>>?,
+            additionalFunctions: FhirPathFunctions?,
+        ): MutableList<Base> = mutableListOf(StringType(marker))
+    }
+
+    private class MarkerFunctions1(marker: String) : MarkerFunctions("marker1", marker)
+
+    private class MarkerFunctions2(marker: String) : MarkerFunctions("marker2", marker)
+
+    @Test
+    fun `test concurrent evaluation with different custom functions`() {
+        val threadCount = 16
+        val iterations = 200
+        val executor = Executors.newFixedThreadPool(threadCount)
+        val startLatch = CountDownLatch(1)
+        try {
+            val futures = (0 until threadCount).map { threadIndex ->
+                executor.submit<List<String>> {
+                    val marker = "T$threadIndex"
+                    val functions = if (threadIndex % 2 == 0) MarkerFunctions1(marker) else MarkerFunctions2(marker)
+                    val bundle = Bundle()
+                    bundle.id = marker
+                    val context = CustomContext(bundle, bundle, mutableMapOf("marker" to "'$marker'"), functions)
+                    val errors = mutableListOf<String>()
+                    startLatch.await()
+                    repeat(iterations) {
+                        val value = FhirPathUtils.evaluateString(
+                            context, bundle, bundle, "Bundle.id.${functions.functionName}()"
+                        )
+                        if (value != marker) errors.add("Thread $threadIndex evaluated $value")
+                        val condition = FhirPathUtils.evaluateCondition(
+                            context, bundle, bundle, bundle, "Bundle.id.${functions.functionName}() = %marker"
+                        )
+                        if (!condition) errors.add("Thread $threadIndex condition was false")
+                    }
+                    errors
+                }
+            }
+            startLatch.countDown()
+            val errors = futures.flatMap { it.get(1, TimeUnit.MINUTES) }
+            assertThat(errors).isEmpty()
+        } finally {
+            executor.shutdownNow()
+        }
+
+        // A function only known by another thread's function set is still rejected
+        val bundle = Bundle()
+        val context = CustomContext(bundle, bundle, mutableMapOf(), MarkerFunctions1("T0"))
+        assertFailure { FhirPathUtils.evaluateCondition(context, bundle, bundle, bundle, "Bundle.marker2().exists()") }
+            .hasClass(SchemaException::class.java)
+    }
+}
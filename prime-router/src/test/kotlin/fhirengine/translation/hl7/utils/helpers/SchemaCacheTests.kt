@@ -0,0 +1,109 @@
+package gov.cdc.prime.router.fhirengine.translation.hl7.utils.helpers
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isSameInstanceAs
+import gov.cdc.prime.router.azure.BlobAccess
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.ConfigSchemaReader
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.fhirTransform.FhirTransformSchema
+import gov.cdc.prime.router.fhirengine.translation.hl7.schema.providers.SchemaServiceProvider
+import java.io.InputStream
+import java.net.URI
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+import kotlin.test.Test
+
+class SchemaCacheTests {
+    private val blobInfo = BlobAccess.BlobContainerMetadata("metadata", "connection")
+
+    private val schemaText = """
+        elements:
+          - name: status
+            resource: 'Bundle.entry.resource.ofType(DiagnosticReport)[0]'
+            bundleProperty: '%resource.status'
+            value: [ '"final"' ]
+    """.trimIndent()
+
+    /**
+     * Provider that serves [schemaText] with a [version] that can be changed by the test.
+     */
+    private inner class TestSchemaServiceProvider(var version: String?) : SchemaServiceProvider {
+        var reads = 0
+
+        override fun getProviderType(): String = "test"
+
+        override fun getInputStream(schemaUri: URI): InputStream {
+            reads++
+            return schemaText.byteInputStream()
+        }
+
+        override fun getVersion(schemaUri: URI): String? = version
+    }
+
+    private fun getSchema(cache: SchemaCache, provider: TestSchemaServiceProvider): FhirTransformSchema = cache.get(
+        "test:/schema.yml",
+        FhirTransformSchema::class.java,
+        blobInfo,
+        mapOf("test" to provider)
+    ) { providers ->
+        ConfigSchemaReader.fromFile("test:/schema.yml", FhirTransformSchema::class.java, providers)
+    }
+
+    @Test
+    fun `test schema is loaded once`() {
+        val cache = SchemaCache(Duration.ofMinutes(1))
+        val provider = TestSchemaServiceProvider("1")
+
+        val first = getSchema(cache, provider)
+        val second = getSchema(cache, provider)
+        assertThat(second).isSameInstanceAs(first)
+        assertThat(provider.reads).isEqualTo(1)
+        assertThat(cache.stats().hits).isEqualTo(1)
+        assertThat(cache.stats().misses).isEqualTo(1)
+    }
+
+    @Test
+    fun `test schema is reloaded when its version changes`() {
+        var now = Instant.parse("2024-01-01T00:00:00Z")
+        val clock = object : Clock() {
+            override fun getZone(): ZoneId = ZoneOffset.UTC
+            override fun withZone(zone: ZoneId): Clock = this
+            override fun instant(): Instant = now
+        }
+        val cache = SchemaCache(Duration.ofMinutes(1), clock)
+        val provider = TestSchemaServiceProvider("1")
+
+        val first = getSchema(cache, provider)
+
+        // The version is not checked again until the revalidation interval has passed
+        provider.version = "2"
+        assertThat(getSchema(cache, provider)).isSameInstanceAs(first)
+
+        now = now.plus(Duration.ofMinutes(2))
+        val reloaded = getSchema(cache, provider)
+        assertThat(reloaded).isNotSameInstanceAs(first)
+        assertThat(provider.reads).isEqualTo(2)
+        assertThat(cache.stats().reloads).isEqualTo(1)
+
+        // Unchanged after the next check
+        now = now.plus(Duration.ofMinutes(2))
+        assertThat(getSchema(cache, provider)).isSameInstanceAs(reloaded)
+    }
+
+    @Test
+    fun `test unversioned schemas are cached and invalidated`() {
+        val cache = SchemaCache(Duration.ZERO)
+        val provider = TestSchemaServiceProvider(null)
+
+        val first = getSchema(cache, provider)
+        assertThat(getSchema(cache, provider)).isSameInstanceAs(first)
+
+        cache.invalidateAll()
+        assertThat(getSchema(cache, provider)).isNotSameInstanceAs(first)
+        assertThat(provider.reads).isEqualTo(2)
+    }
+}
@@ -5,7 +5,9 @@ import assertk.assertions.contains
 import assertk.assertions.isEqualTo
 import assertk.assertions.isFalse
 import assertk.assertions.isNotNull
+import assertk.assertions.isNotSameInstanceAs
 import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import ca.uhn.hl7v2.ErrorCode
 import ca.uhn.hl7v2.HL7Exception
@@ -14,6 +16,8 @@ import ca.uhn.hl7v2.parser.EncodingNotSupportedException
 import org.apache.commons.lang3.exception.ExceptionUtils
 import java.lang.Exception
 import java.text.SimpleDateFormat
+import java.util.concurrent.Executors
+import java.util.concurrent.TimeUnit
 import kotlin.test.Test
 
 class HL7ReaderTests {
@@ -318,6 +322,46 @@ OBX|1|test|94558-4^SARS-CoV-2 (COVID-19) Ag [Presence] in Respiratory specimen b
         assertThat(type).isEqualTo(null)
     }
 
+    @Test
+    fun `test parsing contexts are shared`() {
+        val oruType = HL7Reader.Companion.HL7MessageType("ORU_R01", "2.5.1", "")
+        assertThat(HL7Reader.getHL7ParsingContext(oruType)).isSameInstanceAs(HL7Reader.getHL7ParsingContext(oruType))
+        assertThat(HL7Reader.getHL7ParsingContext(oruType))
+            .isNotSameInstanceAs(HL7Reader.getHL7ParsingContext(oruType.copy(msh93 = "ORM_O01")))
+        assertThat(HL7Reader.getHL7ParsingContext(null))
+            .isSameInstanceAs(HL7Reader.getHL7ParsingContext(oruType.copy(msh93 = "TEST_O01")))
+    }
+
+    @Test
+    fun `test parse messages concurrently`() {
+        val messages = listOf("ORU^R01^ORU_R01", "OML^O21^OML_O21", "ORM^O01^ORM_O01", "TEST^O01^TEST_O01")
+            .mapIndexed { index, messageType ->
+                """
+                MSH|^~\&|CDC PRIME - Atlanta, Georgia (Dekalb)^2.16.840.1.114222.4.1.237821^ISO|Avante at Ormond Beach^10D0876999^CLIA|PRIME_DOH|Prime ReportStream|20210210170737||$messageType|$index|P|2.5.1|||NE|NE|USA
+                PID|1||2a14112c-ece1-4f82-915c-7b3a8d152eda^^^Avante at Ormond Beach^PI||Buckridge^Kareem^Millie^^^^L||1958081$index|F
+                """.trimIndent()
+            }
+        val expected = messages.map { message ->
+            HL7Reader.parseHL7Message(message).let { it.javaClass to HL7Reader.getBirthTime(it) }
+        }
+
+        val executor = Executors.newFixedThreadPool(8)
+        try {
+            val results = (1..400).map { index ->
+                executor.submit<Pair<Class<*>, String>> {
+                    HL7Reader.parseHL7Message(messages[index % messages.size]).let {
+                        it.javaClass to HL7Reader.getBirthTime(it)
+                    }
+                }
+            }.map { it.get(30, TimeUnit.SECONDS) }
+            results.forEachIndexed { index, result ->
+                assertThat(result).isEqualTo(expected[(index + 1) % messages.size])
+            }
+        } finally {
+            executor.shutdown()
+        }
+    }
+
     @Test
     fun `extract MSH segment values`() {
         @Suppress("ktlint:standard:max-line-length")
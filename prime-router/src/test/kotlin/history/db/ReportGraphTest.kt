@@ -2,12 +2,17 @@ package gov.cdc.prime.router.history.db
 
 import assertk.assertFailure
 import assertk.assertThat
+import assertk.assertions.containsExactlyInAnyOrder
 import assertk.assertions.hasSize
 import assertk.assertions.isEqualTo
 import assertk.assertions.isInstanceOf
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
 import gov.cdc.prime.router.Topic
+import gov.cdc.prime.router.azure.DatabaseAccess
+import gov.cdc.prime.router.azure.db.Tables.REPORT_ANCESTOR
+import gov.cdc.prime.router.azure.db.Tables.REPORT_ANCESTOR_BACKFILL
+import gov.cdc.prime.router.azure.db.Tables.REPORT_LINEAGE
 import gov.cdc.prime.router.azure.db.enums.TaskAction
 import gov.cdc.prime.router.azure.db.tables.pojos.Action
 import gov.cdc.prime.router.azure.db.tables.pojos.ReportFile
@@ -15,6 +20,7 @@ import gov.cdc.prime.router.azure.db.tables.pojos.ReportLineage
 import gov.cdc.prime.router.db.ReportStreamTestDatabaseContainer
 import gov.cdc.prime.router.db.ReportStreamTestDatabaseSetupExtension
 import org.jooq.exception.TooManyRowsException
+import org.jooq.impl.DSL
 import org.junit.jupiter.api.DisplayName
 import org.junit.jupiter.api.Nested
 import org.junit.jupiter.api.extension.ExtendWith
@@ -368,5 +374,161 @@ class ReportGraphTest {
                 .hasSize(1)
             assertThat(descendants[0].reportId).isEqualTo(sendReportId)
         }
+
+        @Test
+        fun `find all descendant reports from receive parent report`() {
+            var descendants: List<ReportFile> = emptyList()
+
+            ReportStreamTestDatabaseContainer.testDatabaseAccess.transact { txn ->
+                descendants = reportGraph.getDescendantReports(txn, receivedReportId)
+            }
+
+            assertThat(descendants.map { it.reportId }).containsExactlyInAnyOrder(
+                receivedReportId,
+                convertReportFile.reportId,
+                routeReportId,
+                translateReportId,
+                batchReportFile.reportId,
+                sendReportId
+            )
+        }
+
+        private fun sendReportAncestors() = ReportStreamTestDatabaseContainer.testDatabaseAccess.transactReturning {
+            DSL.using(it)
+                .select(REPORT_ANCESTOR.ANCESTOR_REPORT_ID, REPORT_ANCESTOR.DEPTH)
+                .from(REPORT_ANCESTOR)
+                .where(REPORT_ANCESTOR.REPORT_ID.eq(sendReportId))
+                .fetch { record -> record.value1() to record.value2() }
+        }
+
+        @Test
+        fun `report ancestor closure is maintained when lineages are inserted`() {
+            assertThat(sendReportAncestors()).containsExactlyInAnyOrder(
+                batchReportFile.reportId to 1,
+                translateReportId to 2,
+                translateReportFile2.reportId to 2,
+                routeReportId to 3,
+                routeReportFile2.reportId to 3,
+                convertReportFile.reportId to 4,
+                convertReportFile2.reportId to 4,
+                receivedReportId to 5,
+                receivedReportId2 to 5
+            )
+        }
+
+        @Test
+        fun `report ancestor depths of descendants are shortened by a shorter lineage`() {
+            ReportStreamTestDatabaseContainer.testDatabaseAccess.transact { txn ->
+                ReportStreamTestDatabaseContainer.testDatabaseAccess.insertReportLineage(
+                    ReportLineage(
+                        9,
+                        batchAction.actionId,
+                        receivedReportId,
+                        batchReportFile.reportId,
+                        OffsetDateTime.now()
+                    ),
+                    txn
+                )
+            }
+
+            assertThat(sendReportAncestors()).containsExactlyInAnyOrder(
+                batchReportFile.reportId to 1,
+                translateReportId to 2,
+                translateReportFile2.reportId to 2,
+                routeReportId to 3,
+                routeReportFile2.reportId to 3,
+                convertReportFile.reportId to 4,
+                convertReportFile2.reportId to 4,
+                receivedReportId to 2,
+                receivedReportId2 to 5
+            )
+        }
+
+        /**
+         * Set when the report ancestor closure backfill completed, or null while it is running, and forget the
+         * cached progress so the next lookups use it.
+         */
+        private fun setClosureCompletedAt(completedAt: OffsetDateTime?) {
+            ReportStreamTestDatabaseContainer.testDatabaseAccess.transact { txn ->
+                DSL.using(txn).update(REPORT_ANCESTOR_BACKFILL)
+                    .set(REPORT_ANCESTOR_BACKFILL.COMPLETED_AT, completedAt)
+                    .execute()
+            }
+            DatabaseAccess.resetReportAncestorClosureComplete()
+        }
+
+        private fun assertLookups() {
+            assertThat(reportGraph.getRootReport(translateReportId)?.reportId).isEqualTo(receivedReportId)
+            assertThat(reportGraph.getRootReports(sendReportId).map { it.reportId })
+                .isEqualTo(listOf(receivedReportId, receivedReportId2))
+            ReportStreamTestDatabaseContainer.testDatabaseAccess.transact { txn ->
+                assertThat(
+                    reportGraph.getDescendantReports(txn, receivedReportId, setOf(TaskAction.send)).map { it.reportId }
+                ).isEqualTo(listOf(sendReportId))
+                assertThat(reportGraph.getDescendantReports(txn, receivedReportId).map { it.reportId })
+                    .containsExactlyInAnyOrder(
+                        receivedReportId,
+                        convertReportFile.reportId,
+                        routeReportId,
+                        translateReportId,
+                        batchReportFile.reportId,
+                        sendReportId
+                    )
+            }
+        }
+
+        @Test
+        fun `lookups walk the report lineages until the closure is backfilled`() {
+            val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+            // without the closure rows, the reports can only be found from the report lineages
+            db.transact { txn -> DSL.using(txn).deleteFrom(REPORT_ANCESTOR).execute() }
+            setClosureCompletedAt(null)
+            try {
+                assertThat(db.isReportAncestorClosureComplete()).isEqualTo(false)
+                assertLookups()
+            } finally {
+                setClosureCompletedAt(OffsetDateTime.now())
+            }
+        }
+
+        @Test
+        fun `lookups use the closure once it is backfilled`() {
+            val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+            // without the report lineages, the reports can only be found from the closure rows
+            db.transact { txn -> DSL.using(txn).deleteFrom(REPORT_LINEAGE).execute() }
+            setClosureCompletedAt(OffsetDateTime.now())
+
+            assertThat(db.isReportAncestorClosureComplete()).isEqualTo(true)
+            assertLookups()
+        }
+
+        @Test
+        fun `backfill report ancestor closure`() {
+            val expected = sendReportAncestors()
+            val db = ReportStreamTestDatabaseContainer.testDatabaseAccess
+            db.transact { txn ->
+                DSL.using(txn).deleteFrom(REPORT_ANCESTOR).execute()
+                // the lineages in this test start at 0, and the ones after 5 were inserted since the migration
+                DSL.using(txn).update(REPORT_ANCESTOR_BACKFILL)
+                    .set(REPORT_ANCESTOR_BACKFILL.LAST_REPORT_LINEAGE_ID, -1L)
+                    .set(REPORT_ANCESTOR_BACKFILL.MIGRATED_REPORT_LINEAGE_ID, 5L)
+                    .setNull(REPORT_ANCESTOR_BACKFILL.FIXUP_REPORT_LINEAGE_ID)
+                    .execute()
+            }
+            setClosureCompletedAt(null)
+
+            // the first pass adds lineages 0 to 5, then the fix-up pass reruns 6 to 8
+            val batches = (1..3).map { db.transactReturning { txn -> db.backfillReportAncestors(4, txn) } }
+
+            assertThat(batches).isEqualTo(listOf(4, 2, 3))
+            assertThat(sendReportAncestors()).containsExactlyInAnyOrder(*expected.toTypedArray())
+            assertThat(db.isReportAncestorClosureComplete()).isEqualTo(true)
+            val progress = db.transactReturning { txn ->
+                DSL.using(txn).selectFrom(REPORT_ANCESTOR_BACKFILL).fetchOne()
+            }
+            assertThat(progress?.fixupReportLineageId).isEqualTo(8L)
+            assertThat(progress?.completedAt).isNotNull()
+            assertThat(db.transactReturning { txn -> db.backfillReportAncestors(4, txn) }).isEqualTo(0)
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,71 @@
+package gov.cdc.prime.router.metadata
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
+import tech.tablesaw.api.StringColumn
+import tech.tablesaw.api.Table
+import kotlin.test.Test
+
+class GeoIndexesTests {
+    private fun zipCodeTable(vararg rows: Pair<String, String>) = LookupTable(
+        name = "zip-code-data",
+        table = Table.create(
+            "zip-code-data",
+            StringColumn.create("state_abbr", rows.map { it.second }),
+            StringColumn.create("zipcode", rows.map { it.first })
+        )
+    )
+
+    @Test
+    fun `test zip code states`() {
+        val lookupTable = zipCodeTable(
+            "73949" to "OK",
+            "73949" to "TX",
+            "73949" to "OK",
+            "02134" to "MA",
+            "ABC" to "XX"
+        )
+        val index = ZipCodeStateIndex.get(lookupTable)
+        assertThat(index.getStates("73949")).isEqualTo("OK,TX")
+        assertThat(index.getStates("02134")).isEqualTo("MA")
+        assertThat(index.getStates("2134")).isEqualTo("")
+        assertThat(index.getStates("ABC")).isEqualTo("XX")
+        assertThat(index.getStates("99999")).isEqualTo("")
+        assertThat(index.getStates("")).isEqualTo("")
+
+        // The index is reused until the table changes
+        assertThat(ZipCodeStateIndex.get(lookupTable)).isSameInstanceAs(index)
+        lookupTable.table = zipCodeTable("02134" to "RI").table
+        assertThat(ZipCodeStateIndex.get(lookupTable)).isNotSameInstanceAs(index)
+        assertThat(ZipCodeStateIndex.get(lookupTable).getStates("02134")).isEqualTo("RI")
+    }
+
+    @Test
+    fun `test zip code states with missing columns`() {
+        val lookupTable = LookupTable(table = Table.create(StringColumn.create("zipcode", "73949")))
+        assertThat(ZipCodeStateIndex.get(lookupTable).getStates("73949")).isEqualTo("")
+    }
+
+    @Test
+    fun `test FIPS county codes`() {
+        val lookupTable = LookupTable(
+            name = "fips-county",
+            table = Table.create(
+                "fips-county",
+                StringColumn.create("FIPS", "41051", "41005", "06001", "99001", "99002"),
+                StringColumn.create("County", "Multnomah", "Clackamas", "Alameda", "Twice", "Twice"),
+                StringColumn.create("State", "OR", "OR", "CA", "ZZ", "ZZ")
+            )
+        )
+        val index = FipsCountyIndex.get(lookupTable)
+        assertThat(index.getFips("OR", "Multnomah")).isEqualTo("41051")
+        assertThat(index.getFips("or", "CLACKAMAS")).isEqualTo("41005")
+        assertThat(index.getFips("OR", "Alameda")).isNull()
+        assertThat(index.getFips("WA", "Multnomah")).isNull()
+        // A county with more than one FIPS code is not found
+        assertThat(index.getFips("ZZ", "Twice")).isNull()
+    }
+}
@@ -3,8 +3,10 @@ package gov.cdc.prime.router.metadata
 import assertk.assertThat
 import assertk.assertions.isEqualTo
 import assertk.assertions.isNotNull
+import assertk.assertions.isNotSameInstanceAs
 import assertk.assertions.isNull
 import assertk.assertions.isNullOrEmpty
+import assertk.assertions.isSameInstanceAs
 import gov.cdc.prime.router.Element
 import gov.cdc.prime.router.metadata.LivdLookup.find
 import org.junit.jupiter.api.Test
@@ -623,21 +625,21 @@ class LivdLookupTests {
             LivdLookup.lookupByEquipmentModelName(
                 element.tableColumn!!,
                 testModel,
-                lookupTable.FilterBuilder()
+                LivdLookup.search(lookupTable)
             )
         ).isEqualTo(expectedTestOrderedLoinc)
 
         // Add an * to the end of the model name
         assertThat(
             LivdLookup.lookupByEquipmentModelName(
-                element.tableColumn!!, "$testModel*", lookupTable.FilterBuilder()
+                element.tableColumn!!, "$testModel*", LivdLookup.search(lookupTable)
             )
         ).isEqualTo(expectedTestOrderedLoinc)
 
         // Add some other character to fail the lookup
         assertThat(
             LivdLookup.lookupByEquipmentModelName(
-                element.tableColumn!!, "$testModel^", lookupTable.FilterBuilder()
+                element.tableColumn!!, "$testModel^", LivdLookup.search(lookupTable)
             )
         ).isNull()
 
@@ -646,15 +648,104 @@ class LivdLookupTests {
         expectedTestOrderedLoinc = "95409-9"
         assertThat(
             LivdLookup.lookupByEquipmentModelName(
-                element.tableColumn!!, testModel, lookupTable.FilterBuilder()
+                element.tableColumn!!, testModel, LivdLookup.search(lookupTable)
             )
         ).isEqualTo(expectedTestOrderedLoinc)
 
         // Add an * to the end of the model name
         assertThat(
             LivdLookup.lookupByEquipmentModelName(
-                element.tableColumn!!, "$testModel*", lookupTable.FilterBuilder()
+                element.tableColumn!!, "$testModel*", LivdLookup.search(lookupTable)
             )
         ).isEqualTo(expectedTestOrderedLoinc)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `test livdLookup with truncated device IDs and equipment UIDs`() {
+        // Matches the test kit ID prefix of rows 4-6
+        assertThat(
+            find(deviceId = "MODEL2KIT#", tableColumn = LivdTableColumns.MODEL.colName, tableRef = livdTable)
+        ).isEqualTo(getDeviceCol(4, modelNameElement))
+
+        // Matches the test kit ID prefix of several models
+        assertThat(
+            find(deviceId = "model#", tableColumn = LivdTableColumns.MODEL.colName, tableRef = livdTable)
+        ).isNull()
+
+        // 99ELR device ID
+        assertThat(
+            find(deviceId = "model5kit1_EUA", tableColumn = LivdTableColumns.MODEL.colName, tableRef = livdTable)
+        ).isEqualTo(getDeviceCol(9, modelNameElement))
+
+        // Case-insensitive equipment UID
+        assertThat(
+            find(
+                equipmentModelId = "MODEL2UID3",
+                tableColumn = LivdTableColumns.TEST_PERFORMED_CODE.colName,
+                tableRef = livdTable
+            )
+        ).isEqualTo(getDeviceCol(6, testPerformedCodeElement))
+    }
+
+    @Test
+    fun `test livdLookup index is rebuilt when the table changes`() {
+        val table = LookupTable("LIVD", fakeLivdTableData)
+        assertThat(
+            find(testKitNameId = "model1kit1", tableColumn = LivdTableColumns.MODEL.colName, tableRef = table)
+        ).isEqualTo("model1")
+        val index = LivdIndex.get(table)
+        assertThat(LivdIndex.get(table)).isSameInstanceAs(index)
+
+        // Load a new version of the table
+        table.table = LookupTable(
+            "LIVD",
+            listOf(
+                fakeLivdTableData[0],
+                listOf("newModel", "90001-1", "model1kit1", "model1uid1", "")
+            )
+        ).table
+        assertThat(
+            find(testKitNameId = "model1kit1", tableColumn = LivdTableColumns.MODEL.colName, tableRef = table)
+        ).isEqualTo("newModel")
+        assertThat(LivdIndex.get(table)).isNotSameInstanceAs(index)
+    }
+
+    @Test
+    fun `test livdLookup with missing columns`() {
+        val table = LookupTable(
+            "LIVD",
+            listOf(
+                listOf(LivdTableColumns.MODEL.colName, LivdTableColumns.TESTKIT_NAME_ID.colName),
+                listOf("model1", "model1kit1")
+            )
+        )
+        // Test devices cannot be filtered out without the processing mode code column
+        assertThat(
+            find(testKitNameId = "model1kit1", tableColumn = LivdTableColumns.MODEL.colName, tableRef = table)
+        ).isNull()
+        assertThat(
+            find(
+                processingModeCode = LivdLookup.testProcessingModeCode,
+                testKitNameId = "model1kit1",
+                tableColumn = LivdTableColumns.MODEL.colName,
+                tableRef = table
+            )
+        ).isEqualTo("model1")
+        assertThat(
+            find(
+                processingModeCode = LivdLookup.testProcessingModeCode,
+                equipmentModelId = "model1uid1",
+                tableColumn = LivdTableColumns.MODEL.colName,
+                tableRef = table
+            )
+        ).isNull()
+        assertThat(
+            find(
+                processingModeCode = LivdLookup.testProcessingModeCode,
+                testKitNameId = "model1kit1",
+                tableColumn = "unknown",
+                tableRef = table
+            )
+        ).isNull()
+    }
+}
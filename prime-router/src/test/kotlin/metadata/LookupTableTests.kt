@@ -9,6 +9,7 @@ import assertk.assertions.isLessThan
 import assertk.assertions.isNotEmpty
 import assertk.assertions.isNotNull
 import assertk.assertions.isNull
+import assertk.assertions.isSameInstanceAs
 import assertk.assertions.isTrue
 import gov.cdc.prime.router.azure.DatabaseLookupTableAccess
 import gov.cdc.prime.router.azure.db.tables.pojos.LookupTableRow
@@ -16,6 +17,7 @@ import io.mockk.every
 import io.mockk.mockk
 import org.jooq.JSONB
 import org.jooq.exception.DataAccessException
+import tech.tablesaw.api.Table
 import java.io.ByteArrayInputStream
 import kotlin.test.Test
 import kotlin.test.assertFailsWith
@@ -396,4 +398,29 @@ class LookupTableTests {
 
         assertThat(table.FilterBuilder().isEqualTo("dummy", "dummy").filter().rowCount).isEqualTo(0)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun `get index test`() {
+        val mockDbTableAccess = mockk<DatabaseLookupTableAccess>()
+        val tableData = listOf(LookupTableRow())
+        tableData[0].data = JSONB.jsonb("""{"colA": "value1", "colB": "value2"}""")
+        every { mockDbTableAccess.fetchTable(any(), any()) } returns tableData
+
+        val table = LookupTable("name", tableData2, mockDbTableAccess)
+        var builds = 0
+        val indexBuilder = { data: Table ->
+            builds++
+            data.stringColumn("a").asList().toSet()
+        }
+
+        val index = table.getIndex("a-values", indexBuilder)
+        assertThat(index).contains("valueA1")
+        assertThat(table.getIndex("a-values", indexBuilder)).isSameInstanceAs(index)
+        assertThat(builds).isEqualTo(1)
+
+        // Loading a new version rebuilds the index
+        table.loadTable(2)
+        assertThat(table.getIndex("a-values") { it.stringColumn("colA").asList().toSet() })
+            .isEqualTo(setOf("value1"))
+    }
+}
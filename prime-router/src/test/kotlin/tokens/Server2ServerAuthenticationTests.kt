@@ -31,7 +31,12 @@ import org.junit.jupiter.api.assertDoesNotThrow
 import org.junit.jupiter.api.assertThrows
 import tokens.Server2ServerAuthenticationException
 import java.math.BigInteger
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
 import java.time.OffsetDateTime
+import java.time.ZoneId
+import java.time.ZoneOffset
 import java.util.Date
 import java.util.UUID
 import javax.crypto.SecretKey
@@ -414,6 +419,34 @@ class Server2ServerAuthenticationTests {
         assertFalse(jtiCache.isJTIOk(uuid2, exp2_1))
     }
 
+    @Test
+    fun `test MemoryJtiCache sweep`() {
+        var now = Instant.now()
+        val clock = object : Clock() {
+            override fun getZone(): ZoneId = ZoneOffset.UTC
+            override fun withZone(zone: ZoneId): Clock = this
+            override fun instant(): Instant = now
+        }
+        MemoryJtiCache(shardCount = 4, clock = clock).use { jtiCache ->
+            val expired = UUID.randomUUID().toString()
+            val expiredAt = OffsetDateTime.now(clock).minusSeconds(1)
+            assertTrue(jtiCache.insertIfAbsent(expired, expiredAt))
+            val expiresAt = OffsetDateTime.now(clock).plusSeconds(300)
+            repeat(10) { assertTrue(jtiCache.insertIfAbsent(UUID.randomUUID().toString(), expiresAt)) }
+            assertEquals(11, jtiCache.size)
+
+            // An expired JTI can be used again even before it is swept
+            assertTrue(jtiCache.insertIfAbsent(expired, expiredAt))
+            assertEquals(1, jtiCache.sweep())
+            assertEquals(10, jtiCache.size)
+
+            // The other JTIs are swept once they expire
+            now = now.plusSeconds(301)
+            assertEquals(10, jtiCache.sweep())
+            assertEquals(0, jtiCache.size)
+        }
+    }
+
     @Test
     fun `test isExpiredToken`() {
         val exp1 = Date(System.currentTimeMillis() - 1)
@@ -453,6 +486,66 @@ class Server2ServerAuthenticationTests {
         assertNull(claims)
     }
 
+    @Test
+    fun `test authenticate with verified token cache`() {
+        val rslookup = GetTestSecret()
+        var now = Instant.now()
+        val clock = object : Clock() {
+            override fun getZone(): ZoneId = ZoneOffset.UTC
+            override fun withZone(zone: ZoneId): Clock = this
+            override fun instant(): Instant = now
+        }
+        val verifiedTokens = VerifiedAccessTokenCache(clock = clock)
+        val accessToken = server2ServerAuthentication.createAccessToken("a.b.report", rslookup)
+        val claims = server2ServerAuthentication.authenticate(accessToken.accessToken, rslookup, verifiedTokens)
+        assertNotNull(claims)
+
+        // Served from the cache without checking the signature again
+        val cachedClaims = server2ServerAuthentication.authenticate(
+            accessToken.accessToken, GetTestSecret(), verifiedTokens
+        )
+        assertThat(cachedClaims).isEqualTo(claims)
+        assertThat(verifiedTokens.stats()).isEqualTo(VerifiedAccessTokenCache.Stats(1, 1, 1))
+
+        // Tokens are not served from the cache after they expire
+        now = now.plusSeconds(301)
+        assertNull(verifiedTokens.get(accessToken.accessToken))
+        assertThat(verifiedTokens.stats()).isEqualTo(VerifiedAccessTokenCache.Stats(1, 2, 0))
+    }
+
+    @Test
+    fun `test authenticate with rotated signing secret`() {
+        val rotatingLookup = object : ReportStreamSecretFinder {
+            var lookup = GetTestSecret()
+            override fun getReportStreamTokenSigningSecret(): SecretKey = lookup.getReportStreamTokenSigningSecret()
+        }
+        val verifiedTokens = VerifiedAccessTokenCache()
+        val signingSecret = CachedReportStreamSecretFinder(
+            rotatingLookup, minRefreshInterval = Duration.ZERO, onRotation = { verifiedTokens.clear() }
+        )
+        val accessToken1 = server2ServerAuthentication.createAccessToken("a.b.report", rotatingLookup)
+        assertNotNull(
+            server2ServerAuthentication.authenticate(accessToken1.accessToken, signingSecret, verifiedTokens)
+        )
+        assertNotNull(verifiedTokens.get(accessToken1.accessToken))
+
+        // The cached secret is refreshed when a token is signed with the new secret
+        rotatingLookup.lookup = GetTestSecret()
+        val accessToken2 = server2ServerAuthentication.createAccessToken("a.b.report", rotatingLookup)
+        assertNotNull(
+            server2ServerAuthentication.authenticate(accessToken2.accessToken, signingSecret, verifiedTokens)
+        )
+
+        // Tokens verified with the old secret are no longer served from the cache
+        assertNull(verifiedTokens.get(accessToken1.accessToken))
+        assertNotNull(verifiedTokens.get(accessToken2.accessToken))
+
+        // Tokens signed with other secrets are still rejected
+        val otherToken = server2ServerAuthentication.createAccessToken("a.b.report", GetTestSecret())
+        assertNull(server2ServerAuthentication.authenticate(otherToken.accessToken, signingSecret))
+        assertThat(signingSecret.stats()).isEqualTo(CachedReportStreamSecretFinder.Stats(2, 3, 1))
+    }
+
     @Test
     fun `test parseJwt successfully parses for a sender`() {
         val privateKey = jacksonObjectMapper.readValue(exampleRsaPrivateKeyStr, Jwk::class.java).toRSAPrivateKey()
@@ -0,0 +1,55 @@
+package gov.cdc.prime.router.transport
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import assertk.assertions.isNotSameInstanceAs
+import assertk.assertions.isSameInstanceAs
+import gov.cdc.prime.router.RESTTransportType
+import gov.cdc.prime.router.credentials.UserJksCredential
+import io.ktor.client.HttpClient
+import io.ktor.client.engine.mock.MockEngine
+import io.ktor.client.engine.mock.respondOk
+import io.mockk.mockk
+import io.mockk.verify
+import kotlin.test.Test
+
+class HttpClientPoolTests {
+    private val transport = RESTTransportType("reportUrl", "tokenUrl", headers = emptyMap())
+
+    @Test
+    fun `test clients are pooled per receiver and credential`() {
+        val pool = HttpClientPool { _, _ -> HttpClient(MockEngine { respondOk() }) }
+        val jks = UserJksCredential("user", "jks", "pass", "private", "trust")
+
+        val client = pool.getClient("org.receiver", null, transport)
+        assertThat(pool.getClient("org.receiver", null, transport)).isSameInstanceAs(client)
+        assertThat(pool.getClient("org.receiver", jks, transport)).isNotSameInstanceAs(client)
+        assertThat(pool.getClient("org.other", null, transport)).isNotSameInstanceAs(client)
+        assertThat(pool.stats()).isEqualTo(HttpClientPool.Stats(3, 1, 3))
+    }
+
+    @Test
+    fun `test clients are not reused after the transport settings change`() {
+        val pool = HttpClientPool { _, _ -> HttpClient(MockEngine { respondOk() }) }
+
+        val client = pool.getClient("org.receiver", null, transport)
+        assertThat(pool.getClient("org.receiver", null, transport.copy())).isSameInstanceAs(client)
+        assertThat(pool.getClient("org.receiver", null, transport.copy(reportUrl = "otherUrl")))
+            .isNotSameInstanceAs(client)
+        assertThat(pool.getClient("org.receiver", null, transport.copy(tlsKeystore = "keystore")))
+            .isNotSameInstanceAs(client)
+        assertThat(pool.getClient("org.receiver", null, transport.copy(headers = mapOf("key" to "value"))))
+            .isNotSameInstanceAs(client)
+        assertThat(pool.stats()).isEqualTo(HttpClientPool.Stats(4, 1, 4))
+    }
+
+    @Test
+    fun `test removed clients are closed`() {
+        val client = mockk<HttpClient>(relaxed = true)
+        val pool = HttpClientPool { _, _ -> client }
+        pool.getClient("org.receiver", null, transport)
+        pool.clear()
+        verify(exactly = 1) { client.close() }
+        assertThat(pool.stats().size).isEqualTo(0)
+    }
+}
@@ -0,0 +1,101 @@
+package gov.cdc.prime.router.transport
+
+import assertk.assertThat
+import assertk.assertions.isEqualTo
+import gov.cdc.prime.router.RESTTransportType
+import kotlinx.coroutines.runBlocking
+import java.time.Clock
+import java.time.Duration
+import java.time.Instant
+import java.time.ZoneId
+import java.time.ZoneOffset
+import kotlin.test.Test
+
+class OAuthTokenCacheTests {
+    private val transport = RESTTransportType("reportUrl", "tokenUrl", headers = emptyMap())
+
+    private var now = Instant.parse("2024-01-01T00:00:00Z")
+    private val clock = object : Clock() {
+        override fun getZone(): ZoneId = ZoneOffset.UTC
+        override fun withZone(zone: ZoneId): Clock = this
+        override fun instant(): Instant = now
+    }
+
+    @Test
+    fun `test token is reused until it is about to expire`() {
+        val cache = OAuthTokenCache(Duration.ofSeconds(60), clock)
+        val key = OAuthTokenCache.Key(transport, "org.receiver")
+        var requests = 0
+        val fetch: suspend () -> TokenInfo = {
+            requests++
+            TokenInfo(accessToken = "token$requests", expiresIn = 3600)
+        }
+
+        runBlocking {
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token1")
+            now = now.plusSeconds(3500)
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token1")
+
+            // Refreshed 60 seconds before it expires
+            now = now.plusSeconds(50)
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token2")
+        }
+        assertThat(cache.stats()).isEqualTo(OAuthTokenCache.Stats(1, 2, 1))
+    }
+
+    @Test
+    fun `test short-lived tokens and tokens without expiry`() {
+        val cache = OAuthTokenCache(Duration.ofSeconds(60), clock)
+        val key = OAuthTokenCache.Key(transport, "org.receiver")
+        var requests = 0
+
+        runBlocking {
+            // Refreshed after 90% of the lifetime of a short-lived token
+            val shortLived: suspend () -> TokenInfo = { TokenInfo("short${++requests}", expiresIn = 100) }
+            assertThat(cache.getToken(key, shortLived)).isEqualTo("short1")
+            now = now.plusSeconds(89)
+            assertThat(cache.getToken(key, shortLived)).isEqualTo("short1")
+            now = now.plusSeconds(1)
+            assertThat(cache.getToken(key, shortLived)).isEqualTo("short2")
+
+            // Not cached without an expiry
+            val noExpiry: suspend () -> TokenInfo = { TokenInfo("none${++requests}") }
+            assertThat(cache.getToken(key, noExpiry)).isEqualTo("none3")
+            assertThat(cache.getToken(key, noExpiry)).isEqualTo("none4")
+        }
+    }
+
+    @Test
+    fun `test invalidation`() {
+        val cache = OAuthTokenCache(clock = clock)
+        val key = OAuthTokenCache.Key(transport, "org.receiver")
+        var requests = 0
+        val fetch: suspend () -> TokenInfo = { TokenInfo("token${++requests}", expiresIn = 3600) }
+        runBlocking {
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token1")
+            cache.invalidate(key)
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token2")
+
+            // a rejected token is not removed once another token replaced it
+            cache.invalidate(key, "token1")
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token2")
+            cache.invalidate(key, "token2")
+            assertThat(cache.getToken(key, fetch)).isEqualTo("token3")
+        }
+    }
+
+    @Test
+    fun `test expired tokens are removed`() {
+        val cache = OAuthTokenCache(Duration.ofSeconds(60), clock)
+        val fetch: suspend () -> TokenInfo = { TokenInfo("token", expiresIn = 3600) }
+        runBlocking {
+            cache.getToken(OAuthTokenCache.Key(transport, "org.receiver1"), fetch)
+            cache.getToken(OAuthTokenCache.Key(transport, "org.receiver2"), fetch)
+            assertThat(cache.stats().size).isEqualTo(2)
+
+            now = now.plusSeconds(3600)
+            cache.getToken(OAuthTokenCache.Key(transport, "org.receiver3"), fetch)
+        }
+        assertThat(cache.stats().size).isEqualTo(1)
+    }
+}
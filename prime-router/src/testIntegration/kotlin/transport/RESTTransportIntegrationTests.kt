@@ -29,6 +29,7 @@ import io.ktor.client.engine.mock.respond
 import io.ktor.client.request.HttpRequest
 import io.ktor.client.statement.HttpResponse
 import io.ktor.http.Headers
+import io.ktor.http.HttpHeaders
 import io.ktor.http.HttpMethod
 import io.ktor.http.HttpProtocolVersion
 import io.ktor.http.HttpStatusCode
@@ -732,6 +733,44 @@ hnm8COa8Kr+bnTqzScpQuOfujHcFEtfcYUGfSS6HusxidwXx+lYi1A==
         assertThat(retryItems).isNull()
     }
 
+    @Test
+    fun `test OAuth token is reused while it is valid`() {
+        val mockClient = mockClientPostOk()
+        val mockRestTransport = spyk(RESTTransport(mockClient))
+        every { mockRestTransport.lookupDefaultCredential(any()) }.returns(
+            UserApiKeyCredential("flexion", fakePrivateKey)
+        )
+        every { runBlocking { mockRestTransport.getAuthTokenWithUserApiKey(any(), any(), any(), any()) } }.returns(
+            TokenInfo(accessToken = "MockToken", expiresIn = 3600, tokenType = "bearer")
+        )
+
+        repeat(2) {
+            val retryItems = mockRestTransport.send(
+                flexionRestTransportType,
+                makeHeader(),
+                reportId,
+                "test",
+                null,
+                context,
+                actionHistory,
+                mockk<IReportStreamEventService>(relaxed = true),
+                mockk<ReportService>(relaxed = true),
+                listOf(),
+                ""
+            )
+            assertThat(retryItems).isNull()
+        }
+
+        verify(exactly = 1) {
+            runBlocking { mockRestTransport.getAuthTokenWithUserApiKey(any(), any(), any(), any()) }
+        }
+        val requests = (mockClient.engine as MockEngine).requestHistory
+        assertThat(requests.size).isEqualTo(2)
+        requests.forEach {
+            assertThat(it.headers[HttpHeaders.Authorization]).isEqualTo("Bearer MockToken")
+        }
+    }
+
     private val nbsRestTransportTypeLive = RESTTransportType(
         "https://dataingestion.test.nbspreview.com/api/reports",
         "https://dataingestion.test.nbspreview.com/token",
@@ -1,7 +1,10 @@
 package gov.cdc.prime.reportstream.submissions.controllers
 
+import com.azure.core.util.Context
 import com.azure.data.tables.TableClient
 import com.azure.storage.blob.BlobContainerClient
+import com.azure.storage.blob.models.ParallelTransferOptions
+import com.azure.storage.blob.options.BlobParallelUploadOptions
 import com.azure.storage.queue.QueueClient
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
@@ -14,6 +17,10 @@ import gov.cdc.prime.reportstream.submissions.SubmissionReceivedEvent
 import gov.cdc.prime.reportstream.submissions.TelemetryService
 import gov.cdc.prime.reportstream.submissions.config.AllowedParametersConfig
 import jakarta.servlet.http.HttpServletRequest
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.async
+import kotlinx.coroutines.awaitAll
+import kotlinx.coroutines.runBlocking
 import org.slf4j.LoggerFactory
 import org.springframework.http.HttpStatus
 import org.springframework.http.ResponseEntity
@@ -25,11 +32,12 @@ import org.springframework.web.bind.MissingRequestHeaderException
 import org.springframework.web.bind.annotation.ControllerAdvice
 import org.springframework.web.bind.annotation.ExceptionHandler
 import org.springframework.web.bind.annotation.PostMapping
-import org.springframework.web.bind.annotation.RequestBody
 import org.springframework.web.bind.annotation.RequestHeader
 import org.springframework.web.bind.annotation.RestController
 import org.springframework.web.client.HttpClientErrorException.UnsupportedMediaType
 import java.io.IOException
+import java.security.DigestInputStream
+import java.security.MessageDigest
 import java.time.Instant
 import java.util.UUID
 
@@ -58,11 +66,15 @@ class SubmissionController(
      * to Azure Blob Storage, queued for further processing, and its metadata is stored in Azure Table Storage.
      * A custom event is also tracked in Application Insights for monitoring.
      *
+     * The report is streamed from the request to blob storage in blocks and hashed on the way, so large batches are
+     * never held in memory.  Once the upload succeeds, the table entity and the telemetry event are written at the
+     * same time, and the queue message is sent last.
+     *
      * @param headers the HTTP headers of the request
      * @param contentType the content type of the report (must be "application/hl7-v2" or "application/fhir+ndjson")
      * @param clientId the ID of the client submitting the report. Should represent org.senderName
-     * @param data the report data
-     * @param request gives access to request details
+     * @param contentLength the length of the report data, which must not be empty
+     * @param request gives access to request details and the report data
      * @return a ResponseEntity containing the reportID, status, and timestamp
      */
     @PostMapping("/api/v1/reports", consumes = ["application/hl7-v2", "application/fhir+ndjson"])
@@ -74,7 +86,6 @@ class SubmissionController(
         @RequestHeader("content-length") contentLength: String,
         @RequestHeader("x-azure-clientip") senderIp: String,
         @RequestHeader(value = "payloadName", required = false) payloadName: String?,
-        @RequestBody data: String,
         request: HttpServletRequest,
     ): ResponseEntity<*> {
         // TODO: consider if this needs to be in auth instead of submissions
@@ -101,65 +112,78 @@ class SubmissionController(
             ", clientId=$clientId${payloadName?.let { ", payloadName=$it" } ?: ""}}"
         )
 
-        // Convert data to ByteArray
-        val dataByteArray = data.toByteArray()
-        val digest = BlobUtils.sha256Digest(dataByteArray)
-        logger.debug("Converted report data to ByteArray")
-
-        // Upload to blob storage
-        val blobClient = blobContainerClient.getBlobClient(formBlobName(reportId, contentTypeMime, clientId))
-        blobClient.upload(dataByteArray.inputStream(), dataByteArray.size.toLong())
-        logger.info("Uploaded report to blob storage: blobUrl=${blobClient.blobUrl}")
-
-        // Insert into Table
-        // TableEntity() sets PartitionKey and RowKey. Both are required by azure and combine to create the PK
-        val tableEntity = Submission(reportId.toString(), status, blobClient.blobUrl).toTableEntity()
-        tableClient.createEntity(tableEntity)
-        logger.info("Inserted report into table storage: reportId=$reportId")
-
-        // Create and publish custom event
-        val submissionReceivedEvent = SubmissionReceivedEvent(
-            timeStamp = reportReceivedTime,
-            reportId = reportId,
-            parentReportId = reportId,
-            rootReportId = reportId,
-            requestParameters = SubmissionDetails(
-                filteredHeaders,
-                filteredQueryParameters
-            ),
-            method = request.method,
-            url = request.requestURL.toString(),
-            senderName = clientId,
-            senderIp = senderIp,
-            fileLength = contentLength,
-            blobUrl = blobClient.blobUrl,
-            pipelineStepName = "submission"
-        )
-        logger.debug("Created SUBMISSION_RECEIVED")
+        val reportLength = contentLength.toLongOrNull()
+        require(reportLength != null && reportLength > 0) { "Report data must not be empty" }
 
-        // Log to Application Insights
-        telemetryService.trackEvent(
-            "SUBMISSION_RECEIVED",
-            mapOf("event" to objectMapper.writeValueAsString(submissionReceivedEvent)),
-        )
-        telemetryService.flush()
-        logger.info("Tracked SUBMISSION_RECEIVED with Application Insights")
-
-        // Queue upload should occur as the last step ensuring the other steps successfully process
-        // Create the message for the queue
-        val message = QueueMessage.ReceiveQueueMessage(
-            blobClient.blobUrl,
-            BlobUtils.digestToString(digest),
-            clientId.lowercase(),
-            reportId,
-            filterHeaders(headers),
-        ).serialize()
-        logger.debug("Created message for queue")
-
-        // Upload to Queue
-        queueClient.createIfNotExists()
-        queueClient.sendMessage(message)
-        logger.info("Sent message to queue: queueName=${queueClient.queueName}")
+        runBlocking {
+            // Creating the queue does not depend on the report, so it runs while the report is uploaded
+            val queueReady = async(Dispatchers.IO) { queueClient.createIfNotExists() }
+
+            // Stream to blob storage, hashing the report as it is uploaded
+            val blobClient = blobContainerClient.getBlobClient(formBlobName(reportId, contentTypeMime, clientId))
+            val digestStream = DigestInputStream(request.inputStream, MessageDigest.getInstance("SHA-256"))
+            blobClient.uploadWithResponse(
+                BlobParallelUploadOptions(digestStream).setParallelTransferOptions(uploadTransferOptions),
+                null,
+                Context.NONE
+            )
+            val digest = digestStream.messageDigest.digest()
+            logger.info("Uploaded report to blob storage: blobUrl=${blobClient.blobUrl}")
+
+            // Insert into Table
+            // TableEntity() sets PartitionKey and RowKey. Both are required by azure and combine to create the PK
+            val tableInsert = async(Dispatchers.IO) {
+                val tableEntity = Submission(reportId.toString(), status, blobClient.blobUrl).toTableEntity()
+                tableClient.createEntity(tableEntity)
+                logger.info("Inserted report into table storage: reportId=$reportId")
+            }
+
+            // Create and publish custom event
+            val submissionReceivedEvent = SubmissionReceivedEvent(
+                timeStamp = reportReceivedTime,
+                reportId = reportId,
+                parentReportId = reportId,
+                rootReportId = reportId,
+                requestParameters = SubmissionDetails(
+                    filteredHeaders,
+                    filteredQueryParameters
+                ),
+                method = request.method,
+                url = request.requestURL.toString(),
+                senderName = clientId,
+                senderIp = senderIp,
+                fileLength = contentLength,
+                blobUrl = blobClient.blobUrl,
+                pipelineStepName = "submission"
+            )
+            logger.debug("Created SUBMISSION_RECEIVED")
+
+            // Log to Application Insights
+            val telemetryTracked = async(Dispatchers.IO) {
+                telemetryService.trackEvent(
+                    "SUBMISSION_RECEIVED",
+                    mapOf("event" to objectMapper.writeValueAsString(submissionReceivedEvent)),
+                )
+                telemetryService.flush()
+                logger.info("Tracked SUBMISSION_RECEIVED with Application Insights")
+            }
+
+            // Queue upload should occur as the last step ensuring the other steps successfully process
+            // Create the message for the queue
+            val message = QueueMessage.ReceiveQueueMessage(
+                blobClient.blobUrl,
+                BlobUtils.digestToString(digest),
+                clientId.lowercase(),
+                reportId,
+                filterHeaders(headers),
+            ).serialize()
+            logger.debug("Created message for queue")
+
+            // Upload to Queue
+            awaitAll(queueReady, tableInsert, telemetryTracked)
+            queueClient.sendMessage(message)
+            logger.info("Sent message to queue: queueName=${queueClient.queueName}")
+        }
 
         val response =
             CreationResponse(
@@ -308,6 +332,22 @@ class SubmissionController(
             else -> throw IllegalArgumentException("Unsupported content-type: $this")
         }
     }
+
+    companion object {
+        /**
+         * Size of the blocks a report is uploaded in.  Reports larger than a block are uploaded in blocks instead of
+         * in a single request, which keeps the memory used by an upload to [UPLOAD_MAX_CONCURRENCY] blocks.
+         */
+        const val UPLOAD_BLOCK_SIZE = 8L * 1024 * 1024
+
+        /** Number of blocks of a report that are uploaded at the same time */
+        const val UPLOAD_MAX_CONCURRENCY = 4
+
+        private val uploadTransferOptions = ParallelTransferOptions()
+            .setBlockSizeLong(UPLOAD_BLOCK_SIZE)
+            .setMaxSingleUploadSizeLong(UPLOAD_BLOCK_SIZE)
+            .setMaxConcurrency(UPLOAD_MAX_CONCURRENCY)
+    }
 }
 
 /**
@@ -8,6 +8,7 @@ import com.azure.storage.queue.QueueClient
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import gov.cdc.prime.reportstream.shared.BlobUtils
 import gov.cdc.prime.reportstream.shared.QueueMessage
 import gov.cdc.prime.reportstream.shared.QueueMessage.ObjectMapperProvider
 import gov.cdc.prime.reportstream.submissions.config.AzureConfig
@@ -16,6 +17,7 @@ import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
+import org.slf4j.LoggerFactory
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc
 import org.springframework.boot.test.context.SpringBootTest
@@ -54,6 +56,15 @@ class SubmissionControllerIntegrationTest {
     private lateinit var objectMapper: ObjectMapper
 
     companion object {
+        private const val OKTA_GROUPS =
+            "eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJhcHBJZCIsIm5iZiI6MTczMDkxMTczMiwiaXNzIjoiSSdtIHRoZSBpc3N1ZXIiLCJ" +
+                "ncm91cHMiOlsiREhTZW5kZXJfb3JnIl0sImV4cCI6NDg4NDUxMTczNywiaWF0IjoxNzMwOTExNzM3LCJqdGkiOiI1YjA" +
+                "5MjhjMC1jMDZmLTQ5OGItOWFmZS1kZDEwODJlNDliMmIifQ.EP3v_kCzWGTWIhhibwTWSzQGMSYVvogbqvrLiwSbTD0X" +
+                "ADRhiBlD4AIJwa_aUp9Zxnc6fbNKPIHWydzYZNUzzMmRkIzSYfmcj1oRjvf0HiXqw-8tSBT1sTBOlpGxWpTuPPnvV9A7" +
+                "ZqqJ614v8x_NyxPdswOdfFpgtSb_nDFLaLR3Tzo5A0JFeNWtlOd8U2gp6a57vggCFt9vDMhrOq8QC6gYJPUn1u7Z_Xfd" +
+                "C1XSm7r3DwcItMbqtVVY1ngixMI7CB0bChcJPgHI37P03IMsVscFrXlPPwxSUkdAe1xZW9w9i0-sI7iLIy78k4gMMXgH" +
+                "W64oopgua3Fdalo-LhDsJA"
+
         private val azuriteContainer = GenericContainer(
             DockerImageName.parse("mcr.microsoft.com/azure-storage/azurite")
         )
@@ -104,16 +115,7 @@ class SubmissionControllerIntegrationTest {
                 .header("client_id", "org.test")
                 .header("payloadname", "testPayload")
                 .header("x-azure-clientip", "127.0.0.1")
-                .header(
-                    "Okta-Groups",
-                    "eyJhbGciOiJSUzI1NiJ9.eyJzdWIiOiJhcHBJZCIsIm5iZiI6MTczMDkxMTczMiwiaXNzIjoiSSdtIHRoZSBpc3N1ZXIiLCJ" +
-                        "ncm91cHMiOlsiREhTZW5kZXJfb3JnIl0sImV4cCI6NDg4NDUxMTczNywiaWF0IjoxNzMwOTExNzM3LCJqdGkiOiI1YjA" +
-                        "5MjhjMC1jMDZmLTQ5OGItOWFmZS1kZDEwODJlNDliMmIifQ.EP3v_kCzWGTWIhhibwTWSzQGMSYVvogbqvrLiwSbTD0X" +
-                        "ADRhiBlD4AIJwa_aUp9Zxnc6fbNKPIHWydzYZNUzzMmRkIzSYfmcj1oRjvf0HiXqw-8tSBT1sTBOlpGxWpTuPPnvV9A7" +
-                        "ZqqJ614v8x_NyxPdswOdfFpgtSb_nDFLaLR3Tzo5A0JFeNWtlOd8U2gp6a57vggCFt9vDMhrOq8QC6gYJPUn1u7Z_Xfd" +
-                        "C1XSm7r3DwcItMbqtVVY1ngixMI7CB0bChcJPgHI37P03IMsVscFrXlPPwxSUkdAe1xZW9w9i0-sI7iLIy78k4gMMXgH" +
-                        "W64oopgua3Fdalo-LhDsJA"
-                )
+                .header("Okta-Groups", OKTA_GROUPS)
         )
             .andExpect(MockMvcResultMatchers.status().isCreated)
 
@@ -150,6 +152,48 @@ class SubmissionControllerIntegrationTest {
         assertEquals("Received", tableEntity.getProperty("RowKey"))
     }
 
+    @Test
+    fun `submitReport should stream a large batch to Azurite`() {
+        val logger = LoggerFactory.getLogger(SubmissionControllerIntegrationTest::class.java)
+        val message = "MSH|^~\\&|CDC PRIME - Atlanta|Atlanta|STATE|STATE|20240101000000||ORU^R01|1|P|2.5.1\r" +
+            "OBX|1|CWE|94500-6^SARS-CoV-2 RNA^LN||260415000^Not detected^SCT|||||F\r"
+        val reportSize = 64 * 1024 * 1024
+        val requestBody = message.repeat(reportSize / message.length).toByteArray()
+
+        val runtime = Runtime.getRuntime()
+        System.gc()
+        val heapBefore = runtime.totalMemory() - runtime.freeMemory()
+        val start = System.nanoTime()
+        mockMvc.perform(
+            MockMvcRequestBuilders.post("/api/v1/reports")
+                .with(jwt().authorities(SimpleGrantedAuthority("SCOPE_sender")))
+                .content(requestBody)
+                .contentType(MediaType.valueOf("application/hl7-v2"))
+                .header("client_id", "org.test")
+                .header("x-azure-clientip", "127.0.0.1")
+                .header("Okta-Groups", OKTA_GROUPS)
+        )
+            .andExpect(MockMvcResultMatchers.status().isCreated)
+        val seconds = (System.nanoTime() - start) / 1e9
+        val heapAfter = runtime.totalMemory() - runtime.freeMemory()
+        logger.info(
+            "Submitted ${requestBody.size / 1024 / 1024} MB in ${"%.2f".format(seconds)} s " +
+                "(${"%.1f".format(requestBody.size / 1024 / 1024 / seconds)} MB/s), " +
+                "heap grew by ${(heapAfter - heapBefore) / 1024 / 1024} MB"
+        )
+
+        // The blob holds the exact report bytes and the queue message has their digest
+        val blobs: MutableList<BlobItem> = mutableListOf()
+        blobContainerClient.listBlobs().iterator().forEachRemaining { blobs.add(it) }
+        assertEquals(1, blobs.size)
+        assertEquals(requestBody.size.toLong(), blobs[0].properties.contentLength)
+        val peekedMessage = checkNotNull(queueClient.peekMessage()?.body?.toString()) {
+            "No message found in the queue"
+        }
+        val deserializedMessage = deserialize(peekedMessage, QueueMessage.ReceiveQueueMessage::class.java)
+        assertEquals(BlobUtils.digestToString(BlobUtils.sha256Digest(requestBody)), deserializedMessage.digest)
+    }
+
     fun <T> deserialize(serializedString: String, valueType: Class<T>): T {
         val bytes = Base64.getDecoder().decode(serializedString)
         return ObjectMapperProvider.mapper.readValue(bytes, valueType)
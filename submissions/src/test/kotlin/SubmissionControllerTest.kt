@@ -1,13 +1,16 @@
 package gov.cdc.prime.reportstream.submissions.controllers
 
+import com.azure.core.util.Context
 import com.azure.data.tables.TableClient
 import com.azure.storage.blob.BlobClient
 import com.azure.storage.blob.BlobContainerClient
+import com.azure.storage.blob.options.BlobParallelUploadOptions
 import com.azure.storage.queue.QueueClient
 import com.azure.storage.queue.models.SendMessageResult
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import com.fasterxml.jackson.module.kotlin.jacksonObjectMapper
+import gov.cdc.prime.reportstream.shared.BlobUtils
 import gov.cdc.prime.reportstream.shared.QueueMessage
 import gov.cdc.prime.reportstream.shared.QueueMessage.ObjectMapperProvider
 import gov.cdc.prime.reportstream.shared.auth.AuthZService
@@ -18,18 +21,20 @@ import org.junit.jupiter.api.AfterEach
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.mockito.ArgumentMatchers.any
-import org.mockito.ArgumentMatchers.anyLong
 import org.mockito.ArgumentMatchers.anyMap
 import org.mockito.ArgumentMatchers.anyString
+import org.mockito.ArgumentMatchers.isNull
 import org.mockito.Mockito.doNothing
 import org.mockito.Mockito.doThrow
 import org.mockito.Mockito.mock
 import org.mockito.Mockito.mockStatic
+import org.mockito.Mockito.never
 import org.mockito.Mockito.reset
 import org.mockito.Mockito.verify
 import org.mockito.Mockito.`when`
 import org.mockito.MockitoAnnotations
 import org.mockito.kotlin.argumentCaptor
+import org.mockito.kotlin.doAnswer
 import org.springframework.beans.factory.annotation.Autowired
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest
 import org.springframework.boot.test.context.TestConfiguration
@@ -41,8 +46,6 @@ import org.springframework.security.test.web.servlet.request.SecurityMockMvcRequ
 import org.springframework.test.web.servlet.MockMvc
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers
-import java.io.ByteArrayInputStream
-import java.io.InputStream
 import java.util.Base64
 import java.util.UUID
 
@@ -90,6 +93,7 @@ class SubmissionControllerTest {
 
     private lateinit var blobClient: BlobClient
     private lateinit var sendMessageResult: SendMessageResult
+    private var uploadedContent: ByteArray? = null
 
     @BeforeEach
     fun setUp() {
@@ -104,8 +108,13 @@ class SubmissionControllerTest {
         // Ensure blobUrl is mocked properly
         `when`(blobClient.blobUrl).thenReturn("https://example.com/blobUrl")
 
-        // Mock the upload method
-        doNothing().`when`(blobClient).upload(any(ByteArrayInputStream::class.java), anyLong())
+        // Mock the upload method, reading the report like the storage client does
+        uploadedContent = null
+        doAnswer {
+            uploadedContent = it.getArgument<BlobParallelUploadOptions>(0).dataStream.readAllBytes()
+            null
+        }.`when`(blobClient)
+            .uploadWithResponse(any(BlobParallelUploadOptions::class.java), isNull(), any(Context::class.java))
 
         // Mock QueueClient
         sendMessageResult = mock(SendMessageResult::class.java)
@@ -142,9 +151,7 @@ class SubmissionControllerTest {
         val uuidMockedStatic = mockStatic(UUID::class.java)
         uuidMockedStatic.`when`<UUID> { UUID.randomUUID() }.thenReturn(reportId)
 
-        // Capture the arguments passed to the upload and sendMessage methods
-        val blobInputStreamCaptor = argumentCaptor<InputStream>()
-        val blobSizeCaptor = argumentCaptor<Long>()
+        // Capture the arguments passed to the sendMessage method
         val messageCaptor = argumentCaptor<String>()
 
         `when`(blobClient.blobUrl).thenReturn(expectedBlobUrl)
@@ -161,12 +168,12 @@ class SubmissionControllerTest {
         )
             .andExpect(MockMvcResultMatchers.status().isCreated)
 
-        verify(blobClient).upload(blobInputStreamCaptor.capture(), blobSizeCaptor.capture())
         verify(queueClient).sendMessage(messageCaptor.capture())
 
-        // Assert the captured arguments
-        assert(blobSizeCaptor.firstValue == requestBody.length.toLong())
+        // Assert the uploaded report and the captured arguments
+        assert(uploadedContent.contentEquals(requestBody.toByteArray()))
         val capturedMessage = deserialize(messageCaptor.firstValue, QueueMessage.ReceiveQueueMessage::class.java)
+        assert(capturedMessage.digest == BlobUtils.digestToString(BlobUtils.sha256Digest(requestBody.toByteArray())))
         assert(capturedMessage.reportId == reportId)
         assert(capturedMessage.blobURL == expectedBlobUrl)
         val headers = capturedMessage.headers as Map<*, *>
@@ -189,9 +196,7 @@ class SubmissionControllerTest {
         val uuidMockedStatic = mockStatic(UUID::class.java)
         uuidMockedStatic.`when`<UUID> { UUID.randomUUID() }.thenReturn(reportId)
 
-        // Capture the arguments passed to the upload and sendMessage methods
-        val blobInputStreamCaptor = argumentCaptor<InputStream>()
-        val blobSizeCaptor = argumentCaptor<Long>()
+        // Capture the arguments passed to the sendMessage method
         val messageCaptor = argumentCaptor<String>()
 
         `when`(blobClient.blobUrl).thenReturn(expectedBlobUrl)
@@ -208,12 +213,12 @@ class SubmissionControllerTest {
         )
             .andExpect(MockMvcResultMatchers.status().isCreated)
 
-        verify(blobClient).upload(blobInputStreamCaptor.capture(), blobSizeCaptor.capture())
         verify(queueClient).sendMessage(messageCaptor.capture())
 
-        // Assert the captured arguments
-        assert(blobSizeCaptor.firstValue == requestBody.length.toLong())
+        // Assert the uploaded report and the captured arguments
+        assert(uploadedContent.contentEquals(requestBody.toByteArray()))
         val capturedMessage = deserialize(messageCaptor.firstValue, QueueMessage.ReceiveQueueMessage::class.java)
+        assert(capturedMessage.digest == BlobUtils.digestToString(BlobUtils.sha256Digest(requestBody.toByteArray())))
         assert(capturedMessage.reportId == reportId)
         assert(capturedMessage.blobURL == expectedBlobUrl)
         val headers = capturedMessage.headers as Map<*, *>
@@ -267,7 +272,8 @@ class SubmissionControllerTest {
         val requestBody = objectMapper.writeValueAsString(data)
 
         doThrow(RuntimeException("Blob storage failure"))
-            .`when`(blobClient).upload(any(ByteArrayInputStream::class.java), anyLong())
+            .`when`(blobClient)
+            .uploadWithResponse(any(BlobParallelUploadOptions::class.java), isNull(), any(Context::class.java))
 
         mockMvc.perform(
             MockMvcRequestBuilders.post("/api/v1/reports")
@@ -281,7 +287,10 @@ class SubmissionControllerTest {
             .andExpect(MockMvcResultMatchers.status().isInternalServerError)
             .andExpect(MockMvcResultMatchers.content().string("Internal Server Error: Blob storage failure"))
 
-        verify(blobClient).upload(any(ByteArrayInputStream::class.java), anyLong())
+        verify(blobClient)
+            .uploadWithResponse(any(BlobParallelUploadOptions::class.java), isNull(), any(Context::class.java))
+        verify(tableClient, never()).createEntity(any())
+        verify(queueClient, never()).sendMessage(anyString())
     }
 
     @Test
@@ -289,7 +298,6 @@ class SubmissionControllerTest {
         val data = mapOf("key" to "value")
         val requestBody = objectMapper.writeValueAsString(data)
 
-        doNothing().`when`(blobClient).upload(any(ByteArrayInputStream::class.java), anyLong())
         doThrow(RuntimeException("Queue service failure")).`when`(queueClient).sendMessage(anyString())
 
         mockMvc.perform(
@@ -303,10 +311,47 @@ class SubmissionControllerTest {
         )
             .andExpect(MockMvcResultMatchers.status().isInternalServerError)
 
-        verify(blobClient).upload(any(ByteArrayInputStream::class.java), anyLong())
+        verify(blobClient)
+            .uploadWithResponse(any(BlobParallelUploadOptions::class.java), isNull(), any(Context::class.java))
         verify(queueClient).sendMessage(anyString())
     }
 
+    @Test
+    fun `submitReport should return BAD_REQUEST status when the report is empty`() {
+        mockMvc.perform(
+            MockMvcRequestBuilders.post("/api/v1/reports")
+                .with(jwt().authorities(SimpleGrantedAuthority("SCOPE_sender")))
+                .content("")
+                .contentType(MediaType.valueOf("application/hl7-v2"))
+                .header("client_id", "testClient")
+                .header("x-azure-clientip", "127.0.0.1")
+        )
+            .andExpect(MockMvcResultMatchers.status().isBadRequest)
+            .andExpect(MockMvcResultMatchers.content().string("Bad Request: Report data must not be empty"))
+
+        verify(blobClient, never())
+            .uploadWithResponse(any(BlobParallelUploadOptions::class.java), isNull(), any(Context::class.java))
+    }
+
+    @Test
+    fun `submitReport should not send the queue message when the table insert fails`() {
+        val requestBody = objectMapper.writeValueAsString(mapOf("key" to "value"))
+        doThrow(RuntimeException("Table storage failure")).`when`(tableClient).createEntity(any())
+
+        mockMvc.perform(
+            MockMvcRequestBuilders.post("/api/v1/reports")
+                .with(jwt().authorities(SimpleGrantedAuthority("SCOPE_sender")))
+                .content(requestBody)
+                .contentType(MediaType.valueOf("application/hl7-v2"))
+                .header("client_id", "testClient")
+                .header("x-azure-clientip", "127.0.0.1")
+        )
+            .andExpect(MockMvcResultMatchers.status().isInternalServerError)
+            .andExpect(MockMvcResultMatchers.content().string("Internal Server Error: Table storage failure"))
+
+        verify(queueClient, never()).sendMessage(anyString())
+    }
+
     @Test
     fun `submitReport should log SUBMISSION_RECEIVED with correct details`() {
         // Helper function to safely cast the captured map to Map<String, String>